@@ -34,6 +34,7 @@ import org.audiveris.omr.ui.MainGui;
 import org.audiveris.omr.ui.symbol.MusicFont;
 import org.audiveris.omr.ui.util.UIUtil;
 import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
 
 import org.jdesktop.application.Application;
 
@@ -350,7 +351,8 @@ public class Main
                 try {
                     logTasks(tasks, true);
 
-                    List<Future<Void>> futures = OmrExecutors.getCachedLowExecutor().invokeAll(
+                    List<Future<Void>> futures = OmrScheduler.invokeAll(
+                            OmrScheduler.Level.BATCH,
                             tasks);
                     logger.info("Checking {} task(s)", tasks.size());
 
@@ -153,6 +153,35 @@ public abstract class AbstractClassifier<M extends Object>
         return evaluate(glyph, null, count, minGrade, conditions, interline);
     }
 
+    //----------//
+    // evaluate //
+    //----------//
+    @Override
+    public Evaluation[][] evaluate (List<? extends Glyph> glyphs,
+                                    SystemInfo system,
+                                    int count,
+                                    double minGrade,
+                                    EnumSet<Condition> conditions)
+    {
+        final int[] interlines = new int[glyphs.size()];
+        Arrays.fill(interlines, system.getSheet().getInterline());
+
+        return evaluate(glyphs, system, count, minGrade, conditions, interlines);
+    }
+
+    //----------//
+    // evaluate //
+    //----------//
+    @Override
+    public Evaluation[][] evaluate (List<? extends Glyph> glyphs,
+                                    int[] interlines,
+                                    int count,
+                                    double minGrade,
+                                    EnumSet<Condition> conditions)
+    {
+        return evaluate(glyphs, null, count, minGrade, conditions, interlines);
+    }
+
     //---------------//
     // getDescriptor //
     //---------------//
@@ -183,7 +212,7 @@ public abstract class AbstractClassifier<M extends Object>
         watch.start("browse samples");
 
         for (Sample sample : samples) {
-            double[] ins = descriptor.getFeatures(sample, sample.getInterline());
+            double[] ins = getFeatures(sample, sample.getInterline());
             inputs[ig] = ins;
 
             double[] des = new double[SHAPE_COUNT];
@@ -194,6 +223,15 @@ public abstract class AbstractClassifier<M extends Object>
             ig++;
         }
 
+        // Persist newly computed sample features
+        watch.start("store features");
+
+        final SampleRepository repository = getFeatureRepository();
+
+        if (repository != null) {
+            repository.storeFeatures();
+        }
+
         // Build the collection of features from the glyph data
         watch.start("features");
 
@@ -228,6 +266,81 @@ public abstract class AbstractClassifier<M extends Object>
         return weight >= constants.minWeight.getValue();
     }
 
+    //-------------//
+    // getFeatures //
+    //-------------//
+    /**
+     * Report the features of the provided glyph.
+     * <p>
+     * If the glyph is a sample, its features are taken from the feature cache of the global
+     * repository, so that they are computed only once.
+     *
+     * @param glyph     the glyph (or sample) to describe
+     * @param interline the related staff interline
+     * @return the glyph features, an array of size descriptor.length()
+     */
+    protected double[] getFeatures (Glyph glyph,
+                                    int interline)
+    {
+        if (glyph instanceof Sample) {
+            final Sample sample = (Sample) glyph;
+
+            if (sample.getInterline() == interline) {
+                final SampleRepository repository = getFeatureRepository();
+
+                if (repository != null) {
+                    return repository.getFeatureCache(descriptor).getFeatures(sample);
+                }
+            }
+        }
+
+        return descriptor.getFeatures(glyph, interline);
+    }
+
+    //----------------------//
+    // getFeatureRepository //
+    //----------------------//
+    /**
+     * Report the repository whose feature cache is to be used.
+     *
+     * @return the loaded global repository, or null if none or if feature cache is disabled
+     */
+    protected SampleRepository getFeatureRepository ()
+    {
+        if (!constants.useFeatureCache.isSet() || !SampleRepository.hasInstance()) {
+            return null;
+        }
+
+        final SampleRepository repository = SampleRepository.getGlobalInstance(false);
+
+        return ((repository != null) && repository.isLoaded()) ? repository : null;
+    }
+
+    //-----------------------//
+    // getNaturalEvaluations //
+    //-----------------------//
+    /**
+     * Batch version of {@link #getNaturalEvaluations(Glyph, int)}.
+     * <p>
+     * This default implementation processes one glyph at a time, subclasses may override it
+     * with a true batch processing.
+     *
+     * @param glyphs     the glyphs to be examined
+     * @param interlines the relevant scaling interline, for each glyph
+     * @return all shape-ordered evaluations, for each glyph
+     */
+    protected Evaluation[][] getNaturalEvaluations (List<? extends Glyph> glyphs,
+                                                    int[] interlines)
+    {
+        final Evaluation[][] evals = new Evaluation[glyphs.size()][];
+
+        for (int ig = 0; ig < evals.length; ig++) {
+            evals[ig] = getNaturalEvaluations(glyphs.get(ig), interlines[ig]);
+        }
+
+        return evals;
+    }
+
     //----------------------//
     // getSortedEvaluations //
     //----------------------//
@@ -253,6 +366,52 @@ public abstract class AbstractClassifier<M extends Object>
         }
     }
 
+    //----------------------//
+    // getSortedEvaluations //
+    //----------------------//
+    /**
+     * Batch version of {@link #getSortedEvaluations(Glyph, int)}.
+     *
+     * @param glyphs     the glyphs to be examined
+     * @param interlines the relevant scaling interline, for each glyph
+     * @return the ordered best evaluations, for each glyph
+     */
+    protected Evaluation[][] getSortedEvaluations (List<? extends Glyph> glyphs,
+                                                   int[] interlines)
+    {
+        final Evaluation[][] evals = new Evaluation[glyphs.size()][];
+
+        // Only the glyphs big enough are submitted to the model, the others are just NOISE
+        final List<Glyph> bigs = new ArrayList<>();
+        final int[] bigIndices = new int[evals.length];
+        final int[] bigInterlines = new int[evals.length];
+
+        for (int ig = 0; ig < evals.length; ig++) {
+            final Glyph glyph = glyphs.get(ig);
+
+            if (!isBigEnough(glyph, interlines[ig])) {
+                evals[ig] = noiseEvaluations;
+            } else {
+                bigIndices[bigs.size()] = ig;
+                bigInterlines[bigs.size()] = interlines[ig];
+                bigs.add(glyph);
+            }
+        }
+
+        if (!bigs.isEmpty()) {
+            final Evaluation[][] bigEvals = getNaturalEvaluations(
+                    bigs,
+                    Arrays.copyOf(bigInterlines, bigs.size()));
+
+            for (int ib = 0; ib < bigEvals.length; ib++) {
+                Arrays.sort(bigEvals[ib], Evaluation.byReverseGrade);
+                evals[bigIndices[ib]] = bigEvals[ib];
+            }
+        }
+
+        return evals;
+    }
+
     //--------------//
     // isCompatible //
     //--------------//
@@ -499,9 +658,56 @@ public abstract class AbstractClassifier<M extends Object>
                                    double minGrade,
                                    EnumSet<Classifier.Condition> conditions,
                                    int interline)
+    {
+        return selectBests(
+                glyph,
+                system,
+                count,
+                minGrade,
+                conditions,
+                getSortedEvaluations(glyph, interline));
+    }
+
+    //----------//
+    // evaluate //
+    //----------//
+    private Evaluation[][] evaluate (List<? extends Glyph> glyphs,
+                                     SystemInfo system,
+                                     int count,
+                                     double minGrade,
+                                     EnumSet<Classifier.Condition> conditions,
+                                     int[] interlines)
+    {
+        final Evaluation[][] sorted = getSortedEvaluations(glyphs, interlines);
+        final Evaluation[][] results = new Evaluation[sorted.length][];
+
+        for (int ig = 0; ig < sorted.length; ig++) {
+            results[ig] = selectBests(
+                    glyphs.get(ig),
+                    system,
+                    count,
+                    minGrade,
+                    conditions,
+                    sorted[ig]);
+        }
+
+        return results;
+    }
+
+    //-------------//
+    // selectBests //
+    //-------------//
+    /**
+     * Select the best acceptable evaluations among the sorted ones.
+     */
+    private Evaluation[] selectBests (Glyph glyph,
+                                      SystemInfo system,
+                                      int count,
+                                      double minGrade,
+                                      EnumSet<Classifier.Condition> conditions,
+                                      Evaluation[] evals)
     {
         List<Evaluation> bests = new ArrayList<>();
-        Evaluation[] evals = getSortedEvaluations(glyph, interline);
 
         EvalsLoop:
         for (Evaluation eval : evals) {
@@ -579,5 +785,9 @@ public abstract class AbstractClassifier<M extends Object>
         private final Scale.AreaFraction minWeight = new Scale.AreaFraction(
                 0.04,
                 "Minimum normalized weight to be considered not a noise");
+
+        private final Constant.Boolean useFeatureCache = new Constant.Boolean(
+                true,
+                "Should we cache the features of repository samples?");
     }
 }
@@ -39,13 +39,16 @@ public class ArtGlyphDescriptor
     /** Use the ART moments + 3 GEO + weight + aspect. */
     private static final int LENGTH = ARTMoments.MOMENT_COUNT + 5;
 
+    /** Version of features computation, including ART moments extraction. */
+    private static final int VERSION = 2; // 2: ART moments by FusedARTExtractor
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new <code>ArtGlyphDescriptor</code> object.
      */
     public ArtGlyphDescriptor ()
     {
-        super("art");
+        super("art", VERSION);
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -51,6 +51,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
@@ -158,7 +159,7 @@ public class BasicClassifier
     public Evaluation[] getNaturalEvaluations (Glyph glyph,
                                                int interline)
     {
-        double[] ins = descriptor.getFeatures(glyph, interline);
+        double[] ins = getFeatures(glyph, interline);
         final INDArray features = Nd4j.create(ins);
         normalize(features);
 
@@ -179,6 +180,66 @@ public class BasicClassifier
         return evals;
     }
 
+    //-----------------------//
+    // getNaturalEvaluations //
+    //-----------------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Normalized features of glyphs are gathered into one flat array, to be processed by the
+     * network in a single batch run, chunk by chunk.
+     * Results are identical to those of {@link #getNaturalEvaluations(Glyph, int)}.
+     */
+    @Override
+    protected Evaluation[][] getNaturalEvaluations (List<? extends Glyph> glyphs,
+                                                    int[] interlines)
+    {
+        final int inputSize = descriptor.length();
+        final double[] means = new double[inputSize];
+        final double[] stds = new double[inputSize];
+
+        for (int i = 0; i < inputSize; i++) {
+            means[i] = norms.means.getDouble(i);
+            stds[i] = norms.stds.getDouble(i);
+        }
+
+        final Shape[] values = Shape.values();
+        final Evaluation[][] evals = new Evaluation[glyphs.size()][];
+        final int chunk = Math.max(1, constants.batchSize.getValue());
+        final double[] ins = new double[Math.min(chunk, evals.length) * inputSize];
+        final double[] outs = new double[Math.min(chunk, evals.length) * SHAPE_COUNT];
+
+        for (int start = 0; start < evals.length; start += chunk) {
+            final int count = Math.min(chunk, evals.length - start);
+
+            for (int b = 0; b < count; b++) {
+                final double[] features = getFeatures(
+                        glyphs.get(start + b),
+                        interlines[start + b]);
+                final int in0 = b * inputSize;
+
+                for (int i = 0; i < inputSize; i++) {
+                    ins[in0 + i] = (features[i] - means[i]) / stds[i];
+                }
+            }
+
+            model.runBatch(ins, count, outs);
+
+            for (int b = 0; b < count; b++) {
+                final Evaluation[] glyphEvals = new Evaluation[SHAPE_COUNT];
+                final int out0 = b * SHAPE_COUNT;
+
+                for (int s = 0; s < SHAPE_COUNT; s++) {
+                    glyphEvals[s] = new Evaluation(values[s], outs[out0 + s]);
+                }
+
+                evals[start + b] = glyphEvals;
+            }
+        }
+
+        return evals;
+    }
+
     //-------//
     // reset //
     //-------//
@@ -216,8 +277,9 @@ public class BasicClassifier
         watch.start("shuffle");
 
         // Shuffle the collection of samples
+        final int seed = constants.trainingSeed.getValue();
         final List<Sample> newSamples = new ArrayList<>(samples);
-        Collections.shuffle(newSamples);
+        Collections.shuffle(newSamples, (seed != 0) ? new Random(seed) : new Random());
 
         // Build raw dataset
         watch.start("getRawDataSet");
@@ -268,6 +330,8 @@ public class BasicClassifier
         }
 
         // Train
+        model.setMiniBatchSize(constants.miniBatchSize.getValue());
+        model.setSeed(seed);
         model.train(inputs, desiredOutputs, listener, listener.getIterationPeriod());
 
         // Store
@@ -438,7 +502,8 @@ public class BasicClassifier
                 ShapeSet.getPhysicalShapeNames(), // Output labels
                 constants.learningRate.getValue(),
                 constants.momentum.getValue(),
-                getMaxEpochs());
+                getMaxEpochs(),
+                constants.trainingSeed.getValue());
     }
 
     //-----------//
@@ -492,6 +557,21 @@ public class BasicClassifier
                 "Maximum number of epochs in training");
 
         private final Constant.Ratio momentum = new Constant.Ratio(0.2, "Training momentum");
+
+        private final Constant.Integer batchSize = new Constant.Integer(
+                "Glyphs",
+                1024,
+                "Maximum number of glyphs evaluated together in a batch");
+
+        private final Constant.Integer miniBatchSize = new Constant.Integer(
+                "Samples",
+                0,
+                "Number of samples per training mini-batch (0 for training sample per sample)");
+
+        private final Constant.Integer trainingSeed = new Constant.Integer(
+                "Seed",
+                0,
+                "Seed for initial weights and training shuffle (0 for no fixed seed)");
     }
 
     //---------------//
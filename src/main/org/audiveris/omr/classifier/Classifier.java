@@ -30,6 +30,7 @@ import org.audiveris.omr.sheet.SystemInfo;
 //
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.List;
 
 /**
  * Interface <code>Classifier</code> defines the features of a glyph shape classifier.
@@ -100,6 +101,40 @@ public interface Classifier
                            double minGrade,
                            EnumSet<Condition> conditions);
 
+    /**
+     * Batch version of {@link #evaluate(Glyph, SystemInfo, int, double, EnumSet)}, for
+     * glyphs of the same system.
+     *
+     * @param glyphs     the glyphs to evaluate
+     * @param system     the system containing the glyphs to evaluate
+     * @param count      the desired maximum sequence length, min 1 and max SHAPE_COUNT
+     * @param minGrade   the minimum evaluation grade to be acceptable
+     * @param conditions optional conditions, perhaps null or empty
+     * @return the sequence of evaluations for each glyph, in glyphs order
+     */
+    Evaluation[][] evaluate (List<? extends Glyph> glyphs,
+                             SystemInfo system,
+                             int count,
+                             double minGrade,
+                             EnumSet<Condition> conditions);
+
+    /**
+     * Batch version of {@link #evaluate(Glyph, int, int, double, EnumSet)}, with one interline
+     * value per glyph.
+     *
+     * @param glyphs     the glyphs to evaluate
+     * @param interlines the relevant scaling information, for each glyph
+     * @param count      the desired maximum sequence length, min 1 and max SHAPE_COUNT
+     * @param minGrade   the minimum evaluation grade to be acceptable
+     * @param conditions optional conditions, perhaps null or empty
+     * @return the sequence of evaluations for each glyph, in glyphs order
+     */
+    Evaluation[][] evaluate (List<? extends Glyph> glyphs,
+                             int[] interlines,
+                             int count,
+                             double minGrade,
+                             EnumSet<Condition> conditions);
+
     /**
      * Report the underlying glyph descriptor
      *
@@ -0,0 +1,391 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    F e a t u r e C a c h e                                     //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.classifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Class <code>FeatureCache</code> keeps the features computed by a glyph descriptor on samples,
+ * and persists them in a file next to the samples repository.
+ * <p>
+ * A sample is immutable once stored, so its features need to be computed only once.
+ * A sample is identified by the digest of its run table and by its interline, hence:
+ * <ul>
+ * <li>A newly added sample is simply not found, its features get computed and recorded.
+ * <li>The features of a removed sample get discarded at next {@link #store}.
+ * </ul>
+ * <p>
+ * The file is made of a header, the sample keys, then for each feature its column of values,
+ * one value per sample in keys order.
+ * Values are fixed-size and 8-byte aligned, so that the file can be memory-mapped and any feature
+ * column be processed as a whole.
+ * The file is read at once into memory rather than mapped, because a mapping would lock it on
+ * Windows and prevent {@link #store} from replacing it.
+ * The file is ignored when written for another descriptor version or length.
+ *
+ * @author Hervé Bitteur
+ */
+public class FeatureCache
+        implements ChangeListener
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureCache.class);
+
+    /** Magic number at file start: "FEAT". */
+    private static final int MAGIC = 0x46454154;
+
+    /** Version of file layout. */
+    private static final int FORMAT = 3;
+
+    /** Header size: magic, format, descriptor version, length, count, padding. */
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Path to cache file. */
+    private final Path file;
+
+    /** Descriptor which computes the features. */
+    private final GlyphDescriptor descriptor;
+
+    /** Number of features per sample. */
+    private final int length;
+
+    /** Row of values read, per sample key. */
+    private final Map<Long, Integer> rows = new HashMap<>();
+
+    /** Values read from file, feature after feature (one column per feature), if any. */
+    private double[] values;
+
+    /** Features computed since load, per sample key. */
+    private final Map<Long, double[]> added = new HashMap<>();
+
+    /** Has file been read?. */
+    private boolean loaded;
+
+    /** Does file need to be written?. */
+    private boolean modified;
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>FeatureCache</code> object.
+     * <p>
+     * The file is not accessed before features are needed.
+     *
+     * @param file       path to cache file
+     * @param descriptor the descriptor which computes the features
+     */
+    public FeatureCache (Path file,
+                         GlyphDescriptor descriptor)
+    {
+        this.file = file;
+        this.descriptor = descriptor;
+        length = descriptor.length();
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //-------------//
+    // getFeatures //
+    //-------------//
+    /**
+     * Report the features of the provided sample, computing them only if not yet known.
+     *
+     * @param sample the provided sample
+     * @return the sample features, an array of size descriptor.length()
+     */
+    public double[] getFeatures (Sample sample)
+    {
+        final long key = keyOf(sample);
+
+        synchronized (this) {
+            load();
+
+            final double[] features = lookup(key);
+
+            if (features != null) {
+                return features;
+            }
+        }
+
+        // Computed out of lock, so that parallel evaluations do not wait for each other
+        final double[] features = descriptor.getFeatures(sample, sample.getInterline());
+
+        synchronized (this) {
+            added.put(key, features.clone());
+            modified = true;
+        }
+
+        return features;
+    }
+
+    //------------//
+    // isModified //
+    //------------//
+    /**
+     * Report whether the cache content differs from the file.
+     *
+     * @return true if modified
+     */
+    public synchronized boolean isModified ()
+    {
+        return modified;
+    }
+
+    //--------------//
+    // stateChanged //
+    //--------------//
+    /**
+     * Called on any repository modification, so that removed samples get purged at next store.
+     *
+     * @param e the repository event
+     */
+    @Override
+    public synchronized void stateChanged (ChangeEvent e)
+    {
+        modified = true;
+    }
+
+    //-------//
+    // store //
+    //-------//
+    /**
+     * Write the cache file, if modified, with the known features of the provided samples.
+     * <p>
+     * Features of any other sample are discarded.
+     *
+     * @param samples all the samples of repository
+     */
+    public synchronized void store (Collection<Sample> samples)
+    {
+        if (!modified) {
+            return;
+        }
+
+        load();
+
+        // Features to keep, per sample key
+        final Map<Long, double[]> kept = new LinkedHashMap<>();
+
+        for (Sample sample : samples) {
+            final long key = keyOf(sample);
+
+            if (!kept.containsKey(key)) {
+                final double[] features = lookup(key);
+
+                if (features != null) {
+                    kept.put(key, features);
+                }
+            }
+        }
+
+        final int count = kept.size();
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_SIZE + (Long.BYTES * count) + (Double.BYTES * count * length));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(FORMAT).putInt(descriptor.getVersion()).putInt(length);
+        buffer.putInt(count).putInt(0);
+
+        for (long key : kept.keySet()) {
+            buffer.putLong(key);
+        }
+
+        for (int i = 0; i < length; i++) {
+            for (double[] features : kept.values()) {
+                buffer.putDouble(features[i]);
+            }
+        }
+
+        buffer.flip();
+
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            // New file gets read when next needed
+            values = null;
+            rows.clear();
+            loaded = false;
+            Files.move(tmp, file, REPLACE_EXISTING);
+
+            added.clear();
+            modified = false;
+            logger.info("Features of {} samples stored in {}", count, file);
+        } catch (IOException ex) {
+            logger.warn("Could not store features in {} " + ex, file, ex);
+        }
+    }
+
+    //-------//
+    // keyOf //
+    //-------//
+    /**
+     * Report the persistent key of a sample, based on its content and interline.
+     *
+     * @param sample the sample
+     * @return the sample key
+     */
+    static long keyOf (Sample sample)
+    {
+        return mix(sample.getRunTable().persistentDigest() ^ mix(sample.getInterline()));
+    }
+
+    //------//
+    // load //
+    //------//
+    /**
+     * Read the cache file, if any and not yet done.
+     */
+    private void load ()
+    {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if ((buffer.remaining() < HEADER_SIZE)
+                        || (buffer.getInt() != MAGIC)
+                        || (buffer.getInt() != FORMAT)
+                        || (buffer.getInt() != descriptor.getVersion())
+                        || (buffer.getInt() != length)) {
+                logger.info("Ignoring obsolete {}", file);
+                modified = true;
+
+                return;
+            }
+
+            final int count = buffer.getInt();
+            buffer.getInt(); // Padding
+
+            if (buffer.remaining() != ((Long.BYTES * count) + (Double.BYTES * count * length))) {
+                logger.warn("Ignoring truncated {}", file);
+                modified = true;
+
+                return;
+            }
+
+            final long[] keys = new long[count];
+            buffer.asLongBuffer().get(keys);
+            buffer.position(buffer.position() + (Long.BYTES * count));
+
+            values = new double[count * length];
+            buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+
+            for (int row = 0; row < count; row++) {
+                rows.put(keys[row], row);
+            }
+
+            logger.debug("Features of {} samples read from {}", count, file);
+        } catch (IOException ex) {
+            logger.warn("Could not load features from {} " + ex, file, ex);
+            modified = true;
+        }
+    }
+
+    //--------//
+    // lookup //
+    //--------//
+    /**
+     * Report a copy of the known features for the provided key.
+     *
+     * @param key the sample key
+     * @return the features, or null if unknown
+     */
+    private double[] lookup (long key)
+    {
+        final double[] computed = added.get(key);
+
+        if (computed != null) {
+            return computed.clone();
+        }
+
+        final Integer row = rows.get(key);
+
+        if (row == null) {
+            return null;
+        }
+
+        // One value per column
+        final int count = values.length / length;
+        final double[] features = new double[length];
+
+        for (int i = 0; i < length; i++) {
+            features[i] = values[(i * count) + row];
+        }
+
+        return features;
+    }
+
+    //-----//
+    // mix //
+    //-----//
+    /**
+     * Scramble all bits of provided value (finalizer of MurmurHash3), so that keys built from
+     * close digests and interlines do not collide.
+     *
+     * @param value the value to scramble
+     * @return the scrambled value
+     */
+    private static long mix (long value)
+    {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93F91D0EB53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
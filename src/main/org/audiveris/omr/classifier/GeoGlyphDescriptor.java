@@ -40,13 +40,16 @@ public class GeoGlyphDescriptor
     /** Use the 10 first geometric moments + aspect. */
     private static final int LENGTH = MOMENT_COUNT + 1;
 
+    /** Version of features computation. */
+    private static final int VERSION = 1;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new <code>GeoGlyphDescriptor</code> object.
      */
     public GeoGlyphDescriptor ()
     {
-        super("geo");
+        super("geo", VERSION);
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -50,15 +50,21 @@ public abstract class GlyphDescriptor
     /** Descriptor name. */
     private final String name;
 
+    /** Version of features computation. */
+    private final int version;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new <code>GlyphDescriptor</code> object.
      *
-     * @param name distinctive descriptor name
+     * @param name    distinctive descriptor name
+     * @param version version of features computation
      */
-    public GlyphDescriptor (String name)
+    public GlyphDescriptor (String name,
+                            int version)
     {
         this.name = name;
+        this.version = version;
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -134,6 +140,19 @@ public abstract class GlyphDescriptor
         return name;
     }
 
+    /**
+     * Report the version of features computation.
+     * <p>
+     * It is incremented by the concrete descriptor whenever the computation of any of its
+     * features changes, so that features persisted by a previous version get discarded.
+     *
+     * @return the features version
+     */
+    public int getVersion ()
+    {
+        return version;
+    }
+
     /**
      * Report the number of features provided.
      *
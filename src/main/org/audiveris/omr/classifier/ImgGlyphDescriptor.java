@@ -44,13 +44,16 @@ public class ImgGlyphDescriptor
     /** Empty labels array. */
     private static final String[] NO_LABELS = new String[0];
 
+    /** Version of features computation. */
+    private static final int VERSION = 1;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new <code>ImgGlyphDescriptor</code> object.
      */
     public ImgGlyphDescriptor ()
     {
-        super(ScaledBuffer.HEIGHT + "x" + ScaledBuffer.WIDTH);
+        super(ScaledBuffer.HEIGHT + "x" + ScaledBuffer.WIDTH, VERSION);
     }
 
     //~ Methods ------------------------------------------------------------------------------------
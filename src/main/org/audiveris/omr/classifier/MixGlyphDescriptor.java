@@ -49,13 +49,16 @@ public class MixGlyphDescriptor
     /** Use the ART moments + GEO moments + aspect. */
     private static final int LENGTH = artCount + geoCount + 1;
 
+    /** Version of features computation, including ART moments extraction. */
+    private static final int VERSION = 2; // 2: ART moments by FusedARTExtractor
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new <code>MixGlyphDescriptor</code> object.
      */
     public MixGlyphDescriptor ()
     {
-        super("mix");
+        super("mix", VERSION);
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -116,6 +116,9 @@ public class SampleRepository
     /** File name for images material: {@value}. */
     private static final String IMAGES_FILE_NAME = "images.zip";
 
+    /** File name suffix for features material, prefixed by descriptor name. */
+    private static final String FEATURES_FILE_SUFFIX = "-features.bin";
+
     /** Special name to refer to font-based samples: {@value}. */
     private static final String SYMBOLS = "ALL_FONT_BASED_SYMBOLS";
 
@@ -159,6 +162,9 @@ public class SampleRepository
     /** File path for images material: {@value}. */
     private final Path imagesFile;
 
+    /** Caches of sample features, per descriptor name. */
+    private final Map<String, FeatureCache> featureCaches = new HashMap<>();
+
     /** To handle save on close. */
     private Application.ExitListener exitListener;
 
@@ -407,6 +413,7 @@ public class SampleRepository
             storeRepository();
         } else {
             logger.info("No need to save {}", this);
+            storeFeatures();
         }
     }
 
@@ -448,9 +455,7 @@ public class SampleRepository
                     return false;
                 }
 
-                Path imagePath = folderPath.resolve(SampleSheet.IMAGE_FILE_NAME);
-
-                return Files.exists(imagePath);
+                return SampleSheet.imageExists(folderPath);
             } finally {
                 if (imagesRoot != null) {
                     imagesRoot.getFileSystem().close();
@@ -536,9 +541,8 @@ public class SampleRepository
                         final Path root = ZipFileSystem.open(imagesFile);
 
                         for (Descriptor desc : descs) {
-                            final Path file = root.resolve(desc.getName()).resolve(
-                                    SampleSheet.IMAGE_FILE_NAME);
-                            final RunTable rt = RunTable.unmarshal(file);
+                            final RunTable rt = SampleSheet.loadImage(
+                                    root.resolve(desc.getName()));
 
                             if ((rt != null) && rt.equals(image)) {
                                 // We have found the image
@@ -669,6 +673,33 @@ public class SampleRepository
         return null;
     }
 
+    //-----------------//
+    // getFeatureCache //
+    //-----------------//
+    /**
+     * Report the cache of sample features computed by the provided descriptor.
+     * <p>
+     * The cache file lies next to the samples archive.
+     *
+     * @param descriptor the glyph descriptor
+     * @return the related feature cache
+     */
+    public synchronized FeatureCache getFeatureCache (GlyphDescriptor descriptor)
+    {
+        FeatureCache cache = featureCaches.get(descriptor.getName());
+
+        if (cache == null) {
+            final String prefix = bookRadix.isEmpty() ? "" : (bookRadix + "-");
+            final Path file = samplesFile.resolveSibling(
+                    prefix + descriptor.getName() + FEATURES_FILE_SUFFIX);
+            cache = new FeatureCache(file, descriptor);
+            featureCaches.put(descriptor.getName(), cache);
+            addListener(cache);
+        }
+
+        return cache;
+    }
+
     //----------------//
     // getSampleSheet //
     //----------------//
@@ -1018,12 +1049,11 @@ public class SampleRepository
                     return null;
                 }
 
-                Path file = folderPath.resolve(SampleSheet.IMAGE_FILE_NAME);
-                runTable = RunTable.unmarshal(file);
+                runTable = SampleSheet.loadImage(folderPath);
 
                 if (runTable != null) {
                     sampleSheet.setImage(runTable, true);
-                    logger.debug("Loaded {}", file);
+                    logger.debug("Loaded {} image", folderPath);
                 }
             } finally {
                 if (imagesRoot != null) {
@@ -1308,6 +1338,31 @@ public class SampleRepository
         logger.info("Train: {}, Test: {}", train.size(), test.size());
     }
 
+    //---------------//
+    // storeFeatures //
+    //---------------//
+    /**
+     * Store the modified feature caches, limited to the current samples.
+     */
+    public void storeFeatures ()
+    {
+        final List<FeatureCache> caches;
+
+        synchronized (this) {
+            caches = new ArrayList<>(featureCaches.values());
+        }
+
+        if (caches.isEmpty()) {
+            return;
+        }
+
+        final List<Sample> samples = getAllSamples();
+
+        for (FeatureCache cache : caches) {
+            cache.store(samples);
+        }
+    }
+
     //-----------------//
     // storeRepository //
     //-----------------//
@@ -1342,6 +1397,8 @@ public class SampleRepository
         } catch (IOException ex) {
             logger.warn("Error storing " + this + " to " + samplesFile + " " + ex, ex);
         }
+
+        storeFeatures();
     }
 
     //----------//
@@ -1470,13 +1527,18 @@ public class SampleRepository
                 {
                     final String fileName = file.getFileName().toString();
 
-                    if (fileName.equals(SampleSheet.IMAGE_FILE_NAME)) {
-                        RunTable runTable = RunTable.unmarshal(file);
+                    if (fileName.equals(SampleSheet.IMAGE_FILE_NAME)
+                                || fileName.equals(SampleSheet.IMAGE_BINARY_FILE_NAME)) {
+                        Path folder = file.getParent().getFileName();
+                        SampleSheet sampleSheet = nameMap.get(folder.toString());
 
-                        if (runTable != null) {
-                            Path folder = file.getParent().getFileName();
-                            SampleSheet sampleSheet = nameMap.get(folder.toString());
+                        if ((sampleSheet != null) && (sampleSheet.getImage() != null)) {
+                            return FileVisitResult.CONTINUE; // Already loaded from other form
+                        }
 
+                        RunTable runTable = SampleSheet.loadImage(file.getParent());
+
+                        if (runTable != null) {
                             if (sampleSheet != null) {
                                 sampleSheet.setImage(runTable, true);
                                 logger.debug("Loaded {}", file);
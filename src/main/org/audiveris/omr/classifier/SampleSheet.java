@@ -24,6 +24,7 @@ package org.audiveris.omr.classifier;
 import org.audiveris.omr.classifier.SheetContainer.Descriptor;
 import org.audiveris.omr.glyph.Shape;
 import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableBinary;
 import org.audiveris.omr.util.FileUtil;
 import org.audiveris.omr.util.Jaxb;
 
@@ -76,9 +77,12 @@ public class SampleSheet
     /** File name for sheet tribes: {@value}. */
     public static final String TRIBES_FILE_NAME = "tribes.xml";
 
-    /** File name for sheet image: {@value}. */
+    /** File name for sheet image, in XML form: {@value}. */
     public static final String IMAGE_FILE_NAME = "image.xml";
 
+    /** File name for sheet image, in binary form: {@value}. */
+    public static final String IMAGE_BINARY_FILE_NAME = "image.bin";
+
     /** Un/marshalling context for use with JAXB. */
     private static volatile JAXBContext jaxbContext;
 
@@ -400,8 +404,19 @@ public class SampleSheet
                 final Path folderPath = imagesRoot.resolve(descriptor.getName());
                 Files.createDirectories(folderPath);
 
-                final Path imagePath = folderPath.resolve(IMAGE_FILE_NAME);
-                Jaxb.marshal(image, imagePath, getJaxbContext());
+                final Path imagePath;
+
+                // Just one form on disk
+                if (RunTableBinary.isBinaryForImage()) {
+                    imagePath = folderPath.resolve(IMAGE_BINARY_FILE_NAME);
+                    RunTableBinary.store(image, imagePath);
+                    Files.deleteIfExists(folderPath.resolve(IMAGE_FILE_NAME));
+                } else {
+                    imagePath = folderPath.resolve(IMAGE_FILE_NAME);
+                    Jaxb.marshal(image, imagePath, getJaxbContext());
+                    Files.deleteIfExists(folderPath.resolve(IMAGE_BINARY_FILE_NAME));
+                }
+
                 imageSaved = true;
                 logger.info("Stored {}", imagePath);
             }
@@ -540,6 +555,51 @@ public class SampleSheet
         }
     }
 
+    //-------------//
+    // imageExists //
+    //-------------//
+    /**
+     * Report whether the provided sheet folder contains an image file, in binary or XML form.
+     *
+     * @param folderPath sheet folder within images root
+     * @return true if an image file exists
+     */
+    public static boolean imageExists (Path folderPath)
+    {
+        return Files.exists(folderPath.resolve(IMAGE_BINARY_FILE_NAME))
+                       || Files.exists(folderPath.resolve(IMAGE_FILE_NAME));
+    }
+
+    //-----------//
+    // loadImage //
+    //-----------//
+    /**
+     * Load the image found in the provided sheet folder, preferably from its binary form.
+     *
+     * @param folderPath sheet folder within images root
+     * @return the loaded image, or null if not found or not loadable
+     */
+    public static RunTable loadImage (Path folderPath)
+    {
+        final Path binaryPath = folderPath.resolve(IMAGE_BINARY_FILE_NAME);
+
+        if (Files.exists(binaryPath)) {
+            try {
+                return RunTableBinary.load(binaryPath);
+            } catch (IOException ex) {
+                logger.warn("Error loading " + binaryPath + " " + ex, ex);
+            }
+        }
+
+        final Path xmlPath = folderPath.resolve(IMAGE_FILE_NAME);
+
+        if (Files.exists(xmlPath)) {
+            return RunTable.unmarshal(xmlPath);
+        }
+
+        return null;
+    }
+
     //-----------//
     // unmarshal //
     //-----------//
@@ -42,6 +42,7 @@ import org.slf4j.LoggerFactory;
 import java.awt.event.ActionEvent;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
@@ -294,16 +295,29 @@ public class ValidationPanel
         progressBar.setValue(0);
         progressBar.setMaximum(samples.size());
 
+        // Samples are evaluated by batches
+        final int batch = 256;
+        final int[] interlines = new int[samples.size()];
+        Evaluation[][] batchEvals = null;
+
+        for (int i = 0; i < interlines.length; i++) {
+            interlines[i] = samples.get(i).getInterline();
+        }
+
         int index = 0;
 
         for (Sample sample : samples) {
-            Evaluation[] evals = task.classifier.evaluate(
-                    sample,
-                    sample.getInterline(),
-                    1,
-                    0,
-                    Classifier.NO_CONDITIONS);
-            Evaluation eval = evals[0];
+            if ((index % batch) == 0) {
+                final int end = Math.min(index + batch, samples.size());
+                batchEvals = task.classifier.evaluate(
+                        samples.subList(index, end),
+                        Arrays.copyOfRange(interlines, index, end),
+                        1,
+                        0,
+                        Classifier.NO_CONDITIONS);
+            }
+
+            Evaluation eval = batchEvals[index % batch][0];
 
             if (eval.shape.getPhysicalShape() == sample.getShape().getPhysicalShape()) {
                 if (eval.grade >= Grades.validationMinGrade) {
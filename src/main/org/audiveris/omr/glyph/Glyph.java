@@ -32,6 +32,7 @@ import org.audiveris.omr.run.Orientation;
 import static org.audiveris.omr.run.Orientation.HORIZONTAL;
 import org.audiveris.omr.run.Run;
 import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableBinary;
 import org.audiveris.omr.util.Navigable;
 import org.audiveris.omr.util.Table;
 
@@ -99,9 +100,12 @@ public class Glyph
 
     /**
      * This is the table of runs of pixels that compose the glyph.
+     * <p>
+     * It is persisted either as a "run-table" XML element or as a "binary-run-table" element,
+     * see {@link #getXmlRunTable()} and {@link #getBinaryRunTable()}.
+     * It is not modified once the glyph has been created (or unmarshalled).
      */
-    @XmlElement(name = "run-table")
-    protected final RunTable runTable;
+    protected RunTable runTable;
 
     // Transient data
     //---------------
@@ -701,6 +705,25 @@ public class Glyph
         line = basicLine.toDouble();
     }
 
+    //-------------------//
+    // getBinaryRunTable // Needed for JAXB
+    //-------------------//
+    /**
+     * Report the binary form of glyph run table, if binary marshalling is chosen.
+     *
+     * @return the binary run table, or null
+     */
+    @SuppressWarnings("unused")
+    @XmlElement(name = "binary-run-table")
+    private byte[] getBinaryRunTable ()
+    {
+        if ((runTable == null) || !RunTableBinary.isBinaryForGlyph()) {
+            return null;
+        }
+
+        return RunTableBinary.encode(runTable);
+    }
+
     //--------------------//
     // getPointsCollector //
     //--------------------//
@@ -716,4 +739,51 @@ public class Glyph
 
         return collector;
     }
+
+    //----------------//
+    // getXmlRunTable // Needed for JAXB
+    //----------------//
+    /**
+     * Report the XML form of glyph run table, if XML marshalling is chosen.
+     *
+     * @return the run table, or null
+     */
+    @SuppressWarnings("unused")
+    @XmlElement(name = "run-table")
+    private RunTable getXmlRunTable ()
+    {
+        if (RunTableBinary.isBinaryForGlyph()) {
+            return null;
+        }
+
+        return runTable;
+    }
+
+    //-------------------//
+    // setBinaryRunTable // Needed for JAXB
+    //-------------------//
+    /**
+     * Meant for JAXB unmarshalling only.
+     *
+     * @param bytes binary form of glyph run table
+     */
+    @SuppressWarnings("unused")
+    private void setBinaryRunTable (byte[] bytes)
+    {
+        runTable = RunTableBinary.decode(bytes);
+    }
+
+    //----------------//
+    // setXmlRunTable // Needed for JAXB
+    //----------------//
+    /**
+     * Meant for JAXB unmarshalling only.
+     *
+     * @param runTable XML form of glyph run table
+     */
+    @SuppressWarnings("unused")
+    private void setXmlRunTable (RunTable runTable)
+    {
+        this.runTable = runTable;
+    }
 }
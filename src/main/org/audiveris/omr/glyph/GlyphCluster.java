@@ -29,10 +29,14 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -46,7 +50,11 @@ import java.util.Set;
  * <li>For each reachable vertex, recursively process the new set composed of current set + the
  * reachable vertex.</li>
  * </ol>
- * TODO: implement a non-recursive version for better efficiency?
+ * Since the vertices already considered are excluded from further growth, each connected subset
+ * is processed at most once, hence its compound is built and evaluated at most once.
+ * <p>
+ * Parts are handled through their local index in the cluster: subsets and exclusions are bit sets,
+ * neighbors are arrays of indices, and subset weight and bounds are computed incrementally.
  *
  * @author Hervé Bitteur
  */
@@ -63,6 +71,24 @@ public class GlyphCluster
     /** Group, if any, to be assigned to created glyphs. */
     private final GlyphGroup group;
 
+    /** Cluster parts, by local index. Seeds first, by decreasing weight. */
+    private Glyph[] glyphs;
+
+    /** Weight of each part. */
+    private int[] weights;
+
+    /** Bounds of each part. */
+    private Rectangle[] bounds;
+
+    /** Neighbors of each part, in adapter order. */
+    private int[][] neighbors;
+
+    /** Number of subsets processed. */
+    private int subsetCount;
+
+    /** Number of compounds evaluated. */
+    private int compoundCount;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new Cluster object, with an adapter to the environment.
@@ -86,104 +112,243 @@ public class GlyphCluster
      */
     public void decompose ()
     {
-        final Set<Glyph> considered = new LinkedHashSet<>(); // Parts considered so far
+        final long start = System.nanoTime();
 
         //TODO: we could truncate this list by discarding the smallest items
         // since a too large list would result in explosion of combinations
         final List<Glyph> seeds = adapter.getParts();
         Collections.sort(seeds, Glyphs.byReverseWeight);
+        indexParts(seeds);
 
         ///logger.debug("Decomposing {}", Glyphs.ids("cluster", seeds));
-        for (Glyph seed : seeds) {
-            considered.add(seed);
-            process(Collections.singleton(seed), considered);
+        final BitSet considered = new BitSet(glyphs.length); // Parts considered so far
+
+        for (int i = 0, iBreak = seeds.size(); i < iBreak; i++) {
+            if (considered.get(i)) {
+                continue; // Duplicated seed
+            }
+
+            considered.set(i);
+
+            final BitSet members = new BitSet(glyphs.length);
+            members.set(i);
+            process(new int[]{i}, members, weights[i], bounds[i], considered);
         }
+
+        logger.debug(
+                "Cluster parts:{} subsets:{} compounds:{} in {} ms",
+                glyphs.length,
+                subsetCount,
+                compoundCount,
+                String.format("%.3f", (System.nanoTime() - start) / 1e6));
     }
 
+    //------------------//
+    // getCompoundCount //
+    //------------------//
     /**
-     * Retrieve all parts at acceptable distance from at least one member of the
-     * provided set.
+     * Report the number of compounds evaluated by last decomposition.
+     *
+     * @return count of compounds evaluated
+     */
+    public int getCompoundCount ()
+    {
+        return compoundCount;
+    }
+
+    //----------------//
+    // getSubsetCount //
+    //----------------//
+    /**
+     * Report the number of subsets processed by last decomposition.
+     *
+     * @return count of subsets processed
+     */
+    public int getSubsetCount ()
+    {
+        return subsetCount;
+    }
+
+    //------------//
+    // indexParts //
+    //------------//
+    /**
+     * Assign a local index to each part and to any neighbor reachable from them,
+     * and cache part data.
      *
-     * @param set the provided set
-     * @return all the parts reachable from the set
+     * @param seeds the sorted seeds
      */
-    private Set<Glyph> getOutliers (Set<Glyph> set)
+    private void indexParts (List<Glyph> seeds)
     {
-        Set<Glyph> outliers = new LinkedHashSet<>();
+        final List<Glyph> list = new ArrayList<>();
+        final Map<Glyph, Integer> indices = new HashMap<>();
+
+        for (Glyph seed : seeds) {
+            if (indices.putIfAbsent(seed, list.size()) == null) {
+                list.add(seed);
+            }
+        }
+
+        final List<int[]> nbList = new ArrayList<>();
+
+        for (int i = 0; i < list.size(); i++) {
+            final List<Glyph> nbs = adapter.getNeighbors(list.get(i));
+            final int[] nbIndices = new int[nbs.size()];
 
-        for (Glyph part : set) {
-            outliers.addAll(adapter.getNeighbors(part));
+            for (int k = 0; k < nbIndices.length; k++) {
+                final Glyph nb = nbs.get(k);
+                Integer index = indices.get(nb);
+
+                if (index == null) {
+                    indices.put(nb, index = list.size());
+                    list.add(nb);
+                }
+
+                nbIndices[k] = index;
+            }
+
+            nbList.add(nbIndices);
+        }
+
+        final int count = list.size();
+        glyphs = list.toArray(new Glyph[count]);
+        weights = new int[count];
+        bounds = new Rectangle[count];
+        neighbors = nbList.toArray(new int[count][]);
+
+        for (int i = 0; i < count; i++) {
+            weights[i] = glyphs[i].getWeight();
+            bounds[i] = glyphs[i].getBounds();
         }
 
-        outliers.removeAll(set);
+        subsetCount = 0;
+        compoundCount = 0;
+    }
+
+    //---------//
+    // partsOf //
+    //---------//
+    private Set<Glyph> partsOf (int[] parts)
+    {
+        final Set<Glyph> partSet = new LinkedHashSet<>();
+
+        for (int part : parts) {
+            partSet.add(glyphs[part]);
+        }
 
-        return outliers;
+        return partSet;
     }
 
+    //---------//
+    // process //
+    //---------//
     /**
      * Process the provided set of parts.
      *
-     * @param parts (read only) the set of current parts
-     * @param seen  (read only) all parts considered so far (current parts plus discarded ones)
+     * @param parts   (read only) the current parts, in insertion order
+     * @param members (read only) the current parts, as a set
+     * @param weight  total weight of current parts
+     * @param box     (read only) union of current parts bounds
+     * @param seen    (read only) all parts considered so far (current parts plus discarded ones)
      */
-    private void process (Set<Glyph> parts,
-                          Set<Glyph> seen)
+    private void process (int[] parts,
+                          BitSet members,
+                          int weight,
+                          Rectangle box,
+                          BitSet seen)
     {
-        ///logger.debug(" {} {} {}", set.size(), Glyphs.ids("set", set), Glyphs.ids("seen", seen));
+        subsetCount++;
 
         // Check what we have got
-        final int weight = Glyphs.weightOf(parts);
-
         if (adapter.isTooHeavy(weight)) {
-            logger.debug("Too high weight {} for {}", weight, parts);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Too high weight {} for {}", weight, partsOf(parts));
+            }
 
             return;
         }
 
-        Rectangle box = Glyphs.getBounds(parts);
-
         if (adapter.isTooLarge(box)) {
-            logger.debug("Too large  {} for {}", box, parts);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Too large  {} for {}", box, partsOf(parts));
+            }
 
             return;
         }
 
         if (!adapter.isTooLight(weight)) {
             // Build compound and get acceptable evaluations for the compound
-            Glyph compound = (parts.size() > 1) ? GlyphFactory.buildGlyph(parts)
-                    : parts.iterator().next();
+            final Set<Glyph> partSet = partsOf(parts);
+            Glyph compound = (parts.length > 1) ? GlyphFactory.buildGlyph(partSet)
+                    : glyphs[parts[0]];
             compound.addGroup(group);
 
             // Create all acceptable inters, if any, for the compound
-            adapter.evaluateGlyph(compound, parts);
+            adapter.evaluateGlyph(compound, partSet);
+            compoundCount++;
         } else {
-            logger.debug("Too low weight {} for {}", weight, parts);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Too low weight {} for {}", weight, partsOf(parts));
+            }
         }
 
         // Then, identify all outliers immediately reachable from the compound
-        Set<Glyph> outliers = getOutliers(parts);
-        outliers.removeAll(seen);
+        final int[] outliers = getOutliers(parts, members, seen);
 
-        if (outliers.isEmpty()) {
+        if (outliers.length == 0) {
             return; // No further growth is possible
         }
 
-        ///logger.debug("      {}", Glyphs.ids("outliers", outliers));
-        Rectangle setBox = Glyphs.getBounds(parts);
-        Set<Glyph> newConsidered = new LinkedHashSet<>(seen);
+        final BitSet newConsidered = (BitSet) seen.clone();
 
-        for (Glyph outlier : outliers) {
-            newConsidered.add(outlier);
+        for (int outlier : outliers) {
+            newConsidered.set(outlier);
 
             // Check appending this atom does not make the resulting symbol too wide or too high
-            Rectangle symBox = outlier.getBounds().union(setBox);
+            final Rectangle symBox = bounds[outlier].union(box);
 
             if (!adapter.isTooLarge(symBox)) {
-                Set<Glyph> largerSet = new LinkedHashSet<>(parts);
-                largerSet.add(outlier);
-                process(largerSet, newConsidered);
+                final int[] largerParts = Arrays.copyOf(parts, parts.length + 1);
+                largerParts[parts.length] = outlier;
+
+                final BitSet largerMembers = (BitSet) members.clone();
+                largerMembers.set(outlier);
+                process(largerParts, largerMembers, weight + weights[outlier], symBox,
+                        newConsidered);
+            }
+        }
+    }
+
+    //-------------//
+    // getOutliers //
+    //-------------//
+    /**
+     * Retrieve all parts at acceptable distance from at least one member of the
+     * provided set, and not yet considered.
+     *
+     * @param parts   the provided set, in insertion order
+     * @param members the provided set
+     * @param seen    the parts already considered
+     * @return the new parts reachable from the set, in neighbors order
+     */
+    private int[] getOutliers (int[] parts,
+                               BitSet members,
+                               BitSet seen)
+    {
+        final BitSet taken = new BitSet(glyphs.length);
+        int[] outliers = new int[glyphs.length];
+        int count = 0;
+
+        for (int part : parts) {
+            for (int nb : neighbors[part]) {
+                if (!members.get(nb) && !seen.get(nb) && !taken.get(nb)) {
+                    taken.set(nb);
+                    outliers[count++] = nb;
+                }
             }
         }
+
+        return Arrays.copyOf(outliers, count);
     }
 
     //-------------//
@@ -240,6 +405,9 @@ public class GlyphCluster
 
         /**
          * Evaluate a provided glyph and create all acceptable inter instances.
+         * <p>
+         * The adapter may as well just record the glyph, to evaluate all recorded glyphs
+         * in one batch once decomposition is over.
          *
          * @param glyph the glyph to evaluate
          * @param parts the parts that compose this glyph
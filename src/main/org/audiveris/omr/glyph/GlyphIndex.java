@@ -108,7 +108,9 @@ public class GlyphIndex
     @Override
     public List<Glyph> getContainedEntities (Rectangle rectangle)
     {
-        return Entities.containedEntities(iterator(), rectangle);
+        return Entities.containedEntities(
+                new SkippingIterator(weakIndex.candidates(rectangle)),
+                rectangle);
     }
 
     //-----------------------//
@@ -117,7 +119,9 @@ public class GlyphIndex
     @Override
     public List<Glyph> getContainingEntities (Point point)
     {
-        return Entities.containingEntities(iterator(), point);
+        return Entities.containingEntities(
+                new SkippingIterator(weakIndex.candidates(new Rectangle(point.x, point.y, 1, 1))),
+                point);
     }
 
     //-------------//
@@ -204,7 +208,9 @@ public class GlyphIndex
     @Override
     public List<Glyph> getIntersectedEntities (Rectangle rectangle)
     {
-        return Entities.intersectedEntities(iterator(), rectangle);
+        return Entities.intersectedEntities(
+                new SkippingIterator(weakIndex.candidates(rectangle)),
+                rectangle);
     }
 
     @Override
@@ -539,6 +545,13 @@ public class GlyphIndex
     //----------------//
     // WeakGlyphIndex //
     //----------------//
+    /**
+     * Index of weak glyphs.
+     * <p>
+     * Since glyph bounds never change, geometric lookups use a spatial grid.
+     * The grid may still refer to weak glyphs whose glyph has been collected since,
+     * these are skipped by {@link SkippingIterator}.
+     */
     private static class WeakGlyphIndex
             extends BasicIndex<WeakGlyph>
     {
@@ -549,12 +562,24 @@ public class GlyphIndex
             super.insert(weak);
         }
 
+        @Override
+        protected Iterator<WeakGlyph> candidates (Rectangle rectangle)
+        {
+            return super.candidates(rectangle);
+        }
+
         @Override
         protected boolean isValid (WeakGlyph weak)
         {
             return (weak != null) && (weak.get() != null);
         }
 
+        @Override
+        protected boolean useSpatialGrid ()
+        {
+            return true;
+        }
+
         void setIdGenerator (AtomicInteger lastId)
         {
             this.lastId = lastId;
@@ -26,6 +26,7 @@ import ij.process.ByteProcessor;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.math.Population;
+import org.audiveris.omr.run.RunsCollector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +76,11 @@ import java.util.Arrays;
  * <br>
  * This property is used to incrementally populate the table.</li>
  * </ul>
+ * <p>
+ * Method {@link #filterRuns(RunsCollector)} binarizes the whole source directly into run tables.
+ * The image is split into bands of full rows, processed in parallel, each band using its own
+ * column sums over the window rows.
+ * The output is identical to the pixel by pixel use of the filter.
  *
  * @author ryo/twitter &#64;xiaot_Tag
  * @author Hervé Bitteur
@@ -145,6 +151,20 @@ public abstract class AdaptiveFilter
         return ip;
     }
 
+    //------------//
+    // filterRuns //
+    //------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Rows are binarized band by band, in parallel when possible.
+     */
+    @Override
+    public void filterRuns (RunsCollector collector)
+    {
+        collector.process(band -> processBand(band));
+    }
+
     //------------//
     // getContext //
     //------------//
@@ -211,6 +231,96 @@ public abstract class AdaptiveFilter
         return (MEAN_COEFF * mean) + (STD_DEV_COEFF * stdDev);
     }
 
+    //-------------//
+    // processBand //
+    //-------------//
+    /**
+     * Binarize a band of full rows and feed them to the collector band.
+     * <p>
+     * Rows are browsed from top to bottom.
+     * For each column, we keep the sums of plain and squared values over the window rows.
+     * Along the current row, prefix sums of these column sums give the window integrals, exactly
+     * as the tiles do.
+     *
+     * @param band the band to populate
+     */
+    private void processBand (RunsCollector.Band band)
+    {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] pixels = (byte[]) source.getPixels();
+        final int hw = HALF_WINDOW_SIZE;
+
+        // Column sums over window rows
+        final long[] colSums = new long[width];
+        final long[] colSqrs = new long[width];
+
+        // Prefix sums along current row, index (x + 1), with a leading 0
+        final long[] sums = new long[width + 1];
+        final long[] sqrs = new long[width + 1];
+
+        // Binarized row
+        final boolean[] fores = new boolean[width];
+
+        // Initial window rows
+        for (int y = Math.max(0, band.yFirst - hw),
+                yMax = Math.min(height - 1, (band.yFirst + hw) - 1); y <= yMax; y++) {
+            addRow(pixels, y * width, colSums, colSqrs, 1);
+        }
+
+        for (int y = band.yFirst; y <= band.yLast; y++) {
+            // Slide window rows down
+            if ((y + hw) < height) {
+                addRow(pixels, (y + hw) * width, colSums, colSqrs, 1);
+            }
+
+            if ((y > band.yFirst) && ((y - hw - 1) >= 0)) {
+                addRow(pixels, (y - hw - 1) * width, colSums, colSqrs, -1);
+            }
+
+            for (int x = 0; x < width; x++) {
+                sums[x + 1] = sums[x] + colSums[x];
+                sqrs[x + 1] = sqrs[x] + colSqrs[x];
+            }
+
+            final int y1 = Math.max(-1, y - hw - 1);
+            final int y2 = Math.min(height - 1, y + hw);
+            final int row = y * width;
+
+            for (int x = 0; x < width; x++) {
+                final int x1 = Math.max(-1, x - hw - 1);
+                final int x2 = Math.min(width - 1, x + hw);
+                final int area = (y2 - y1) * (x2 - x1);
+                final double sum = sums[x2 + 1] - sums[x1 + 1];
+                final double sqrSum = sqrs[x2 + 1] - sqrs[x1 + 1];
+                final double mean = sum / area;
+                final double sqrMean = sqrSum / area;
+                final double var = Math.abs(sqrMean - (mean * mean));
+                final double stdDev = Math.sqrt(var);
+                final double threshold = getThreshold(mean, stdDev);
+                fores[x] = (pixels[row + x] & 0xFF) <= threshold;
+            }
+
+            band.addRow(y, fores);
+        }
+    }
+
+    //--------//
+    // addRow //
+    //--------//
+    private static void addRow (byte[] pixels,
+                                int row,
+                                long[] colSums,
+                                long[] colSqrs,
+                                int sign)
+    {
+        for (int i = 0; i < colSums.length; i++) {
+            final int pix = pixels[row + i] & 0xFF;
+            colSums[i] += sign * pix;
+            colSqrs[i] += sign * pix * pix;
+        }
+    }
+
     //~ Inner Classes ------------------------------------------------------------------------------
     //-----------------//
     // AdaptiveContext //
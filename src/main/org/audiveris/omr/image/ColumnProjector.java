@@ -0,0 +1,273 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 C o l u m n P r o j e c t o r                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.math.IntegerFunction;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * Class <code>ColumnProjector</code> counts foreground pixels of a binary buffer, column by
+ * column, within a vertical band.
+ * <p>
+ * The band can be a plain rectangle (for key and time areas in staff header) or a band whose
+ * vertical limits vary with abscissa (for a staff, between its first and last lines).
+ * <p>
+ * Buffer pixels are stored row after row, so they are read in that order, each row incrementing
+ * the counts of all columns at once.
+ * This avoids the column-wise browsing, which jumps one image width at every pixel.
+ * <p>
+ * Foreground pixels are those with value 0, as in BINARY and NO_STAFF sources.
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class ColumnProjector
+{
+    //~ Constructors -------------------------------------------------------------------------------
+
+    private ColumnProjector ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //---------//
+    // project //
+    //---------//
+    /**
+     * Count foreground pixels for each abscissa of the provided rectangle.
+     *
+     * @param source binary buffer
+     * @param rect   the rectangular band
+     * @return the counts, indexed by (x - rect.x)
+     */
+    public static int[] project (ByteProcessor source,
+                                 Rectangle rect)
+    {
+        return project(source, new Point(0, 0), rect);
+    }
+
+    //---------//
+    // project //
+    //---------//
+    /**
+     * Count foreground pixels for each abscissa of the provided rectangle, using a buffer
+     * which covers just a region of the sheet.
+     *
+     * @param source binary buffer of the region
+     * @param origin location of the region, that is of buffer (0,0) pixel
+     * @param rect   the rectangular band, in sheet coordinates
+     * @return the counts, indexed by (x - rect.x)
+     */
+    public static int[] project (ByteProcessor source,
+                                 Point origin,
+                                 Rectangle rect)
+    {
+        final int width = source.getWidth();
+        final byte[] pixels = (byte[]) source.getPixels();
+        final int[] counts = new int[Math.max(0, rect.width)];
+        final int xMin = Math.max(origin.x, rect.x);
+        final int xMax = Math.min((origin.x + width) - 1, (rect.x + rect.width) - 1);
+        final int yMin = Math.max(origin.y, rect.y);
+        final int yMax = Math.min((origin.y + source.getHeight()) - 1, (rect.y + rect.height) - 1);
+
+        for (int y = yMin; y <= yMax; y++) {
+            final int offset = ((y - origin.y) * width) - origin.x;
+
+            for (int x = xMin; x <= xMax; x++) {
+                counts[x - rect.x] += isFore(pixels[offset + x]);
+            }
+        }
+
+        return counts;
+    }
+
+    //---------//
+    // project //
+    //---------//
+    /**
+     * Count foreground pixels for each abscissa of a band with variable vertical limits.
+     *
+     * @param source binary buffer
+     * @param xMin   abscissa of first column
+     * @param yMins  for each column, ordinate of first pixel, indexed by (x - xMin)
+     * @param yMaxs  for each column, ordinate of last pixel, indexed by (x - xMin)
+     * @return the counts, indexed by (x - xMin)
+     */
+    public static int[] project (ByteProcessor source,
+                                 int xMin,
+                                 int[] yMins,
+                                 int[] yMaxs)
+    {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] pixels = (byte[]) source.getPixels();
+        final int length = yMins.length;
+        final int[] counts = new int[length];
+
+        // Global vertical range, and core range where rows lie within limits of every column
+        int top = Integer.MAX_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        int coreTop = Integer.MIN_VALUE;
+        int coreBottom = Integer.MAX_VALUE;
+
+        for (int i = 0; i < length; i++) {
+            top = Math.min(top, yMins[i]);
+            bottom = Math.max(bottom, yMaxs[i]);
+            coreTop = Math.max(coreTop, yMins[i]);
+            coreBottom = Math.min(coreBottom, yMaxs[i]);
+        }
+
+        // Clamp to buffer
+        top = Math.max(0, top);
+        bottom = Math.min(height - 1, bottom);
+
+        final int iMin = Math.max(0, -xMin);
+        final int iMax = Math.min(length - 1, width - 1 - xMin);
+
+        for (int y = top; y <= bottom; y++) {
+            final int offset = (y * width) + xMin;
+
+            if ((y >= coreTop) && (y <= coreBottom)) {
+                for (int i = iMin; i <= iMax; i++) {
+                    counts[i] += isFore(pixels[offset + i]);
+                }
+            } else {
+                for (int i = iMin; i <= iMax; i++) {
+                    if ((y >= yMins[i]) && (y <= yMaxs[i])) {
+                        counts[i] += isFore(pixels[offset + i]);
+                    }
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    //-------------------//
+    // projectAsFunction //
+    //-------------------//
+    /**
+     * Count foreground pixels for each abscissa of the provided rectangle, and report
+     * the result as an IntegerFunction.
+     *
+     * @param source binary buffer
+     * @param rect   the rectangular band
+     * @return the populated function, defined on [rect.x .. rect.x + rect.width - 1]
+     */
+    public static IntegerFunction projectAsFunction (ByteProcessor source,
+                                                     Rectangle rect)
+    {
+        return projectAsFunction(source, new Point(0, 0), rect);
+    }
+
+    //-------------------//
+    // projectAsFunction //
+    //-------------------//
+    /**
+     * Count foreground pixels for each abscissa of the provided rectangle, using a buffer
+     * which covers just a region of the sheet, and report the result as an IntegerFunction.
+     *
+     * @param source binary buffer of the region
+     * @param origin location of the region, that is of buffer (0,0) pixel
+     * @param rect   the rectangular band, in sheet coordinates
+     * @return the populated function, defined on [rect.x .. rect.x + rect.width - 1]
+     */
+    public static IntegerFunction projectAsFunction (ByteProcessor source,
+                                                     Point origin,
+                                                     Rectangle rect)
+    {
+        final int[] counts = project(source, origin, rect);
+        final IntegerFunction function = new IntegerFunction(rect.x, (rect.x + rect.width) - 1);
+
+        for (int i = 0; i < counts.length; i++) {
+            function.setValue(rect.x + i, counts[i]);
+        }
+
+        return function;
+    }
+
+    //-----------//
+    // topValues //
+    //-----------//
+    /**
+     * Select the k highest values in a portion of the provided array.
+     * <p>
+     * Selected values are kept in a small sorted array, so that no boxing nor full sort is needed.
+     *
+     * @param values the values to browse
+     * @param from   index of first value to consider
+     * @param to     index of last value to consider
+     * @param k      the maximum count of values to select
+     * @return the highest values, in decreasing order (fewer than k if range is too short)
+     */
+    public static int[] topValues (int[] values,
+                                   int from,
+                                   int to,
+                                   int k)
+    {
+        final int[] top = new int[Math.max(0, Math.min(k, to - from + 1))];
+        int count = 0;
+
+        if (top.length == 0) {
+            return top;
+        }
+
+        for (int i = from; i <= to; i++) {
+            final int val = values[i];
+
+            if (count < top.length) {
+                count++;
+            } else if (val <= top[count - 1]) {
+                continue;
+            }
+
+            // Insert val in sorted position, shifting lower values down
+            int j = count - 1;
+
+            while ((j > 0) && (top[j - 1] < val)) {
+                top[j] = top[j - 1];
+                j--;
+            }
+
+            top[j] = val;
+        }
+
+        return top;
+    }
+
+    //--------//
+    // isFore //
+    //--------//
+    /**
+     * Report 1 for a foreground pixel, 0 otherwise, without branching.
+     *
+     * @param pixel the pixel byte value
+     * @return 1 if pixel value is 0
+     */
+    private static int isFore (byte pixel)
+    {
+        return ((pixel & 0xFF) - 1) >>> 31;
+    }
+}
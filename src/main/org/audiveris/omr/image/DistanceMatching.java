@@ -69,11 +69,12 @@ public class DistanceMatching
         final int scanWidth = distances.getWidth() - template.getWidth();
         final int scanHeight = distances.getHeight() - template.getHeight();
         final List<PixelDistance> locations = new ArrayList<>();
+        final Template.Compiled compiled = template.getCompiled();
 
         for (int x = 0; x < scanWidth; x++) {
             for (int y = 0; y < scanHeight; y++) {
                 // Get match value for a template located at (x,y)
-                double dist = template.evaluate(x, y, null, distances);
+                double dist = compiled.evaluate(x, y, null, distances);
 
                 if (dist <= maxDistance) {
                     locations.add(new PixelDistance(x, y, dist));
@@ -25,6 +25,8 @@ import ij.process.ByteProcessor;
 
 import net.jcip.annotations.ThreadSafe;
 
+import org.audiveris.omr.run.RunsCollector;
+
 /**
  * Class <code>GlobalFilter</code> implements Interface <code>PixelFilter</code>
  * by using a global threshold applied on all image pixels.
@@ -77,6 +79,30 @@ public class GlobalFilter
         return ip;
     }
 
+    //------------//
+    // filterRuns //
+    //------------//
+    @Override
+    public void filterRuns (RunsCollector collector)
+    {
+        final int width = source.getWidth();
+        final byte[] pixels = (byte[]) source.getPixels();
+
+        collector.process(band -> {
+            final boolean[] fores = new boolean[width];
+
+            for (int y = band.yFirst; y <= band.yLast; y++) {
+                final int row = y * width;
+
+                for (int x = 0; x < width; x++) {
+                    fores[x] = (pixels[row + x] & 0xFF) <= threshold;
+                }
+
+                band.addRow(y, fores);
+            }
+        });
+    }
+
     //------------//
     // getContext //
     //------------//
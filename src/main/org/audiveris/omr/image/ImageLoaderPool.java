@@ -0,0 +1,425 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 I m a g e L o a d e r P o o l                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class <code>ImageLoaderPool</code> keeps {@link ImageLoading.Loader} instances open on an
+ * input file, so that the images of a multi-image file (PDF, TIFF) can be loaded without
+ * re-opening and re-parsing the whole file for each image.
+ * <p>
+ * A loader is not thread-safe, hence it is used by one thread at a time.
+ * Several loaders may be open on the same file, up to the global parallelism, so that several
+ * images can be rendered concurrently.
+ * <p>
+ * Loaders are disposed of when the pool has been idle for some time, or when the pool is
+ * explicitly disposed of. They are transparently re-opened when needed.
+ * <p>
+ * Images may also be prefetched in background, to be ready when they are actually needed.
+ * Prefetched images are not affected by the idle disposal of loaders, since processing a sheet
+ * may take longer than the idle delay.
+ * Instead, their number is capped: no new prefetch is launched while the cap is reached.
+ * <p>
+ * A given image is never loaded twice concurrently: a request for an image being loaded
+ * (in background or by another thread) simply waits for this load to complete.
+ *
+ * @author Hervé Bitteur
+ */
+public class ImageLoaderPool
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageLoaderPool.class);
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Input file. */
+    private final Path path;
+
+    /** Maximum number of loaders open at the same time. */
+    private final int maxLoaders;
+
+    /** Open loaders not currently in use, most recently used first. */
+    private final Deque<ImageLoading.Loader> idles = new ArrayDeque<>();
+
+    /** Number of open loaders, idle or in use. */
+    private int openCount;
+
+    /** Incremented at each disposal, to dispose of loaders in use when they are released. */
+    private int generation;
+
+    /** Time of last loader release. */
+    private long lastRelease;
+
+    /** Images being loaded or prefetched, per image id. */
+    private final ConcurrentMap<Integer, Future<BufferedImage>> pendings
+            = new ConcurrentHashMap<>();
+
+    /** Ids of prefetched images, not yet retrieved. Access synchronized on the set. */
+    private final Set<Integer> prefetched = new LinkedHashSet<>();
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>ImageLoaderPool</code> object on the provided input file.
+     *
+     * @param path the input file
+     */
+    public ImageLoaderPool (Path path)
+    {
+        this.path = path;
+
+        final int max = constants.maxLoaders.getValue();
+        maxLoaders = (max > 0) ? max : OmrExecutors.getParallelism();
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //---------//
+    // dispose //
+    //---------//
+    /**
+     * Dispose of all loaders and cancel all prefetching.
+     * <p>
+     * Loaders currently in use are disposed of as soon as they are released.
+     * The pool remains usable.
+     */
+    public void dispose ()
+    {
+        for (Future<BufferedImage> future : pendings.values()) {
+            future.cancel(false);
+        }
+
+        pendings.clear(); // Including prefetched images not retrieved
+
+        synchronized (prefetched) {
+            prefetched.clear();
+        }
+
+        disposeLoaders();
+    }
+
+    //----------------//
+    // disposeLoaders //
+    //----------------//
+    /**
+     * (package private) Dispose of all loaders, but keep prefetched images.
+     * <p>
+     * Loaders currently in use are disposed of as soon as they are released.
+     */
+    void disposeLoaders ()
+    {
+        synchronized (this) {
+            generation++;
+
+            if (!idles.isEmpty()) {
+                logger.debug("Disposing {} loader(s) on {}", idles.size(), path);
+            }
+
+            for (ImageLoading.Loader loader : idles) {
+                loader.dispose();
+                openCount--;
+            }
+
+            idles.clear();
+            notifyAll();
+        }
+    }
+
+    //----------//
+    // getImage //
+    //----------//
+    /**
+     * Load the specified image, unless it has already been prefetched.
+     *
+     * @param id specified image id (its index counted from 1)
+     * @return the image, or null if no loader could be opened
+     * @throws IOException for any IO error
+     */
+    public BufferedImage getImage (int id)
+            throws IOException
+    {
+        final FutureTask<BufferedImage> task = new FutureTask<>(() -> load(id));
+        Future<BufferedImage> future = pendings.putIfAbsent(id, task);
+
+        if (future == null) {
+            future = task;
+            task.run(); // Load it ourself
+        } else {
+            logger.debug("Image {} already pending", id);
+        }
+
+        try {
+            return future.get();
+        } catch (CancellationException ex) {
+            return load(id); // Prefetch was cancelled
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading image " + id, ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new IOException("Error loading image " + id, cause);
+        } finally {
+            pendings.remove(id, future);
+
+            synchronized (prefetched) {
+                prefetched.remove(id);
+            }
+        }
+    }
+
+    //--------------------//
+    // getPrefetchedCount //
+    //--------------------//
+    /**
+     * (package private) Report the number of prefetched images not yet retrieved.
+     *
+     * @return count of prefetched images
+     */
+    int getPrefetchedCount ()
+    {
+        synchronized (prefetched) {
+            return prefetched.size();
+        }
+    }
+
+    //----------//
+    // prefetch //
+    //----------//
+    /**
+     * Launch the background loading of the provided images, unless they are already being
+     * loaded.
+     * <p>
+     * Each prefetched image is kept until it is retrieved by {@link #getImage(int)}, or until the
+     * pool is disposed of.
+     * No prefetch is launched while the number of prefetched images not yet retrieved has reached
+     * the maxPrefetched cap.
+     *
+     * @param ids ids of the images to prefetch
+     */
+    public void prefetch (Collection<Integer> ids)
+    {
+        final int max = constants.maxPrefetched.getValue();
+
+        for (int id : ids) {
+            synchronized (prefetched) {
+                if (prefetched.size() >= max) {
+                    logger.debug("Prefetch cap reached, image {} not prefetched", id);
+
+                    return;
+                }
+
+                final FutureTask<BufferedImage> task = new FutureTask<>(() -> load(id));
+
+                if (pendings.putIfAbsent(id, task) == null) {
+                    logger.debug("Prefetching image {} from {}", id, path);
+                    prefetched.add(id);
+                    OmrExecutors.getCachedLowExecutor().execute(task);
+                }
+            }
+        }
+    }
+
+    //--------//
+    // borrow //
+    //--------//
+    /**
+     * Get an idle loader, or open a new one if allowed, or wait for a loader to be released.
+     *
+     * @return the loader to use, or null if it could not be opened
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private ImageLoading.Loader borrow ()
+            throws InterruptedException
+    {
+        synchronized (this) {
+            while (true) {
+                final ImageLoading.Loader loader = idles.pollFirst();
+
+                if (loader != null) {
+                    return loader;
+                }
+
+                if (openCount < maxLoaders) {
+                    openCount++; // Slot reserved
+
+                    break;
+                }
+
+                wait();
+            }
+        }
+
+        // Opening may be long, so it is done outside the lock
+        ImageLoading.Loader loader = null;
+
+        try {
+            loader = ImageLoading.getLoader(path);
+            logger.debug("Opened loader on {}", path);
+        } finally {
+            if (loader == null) {
+                synchronized (this) {
+                    openCount--;
+                    notifyAll();
+                }
+            }
+        }
+
+        return loader;
+    }
+
+    //------//
+    // load //
+    //------//
+    private BufferedImage load (int id)
+            throws IOException
+    {
+        final int gen;
+
+        synchronized (this) {
+            gen = generation;
+        }
+
+        final ImageLoading.Loader loader;
+
+        try {
+            loader = borrow();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a loader", ex);
+        }
+
+        if (loader == null) {
+            return null;
+        }
+
+        try {
+            return loader.getImage(id);
+        } finally {
+            release(loader, gen);
+        }
+    }
+
+    //-------//
+    // purge //
+    //-------//
+    /**
+     * Dispose of loaders, if pool has been idle long enough.
+     * Prefetched images are kept.
+     */
+    private void purge ()
+    {
+        synchronized (this) {
+            final long idleNanos = System.nanoTime() - lastRelease;
+
+            if ((idles.size() < openCount)
+                        || (idleNanos < TimeUnit.SECONDS.toNanos(
+                            constants.idleSeconds.getValue()))) {
+                return; // Pool still in use, a later release will trigger a new purge
+            }
+        }
+
+        disposeLoaders();
+    }
+
+    //---------//
+    // release //
+    //---------//
+    private synchronized void release (ImageLoading.Loader loader,
+                                       int gen)
+    {
+        if (gen != generation) {
+            loader.dispose(); // Pool disposed of meanwhile
+            openCount--;
+        } else {
+            idles.addFirst(loader);
+            lastRelease = System.nanoTime();
+
+            if (idles.size() == openCount) {
+                // No loader in use, schedule a purge
+                CompletableFuture.runAsync(
+                        this::purge,
+                        CompletableFuture.delayedExecutor(
+                                constants.idleSeconds.getValue(),
+                                TimeUnit.SECONDS,
+                                OmrExecutors.getCachedLowExecutor()));
+            }
+        }
+
+        notifyAll();
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer maxLoaders = new Constant.Integer(
+                "Loaders",
+                0,
+                "Maximum number of loaders open on the same input file (0 for parallelism)");
+
+        private final Constant.Integer idleSeconds = new Constant.Integer(
+                "Seconds",
+                30,
+                "Delay of inactivity before open loaders are disposed of");
+
+        private final Constant.Integer maxPrefetched = new Constant.Integer(
+                "Images",
+                2,
+                "Maximum number of prefetched images kept until retrieved");
+    }
+}
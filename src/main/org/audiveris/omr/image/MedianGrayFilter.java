@@ -23,19 +23,68 @@ package org.audiveris.omr.image;
 
 import ij.process.ByteProcessor;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class <code>MedianGrayFilter</code> allows to run a median filter on an input image,
  * assumed to contain only gray values [0..255].
+ * <p>
+ * The kernel is a square of side (2 * radius + 1), centered on the current pixel.
+ * Near image boundaries, the radius is reduced so that the kernel does not use pixels outside the
+ * image.
+ * <p>
+ * Within image interior, the median is computed on a sliding histogram, in constant time per
+ * pixel regardless of the radius (see Perreault and H&eacute;bert, "Median Filtering in Constant
+ * Time"):
+ * <ul>
+ * <li>A histogram is kept for each image column, over the kernel rows.
+ * Moving down one row updates each column histogram with just one pixel in and one pixel out.</li>
+ * <li>The kernel histogram is the sum of (2 * radius + 1) column histograms.
+ * Moving right one pixel adds the entering column histogram and subtracts the leaving one.</li>
+ * <li>Histograms are two-level: 16 coarse bins and 256 fine bins.
+ * Coarse kernel bins are always up to date, while a segment of 16 fine kernel bins is updated
+ * only when the median search needs it.</li>
+ * </ul>
+ * Rows of the image interior are processed by bands, in parallel when possible.
+ * <p>
+ * The output is identical to the brute force computation, which is still used for boundary
+ * pixels.
  *
  * @author Hervé Bitteur
  */
 public class MedianGrayFilter
         extends AbstractGrayFilter
 {
-    //~ Instance fields ----------------------------------------------------------------------------
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(MedianGrayFilter.class);
+
+    /** Number of fine bins per coarse bin. */
+    private static final int FINE = 16;
 
+    /** Number of coarse bins. */
+    private static final int COARSE = 256 / FINE;
+
+    /** Maximum radius for sliding the kernel pixel by pixel rather than column by column. */
+    private static final int MAX_PIXEL_RADIUS = 6;
+
+    //~ Instance fields ----------------------------------------------------------------------------
     /** Desired radius for the filter. */
     private final int radius;
 
@@ -57,6 +106,51 @@ public class MedianGrayFilter
     @Override
     public void filter (final ByteProcessor input,
                         final ByteProcessor output)
+    {
+        final int width = input.getWidth();
+        final int height = input.getHeight();
+        final int side = (2 * radius) + 1;
+
+        if ((radius <= 0) || (width < side) || (height < side)) {
+            filterBruteForce(input, output);
+
+            return;
+        }
+
+        final byte[] in = (byte[]) input.getPixels();
+        final byte[] out = (byte[]) output.getPixels();
+        final int[] histogram = new int[256];
+
+        // Top and bottom boundary rows
+        for (int y = 0; y < radius; y++) {
+            for (int x = 0; x < width; x++) {
+                out[(y * width) + x] = (byte) bruteMedian(in, width, height, x, y, histogram);
+            }
+        }
+
+        for (int y = height - radius; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                out[(y * width) + x] = (byte) bruteMedian(in, width, height, x, y, histogram);
+            }
+        }
+
+        // Interior rows
+        processInterior(in, out, width, height);
+    }
+
+    //------------------//
+    // filterBruteForce //
+    //------------------//
+    /**
+     * Brute force implementation, which recomputes the whole kernel histogram for every pixel.
+     * <p>
+     * It is the reference implementation, used for images too small for the sliding histogram.
+     *
+     * @param input  the input image
+     * @param output the output image
+     */
+    void filterBruteForce (final ByteProcessor input,
+                           final ByteProcessor output)
     {
         final int width = input.getWidth();
         final int height = input.getHeight();
@@ -109,4 +203,409 @@ public class MedianGrayFilter
             }
         }
     }
+
+    //-------------//
+    // bruteMedian //
+    //-------------//
+    /**
+     * Compute by brute force the median value at (x,y), with radius reduced near boundaries.
+     *
+     * @return the median value
+     */
+    private int bruteMedian (byte[] in,
+                             int width,
+                             int height,
+                             int x,
+                             int y,
+                             int[] histogram)
+    {
+        final int rad = Math.min(
+                Math.min(radius, Math.min(x, y)),
+                Math.min(width - 1 - x, height - 1 - y));
+        Arrays.fill(histogram, 0);
+
+        for (int j = y - rad; j <= (y + rad); j++) {
+            final int row = j * width;
+
+            for (int i = x - rad; i <= (x + rad); i++) {
+                histogram[in[row + i] & 0xFF]++;
+            }
+        }
+
+        final int side = (2 * rad) + 1;
+        final int medianCount = ((side * side) + 1) / 2;
+        int median = 255;
+        int sum = 0;
+
+        while (sum < medianCount) {
+            sum += histogram[median];
+            median--;
+        }
+
+        return median + 1;
+    }
+
+    //-------------//
+    // processBand //
+    //-------------//
+    /**
+     * Process a band of interior rows, using sliding histograms.
+     * <p>
+     * For a small radius, it is cheaper to slide the kernel histogram pixel by pixel.
+     * Otherwise, we slide the kernel histogram column by column.
+     *
+     * @param in     input pixels
+     * @param out    output pixels
+     * @param width  image width
+     * @param height image height
+     * @param yFirst first row of band
+     * @param yLast  last row of band
+     */
+    private void processBand (byte[] in,
+                              byte[] out,
+                              int width,
+                              int height,
+                              int yFirst,
+                              int yLast)
+    {
+        if (radius <= MAX_PIXEL_RADIUS) {
+            processBandByPixels(in, out, width, height, yFirst, yLast);
+        } else {
+            processBandByColumns(in, out, width, height, yFirst, yLast);
+        }
+    }
+
+    //----------------------//
+    // processBandByColumns //
+    //----------------------//
+    /**
+     * Process a band of interior rows, sliding the kernel histogram by column histograms.
+     *
+     * @param in     input pixels
+     * @param out    output pixels
+     * @param width  image width
+     * @param height image height
+     * @param yFirst first row of band
+     * @param yLast  last row of band
+     */
+    private void processBandByColumns (byte[] in,
+                                       byte[] out,
+                                       int width,
+                                       int height,
+                                       int yFirst,
+                                       int yLast)
+    {
+        final int side = (2 * radius) + 1;
+        final int medianCount = ((side * side) + 1) / 2;
+        final int[] histogram = new int[256];
+
+        // Column histograms, over kernel rows
+        final int[] colFine = new int[width * 256];
+        final int[] colCoarse = new int[width * COARSE];
+
+        // Kernel histogram, with column index when each fine segment was last updated
+        final int[] kerFine = new int[256];
+        final int[] kerCoarse = new int[COARSE];
+        final int[] lastCol = new int[COARSE];
+
+        for (int y = yFirst - radius; y < (yFirst + radius); y++) {
+            addRow(in, width, y, colFine, colCoarse);
+        }
+
+        for (int y = yFirst; y <= yLast; y++) {
+            // Slide column histograms down: previous top row out, new bottom row in
+            if (y > yFirst) {
+                removeRow(in, width, y - radius - 1, colFine, colCoarse);
+            }
+
+            addRow(in, width, y + radius, colFine, colCoarse);
+
+            final int row = y * width;
+
+            // Left and right boundary pixels
+            for (int x = 0; x < radius; x++) {
+                out[row + x] = (byte) bruteMedian(in, width, height, x, y, histogram);
+            }
+
+            for (int x = width - radius; x < width; x++) {
+                out[row + x] = (byte) bruteMedian(in, width, height, x, y, histogram);
+            }
+
+            // Kernel histogram for x = radius
+            Arrays.fill(kerFine, 0);
+            Arrays.fill(kerCoarse, 0);
+
+            for (int c = 0; c < side; c++) {
+                add(colFine, c * 256, kerFine, 0, 256);
+                add(colCoarse, c * COARSE, kerCoarse, 0, COARSE);
+            }
+
+            Arrays.fill(lastCol, radius);
+
+            for (int x = radius; x < (width - radius); x++) {
+                if (x > radius) {
+                    // Slide kernel coarse histogram right
+                    add(colCoarse, (x + radius) * COARSE, kerCoarse, 0, COARSE);
+                    subtract(colCoarse, (x - radius - 1) * COARSE, kerCoarse, 0, COARSE);
+                }
+
+                // Look for the coarse segment which contains the median, from top values
+                int sum = 0;
+                int k = COARSE - 1;
+
+                while ((sum + kerCoarse[k]) < medianCount) {
+                    sum += kerCoarse[k];
+                    k--;
+                }
+
+                // Bring this fine segment up to date
+                final int seg = k * FINE;
+                final int last = lastCol[k];
+
+                if ((x - last) >= side) {
+                    // Rebuild segment from scratch
+                    Arrays.fill(kerFine, seg, seg + FINE, 0);
+
+                    for (int c = x - radius; c <= (x + radius); c++) {
+                        add(colFine, (c * 256) + seg, kerFine, seg, FINE);
+                    }
+                } else {
+                    for (int c = last + 1; c <= x; c++) {
+                        add(colFine, ((c + radius) * 256) + seg, kerFine, seg, FINE);
+                        subtract(colFine, ((c - radius - 1) * 256) + seg, kerFine, seg, FINE);
+                    }
+                }
+
+                lastCol[k] = x;
+
+                // Pick up the median value within the segment
+                int median = seg + FINE - 1;
+
+                while ((sum += kerFine[median]) < medianCount) {
+                    median--;
+                }
+
+                out[row + x] = (byte) median;
+            }
+        }
+    }
+
+    //---------------------//
+    // processBandByPixels //
+    //---------------------//
+    /**
+     * Process a band of interior rows, sliding the kernel histogram pixel by pixel
+     * (one kernel column out, one kernel column in).
+     *
+     * @param in     input pixels
+     * @param out    output pixels
+     * @param width  image width
+     * @param height image height
+     * @param yFirst first row of band
+     * @param yLast  last row of band
+     */
+    private void processBandByPixels (byte[] in,
+                                      byte[] out,
+                                      int width,
+                                      int height,
+                                      int yFirst,
+                                      int yLast)
+    {
+        final int side = (2 * radius) + 1;
+        final int medianCount = ((side * side) + 1) / 2;
+        final int[] histogram = new int[256];
+        final int[] kerFine = new int[256];
+        final int[] kerCoarse = new int[COARSE];
+
+        for (int y = yFirst; y <= yLast; y++) {
+            final int row = y * width;
+
+            // Left and right boundary pixels
+            for (int x = 0; x < radius; x++) {
+                out[row + x] = (byte) bruteMedian(in, width, height, x, y, histogram);
+            }
+
+            for (int x = width - radius; x < width; x++) {
+                out[row + x] = (byte) bruteMedian(in, width, height, x, y, histogram);
+            }
+
+            // Kernel histogram for x = radius
+            Arrays.fill(kerFine, 0);
+            Arrays.fill(kerCoarse, 0);
+
+            for (int j = y - radius; j <= (y + radius); j++) {
+                for (int i = j * width, iMax = i + side; i < iMax; i++) {
+                    final int val = in[i] & 0xFF;
+                    kerFine[val]++;
+                    kerCoarse[val / FINE]++;
+                }
+            }
+
+            for (int x = radius; x < (width - radius); x++) {
+                if (x > radius) {
+                    // Slide kernel right: left column out, right column in
+                    for (int j = y - radius; j <= (y + radius); j++) {
+                        final int p = j * width;
+                        final int valOut = in[(p + x) - radius - 1] & 0xFF;
+                        final int valIn = in[p + x + radius] & 0xFF;
+                        kerFine[valOut]--;
+                        kerCoarse[valOut / FINE]--;
+                        kerFine[valIn]++;
+                        kerCoarse[valIn / FINE]++;
+                    }
+                }
+
+                // Look for the coarse segment which contains the median, from top values
+                int sum = 0;
+                int k = COARSE - 1;
+
+                while ((sum + kerCoarse[k]) < medianCount) {
+                    sum += kerCoarse[k];
+                    k--;
+                }
+
+                // Pick up the median value within the segment
+                int median = (k * FINE) + FINE - 1;
+
+                while ((sum += kerFine[median]) < medianCount) {
+                    median--;
+                }
+
+                out[row + x] = (byte) median;
+            }
+        }
+    }
+
+    //-----------------//
+    // processInterior //
+    //-----------------//
+    /**
+     * Process all interior rows, band by band, in parallel when possible.
+     */
+    private void processInterior (final byte[] in,
+                                  final byte[] out,
+                                  final int width,
+                                  final int height)
+    {
+        final int yMin = radius;
+        final int yMax = height - 1 - radius;
+        final int count = yMax - yMin + 1;
+        final int minBand = Math.max(constants.minBandHeight.getValue(), 2 * radius);
+
+        if ((OmrExecutors.defaultParallelism.getValue() == false) || (count < (2 * minBand))) {
+            processBand(in, out, width, height, yMin, yMax);
+
+            return;
+        }
+
+        // One band per worker, since each band needs its own column histograms
+        final int bandCount = Math.min(OmrExecutors.getParallelism(), count / minBand);
+        final int bandSize = (count + bandCount - 1) / bandCount;
+
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (int y = yMin; y <= yMax; y += bandSize) {
+                final int first = y;
+                final int last = Math.min(yMax, (y + bandSize) - 1);
+                tasks.add(() -> {
+                    processBand(in, out, width, height, first, last);
+
+                    return null;
+                });
+            }
+
+            for (Future<Void> future : OmrScheduler.invokeAll(OmrScheduler.Level.ROW, tasks)) {
+                future.get(); // To propagate any exception
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("MedianGrayFilter got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) ex.getCause();
+            }
+
+            logger.warn("Exception raised in MedianGrayFilter", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    //-----//
+    // add //
+    //-----//
+    private static void add (int[] src,
+                             int srcPos,
+                             int[] dst,
+                             int dstPos,
+                             int length)
+    {
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] += src[srcPos + i];
+        }
+    }
+
+    //--------//
+    // addRow //
+    //--------//
+    private static void addRow (byte[] in,
+                                int width,
+                                int y,
+                                int[] colFine,
+                                int[] colCoarse)
+    {
+        final int row = y * width;
+
+        for (int x = 0; x < width; x++) {
+            final int val = in[row + x] & 0xFF;
+            colFine[(x * 256) + val]++;
+            colCoarse[(x * COARSE) + (val / FINE)]++;
+        }
+    }
+
+    //-----------//
+    // removeRow //
+    //-----------//
+    private static void removeRow (byte[] in,
+                                   int width,
+                                   int y,
+                                   int[] colFine,
+                                   int[] colCoarse)
+    {
+        final int row = y * width;
+
+        for (int x = 0; x < width; x++) {
+            final int val = in[row + x] & 0xFF;
+            colFine[(x * 256) + val]--;
+            colCoarse[(x * COARSE) + (val / FINE)]--;
+        }
+    }
+
+    //----------//
+    // subtract //
+    //----------//
+    private static void subtract (int[] src,
+                                  int srcPos,
+                                  int[] dst,
+                                  int dstPos,
+                                  int length)
+    {
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] -= src[srcPos + i];
+        }
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer minBandHeight = new Constant.Integer(
+                "rows",
+                128,
+                "Minimum number of rows per band, for parallel median filtering");
+    }
 }
@@ -23,11 +23,40 @@ package org.audiveris.omr.image;
 
 import ij.process.ByteProcessor;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 /**
- * Class <code>MorphoProcessor</code>
+ * Class <code>MorphoProcessor</code> performs gray-level dilation, erosion, closing and
+ * opening with a structuring element.
+ * <p>
+ * When the structuring element is flat (all mask values set to 255), it is decomposed into
+ * horizontal line segments, one or several per element row.
+ * Each pass (dilation or erosion) then works in two stages:
+ * <ol>
+ * <li>For each distinct segment, a running maximum (or minimum) is computed along each image row,
+ * at a constant cost per pixel whatever the segment length (van Herk and Gil-Werman).</li>
+ * <li>Each output pixel combines the segment results of the source rows covered by the element,
+ * at a cost per pixel proportional to the element height rather than to its area.</li>
+ * </ol>
+ * Image rows are processed by bands, in parallel when possible.
+ * Pixels outside the image are ignored, which gives the same output as the brute force
+ * computation, still used for non-flat elements.
  *
  * @author ?
  */
@@ -36,6 +65,8 @@ public class MorphoProcessor
 {
     //~ Static fields/initializers -----------------------------------------------------------------
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(MorphoProcessor.class);
 
     public static final int BINF = -256;
@@ -65,6 +96,9 @@ public class MorphoProcessor
 
     private final int[][] pg_minus;
 
+    /** Decomposition in line segments, or null if structuring element is not flat. */
+    private final Lines lines;
+
     int width;
 
     int height;
@@ -88,6 +122,7 @@ public class MorphoProcessor
         pg = se.getVect();
         pg_plus = plus_se.getVect();
         pg_minus = minus_se.getVect();
+        lines = Lines.decompose(pg);
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -101,6 +136,28 @@ public class MorphoProcessor
      * @param ip the ImageProcessor
      */
     public void close (ByteProcessor ip)
+    {
+        if (lines == null) {
+            closeBruteForce(ip);
+
+            return;
+        }
+
+        final byte[] pixels = (byte[]) ip.getPixels();
+        final byte[] dilated = new byte[pixels.length];
+        runPass(pixels, dilated, ip.getWidth(), ip.getHeight(), DILATE);
+        runPass(dilated, pixels, ip.getWidth(), ip.getHeight(), ERODE);
+    }
+
+    //-----------------//
+    // closeBruteForce //
+    //-----------------//
+    /**
+     * Brute force closing, which browses the whole structuring element for every pixel.
+     *
+     * @param ip the ImageProcessor
+     */
+    void closeBruteForce (ByteProcessor ip)
     {
         int width = ip.getWidth();
         int height = ip.getHeight();
@@ -161,6 +218,27 @@ public class MorphoProcessor
      * @param ip the ImageProcessor
      */
     public void dilate (ByteProcessor ip)
+    {
+        if (lines == null) {
+            dilateBruteForce(ip);
+
+            return;
+        }
+
+        final byte[] pixels = (byte[]) ip.getPixels();
+        final byte[] source = pixels.clone();
+        runPass(source, pixels, ip.getWidth(), ip.getHeight(), DILATE);
+    }
+
+    //------------------//
+    // dilateBruteForce //
+    //------------------//
+    /**
+     * Brute force dilation, which browses the whole structuring element for every pixel.
+     *
+     * @param ip the ImageProcessor
+     */
+    void dilateBruteForce (ByteProcessor ip)
     {
         int width = ip.getWidth();
         int height = ip.getHeight();
@@ -197,6 +275,27 @@ public class MorphoProcessor
      * @param ip the ImageProcessor
      */
     public void erode (ByteProcessor ip)
+    {
+        if (lines == null) {
+            erodeBruteForce(ip);
+
+            return;
+        }
+
+        final byte[] pixels = (byte[]) ip.getPixels();
+        final byte[] source = pixels.clone();
+        runPass(source, pixels, ip.getWidth(), ip.getHeight(), ERODE);
+    }
+
+    //-----------------//
+    // erodeBruteForce //
+    //-----------------//
+    /**
+     * Brute force erosion, which browses the whole structuring element for every pixel.
+     *
+     * @param ip the ImageProcessor
+     */
+    void erodeBruteForce (ByteProcessor ip)
     {
         int width = ip.getWidth();
         int height = ip.getHeight();
@@ -323,6 +422,28 @@ public class MorphoProcessor
      * @param ip the ImageProcessor
      */
     public void open (ByteProcessor ip)
+    {
+        if (lines == null) {
+            openBruteForce(ip);
+
+            return;
+        }
+
+        final byte[] pixels = (byte[]) ip.getPixels();
+        final byte[] eroded = new byte[pixels.length];
+        runPass(pixels, eroded, ip.getWidth(), ip.getHeight(), ERODE);
+        runPass(eroded, pixels, ip.getWidth(), ip.getHeight(), DILATE);
+    }
+
+    //----------------//
+    // openBruteForce //
+    //----------------//
+    /**
+     * Brute force opening, which browses the whole structuring element for every pixel.
+     *
+     * @param ip the ImageProcessor
+     */
+    void openBruteForce (ByteProcessor ip)
     {
         int width = ip.getWidth();
         int height = ip.getHeight();
@@ -440,4 +561,358 @@ public class MorphoProcessor
 
         return wnd;
     }
+
+    //-------------//
+    // processBand //
+    //-------------//
+    /**
+     * Process a band of rows for one pass.
+     * <p>
+     * Segment results are kept for the source rows currently covered by the structuring element,
+     * in a ring of rows, so that each source row is handled only once.
+     *
+     * @param in     input pixels
+     * @param out    output pixels
+     * @param width  image width
+     * @param height image height
+     * @param type   DILATE or ERODE
+     * @param yFirst first row of band
+     * @param yLast  last row of band
+     */
+    private void processBand (byte[] in,
+                              byte[] out,
+                              int width,
+                              int height,
+                              int type,
+                              int yFirst,
+                              int yLast)
+    {
+        final boolean dilation = type == DILATE;
+        final int pad = dilation ? 0 : 255; // Neutral value for pixels outside image
+        final int spanCount = lines.spanStarts.length;
+        final int ringSize = (lines.maxDy - lines.minDy) + 1;
+        final int[][][] ring = new int[spanCount][ringSize][width];
+        final int reach = lines.maxDx - lines.minDx;
+        final int[] ext = new int[width + reach];
+        final int[] fwd = new int[width + reach];
+        final int[] bwd = new int[width + reach];
+        final int[] acc = new int[width];
+        int nextRow = Math.max(0, yFirst + lines.minDy);
+
+        for (int y = yFirst; y <= yLast; y++) {
+            // Load the newly covered source rows
+            for (int yMax = Math.min(height - 1, y + lines.maxDy); nextRow <= yMax; nextRow++) {
+                final int row = nextRow * width;
+
+                for (int i = 0; i < ext.length; i++) {
+                    final int x = i + lines.minDx;
+                    ext[i] = ((x >= 0) && (x < width)) ? (in[row + x] & 0xFF) : pad;
+                }
+
+                for (int k = 0; k < spanCount; k++) {
+                    runLine(
+                            ext,
+                            lines.spanStarts[k] - lines.minDx,
+                            lines.spanLengths[k],
+                            width,
+                            fwd,
+                            bwd,
+                            ring[k][nextRow % ringSize],
+                            dilation);
+                }
+            }
+
+            // Combine segments
+            Arrays.fill(acc, pad);
+
+            for (int s = 0; s < lines.segDys.length; s++) {
+                final int sy = y + lines.segDys[s];
+
+                if ((sy < 0) || (sy >= height)) {
+                    continue;
+                }
+
+                final int[] line = ring[lines.segSpans[s]][sy % ringSize];
+
+                if (dilation) {
+                    for (int x = 0; x < width; x++) {
+                        acc[x] = Math.max(acc[x], line[x]);
+                    }
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        acc[x] = Math.min(acc[x], line[x]);
+                    }
+                }
+            }
+
+            final int row = y * width;
+
+            for (int x = 0; x < width; x++) {
+                out[row + x] = (byte) acc[x];
+            }
+        }
+    }
+
+    //---------//
+    // runPass //
+    //---------//
+    /**
+     * Run a dilation or erosion pass, band by band, in parallel when possible.
+     *
+     * @param in     input pixels (not modified)
+     * @param out    output pixels
+     * @param width  image width
+     * @param height image height
+     * @param type   DILATE or ERODE
+     */
+    private void runPass (final byte[] in,
+                          final byte[] out,
+                          final int width,
+                          final int height,
+                          final int type)
+    {
+        final int minBand = Math.max(constants.minBandHeight.getValue(), 2 * this.height);
+
+        if ((OmrExecutors.defaultParallelism.getValue() == false) || (height < (2 * minBand))) {
+            processBand(in, out, width, height, type, 0, height - 1);
+
+            return;
+        }
+
+        final int bandCount = Math.min(OmrExecutors.getParallelism(), height / minBand);
+        final int bandSize = (height + bandCount - 1) / bandCount;
+
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (int y = 0; y < height; y += bandSize) {
+                final int first = y;
+                final int last = Math.min(height - 1, (y + bandSize) - 1);
+                tasks.add(() -> {
+                    processBand(in, out, width, height, type, first, last);
+
+                    return null;
+                });
+            }
+
+            for (Future<Void> future : OmrScheduler.invokeAll(OmrScheduler.Level.ROW, tasks)) {
+                future.get(); // To propagate any exception
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("MorphoProcessor got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) ex.getCause();
+            }
+
+            logger.warn("Exception raised in MorphoProcessor", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    //---------//
+    // runLine //
+    //---------//
+    /**
+     * Compute the running maximum (or minimum) of a row, over a window of provided length.
+     * <p>
+     * Values are split into blocks of window length, with a forward cumul and a backward cumul
+     * within each block.
+     * Any window then overlaps at most two blocks, and its result is taken from one backward cumul
+     * and one forward cumul.
+     *
+     * @param ext      extended row values
+     * @param offset   index in ext of first window start
+     * @param length   window length
+     * @param count    number of windows (image width)
+     * @param fwd      buffer for forward cumuls
+     * @param bwd      buffer for backward cumuls
+     * @param result   output, result of window starting at (offset + x)
+     * @param dilation true for maximum, false for minimum
+     */
+    private static void runLine (int[] ext,
+                                 int offset,
+                                 int length,
+                                 int count,
+                                 int[] fwd,
+                                 int[] bwd,
+                                 int[] result,
+                                 boolean dilation)
+    {
+        if (length == 1) {
+            System.arraycopy(ext, offset, result, 0, count);
+
+            return;
+        }
+
+        final int n = (count + length) - 1;
+
+        for (int i = 0; i < n; i++) {
+            final int val = ext[offset + i];
+
+            if ((i % length) == 0) {
+                fwd[i] = val;
+            } else {
+                fwd[i] = dilation ? Math.max(fwd[i - 1], val) : Math.min(fwd[i - 1], val);
+            }
+        }
+
+        for (int i = n - 1; i >= 0; i--) {
+            final int val = ext[offset + i];
+
+            if ((i == (n - 1)) || ((i % length) == (length - 1))) {
+                bwd[i] = val;
+            } else {
+                bwd[i] = dilation ? Math.max(bwd[i + 1], val) : Math.min(bwd[i + 1], val);
+            }
+        }
+
+        for (int x = 0; x < count; x++) {
+            final int b = bwd[x];
+            final int f = fwd[(x + length) - 1];
+            result[x] = dilation ? Math.max(b, f) : Math.min(b, f);
+        }
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer minBandHeight = new Constant.Integer(
+                "rows",
+                64,
+                "Minimum number of rows per band, for parallel morphology");
+    }
+
+    //-------//
+    // Lines //
+    //-------//
+    /**
+     * Decomposition of a flat structuring element into horizontal segments.
+     */
+    private static class Lines
+    {
+
+        /** Start abscissa offset of each distinct span. */
+        final int[] spanStarts;
+
+        /** Length of each distinct span. */
+        final int[] spanLengths;
+
+        /** Ordinate offset of each segment. */
+        final int[] segDys;
+
+        /** Span index of each segment. */
+        final int[] segSpans;
+
+        final int minDx;
+
+        final int maxDx;
+
+        final int minDy;
+
+        final int maxDy;
+
+        private Lines (int[] spanStarts,
+                       int[] spanLengths,
+                       int[] segDys,
+                       int[] segSpans)
+        {
+            this.spanStarts = spanStarts;
+            this.spanLengths = spanLengths;
+            this.segDys = segDys;
+            this.segSpans = segSpans;
+
+            int xMin = Integer.MAX_VALUE;
+            int xMax = Integer.MIN_VALUE;
+
+            for (int k = 0; k < spanStarts.length; k++) {
+                xMin = Math.min(xMin, spanStarts[k]);
+                xMax = Math.max(xMax, (spanStarts[k] + spanLengths[k]) - 1);
+            }
+
+            int yMin = Integer.MAX_VALUE;
+            int yMax = Integer.MIN_VALUE;
+
+            for (int dy : segDys) {
+                yMin = Math.min(yMin, dy);
+                yMax = Math.max(yMax, dy);
+            }
+
+            minDx = xMin;
+            maxDx = xMax;
+            minDy = yMin;
+            maxDy = yMax;
+        }
+
+        /**
+         * Decompose the provided structuring element vectors.
+         *
+         * @param pg vectors of (dy, dx, value, distance)
+         * @return the decomposition, or null if element is empty or not flat
+         */
+        static Lines decompose (int[][] pg)
+        {
+            if (pg.length == 0) {
+                return null;
+            }
+
+            // Abscissa offsets, per ordinate offset
+            final Map<Integer, List<Integer>> dxMap = new LinkedHashMap<>();
+
+            for (int[] vect : pg) {
+                if (vect[2] != 255) {
+                    return null;
+                }
+
+                dxMap.computeIfAbsent(vect[0], dy -> new ArrayList<>()).add(vect[1]);
+            }
+
+            // Contiguous runs of abscissa offsets
+            final Map<List<Integer>, Integer> spans = new LinkedHashMap<>();
+            final List<Integer> dys = new ArrayList<>();
+            final List<Integer> spanIndices = new ArrayList<>();
+
+            for (Map.Entry<Integer, List<Integer>> entry : dxMap.entrySet()) {
+                final int[] dxs = entry.getValue().stream().mapToInt(i -> i).distinct().sorted()
+                        .toArray();
+                int start = 0;
+
+                for (int i = 1; i <= dxs.length; i++) {
+                    if ((i == dxs.length) || (dxs[i] != (dxs[i - 1] + 1))) {
+                        final List<Integer> span = Arrays.asList(dxs[start], i - start);
+                        Integer index = spans.get(span);
+
+                        if (index == null) {
+                            index = spans.size();
+                            spans.put(span, index);
+                        }
+
+                        dys.add(entry.getKey());
+                        spanIndices.add(index);
+                        start = i;
+                    }
+                }
+            }
+
+            final int[] spanStarts = new int[spans.size()];
+            final int[] spanLengths = new int[spans.size()];
+
+            for (Map.Entry<List<Integer>, Integer> entry : spans.entrySet()) {
+                spanStarts[entry.getValue()] = entry.getKey().get(0);
+                spanLengths[entry.getValue()] = entry.getKey().get(1);
+            }
+
+            return new Lines(
+                    spanStarts,
+                    spanLengths,
+                    dys.stream().mapToInt(i -> i).toArray(),
+                    spanIndices.stream().mapToInt(i -> i).toArray());
+        }
+    }
 }
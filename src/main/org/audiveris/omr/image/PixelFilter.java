@@ -23,6 +23,8 @@ package org.audiveris.omr.image;
 
 import ij.process.ByteProcessor;
 
+import org.audiveris.omr.run.RunsCollector;
+
 /**
  * Interface <code>PixelFilter</code> reports the foreground pixels of a {@link PixelSource}.
  *
@@ -40,6 +42,20 @@ public interface PixelFilter
      */
     ByteProcessor filteredImage ();
 
+    /**
+     * Run the filter on source image and hand the foreground pixels over to the provided
+     * collector, row by row, with no intermediate filtered image.
+     * <p>
+     * This default implementation, meant for filters which cannot binarize row by row, goes
+     * through the whole filtered image.
+     *
+     * @param collector the collector of horizontal and/or vertical runs
+     */
+    default void filterRuns (RunsCollector collector)
+    {
+        collector.collect(filteredImage());
+    }
+
     /**
      * Report the source context at provided location.
      * This is meant for administration and display purposes, it does not need
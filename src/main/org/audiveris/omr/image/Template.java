@@ -78,6 +78,9 @@ public class Template
     /** Ratio applied to small symbols (cue / grace). */
     public static final double smallRatio = constants.smallRatio.getValue();
 
+    /** Null offset, when no anchor is specified. */
+    private static final Point NO_OFFSET = new Point(0, 0);
+
     //~ Instance fields ----------------------------------------------------------------------------
     /** Template shape. */
     private final Shape shape;
@@ -104,6 +107,9 @@ public class Template
      */
     private final Map<Anchor, Point2D> offsets = new EnumMap<>(Anchor.class);
 
+    /** Compiled form, lazily built. */
+    private volatile Compiled compiled;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new Template object with a provided set of points.
@@ -185,54 +191,14 @@ public class Template
      * @param anchor    pivot offset if any, WRT template upper left
      * @param distances the distance table to use
      * @return the weighted average distance computed on all template key positions
+     * @see Compiled#evaluate(int, int, Anchor, DistanceTable)
      */
     public double evaluate (int x,
                             int y,
                             Anchor anchor,
                             DistanceTable distances)
     {
-        final Point ul = upperLeft(x, y, anchor);
-
-        // Loop through template key positions and read related distance.
-        // Compute the mean value on all distances read
-        final int imgWidth = distances.getWidth();
-        final int imgHeight = distances.getHeight();
-        final double foreWeight = constants.foreWeight.getValue();
-        final double backWeight = constants.backWeight.getValue();
-        final double holeWeight = constants.holeWeight.getValue();
-        double weights = 0; // Sum of weights
-        double total = 0; // Sum of weighted distances
-
-        for (PixelDistance pix : keyPoints) {
-            int nx = ul.x + pix.x;
-            int ny = ul.y + pix.y;
-
-            // Ignore tested point if located out of image
-            if ((nx >= 0) && (nx < imgWidth) && (ny >= 0) && (ny < imgHeight)) {
-                int actualDist = distances.getValue(nx, ny);
-
-                // Ignore neutralized locations in distance table
-                if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
-                    // pix.d < 0 for expected hole, expected negative distance to nearest foreground
-                    // pix.d == 0 for expected foreground, 0 distance
-                    // pix.d > 0 for expected background, expected distance to nearest foreground
-                    double weight = (pix.d == 0) ? foreWeight : ((pix.d > 0) ? backWeight
-                            : holeWeight);
-                    double expected = (pix.d == 0) ? 0 : 1;
-                    double actual = (actualDist == 0) ? 0 : 1;
-                    double dist = Math.abs(actual - expected);
-
-                    total += (weight * dist);
-                    weights += weight;
-                }
-            }
-        }
-
-        if (weights == 0) {
-            return Double.MAX_VALUE; // Safer
-        }
-
-        return total / weights;
+        return getCompiled().evaluate(x, y, anchor, distances);
     }
 
     //--------------//
@@ -247,48 +213,14 @@ public class Template
      * @param anchor    pivot offset if any, WRT template upper left
      * @param distances the distance table to use
      * @return ratio of actual white pixels over expected hole pixels
+     * @see Compiled#evaluateHole(int, int, Anchor, DistanceTable)
      */
     public double evaluateHole (int x,
                                 int y,
                                 Anchor anchor,
                                 DistanceTable distances)
     {
-        final Point ul = upperLeft(x, y, anchor);
-
-        // Loop through template key positions and read related distance.
-        // Compute the mean value on all distances read
-        final int imgWidth = distances.getWidth();
-        final int imgHeight = distances.getHeight();
-        int expectedHoles = 0; // Expected number of white pixels in hole
-        int actualHoles = 0; // Actual number of white pixels in hole
-
-        for (PixelDistance pix : keyPoints) {
-            int nx = ul.x + pix.x;
-            int ny = ul.y + pix.y;
-
-            // Ignore tested point if located out of image
-            if ((nx >= 0) && (nx < imgWidth) && (ny >= 0) && (ny < imgHeight)) {
-                int actualDist = distances.getValue(nx, ny);
-
-                // Ignore neutralized locations in distance table
-                if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
-                    // pix.d < 0 for expected hole, expected negative distance to nearest foreground
-                    if (pix.d < 0) {
-                        expectedHoles++;
-
-                        if (actualDist != 0) {
-                            actualHoles++;
-                        }
-                    }
-                }
-            }
-        }
-
-        if (expectedHoles == 0) {
-            return 0;
-        } else {
-            return (double) actualHoles / expectedHoles;
-        }
+        return getCompiled().evaluateHole(x, y, anchor, distances);
     }
 
     //-----------//
@@ -330,6 +262,32 @@ public class Template
         return new Rectangle2D.Double(x - offset.getX(), y - offset.getY(), width, height);
     }
 
+    //-------------//
+    // getCompiled //
+    //-------------//
+    /**
+     * Report the compiled form of this template, consistent with current weight constants.
+     * <p>
+     * For intensive use, the caller should keep the returned compiled template, rather than call
+     * this method for every evaluation.
+     *
+     * @return the compiled template
+     */
+    public Compiled getCompiled ()
+    {
+        final double foreWeight = constants.foreWeight.getValue();
+        final double backWeight = constants.backWeight.getValue();
+        final double holeWeight = constants.holeWeight.getValue();
+        Compiled c = compiled;
+
+        if ((c == null) || (c.foreWeight != foreWeight) || (c.backWeight != backWeight)
+                    || (c.holeWeight != holeWeight)) {
+            compiled = c = new Compiled(foreWeight, backWeight, holeWeight);
+        }
+
+        return c;
+    }
+
     //---------------------//
     // getForegroundPixels //
     //---------------------//
@@ -572,6 +530,7 @@ public class Template
                                  double dy)
     {
         offsets.put(anchor, new Point2D.Double(dx, dy));
+        compiled = null;
     }
 
     //----------//
@@ -599,6 +558,70 @@ public class Template
         return sb.append("}").toString();
     }
 
+    //-------------------//
+    // evaluateKeyPoints //
+    //-------------------//
+    /**
+     * Evaluate this template at location (x,y) in provided distances table, by browsing
+     * the key points list.
+     * <p>
+     * This is the reference implementation for {@link Compiled#evaluate}, kept for checking.
+     *
+     * @param x         pivot location abscissa
+     * @param y         pivot location ordinate
+     * @param anchor    pivot offset if any, WRT template upper left
+     * @param distances the distance table to use
+     * @return the weighted average distance computed on all template key positions
+     */
+    double evaluateKeyPoints (int x,
+                              int y,
+                              Anchor anchor,
+                              DistanceTable distances)
+    {
+        final Point ul = upperLeft(x, y, anchor);
+
+        // Loop through template key positions and read related distance.
+        // Compute the mean value on all distances read
+        final int imgWidth = distances.getWidth();
+        final int imgHeight = distances.getHeight();
+        final double foreWeight = constants.foreWeight.getValue();
+        final double backWeight = constants.backWeight.getValue();
+        final double holeWeight = constants.holeWeight.getValue();
+        double weights = 0; // Sum of weights
+        double total = 0; // Sum of weighted distances
+
+        for (PixelDistance pix : keyPoints) {
+            int nx = ul.x + pix.x;
+            int ny = ul.y + pix.y;
+
+            // Ignore tested point if located out of image
+            if ((nx >= 0) && (nx < imgWidth) && (ny >= 0) && (ny < imgHeight)) {
+                int actualDist = distances.getValue(nx, ny);
+
+                // Ignore neutralized locations in distance table
+                if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
+                    // pix.d < 0 for expected hole, expected negative distance to nearest foreground
+                    // pix.d == 0 for expected foreground, 0 distance
+                    // pix.d > 0 for expected background, expected distance to nearest foreground
+                    double weight = (pix.d == 0) ? foreWeight : ((pix.d > 0) ? backWeight
+                            : holeWeight);
+                    double expected = (pix.d == 0) ? 0 : 1;
+                    double actual = (actualDist == 0) ? 0 : 1;
+                    double dist = Math.abs(actual - expected);
+
+                    total += (weight * dist);
+                    weights += weight;
+                }
+            }
+        }
+
+        if (weights == 0) {
+            return Double.MAX_VALUE; // Safer
+        }
+
+        return total / weights;
+    }
+
     //-----------//
     // upperLeft //
     //-----------//
@@ -678,6 +701,282 @@ public class Template
     }
 
     //~ Inner Classes ------------------------------------------------------------------------------
+    //----------//
+    // Compiled //
+    //----------//
+    /**
+     * Compiled form of a template, meant for intensive evaluation.
+     * <p>
+     * Key points are stored in parallel primitive arrays, with weights resolved once for all,
+     * and the anchor offsets are pre-computed.
+     * When the whole template lies within the distance table, evaluation uses a fast path with
+     * no per-point bounds check.
+     * <p>
+     * Key points are browsed in the same order as in the template definition, so the computed
+     * values are identical to the key point based evaluation.
+     */
+    public class Compiled
+    {
+
+        /** Weight for expected foreground. */
+        private final double foreWeight;
+
+        /** Weight for expected exterior background. */
+        private final double backWeight;
+
+        /** Weight for expected interior background. */
+        private final double holeWeight;
+
+        /** Key points abscissa offsets. */
+        private final int[] dxs;
+
+        /** Key points ordinate offsets. */
+        private final int[] dys;
+
+        /** Key points weights. */
+        private final double[] weights;
+
+        /** Key points expected as foreground. */
+        private final boolean[] fores;
+
+        /** Hole key points abscissa offsets. */
+        private final int[] holeDxs;
+
+        /** Hole key points ordinate offsets. */
+        private final int[] holeDys;
+
+        /** Offset for each defined anchor, indexed by anchor ordinal. */
+        private final Point[] anchorOffsets = new Point[Anchor.values().length];
+
+        /** Bounds of all key points, relative to template upper left corner. */
+        private final int minDx;
+
+        private final int maxDx;
+
+        private final int minDy;
+
+        private final int maxDy;
+
+        Compiled (double foreWeight,
+                  double backWeight,
+                  double holeWeight)
+        {
+            this.foreWeight = foreWeight;
+            this.backWeight = backWeight;
+            this.holeWeight = holeWeight;
+
+            final int count = keyPoints.size();
+            dxs = new int[count];
+            dys = new int[count];
+            weights = new double[count];
+            fores = new boolean[count];
+
+            int holeCount = 0;
+
+            for (PixelDistance pix : keyPoints) {
+                if (pix.d < 0) {
+                    holeCount++;
+                }
+            }
+
+            holeDxs = new int[holeCount];
+            holeDys = new int[holeCount];
+
+            int xMin = 0;
+            int xMax = 0;
+            int yMin = 0;
+            int yMax = 0;
+            int h = 0;
+
+            for (int i = 0; i < count; i++) {
+                final PixelDistance pix = keyPoints.get(i);
+                dxs[i] = pix.x;
+                dys[i] = pix.y;
+                fores[i] = pix.d == 0;
+                weights[i] = (pix.d == 0) ? foreWeight : ((pix.d > 0) ? backWeight : holeWeight);
+
+                if (pix.d < 0) {
+                    holeDxs[h] = pix.x;
+                    holeDys[h] = pix.y;
+                    h++;
+                }
+
+                xMin = Math.min(xMin, pix.x);
+                xMax = Math.max(xMax, pix.x);
+                yMin = Math.min(yMin, pix.y);
+                yMax = Math.max(yMax, pix.y);
+            }
+
+            minDx = xMin;
+            maxDx = xMax;
+            minDy = yMin;
+            maxDy = yMax;
+
+            for (Anchor anchor : offsets.keySet()) {
+                anchorOffsets[anchor.ordinal()] = getOffset(anchor);
+            }
+        }
+
+        //----------//
+        // evaluate //
+        //----------//
+        /**
+         * Evaluate the template at location (x,y) in provided distances table.
+         * <p>
+         * Key points located out of image or on neutralized locations are ignored.
+         * Each remaining key point contributes its weight when actual pixel color (foreground or
+         * background) differs from expected color.
+         *
+         * @param x         pivot location abscissa
+         * @param y         pivot location ordinate
+         * @param anchor    pivot offset if any, WRT template upper left
+         * @param distances the distance table to use
+         * @return the weighted average distance computed on all template key positions
+         */
+        public double evaluate (int x,
+                                int y,
+                                Anchor anchor,
+                                DistanceTable distances)
+        {
+            final Point offset = offsetOf(anchor);
+            final int ulx = x - offset.x;
+            final int uly = y - offset.y;
+            final int imgWidth = distances.getWidth();
+            final int imgHeight = distances.getHeight();
+            double weightSum = 0; // Sum of weights
+            double total = 0; // Sum of weighted distances
+
+            if (isInside(ulx, uly, imgWidth, imgHeight)) {
+                // Fast path
+                for (int i = 0; i < dxs.length; i++) {
+                    final int actualDist = distances.getValue(ulx + dxs[i], uly + dys[i]);
+
+                    if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
+                        if ((actualDist == 0) != fores[i]) {
+                            total += weights[i];
+                        }
+
+                        weightSum += weights[i];
+                    }
+                }
+            } else {
+                // Border path
+                for (int i = 0; i < dxs.length; i++) {
+                    final int nx = ulx + dxs[i];
+                    final int ny = uly + dys[i];
+
+                    if ((nx >= 0) && (nx < imgWidth) && (ny >= 0) && (ny < imgHeight)) {
+                        final int actualDist = distances.getValue(nx, ny);
+
+                        if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
+                            if ((actualDist == 0) != fores[i]) {
+                                total += weights[i];
+                            }
+
+                            weightSum += weights[i];
+                        }
+                    }
+                }
+            }
+
+            if (weightSum == 0) {
+                return Double.MAX_VALUE; // Safer
+            }
+
+            return total / weightSum;
+        }
+
+        //--------------//
+        // evaluateHole //
+        //--------------//
+        /**
+         * Evaluate only the <b>hole</b> part of template, by measuring ratio of actual white
+         * over expected white in template hole.
+         *
+         * @param x         pivot location abscissa
+         * @param y         pivot location ordinate
+         * @param anchor    pivot offset if any, WRT template upper left
+         * @param distances the distance table to use
+         * @return ratio of actual white pixels over expected hole pixels
+         */
+        public double evaluateHole (int x,
+                                    int y,
+                                    Anchor anchor,
+                                    DistanceTable distances)
+        {
+            final Point offset = offsetOf(anchor);
+            final int ulx = x - offset.x;
+            final int uly = y - offset.y;
+            final int imgWidth = distances.getWidth();
+            final int imgHeight = distances.getHeight();
+            final boolean inside = isInside(ulx, uly, imgWidth, imgHeight);
+            int expectedHoles = 0; // Expected number of white pixels in hole
+            int actualHoles = 0; // Actual number of white pixels in hole
+
+            for (int i = 0; i < holeDxs.length; i++) {
+                final int nx = ulx + holeDxs[i];
+                final int ny = uly + holeDys[i];
+
+                if (inside || ((nx >= 0) && (nx < imgWidth) && (ny >= 0) && (ny < imgHeight))) {
+                    final int actualDist = distances.getValue(nx, ny);
+
+                    if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
+                        expectedHoles++;
+
+                        if (actualDist != 0) {
+                            actualHoles++;
+                        }
+                    }
+                }
+            }
+
+            if (expectedHoles == 0) {
+                return 0;
+            } else {
+                return (double) actualHoles / expectedHoles;
+            }
+        }
+
+        //-------------//
+        // getTemplate //
+        //-------------//
+        /**
+         * Report the underlying template.
+         *
+         * @return the template
+         */
+        public Template getTemplate ()
+        {
+            return Template.this;
+        }
+
+        //----------//
+        // isInside //
+        //----------//
+        private boolean isInside (int ulx,
+                                  int uly,
+                                  int imgWidth,
+                                  int imgHeight)
+        {
+            return ((ulx + minDx) >= 0) && ((ulx + maxDx) < imgWidth)
+                           && ((uly + minDy) >= 0) && ((uly + maxDy) < imgHeight);
+        }
+
+        //----------//
+        // offsetOf //
+        //----------//
+        private Point offsetOf (Anchor anchor)
+        {
+            if (anchor == null) {
+                return NO_OFFSET;
+            }
+
+            final Point offset = anchorOffsets[anchor.ordinal()];
+
+            return (offset != null) ? offset : getOffset(anchor);
+        }
+    }
+
     //-----------//
     // Constants //
     //-----------//
@@ -0,0 +1,438 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   T e m p l a t e C a c h e                                    //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.Anchored.Anchor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Class <code>TemplateCache</code> keeps template catalogs on disk, one file per point size,
+ * so that templates built once no longer have to be rebuilt at each application start.
+ * <p>
+ * A cache file is identified by a key string which gathers all the parameters the templates
+ * depend upon (font, point size, template constants, algorithm version).
+ * The full key is written in the file header and checked on load, so that any change in these
+ * parameters simply leads to the templates being rebuilt and the file being overwritten.
+ * <p>
+ * Layout, all numbers in big-endian order:
+ * <ol>
+ * <li>Magic number (4 bytes "TPC" + version)</li>
+ * <li>Key string</li>
+ * <li>Count of templates</li>
+ * <li>Index: for each template, its shape name and the absolute position of its record</li>
+ * <li>Records: for each template, its point size, width, height, slim bounds, anchor offsets
+ * and key points</li>
+ * </ol>
+ * Strings are written as a byte length followed by UTF-8 bytes.
+ * <p>
+ * A file is read at once into memory and only its index is decoded when it is loaded, each
+ * template record being decoded when its shape is first needed, see {@link View}.
+ * The file is not memory-mapped, since a mapping would lock it on Windows and prevent a later
+ * {@link #store} from replacing it.
+ *
+ * @author Hervé Bitteur
+ */
+public class TemplateCache
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateCache.class);
+
+    /** Magic number: "TPC" + format version. */
+    private static final int MAGIC = 0x54504301;
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Folder where cache files are kept. */
+    private final Path folder;
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>TemplateCache</code> object.
+     *
+     * @param folder folder where cache files are kept, created if needed
+     */
+    public TemplateCache (Path folder)
+    {
+        this.folder = folder;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //---------//
+    // getPath //
+    //---------//
+    /**
+     * Report the path to cache file for the provided key and point size.
+     *
+     * @param key       the key string
+     * @param pointSize the templates point size
+     * @return path to cache file, perhaps not existing
+     */
+    public Path getPath (String key,
+                         int pointSize)
+    {
+        return folder.resolve(
+                String.format(Locale.US, "templates-%d-%08x.bin", pointSize, key.hashCode()));
+    }
+
+    //------//
+    // load //
+    //------//
+    /**
+     * Load the cached templates for the provided key and point size, if any.
+     *
+     * @param key       the key string
+     * @param pointSize the templates point size
+     * @return a view on cached templates, or null if not found or no longer valid
+     */
+    public View load (String key,
+                      int pointSize)
+    {
+        final Path path = getPath(key, pointSize);
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+
+            if ((buffer.remaining() < 4) || (buffer.getInt() != MAGIC)) {
+                logger.info("Obsolete template cache {}", path);
+
+                return null;
+            }
+
+            if (!key.equals(getString(buffer))) {
+                logger.debug("Template cache {} built for other parameters", path);
+
+                return null;
+            }
+
+            return new View(buffer);
+        } catch (IOException |
+                 BufferUnderflowException |
+                 IllegalArgumentException ex) {
+            logger.warn("Could not load template cache {} {}", path, ex.toString());
+
+            return null;
+        }
+    }
+
+    //-------//
+    // store //
+    //-------//
+    /**
+     * Store the provided templates for the provided key and point size.
+     * <p>
+     * The file is written aside, then moved to its final path, so that a concurrent load never
+     * sees a partial file.
+     *
+     * @param key       the key string
+     * @param pointSize the templates point size
+     * @param templates the templates to store
+     * @throws IOException on IO error
+     */
+    public void store (String key,
+                       int pointSize,
+                       Collection<Template> templates)
+            throws IOException
+    {
+        // Records first, to know their positions
+        final List<Template> list = new ArrayList<>(templates);
+        final int[] positions = new int[list.size()];
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(records);
+
+        for (int i = 0; i < list.size(); i++) {
+            positions[i] = out.size();
+            putRecord(out, list.get(i));
+        }
+
+        out.flush();
+
+        // Header and index
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final DataOutputStream hdr = new DataOutputStream(header);
+        hdr.writeInt(MAGIC);
+        putString(hdr, key);
+        hdr.writeInt(list.size());
+
+        int indexSize = 0;
+
+        for (Template template : list) {
+            indexSize += (4 + utf8(template.getShape().name()).length + 4);
+        }
+
+        final int recordsStart = hdr.size() + indexSize;
+
+        for (int i = 0; i < list.size(); i++) {
+            putString(hdr, list.get(i).getShape().name());
+            hdr.writeInt(recordsStart + positions[i]);
+        }
+
+        hdr.flush();
+
+        // Write aside, then move
+        final Path path = getPath(key, pointSize);
+        Files.createDirectories(folder);
+
+        final Path tmp = Files.createTempFile(folder, path.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream file = new DataOutputStream(Files.newOutputStream(tmp))) {
+                header.writeTo(file);
+                records.writeTo(file);
+            }
+
+            try {
+                Files.move(
+                        tmp,
+                        path,
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        logger.debug("Stored {}", path);
+    }
+
+    //-----------//
+    // getRecord //
+    //-----------//
+    private static Template getRecord (ByteBuffer buf,
+                                       Shape shape)
+    {
+        final int pointSize = buf.getInt();
+        final int width = buf.getInt();
+        final int height = buf.getInt();
+        final Rectangle slimBounds = new Rectangle(
+                buf.getInt(),
+                buf.getInt(),
+                buf.getInt(),
+                buf.getInt());
+
+        final int offsetCount = buf.getInt();
+        final Map<Anchor, Point2D> offsets = new EnumMap<>(Anchor.class);
+
+        for (int i = 0; i < offsetCount; i++) {
+            final Anchor anchor = Anchor.valueOf(getString(buf));
+            offsets.put(anchor, new Point2D.Double(buf.getDouble(), buf.getDouble()));
+        }
+
+        final int pointCount = buf.getInt();
+        final List<PixelDistance> keyPoints = new ArrayList<>(pointCount);
+
+        for (int i = 0; i < pointCount; i++) {
+            keyPoints.add(new PixelDistance(buf.getInt(), buf.getInt(), buf.getDouble()));
+        }
+
+        final Template template = new Template(
+                shape,
+                pointSize,
+                width,
+                height,
+                keyPoints,
+                slimBounds);
+
+        for (Entry<Anchor, Point2D> entry : offsets.entrySet()) {
+            final Point2D offset = entry.getValue();
+            template.putOffset(entry.getKey(), offset.getX(), offset.getY());
+        }
+
+        return template;
+    }
+
+    //-----------//
+    // getString //
+    //-----------//
+    private static String getString (ByteBuffer buf)
+    {
+        final int length = buf.getInt();
+
+        if ((length < 0) || (length > buf.remaining())) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+
+        final byte[] bytes = new byte[length];
+        buf.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //-----------//
+    // putRecord //
+    //-----------//
+    private static void putRecord (DataOutputStream out,
+                                   Template template)
+            throws IOException
+    {
+        out.writeInt(template.getPointSize());
+        out.writeInt(template.getWidth());
+        out.writeInt(template.getHeight());
+
+        final Rectangle slim = template.getSlimBounds();
+        out.writeInt(slim.x);
+        out.writeInt(slim.y);
+        out.writeInt(slim.width);
+        out.writeInt(slim.height);
+
+        final Map<Anchor, Point2D> offsets = template.getOffsets();
+        out.writeInt(offsets.size());
+
+        for (Entry<Anchor, Point2D> entry : offsets.entrySet()) {
+            putString(out, entry.getKey().name());
+            out.writeDouble(entry.getValue().getX());
+            out.writeDouble(entry.getValue().getY());
+        }
+
+        final List<PixelDistance> keyPoints = template.getKeyPoints();
+        out.writeInt(keyPoints.size());
+
+        for (PixelDistance pix : keyPoints) {
+            out.writeInt(pix.x);
+            out.writeInt(pix.y);
+            out.writeDouble(pix.d);
+        }
+    }
+
+    //-----------//
+    // putString //
+    //-----------//
+    private static void putString (DataOutputStream out,
+                                   String str)
+            throws IOException
+    {
+        final byte[] bytes = utf8(str);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    //------//
+    // utf8 //
+    //------//
+    private static byte[] utf8 (String str)
+    {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //------//
+    // View //
+    //------//
+    /**
+     * A read-only view on a cache file, which decodes templates on demand.
+     * <p>
+     * Only the index is read when the view is created.
+     */
+    public static class View
+    {
+
+        /** Underlying binary data. */
+        private final ByteBuffer buffer;
+
+        /** Absolute buffer position of each template record. */
+        private final Map<Shape, Integer> positions = new EnumMap<>(Shape.class);
+
+        /**
+         * Create a view on cache data.
+         *
+         * @param buffer buffer positioned right after the key string
+         * @throws IllegalArgumentException if index is invalid
+         */
+        View (ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+
+            final int count = buffer.getInt();
+
+            for (int i = 0; i < count; i++) {
+                final Shape shape = Shape.valueOf(getString(buffer));
+                final int position = buffer.getInt();
+
+                if ((position < 0) || (position >= buffer.limit())) {
+                    throw new IllegalArgumentException("Invalid position for " + shape);
+                }
+
+                positions.put(shape, position);
+            }
+        }
+
+        /**
+         * Report the shapes of cached templates.
+         *
+         * @return the cached shapes
+         */
+        public Set<Shape> getShapes ()
+        {
+            return Collections.unmodifiableSet(positions.keySet());
+        }
+
+        /**
+         * Decode the cached template for the provided shape.
+         *
+         * @param shape the desired shape
+         * @return a new template instance, or null if shape is not cached
+         */
+        public Template getTemplate (Shape shape)
+        {
+            final Integer position = positions.get(shape);
+
+            if (position == null) {
+                return null;
+            }
+
+            final ByteBuffer buf = buffer.duplicate();
+            buf.position(position);
+
+            return getRecord(buf, shape);
+        }
+    }
+}
@@ -21,6 +21,7 @@
 // </editor-fold>
 package org.audiveris.omr.image;
 
+import org.audiveris.omr.WellKnowns;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.glyph.Shape;
@@ -33,6 +34,7 @@ import org.audiveris.omr.image.Anchored.Anchor;
 import org.audiveris.omr.math.GeoUtil;
 import org.audiveris.omr.math.TableUtil;
 import org.audiveris.omr.sheet.ui.TemplateView;
+import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.ui.symbol.Alignment;
 import org.audiveris.omr.ui.symbol.MusicFont;
 import org.audiveris.omr.ui.symbol.OmrFont;
@@ -40,7 +42,10 @@ import org.audiveris.omr.ui.symbol.ShapeSymbol;
 import org.audiveris.omr.ui.symbol.Symbols;
 import org.audiveris.omr.ui.symbol.TemplateSymbol;
 import org.audiveris.omr.ui.symbol.TextFont;
+import org.audiveris.omr.util.OmrScheduler;
+import org.audiveris.omr.util.StopWatch;
 import org.audiveris.omr.util.Table;
+import org.audiveris.omr.util.UriUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,8 +62,12 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.EnumMap;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -66,7 +75,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Class <code>TemplateFactory</code> builds needed instances of {@link Template} class
@@ -85,7 +99,9 @@ import java.util.TreeMap;
  * All cue notes (*_SMALL shapes) have background locations on upper and lower sides.
  * <p>
  * TODO: Support could be added for slightly different widths, if so needed?
- *
+ * <p>
+ * Since building a whole catalog is costly, catalogs are kept on disk by a {@link TemplateCache},
+ * keyed by the font file digest, the point size and the template constants.
  *
  * @author Hervé Bitteur
  */
@@ -97,6 +113,13 @@ public class TemplateFactory
 
     private static final Logger logger = LoggerFactory.getLogger(TemplateFactory.class);
 
+    /**
+     * Version of template building algorithm.
+     * To be incremented whenever a change in this class (or in the music font) modifies the
+     * resulting templates, so that cached catalogs get rebuilt.
+     */
+    private static final int ALGORITHM_VERSION = 1;
+
     /** Singleton. */
     private static final TemplateFactory INSTANCE = new TemplateFactory();
 
@@ -118,9 +141,15 @@ public class TemplateFactory
     /** Color for irrelevant pixels. */
     private static final int IRRELEVANT = new Color(0, 0, 0, 0).getRGB(); // Fully transparent
 
+    /** Digest of music font file, lazily computed. Empty if font file could not be read. */
+    private static String fontDigest;
+
     //~ Instance fields ----------------------------------------------------------------------------
     /** All catalogs allocated so far, mapped by point size. */
-    private final Map<Integer, Catalog> catalogs;
+    private final ConcurrentMap<Integer, Future<Catalog>> catalogs;
+
+    /** On-disk cache of catalogs, if any. */
+    private final TemplateCache cache;
 
     //~ Constructors -------------------------------------------------------------------------------
     /**
@@ -128,7 +157,19 @@ public class TemplateFactory
      */
     private TemplateFactory ()
     {
-        catalogs = new TreeMap<>();
+        this(constants.useTemplateCache.isSet()
+                ? new TemplateCache(WellKnowns.TEMP_FOLDER.resolve("templates")) : null);
+    }
+
+    /**
+     * Creates a factory which uses the provided on-disk cache.
+     *
+     * @param cache the catalog cache, or null for no cache
+     */
+    TemplateFactory (TemplateCache cache)
+    {
+        this.cache = cache;
+        catalogs = new ConcurrentHashMap<>();
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -137,25 +178,42 @@ public class TemplateFactory
     //------------//
     /**
      * Report the template catalog dedicated to the provided pointSize.
+     * <p>
+     * A missing catalog is built by the first calling thread, without holding any lock, while
+     * other callers for the same point size wait for it.
      *
      * @param pointSize provided point size
      * @return the catalog of all templates for the point size value
      */
     public Catalog getCatalog (int pointSize)
     {
-        Catalog catalog = catalogs.get(pointSize);
+        Future<Catalog> future = catalogs.get(pointSize);
 
-        if (catalog == null) {
-            synchronized (catalogs) {
-                catalog = catalogs.get(pointSize);
+        if (future == null) {
+            final FutureTask<Catalog> task = new FutureTask<>(() -> new Catalog(pointSize));
+            future = catalogs.putIfAbsent(pointSize, task);
 
-                if (catalog == null) {
-                    catalogs.put(pointSize, catalog = new Catalog(pointSize));
-                }
+            if (future == null) {
+                future = task;
+                task.run();
             }
         }
 
-        return catalog;
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            catalogs.remove(pointSize, future); // To allow a new attempt
+
+            final Throwable cause = ex.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new RuntimeException(cause);
+        }
     }
 
     //-------------//
@@ -547,14 +605,13 @@ public class TemplateFactory
      *
      * @param shape     shape of the template
      * @param pointSize precise scaling for font
+     * @param font      the music font for pointSize
      * @return the brand new template
      */
     private Template buildTemplate (Shape shape,
-                                    int pointSize)
+                                    int pointSize,
+                                    MusicFont font)
     {
-        int interline = (pointSize + 2) / 4; // Approximate value
-        MusicFont font = MusicFont.getPointFont(pointSize, interline);
-
         // Get symbol image painted on template rectangle
         final TemplateSymbol symbol = new TemplateSymbol(shape, getCode(shape));
         final BufferedImage img = symbol.buildImage(font); // Gray pixels
@@ -715,6 +772,82 @@ public class TemplateFactory
         return borders;
     }
 
+    //-------------//
+    // getCacheKey //
+    //-------------//
+    /**
+     * Report the key of cached catalog for the provided point size.
+     * <p>
+     * It gathers all parameters which impact the templates, so that a change in any of them
+     * invalidates the cached catalog.
+     *
+     * @param pointSize the catalog point size
+     * @return the cache key, or null if font file cannot be identified
+     */
+    private static String getCacheKey (int pointSize)
+    {
+        final String digest = getFontDigest();
+
+        if (digest.isEmpty()) {
+            return null;
+        }
+
+        return String.format(
+                Locale.US,
+                "version:%d font:%s digest:%s pointSize:%d threshold:%d stemDx:%s stemDy:%s"
+                        + " small:%s",
+                ALGORITHM_VERSION,
+                MusicFont.FONT_NAME,
+                digest,
+                pointSize,
+                constants.binarizationThreshold.getValue(),
+                constants.stemDx.getValue(),
+                constants.stemDy.getValue(),
+                Template.smallRatio);
+    }
+
+    //---------------//
+    // getFontDigest //
+    //---------------//
+    /**
+     * Report the SHA-256 digest of music font file, so that a font update invalidates the
+     * cached catalogs even if the font name is unchanged.
+     *
+     * @return the hexadecimal digest, or empty string if font file could not be read
+     */
+    private static synchronized String getFontDigest ()
+    {
+        if (fontDigest == null) {
+            fontDigest = "";
+
+            final String fileName = MusicFont.FONT_NAME + ".ttf";
+
+            try (InputStream input = UriUtil.toURI(WellKnowns.RES_URI, fileName).toURL()
+                    .openStream()) {
+                final MessageDigest md = MessageDigest.getInstance("SHA-256");
+                final byte[] buffer = new byte[8192];
+
+                for (int n; (n = input.read(buffer)) > 0;) {
+                    md.update(buffer, 0, n);
+                }
+
+                final StringBuilder sb = new StringBuilder();
+
+                for (byte b : md.digest()) {
+                    sb.append(String.format("%02x", b & 0xFF));
+                }
+
+                fontDigest = sb.toString();
+            } catch (IOException |
+                     NoSuchAlgorithmException ex) {
+                logger.warn("Could not digest font file {}, templates not cached {}",
+                            fileName, ex.toString());
+            }
+        }
+
+        return fontDigest;
+    }
+
     //---------//
     // getCode //
     //---------//
@@ -943,6 +1076,9 @@ public class TemplateFactory
     //---------//
     /**
      * Handles all templates for a given pointSize value.
+     * <p>
+     * Templates are loaded from the on-disk cache if available, each template being decoded on
+     * first use. Otherwise they are all built, in parallel, and then stored into the cache.
      */
     public class Catalog
     {
@@ -950,8 +1086,11 @@ public class TemplateFactory
         /** Point size value for this catalog. */
         final int pointSize;
 
-        /** Map of all templates for this catalog. */
-        final Map<Shape, Template> templates = new EnumMap<>(Shape.class);
+        /** Map of all templates instantiated so far for this catalog. */
+        final Map<Shape, Template> templates = new ConcurrentHashMap<>();
+
+        /** Cached templates, if any. */
+        private final TemplateCache.View cached;
 
         /**
          * Create a <code>Catalog</code> object.
@@ -961,7 +1100,36 @@ public class TemplateFactory
         public Catalog (int pointSize)
         {
             this.pointSize = pointSize;
-            buildAllTemplates();
+
+            final String key = (cache != null) ? getCacheKey(pointSize) : null;
+            cached = (key != null) ? cache.load(key, pointSize) : null;
+
+            if (cached == null) {
+                buildAllTemplates();
+
+                if (key != null) {
+                    try {
+                        cache.store(key, pointSize, templates.values());
+                    } catch (IOException ex) {
+                        logger.warn("Could not store templates for pointSize {} {}",
+                                    pointSize, ex.toString());
+                    }
+                }
+            }
+        }
+
+        //-----------//
+        // getShapes //
+        //-----------//
+        /**
+         * Report the shapes handled by this catalog.
+         *
+         * @return the template shapes
+         */
+        public Set<Shape> getShapes ()
+        {
+            return (cached != null) ? cached.getShapes()
+                    : Collections.unmodifiableSet(EnumSet.copyOf(templates.keySet()));
         }
 
         //-------------//
@@ -971,20 +1139,65 @@ public class TemplateFactory
          * Report the template for the given shape.
          *
          * @param shape desired shape
-         * @return the template (not null, since all have been constructed)
+         * @return the template (null only if shape is not handled by this catalog)
          */
         public Template getTemplate (Shape shape)
         {
-            return templates.get(shape);
+            final Template template = templates.get(shape);
+
+            if ((template != null) || (cached == null)) {
+                return template;
+            }
+
+            // Decode cached template on first use
+            return templates.computeIfAbsent(shape, s -> cached.getTemplate(s));
         }
 
         //-------------------//
         // buildAllTemplates //
         //-------------------//
+        /**
+         * Build the templates for all note shapes, one task per shape.
+         */
         private void buildAllTemplates ()
         {
-            for (Shape shape : ShapeSet.getTemplateNotes(null)) {
-                templates.put(shape, buildTemplate(shape, pointSize));
+            final StopWatch watch = new StopWatch("Templates " + pointSize);
+            watch.start("build");
+
+            // Font retrieval is not thread-safe, hence done once upfront
+            final int interline = (pointSize + 2) / 4; // Approximate value
+            final MusicFont font = MusicFont.getPointFont(pointSize, interline);
+
+            if (constants.keepTemplates.isSet()) {
+                // Decorated images need their own fonts, so stay sequential
+                for (Shape shape : ShapeSet.getTemplateNotes(null)) {
+                    templates.put(shape, buildTemplate(shape, pointSize, font));
+                }
+            } else {
+                final List<Callable<Template>> tasks = new ArrayList<>();
+
+                for (Shape shape : ShapeSet.getTemplateNotes(null)) {
+                    tasks.add(() -> buildTemplate(shape, pointSize, font));
+                }
+
+                try {
+                    for (Future<Template> future : OmrScheduler.invokeAll(
+                            OmrScheduler.Level.COMPUTE,
+                            tasks)) {
+                        final Template template = future.get();
+                        templates.put(template.getShape(), template);
+                    }
+                } catch (InterruptedException ex) {
+                    logger.warn("Templates building got interrupted");
+                    throw new ProcessingCancellationException(ex);
+                } catch (ExecutionException ex) {
+                    logger.warn("Exception raised in templates building", ex.getCause());
+                    throw new RuntimeException(ex.getCause());
+                }
+            }
+
+            if (logger.isDebugEnabled()) {
+                watch.print();
             }
         }
     }
@@ -1000,6 +1213,10 @@ public class TemplateFactory
                 false,
                 "Should we save the templates images to disk?");
 
+        private final Constant.Boolean useTemplateCache = new Constant.Boolean(
+                true,
+                "Should we keep template catalogs on disk?");
+
         private final Constant.Integer binarizationThreshold = new Constant.Integer(
                 "pixel",
                 140,
@@ -22,7 +22,10 @@
 package org.audiveris.omr.math;
 
 import org.audiveris.omr.classifier.TrainingMonitor;
+import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.util.Jaxb;
+import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,7 +33,14 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -56,6 +66,10 @@ import javax.xml.stream.XMLStreamException;
  * <p>
  * The class also allows in-memory {@link #backup} and {@link #restore} operation, mainly used to
  * save the most efficient weight values during the network training.
+ * <p>
+ * Training is by default performed pattern per pattern.
+ * If a mini-batch size is set, patterns are shuffled at each epoch and weights are updated once
+ * per mini-batch, the gradients of a mini-batch being computed by parallel shards of patterns.
  *
  * @author Hervé Bitteur
  */
@@ -71,6 +85,12 @@ public class NeuralNetwork
     /** Un/marshalling context for use with JAXB. */
     private static volatile JAXBContext jaxbContext;
 
+    /** Number of patterns processed together in a batch run, to keep weights in cache. */
+    private static final int BATCH_BLOCK = 64;
+
+    /** Number of patterns per shard of a training mini-batch. */
+    private static final int SHARD_SIZE = 32;
+
     //~ Instance fields ----------------------------------------------------------------------------
     /** Size of input layer. */
     @XmlAttribute(name = "input-size")
@@ -111,9 +131,18 @@ public class NeuralNetwork
     /** Default number of epochs when training. */
     private transient volatile int epochs = 10;
 
+    /** Number of patterns per training mini-batch, or 0 for pattern per pattern training. */
+    private transient volatile int miniBatchSize = 0;
+
+    /** Seed for initial weights and training shuffle, or 0 for no fixed seed. */
+    private transient volatile long seed = 0;
+
     /** To trigger training stop. */
     private transient volatile boolean stopping = false;
 
+    /** Flattened weights for batch runs, built lazily, discarded when weights change. */
+    private transient volatile FlatWeights flatWeights;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Create a neural network, with specified number of cells in each
@@ -132,19 +161,45 @@ public class NeuralNetwork
                           double amplitude,
                           String[] inputLabels,
                           String[] outputLabels)
+    {
+        this(inputSize, hiddenSize, outputSize, amplitude, inputLabels, outputLabels, 0);
+    }
+
+    /**
+     * Create a neural network, with specified number of cells in each
+     * layer, and initial random weights drawn from the provided seed.
+     *
+     * @param inputSize    number of cells in input layer
+     * @param hiddenSize   number of cells in hidden layer
+     * @param outputSize   number of cells in output layer
+     * @param amplitude    amplitude (less than or = 1.0) for initial random values
+     * @param inputLabels  array of labels for input cells, perhaps empty
+     * @param outputLabels array of labels for output cells, perhaps empty
+     * @param seed         seed for initial weights and for shuffling, or 0 for no fixed seed
+     */
+    public NeuralNetwork (int inputSize,
+                          int hiddenSize,
+                          int outputSize,
+                          double amplitude,
+                          String[] inputLabels,
+                          String[] outputLabels,
+                          long seed)
     {
         // Cache parameters
         this.inputSize = inputSize;
         this.hiddenSize = hiddenSize;
         this.outputSize = outputSize;
+        this.seed = seed;
+
+        final Random random = (seed != 0) ? new Random(seed) : new Random();
 
         // Allocate weights (from input) to hidden layer
         // +1 for bias
-        hiddenWeights = createMatrix(hiddenSize, inputSize + 1, amplitude);
+        hiddenWeights = createMatrix(hiddenSize, inputSize + 1, amplitude, random);
 
         // Allocate weights (from hidden) to output layer
         // +1 for bias
-        outputWeights = createMatrix(outputSize, hiddenSize + 1, amplitude);
+        outputWeights = createMatrix(outputSize, hiddenSize + 1, amplitude, random);
 
         // Labels for input, if any
         this.inputLabels = new StringArray(inputLabels);
@@ -189,7 +244,46 @@ public class NeuralNetwork
                           double momentum,
                           int epochs)
     {
-        this(inputSize, hiddenSize, outputSize, amplitude, inputLabels, outputLabels);
+        this(
+                inputSize,
+                hiddenSize,
+                outputSize,
+                amplitude,
+                inputLabels,
+                outputLabels,
+                learningRate,
+                momentum,
+                epochs,
+                0);
+    }
+
+    /**
+     * Create a neural network, with specified number of cells in each
+     * layer, specific parameters and a seed for initial random weights.
+     *
+     * @param inputSize    number of cells in input layer
+     * @param hiddenSize   number of cells in hidden layer
+     * @param outputSize   number of cells in output layer
+     * @param amplitude    amplitude (less than or = 1.0) for initial random values
+     * @param inputLabels  array of labels for input cells, perhaps empty
+     * @param outputLabels array of labels for output cells, perhaps empty
+     * @param learningRate learning rate factor
+     * @param momentum     momentum from last adjustment
+     * @param epochs       number of epochs in training
+     * @param seed         seed for initial weights and for shuffling, or 0 for no fixed seed
+     */
+    public NeuralNetwork (int inputSize,
+                          int hiddenSize,
+                          int outputSize,
+                          double amplitude,
+                          String[] inputLabels,
+                          String[] outputLabels,
+                          double learningRate,
+                          double momentum,
+                          int epochs,
+                          long seed)
+    {
+        this(inputSize, hiddenSize, outputSize, amplitude, inputLabels, outputLabels, seed);
 
         // Cache parameters
         this.learningRate = learningRate;
@@ -366,6 +460,7 @@ public class NeuralNetwork
         logger.debug("Network memory restore");
         this.hiddenWeights = cloneMatrix(backup.hiddenWeights);
         this.outputWeights = cloneMatrix(backup.outputWeights);
+        flatWeights = null;
     }
 
     //-----//
@@ -420,6 +515,51 @@ public class NeuralNetwork
         return outputs;
     }
 
+    //----------//
+    // runBatch //
+    //----------//
+    /**
+     * Run the neural network on a batch of input patterns, and return the computed output
+     * values.
+     * <p>
+     * Patterns are stored row-major in a flat array, and so are weights, so that each block of
+     * patterns is processed against each weight row while it is still in cache.
+     * The sums are performed in the same order as {@link #run}, hence the outputs are identical.
+     *
+     * @param inputs  the input values, pattern after pattern (count * inputSize values)
+     * @param count   the number of patterns
+     * @param outputs preallocated array for the output values (count * outputSize values), or
+     *                null if not already allocated
+     * @return the computed output values, pattern after pattern
+     */
+    public double[] runBatch (double[] inputs,
+                              int count,
+                              double[] outputs)
+    {
+        Objects.requireNonNull(inputs, "inputs array is null");
+
+        if (inputs.length < (count * inputSize)) {
+            throw new IllegalArgumentException(
+                    "runBatch method. input size " + inputs.length
+                            + " too small for " + count + " patterns of " + inputSize);
+        }
+
+        if (outputs == null) {
+            outputs = new double[count * outputSize];
+        } else if (outputs.length < (count * outputSize)) {
+            throw new IllegalArgumentException(
+                    "runBatch method. output size " + outputs.length
+                            + " too small for " + count + " patterns of " + outputSize);
+        }
+
+        final FlatWeights flat = getFlatWeights();
+        final double[] hiddens = new double[count * hiddenSize];
+        forwardBatch(inputs, inputSize, count, flat.hidden, hiddenSize, hiddens);
+        forwardBatch(hiddens, hiddenSize, count, flat.output, outputSize, outputs);
+
+        return outputs;
+    }
+
     //-----------//
     // setEpochs //
     //-----------//
@@ -447,6 +587,21 @@ public class NeuralNetwork
         this.learningRate = learningRate;
     }
 
+    //------------------//
+    // setMiniBatchSize //
+    //------------------//
+    /**
+     * Set the number of patterns per training mini-batch.
+     * <p>
+     * With mini-batches, the learning rate applies to the mean gradient of each mini-batch.
+     *
+     * @param miniBatchSize number of patterns, or 0 for pattern per pattern training
+     */
+    public void setMiniBatchSize (int miniBatchSize)
+    {
+        this.miniBatchSize = miniBatchSize;
+    }
+
     //-------------//
     // setMomentum //
     //-------------//
@@ -460,6 +615,22 @@ public class NeuralNetwork
         this.momentum = momentum;
     }
 
+    //---------//
+    // setSeed //
+    //---------//
+    /**
+     * Set the seed for shuffling patterns in mini-batch training.
+     * <p>
+     * With a fixed seed, training from the same weights on the same patterns gives the same
+     * weights, whatever the parallelism.
+     *
+     * @param seed the seed value, or 0 for no fixed seed
+     */
+    public void setSeed (long seed)
+    {
+        this.seed = seed;
+    }
+
     //------//
     // stop //
     //------//
@@ -488,6 +659,7 @@ public class NeuralNetwork
                        int iterPeriod)
     {
         stopping = false;
+        flatWeights = null;
 
         Objects.requireNonNull(inputs, "inputs array is null");
         Objects.requireNonNull(desiredOutputs, "desiredOutputs array is null");
@@ -495,116 +667,140 @@ public class NeuralNetwork
 
         final int patterns = inputs.length;
         final long startTime = System.currentTimeMillis();
+        final int done = (miniBatchSize > 0)
+                ? trainMiniBatches(inputs, desiredOutputs, listener, iterPeriod)
+                : trainPatterns(inputs, desiredOutputs, listener, iterPeriod);
 
-        // Allocate needed arrays
-        final double[] gottenOutputs = new double[outputSize];
-        final double[] hiddenGrads = new double[hiddenSize];
-        final double[] outputGrads = new double[outputSize];
-        final double[][] hiddenDeltas = createMatrix(hiddenSize, inputSize + 1, 0);
-        final double[][] outputDeltas = createMatrix(outputSize, hiddenSize + 1, 0);
-        final double[] hiddens = new double[hiddenSize];
-        int iter = 0;
+        final long dur = System.currentTimeMillis() - startTime;
+        logger.info(String.format("Duration %,d seconds, %d iterations on %d patterns", dur / 1_000,
+                                  done, patterns));
+        logger.info(
+                String.format(
+                        "%.2f epochs/s, accuracy %.2f%%",
+                        (1_000.0 * done) / Math.max(1, dur),
+                        100 * accuracy(inputs, desiredOutputs)));
+        stopping = false;
+        flatWeights = null;
+    }
 
-        for (int ie = 1; ie <= epochs; ie++) {
-            iter++; // For this old engine, iter = epoch
+    //----------//
+    // accuracy //
+    //----------//
+    /**
+     * Report the ratio of patterns whose highest output is the desired one.
+     *
+     * @param inputs         the provided patterns of values for input cells
+     * @param desiredOutputs the corresponding desired values for output cells
+     * @return the ratio of correct patterns, in [0..1] range
+     */
+    private double accuracy (double[][] inputs,
+                             double[][] desiredOutputs)
+    {
+        final int patterns = inputs.length;
+        final int chunk = Math.min(patterns, 1_024);
+        final double[] ins = new double[chunk * inputSize];
+        final double[] outs = new double[chunk * outputSize];
+        int correct = 0;
 
-            if (listener != null) {
-                listener.epochStarted(ie);
+        for (int p0 = 0; p0 < patterns; p0 += chunk) {
+            final int count = Math.min(chunk, patterns - p0);
+
+            for (int p = 0; p < count; p++) {
+                System.arraycopy(inputs[p0 + p], 0, ins, p * inputSize, inputSize);
             }
 
-            // Loop on all input patterns
-            for (int ip = 0; ip < patterns; ip++) {
-                // Run the network with input values and current weights
-                run(inputs[ip], hiddens, gottenOutputs);
+            runBatch(ins, count, outs);
 
-                // Compute the output layer error terms
-                for (int io = outputSize - 1; io >= 0; io--) {
-                    double out = gottenOutputs[io];
-                    double dif = desiredOutputs[ip][io] - out;
-                    ///outputGrads[io] = dif * out * (1 - out); // Sigmoid'
-                    outputGrads[io] = dif * sigmoidDif(out); // Sigmoid'
-                    ///outputGrads[io] = dif * reluDif(out); // ReLU'
-                }
-
-                // Compute the hidden layer error terms
-                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                    double sum = 0;
-                    double hid = hiddens[ih];
+            for (int p = 0; p < count; p++) {
+                final double[] desired = desiredOutputs[p0 + p];
+                int best = 0;
+                int bestDesired = 0;
 
-                    for (int o = outputSize - 1; o >= 0; o--) {
-                        sum += (outputGrads[o] * outputWeights[o][ih + 1]);
+                for (int o = 1; o < outputSize; o++) {
+                    if (outs[(p * outputSize) + o] > outs[(p * outputSize) + best]) {
+                        best = o;
                     }
 
-                    ///hiddenGrads[h] = sum * hid * (1 - hid); // Sigmoid'
-                    hiddenGrads[ih] = sum * sigmoidDif(hid); // Sigmoid'
-                    ///hiddenGrads[h] = sum * reluDif(hid); // ReLU'
-                }
-
-                // Update the output weights
-                for (int io = outputSize - 1; io >= 0; io--) {
-                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                        double dw = (learningRate * outputGrads[io] * hiddens[ih]) + (momentum
-                                                                                              * outputDeltas[io][ih
-                                                                                                                 + 1]);
-                        outputWeights[io][ih + 1] += dw;
-                        outputDeltas[io][ih + 1] = dw;
+                    if (desired[o] > desired[bestDesired]) {
+                        bestDesired = o;
                     }
-
-                    // Bias
-                    double dw = (learningRate * outputGrads[io]) + (momentum * outputDeltas[io][0]);
-                    outputWeights[io][0] += dw;
-                    outputDeltas[io][0] = dw;
                 }
 
-                // Update the hidden weights
-                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                    for (int i = inputSize - 1; i >= 0; i--) {
-                        double dw = (learningRate * hiddenGrads[ih] * inputs[ip][i]) + (momentum
-                                                                                                * hiddenDeltas[ih][i
-                                                                                                                   + 1]);
-                        hiddenWeights[ih][i + 1] += dw;
-                        hiddenDeltas[ih][i + 1] = dw;
-                    }
-
-                    // Bias
-                    double dw = (learningRate * hiddenGrads[ih]) + (momentum * hiddenDeltas[ih][0]);
-                    hiddenWeights[ih][0] += dw;
-                    hiddenDeltas[ih][0] = dw;
+                if (best == bestDesired) {
+                    correct++;
                 }
             }
+        }
 
-            if (listener != null) {
-                if ((iter % iterPeriod) == 0) {
-                    double mse = 0d; // Mean Squared Error
-
-                    for (int ip = 0; ip < patterns; ip++) {
-                        final double[] patternDesiredOutputs = desiredOutputs[ip];
-                        run(inputs[ip], hiddens, gottenOutputs);
-
-                        for (int o = outputSize - 1; o >= 0; o--) {
-                            double out = gottenOutputs[o];
-                            double dif = patternDesiredOutputs[o] - out;
-                            mse += (dif * dif);
-                        }
-                    }
+        return (patterns == 0) ? 0 : ((double) correct / patterns);
+    }
 
-                    mse /= patterns;
-                    listener.iterationPeriodDone(iter, mse);
-                }
+    //---------------//
+    // computeShards //
+    //---------------//
+    /**
+     * Compute the gradients of a mini-batch, shard by shard, in parallel if allowed.
+     *
+     * @param shards         the shards available
+     * @param count          the number of shards needed for this mini-batch
+     * @param inputs         the provided patterns of values for input cells
+     * @param desiredOutputs the corresponding desired values for output cells
+     * @param order          the shuffled pattern indices
+     * @param b0             index in order of first mini-batch pattern
+     * @param b1             index in order past last mini-batch pattern
+     * @param hidden         current weights to hidden layer, as a flat array
+     * @param output         current weights to output layer, as a flat array
+     */
+    private void computeShards (Shard[] shards,
+                                int count,
+                                double[][] inputs,
+                                double[][] desiredOutputs,
+                                int[] order,
+                                int b0,
+                                int b1,
+                                double[] hidden,
+                                double[] output)
+    {
+        if ((OmrExecutors.defaultParallelism.getValue() == false) || (count == 1)) {
+            for (int is = 0; is < count; is++) {
+                final int from = b0 + (is * SHARD_SIZE);
+                shards[is].compute(
+                        inputs,
+                        desiredOutputs,
+                        order,
+                        from,
+                        Math.min(b1, from + SHARD_SIZE),
+                        hidden,
+                        output);
             }
 
-            // Stop required?
-            if (stopping) {
-                logger.info("Stopping.");
+            return;
+        }
 
-                break;
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>(count);
+
+            for (int is = 0; is < count; is++) {
+                final Shard shard = shards[is];
+                final int from = b0 + (is * SHARD_SIZE);
+                final int to = Math.min(b1, from + SHARD_SIZE);
+                tasks.add(() -> {
+                    shard.compute(inputs, desiredOutputs, order, from, to, hidden, output);
+
+                    return null;
+                });
             }
-        }
 
-        final long dur = System.currentTimeMillis() - startTime;
-        logger.info(String.format("Duration %,d seconds, %d iterations on %d patterns", dur / 1_000,
-                                  epochs, patterns));
-        stopping = false;
+            for (Future<Void> future : OmrScheduler.invokeAll(OmrScheduler.Level.COMPUTE, tasks)) {
+                future.get(); // To propagate any exception
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("NeuralNetwork training got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            logger.warn("Exception raised in NeuralNetwork training", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
     }
 
     //------------//
@@ -674,6 +870,97 @@ public class NeuralNetwork
         }
     }
 
+    //--------------//
+    // forwardBatch //
+    //--------------//
+    /**
+     * Batch version of {@link #forward}, on flat row-major arrays.
+     *
+     * @param ins     input cells, pattern after pattern
+     * @param inSize  number of input cells per pattern
+     * @param count   number of patterns
+     * @param weights applied weights, row after row (outSize rows of 1 + inSize values)
+     * @param outSize number of output cells per pattern
+     * @param outs    output cells, pattern after pattern
+     */
+    private void forwardBatch (double[] ins,
+                               int inSize,
+                               int count,
+                               double[] weights,
+                               int outSize,
+                               double[] outs)
+    {
+        final int rowLength = inSize + 1;
+
+        for (int b0 = 0; b0 < count; b0 += BATCH_BLOCK) {
+            final int b1 = Math.min(count, b0 + BATCH_BLOCK);
+
+            for (int o = outSize - 1; o >= 0; o--) {
+                final int w0 = o * rowLength;
+
+                for (int b = b0; b < b1; b++) {
+                    final int in0 = b * inSize;
+                    double sum = 0;
+
+                    for (int i = inSize - 1; i >= 0; i--) {
+                        sum += (weights[w0 + i + 1] * ins[in0 + i]);
+                    }
+
+                    // Bias
+                    sum += weights[w0];
+
+                    outs[(b * outSize) + o] = sigmoid(sum);
+                }
+            }
+        }
+    }
+
+    //----------------//
+    // getFlatWeights //
+    //----------------//
+    private FlatWeights getFlatWeights ()
+    {
+        FlatWeights flat = flatWeights;
+
+        if (flat == null) {
+            flatWeights = flat = new FlatWeights(flatten(hiddenWeights), flatten(outputWeights));
+        }
+
+        return flat;
+    }
+
+    //------------------//
+    // meanSquaredError //
+    //------------------//
+    /**
+     * Report the mean squared error of the network on the provided patterns.
+     *
+     * @param inputs         the provided patterns of values for input cells
+     * @param desiredOutputs the corresponding desired values for output cells
+     * @return the sum of squared output errors, averaged on patterns
+     */
+    private double meanSquaredError (double[][] inputs,
+                                     double[][] desiredOutputs)
+    {
+        final int patterns = inputs.length;
+        final double[] hiddens = new double[hiddenSize];
+        final double[] gottenOutputs = new double[outputSize];
+        double mse = 0d; // Mean Squared Error
+
+        for (int ip = 0; ip < patterns; ip++) {
+            final double[] patternDesiredOutputs = desiredOutputs[ip];
+            run(inputs[ip], hiddens, gottenOutputs);
+
+            for (int o = outputSize - 1; o >= 0; o--) {
+                double out = gottenOutputs[o];
+                double dif = patternDesiredOutputs[o] - out;
+                mse += (dif * dif);
+            }
+        }
+
+        return mse / patterns;
+    }
+
     private double relu (double val)
     {
         return Math.max(0, val);
@@ -703,6 +990,241 @@ public class NeuralNetwork
         return val * (1 - val);
     }
 
+    //------------------//
+    // trainMiniBatches //
+    //------------------//
+    /**
+     * Train the network by mini-batches, weights being updated after each mini-batch.
+     * <p>
+     * Patterns are shuffled at each epoch.
+     * Each mini-batch is split into shards of {@link #SHARD_SIZE} patterns, whose gradients are
+     * computed in parallel, each shard with its own flat arrays.
+     * Shard gradients are then summed in shard order, so that the result does not depend on
+     * parallelism.
+     *
+     * @param inputs         the provided patterns of values for input cells
+     * @param desiredOutputs the corresponding desired values for output cells
+     * @param listener       listener to be kept informed, perhaps null
+     * @param iterPeriod     period for iteration notification
+     * @return the number of epochs performed
+     */
+    private int trainMiniBatches (double[][] inputs,
+                                  double[][] desiredOutputs,
+                                  TrainingMonitor listener,
+                                  int iterPeriod)
+    {
+        final int patterns = inputs.length;
+        final int batchSize = Math.max(1, Math.min(miniBatchSize, patterns));
+        final Random random = (seed != 0) ? new Random(seed) : new Random();
+        final int[] order = new int[patterns];
+
+        for (int ip = 0; ip < patterns; ip++) {
+            order[ip] = ip;
+        }
+
+        // Working weights and previous moves, as flat row-major arrays
+        final double[] hidden = flatten(hiddenWeights);
+        final double[] output = flatten(outputWeights);
+        final double[] hiddenDeltas = new double[hidden.length];
+        final double[] outputDeltas = new double[output.length];
+
+        final Shard[] shards = new Shard[(batchSize + SHARD_SIZE - 1) / SHARD_SIZE];
+
+        for (int is = 0; is < shards.length; is++) {
+            shards[is] = new Shard();
+        }
+
+        int ie;
+
+        for (ie = 1; ie <= epochs; ie++) {
+            if (listener != null) {
+                listener.epochStarted(ie);
+            }
+
+            // Fisher-Yates shuffle
+            for (int ip = patterns - 1; ip > 0; ip--) {
+                final int j = random.nextInt(ip + 1);
+                final int tmp = order[ip];
+                order[ip] = order[j];
+                order[j] = tmp;
+            }
+
+            for (int b0 = 0; b0 < patterns; b0 += batchSize) {
+                final int b1 = Math.min(patterns, b0 + batchSize);
+                final int count = (b1 - b0 + SHARD_SIZE - 1) / SHARD_SIZE;
+                computeShards(shards, count, inputs, desiredOutputs, order, b0, b1, hidden, output);
+
+                // Sum shard gradients into first shard
+                final Shard sum = shards[0];
+
+                for (int is = 1; is < count; is++) {
+                    addTo(shards[is].hiddenGradients, sum.hiddenGradients);
+                    addTo(shards[is].outputGradients, sum.outputGradients);
+                }
+
+                final double rate = learningRate / (b1 - b0);
+                update(hidden, hiddenDeltas, sum.hiddenGradients, rate);
+                update(output, outputDeltas, sum.outputGradients, rate);
+            }
+
+            // Publish the new weights
+            unflatten(hidden, hiddenWeights);
+            unflatten(output, outputWeights);
+            flatWeights = null;
+
+            if ((listener != null) && ((ie % iterPeriod) == 0)) {
+                listener.iterationPeriodDone(ie, meanSquaredError(inputs, desiredOutputs));
+            }
+
+            // Stop required?
+            if (stopping) {
+                logger.info("Stopping.");
+
+                break;
+            }
+        }
+
+        return Math.min(ie, epochs);
+    }
+
+    //---------------//
+    // trainPatterns //
+    //---------------//
+    /**
+     * Train the network pattern per pattern, weights being updated after each pattern.
+     *
+     * @param inputs         the provided patterns of values for input cells
+     * @param desiredOutputs the corresponding desired values for output cells
+     * @param listener       listener to be kept informed, perhaps null
+     * @param iterPeriod     period for iteration notification
+     * @return the number of epochs performed
+     */
+    private int trainPatterns (double[][] inputs,
+                               double[][] desiredOutputs,
+                               TrainingMonitor listener,
+                               int iterPeriod)
+    {
+        final int patterns = inputs.length;
+
+        // Allocate needed arrays
+        final double[] gottenOutputs = new double[outputSize];
+        final double[] hiddenGrads = new double[hiddenSize];
+        final double[] outputGrads = new double[outputSize];
+        final double[][] hiddenDeltas = new double[hiddenSize][inputSize + 1];
+        final double[][] outputDeltas = new double[outputSize][hiddenSize + 1];
+        final double[] hiddens = new double[hiddenSize];
+        int iter = 0;
+        int ie;
+
+        for (ie = 1; ie <= epochs; ie++) {
+            iter++; // For this old engine, iter = epoch
+
+            if (listener != null) {
+                listener.epochStarted(ie);
+            }
+
+            // Loop on all input patterns
+            for (int ip = 0; ip < patterns; ip++) {
+                // Run the network with input values and current weights
+                run(inputs[ip], hiddens, gottenOutputs);
+
+                // Compute the output layer error terms
+                for (int io = outputSize - 1; io >= 0; io--) {
+                    double out = gottenOutputs[io];
+                    double dif = desiredOutputs[ip][io] - out;
+                    ///outputGrads[io] = dif * out * (1 - out); // Sigmoid'
+                    outputGrads[io] = dif * sigmoidDif(out); // Sigmoid'
+                    ///outputGrads[io] = dif * reluDif(out); // ReLU'
+                }
+
+                // Compute the hidden layer error terms
+                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                    double sum = 0;
+                    double hid = hiddens[ih];
+
+                    for (int o = outputSize - 1; o >= 0; o--) {
+                        sum += (outputGrads[o] * outputWeights[o][ih + 1]);
+                    }
+
+                    ///hiddenGrads[h] = sum * hid * (1 - hid); // Sigmoid'
+                    hiddenGrads[ih] = sum * sigmoidDif(hid); // Sigmoid'
+                    ///hiddenGrads[h] = sum * reluDif(hid); // ReLU'
+                }
+
+                // Update the output weights
+                for (int io = outputSize - 1; io >= 0; io--) {
+                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                        double dw = (learningRate * outputGrads[io] * hiddens[ih]) + (momentum
+                                                                                              * outputDeltas[io][ih
+                                                                                                                 + 1]);
+                        outputWeights[io][ih + 1] += dw;
+                        outputDeltas[io][ih + 1] = dw;
+                    }
+
+                    // Bias
+                    double dw = (learningRate * outputGrads[io]) + (momentum * outputDeltas[io][0]);
+                    outputWeights[io][0] += dw;
+                    outputDeltas[io][0] = dw;
+                }
+
+                // Update the hidden weights
+                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                    for (int i = inputSize - 1; i >= 0; i--) {
+                        double dw = (learningRate * hiddenGrads[ih] * inputs[ip][i]) + (momentum
+                                                                                                * hiddenDeltas[ih][i
+                                                                                                                   + 1]);
+                        hiddenWeights[ih][i + 1] += dw;
+                        hiddenDeltas[ih][i + 1] = dw;
+                    }
+
+                    // Bias
+                    double dw = (learningRate * hiddenGrads[ih]) + (momentum * hiddenDeltas[ih][0]);
+                    hiddenWeights[ih][0] += dw;
+                    hiddenDeltas[ih][0] = dw;
+                }
+            }
+
+            if ((listener != null) && ((iter % iterPeriod) == 0)) {
+                listener.iterationPeriodDone(iter, meanSquaredError(inputs, desiredOutputs));
+            }
+
+            // Stop required?
+            if (stopping) {
+                logger.info("Stopping.");
+
+                break;
+            }
+        }
+
+        return Math.min(ie, epochs);
+
+    }
+
+    //--------//
+    // update //
+    //--------//
+    /**
+     * Move weights along the provided gradients, with momentum.
+     *
+     * @param weights   the weights to update
+     * @param deltas    the previous moves, updated with the new moves
+     * @param gradients the gradients summed over a mini-batch
+     * @param rate      the learning rate divided by mini-batch size
+     */
+    private void update (double[] weights,
+                         double[] deltas,
+                         double[] gradients,
+                         double rate)
+    {
+        final double mom = momentum;
+
+        for (int k = weights.length - 1; k >= 0; k--) {
+            final double dw = (rate * gradients[k]) + (mom * deltas[k]);
+            weights[k] += dw;
+            deltas[k] = dw;
+        }
+    }
+
     //-----------//
     // unmarshal //
     //-----------//
@@ -724,6 +1246,23 @@ public class NeuralNetwork
         return nn;
     }
 
+    //-------//
+    // addTo //
+    //-------//
+    /**
+     * Add the provided values to the target values.
+     *
+     * @param values the values to add
+     * @param target the values to increment
+     */
+    private static void addTo (double[] values,
+                               double[] target)
+    {
+        for (int k = target.length - 1; k >= 0; k--) {
+            target[k] += values[k];
+        }
+    }
+
     //-------------//
     // cloneMatrix //
     //-------------//
@@ -755,13 +1294,16 @@ public class NeuralNetwork
      * Create and initialize a matrix, with random values.
      * Random values are between -amplitude and +amplitude
      *
-     * @param rowNb number of rows
-     * @param colNb number of columns
+     * @param rowNb     number of rows
+     * @param colNb     number of columns
+     * @param amplitude amplitude of random values
+     * @param random    source of random values
      * @return the properly initialized matrix
      */
     private static double[][] createMatrix (int rowNb,
                                             int colNb,
-                                            double amplitude)
+                                            double amplitude,
+                                            Random random)
     {
         double[][] matrix = new double[rowNb][];
 
@@ -770,13 +1312,28 @@ public class NeuralNetwork
             matrix[row] = vector;
 
             for (int col = colNb - 1; col >= 0; col--) {
-                vector[col] = amplitude * (1.0 - (2 * Math.random()));
+                vector[col] = amplitude * (1.0 - (2 * random.nextDouble()));
             }
         }
 
         return matrix;
     }
 
+    //---------//
+    // flatten //
+    //---------//
+    private static double[] flatten (double[][] matrix)
+    {
+        final int rowLength = matrix[0].length;
+        final double[] flat = new double[matrix.length * rowLength];
+
+        for (int row = 0; row < matrix.length; row++) {
+            System.arraycopy(matrix[row], 0, flat, row * rowLength, rowLength);
+        }
+
+        return flat;
+    }
+
     //----------------//
     // getJaxbContext //
     //----------------//
@@ -791,6 +1348,19 @@ public class NeuralNetwork
         return jaxbContext;
     }
 
+    //-----------//
+    // unflatten //
+    //-----------//
+    private static void unflatten (double[] flat,
+                                   double[][] matrix)
+    {
+        final int rowLength = matrix[0].length;
+
+        for (int row = 0; row < matrix.length; row++) {
+            System.arraycopy(flat, row * rowLength, matrix[row], 0, rowLength);
+        }
+    }
+
     //~ Inner Classes ------------------------------------------------------------------------------
     //--------//
     // Backup //
@@ -818,6 +1388,133 @@ public class NeuralNetwork
         }
     }
 
+    //-------------//
+    // FlatWeights //
+    //-------------//
+    /**
+     * Snapshot of weights, as flat row-major arrays.
+     */
+    private static class FlatWeights
+    {
+
+        final double[] hidden;
+
+        final double[] output;
+
+        FlatWeights (double[] hidden,
+                     double[] output)
+        {
+            this.hidden = hidden;
+            this.output = output;
+        }
+    }
+
+    //-------//
+    // Shard //
+    //-------//
+    /**
+     * Gradient accumulators for a shard of patterns, used by one worker at a time.
+     */
+    private class Shard
+    {
+
+        /** Summed gradients of weights to hidden layer, row-major. */
+        final double[] hiddenGradients = new double[hiddenSize * (inputSize + 1)];
+
+        /** Summed gradients of weights to output layer, row-major. */
+        final double[] outputGradients = new double[outputSize * (hiddenSize + 1)];
+
+        /** Hidden values of current pattern. */
+        final double[] hiddens = new double[hiddenSize];
+
+        /** Output values of current pattern. */
+        final double[] outputs = new double[outputSize];
+
+        /** Hidden error terms of current pattern. */
+        final double[] hiddenTerms = new double[hiddenSize];
+
+        /** Output error terms of current pattern. */
+        final double[] outputTerms = new double[outputSize];
+
+        /**
+         * Sum the gradients of the provided patterns, for the provided weights.
+         *
+         * @param inputs         the provided patterns of values for input cells
+         * @param desiredOutputs the corresponding desired values for output cells
+         * @param order          the shuffled pattern indices
+         * @param from           index in order of first pattern
+         * @param to             index in order past last pattern
+         * @param hidden         weights to hidden layer, as a flat array
+         * @param output         weights to output layer, as a flat array
+         */
+        void compute (double[][] inputs,
+                      double[][] desiredOutputs,
+                      int[] order,
+                      int from,
+                      int to,
+                      double[] hidden,
+                      double[] output)
+        {
+            final int inRow = inputSize + 1;
+            final int hidRow = hiddenSize + 1;
+            Arrays.fill(hiddenGradients, 0);
+            Arrays.fill(outputGradients, 0);
+
+            for (int p = from; p < to; p++) {
+                final double[] ins = inputs[order[p]];
+                final double[] desired = desiredOutputs[order[p]];
+
+                // Forward pass
+                for (int h = 0; h < hiddenSize; h++) {
+                    final int w0 = h * inRow;
+                    double sum = hidden[w0]; // Bias
+
+                    for (int i = 0; i < inputSize; i++) {
+                        sum += (hidden[w0 + i + 1] * ins[i]);
+                    }
+
+                    hiddens[h] = sigmoid(sum);
+                }
+
+                for (int o = 0; o < outputSize; o++) {
+                    final int w0 = o * hidRow;
+                    double sum = output[w0]; // Bias
+
+                    for (int h = 0; h < hiddenSize; h++) {
+                        sum += (output[w0 + h + 1] * hiddens[h]);
+                    }
+
+                    outputs[o] = sigmoid(sum);
+                    outputTerms[o] = (desired[o] - outputs[o]) * sigmoidDif(outputs[o]);
+                }
+
+                // Backward pass, browsing weights row by row
+                Arrays.fill(hiddenTerms, 0);
+
+                for (int o = 0; o < outputSize; o++) {
+                    final double term = outputTerms[o];
+                    final int w0 = o * hidRow;
+                    outputGradients[w0] += term;
+
+                    for (int h = 0; h < hiddenSize; h++) {
+                        hiddenTerms[h] += (term * output[w0 + h + 1]);
+                        outputGradients[w0 + h + 1] += (term * hiddens[h]);
+                    }
+                }
+
+                for (int h = 0; h < hiddenSize; h++) {
+                    final double term = hiddenTerms[h] * sigmoidDif(hiddens[h]);
+                    final int w0 = h * inRow;
+                    hiddenGradients[w0] += term;
+
+                    for (int i = 0; i < inputSize; i++) {
+                        hiddenGradients[w0 + i + 1] += (term * ins[i]);
+                    }
+                }
+            }
+        }
+    }
+
     //-------------//
     // StringArray //
     //-------------//
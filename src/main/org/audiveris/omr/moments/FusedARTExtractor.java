@@ -0,0 +1,363 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               F u s e d A R T E x t r a c t o r                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.moments;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import static org.audiveris.omr.moments.ARTMoments.*;
+import org.audiveris.omr.util.StopWatch;
+
+import java.awt.geom.Point2D;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Class <code>FusedARTExtractor</code> extracts the same ART Moments as
+ * {@link BasicARTExtractor}, with a memory layout suited to the per-pixel summation.
+ * <p>
+ * All real and imaginary basis values are kept in one primitive LUT, interleaved cell by cell,
+ * so that the interpolation of all coefficients at a given pixel reads four contiguous blocks.
+ * The bilinear weights are computed once per pixel rather than once per coefficient.
+ * <p>
+ * Besides the standard extraction on points arrays, {@link #extract(int[][], boolean)} walks
+ * run-length encoded sequences directly, with no need to expand runs into points first.
+ *
+ * @author Hervé Bitteur
+ */
+public class FusedARTExtractor
+        extends AbstractExtractor<ARTMoments>
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Constants constants = new Constants();
+
+    // Zernike basis function radius
+    private static final int LUT_RADIUS = 50;
+
+    /** LUT size, to cover [-LUT_RADIUS .. LUT_RADIUS]. */
+    private static final int LUT_SIZE = 1 + (2 * LUT_RADIUS);
+
+    /** Number of values per LUT cell: real and imaginary parts for each (p, r) couple. */
+    private static final int BLOCK = 2 * ANGULAR * RADIAL;
+
+    /**
+     * Basis function values.
+     * Cell (x, y) starts at index ((x * LUT_SIZE) + y) * BLOCK, and within the cell the real and
+     * imaginary values for (p, r) are at 2 * ((p * RADIAL) + r) and the following index.
+     */
+    private static final double[] lut = new double[LUT_SIZE * LUT_SIZE * BLOCK];
+
+    static {
+        initLUT();
+    }
+
+    //~ Instance fields ----------------------------------------------------------------------------
+
+    /** Coefficient sums, interleaved like the LUT cells. */
+    private final double[] sums = new double[BLOCK];
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new FusedARTExtractor object.
+     */
+    public FusedARTExtractor ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //---------//
+    // extract //
+    //---------//
+    /**
+     * Extract moments out of run-length encoded sequences.
+     * <p>
+     * Each sequence is an array of alternating foreground and background lengths, starting with a
+     * foreground length (perhaps 0), as in a RunTable.
+     *
+     * @param rles       the sequences, indexed by their position, a null sequence being empty
+     * @param horizontal true if runs are horizontal (sequence index is the ordinate), false if
+     *                   runs are vertical (sequence index is the abscissa)
+     */
+    public void extract (int[][] rles,
+                         boolean horizontal)
+    {
+        if (rles == null) {
+            throw new IllegalArgumentException(
+                    getClass().getSimpleName() + " cannot process a null array");
+        }
+
+        if (descriptor == null) {
+            throw new IllegalArgumentException(
+                    getClass().getSimpleName() + " has no target descriptor");
+        }
+
+        // Mass and mass center, with run sums rather than pixel sums
+        long mPos = 0; // Sum of positions (sequence indices)
+        long mCoord = 0; // Sum of coordinates (along runs)
+        int m = 0;
+
+        for (int pos = 0; pos < rles.length; pos++) {
+            final int[] rle = rles[pos];
+
+            if (rle == null) {
+                continue;
+            }
+
+            for (int i = 0, start = 0; i < rle.length; i += 2) {
+                final int length = rle[i];
+                m += length;
+                mPos += (long) pos * length;
+                mCoord += ((long) start * length) + (((long) length * (length - 1)) / 2);
+                start += (length + ((i + 1 < rle.length) ? rle[i + 1] : 0));
+            }
+        }
+
+        if (m <= 0) {
+            throw new IllegalArgumentException(
+                    getClass().getSimpleName() + " on inconsistent input");
+        }
+
+        final double cPos = mPos / (double) m;
+        final double cCoord = mCoord / (double) m;
+
+        // Max distances to center, only run ends are relevant along the runs
+        double dPosMax = Double.MIN_VALUE;
+        double dCoordMax = Double.MIN_VALUE;
+
+        for (int pos = 0; pos < rles.length; pos++) {
+            final int[] rle = rles[pos];
+
+            if (rle == null) {
+                continue;
+            }
+
+            for (int i = 0, start = 0; i < rle.length; i += 2) {
+                final int length = rle[i];
+
+                if (length > 0) {
+                    final int stop = (start + length) - 1;
+                    dPosMax = Math.max(dPosMax, Math.abs(pos - cPos));
+                    dCoordMax = Math.max(dCoordMax, Math.abs(start - cCoord));
+                    dCoordMax = Math.max(dCoordMax, Math.abs(stop - cCoord));
+                }
+
+                start += (length + ((i + 1 < rle.length) ? rle[i + 1] : 0));
+            }
+        }
+
+        xx = null;
+        yy = null;
+        mass = m;
+
+        if (horizontal) {
+            center = new Point2D.Double(cCoord, cPos);
+            radius = Math.hypot(dCoordMax, dPosMax);
+        } else {
+            center = new Point2D.Double(cPos, cCoord);
+            radius = Math.hypot(dPosMax, dCoordMax);
+        }
+
+        // Summation, pixel by pixel
+        final double centerX = center.getX();
+        final double centerY = center.getY();
+        Arrays.fill(sums, 0);
+
+        for (int pos = 0; pos < rles.length; pos++) {
+            final int[] rle = rles[pos];
+
+            if (rle == null) {
+                continue;
+            }
+
+            for (int i = 0, start = 0; i < rle.length; i += 2) {
+                final int length = rle[i];
+
+                if (horizontal) {
+                    for (int c = start, cBreak = start + length; c < cBreak; c++) {
+                        accumulate(c - centerX, pos - centerY);
+                    }
+                } else {
+                    for (int c = start, cBreak = start + length; c < cBreak; c++) {
+                        accumulate(pos - centerX, c - centerY);
+                    }
+                }
+
+                start += (length + ((i + 1 < rle.length) ? rle[i + 1] : 0));
+            }
+        }
+
+        saveMoments();
+    }
+
+    //-------------//
+    // reconstruct //
+    //-------------//
+    /**
+     * No-op, the provided raster is left unchanged.
+     * <p>
+     * Only the magnitude of each ART coefficient is saved, the phase needed to rebuild the shape
+     * is lost.
+     *
+     * @param raster (ignored)
+     */
+    @Override
+    public void reconstruct (WritableRaster raster)
+    {
+        // Nothing to reconstruct from
+    }
+
+    //----------------//
+    // extractMoments //
+    //----------------//
+    @Override
+    protected void extractMoments ()
+    {
+        final double centerX = center.getX();
+        final double centerY = center.getY();
+        Arrays.fill(sums, 0);
+
+        for (int i = 0; i < mass; i++) {
+            accumulate(xx[i] - centerX, yy[i] - centerY);
+        }
+
+        saveMoments();
+    }
+
+    //------------//
+    // accumulate //
+    //------------//
+    /**
+     * Add the basis values interpolated at the provided pixel to all coefficient sums.
+     *
+     * @param x pixel abscissa, relative to mass center
+     * @param y pixel ordinate, relative to mass center
+     */
+    private void accumulate (double x,
+                             double y)
+    {
+        // Map image coordinates to LUT coordinates
+        final double lx = ((x * LUT_RADIUS) / radius) + LUT_RADIUS;
+        final double ly = ((y * LUT_RADIUS) / radius) + LUT_RADIUS;
+
+        if ((lx < 0) || (lx >= LUT_SIZE) || (ly < 0) || (ly >= LUT_SIZE)) {
+            return;
+        }
+
+        // Integer coordinates, by truncating precise coordinates
+        final int ix = (int) lx;
+        final int iy = (int) ly;
+
+        // Beware of point on LUT border, which has no following cell
+        final int ix1 = (ix < (LUT_SIZE - 1)) ? (ix + 1) : ix;
+        final int iy1 = (iy < (LUT_SIZE - 1)) ? (iy + 1) : iy;
+
+        // Bilinear weights of the 4 surrounding cells
+        final double fx = lx - ix;
+        final double fy = ly - iy;
+        final double w00 = (1 - fx) * (1 - fy);
+        final double w10 = fx * (1 - fy);
+        final double w01 = (1 - fx) * fy;
+        final double w11 = fx * fy;
+
+        final int c00 = ((ix * LUT_SIZE) + iy) * BLOCK;
+        final int c10 = ((ix1 * LUT_SIZE) + iy) * BLOCK;
+        final int c01 = ((ix * LUT_SIZE) + iy1) * BLOCK;
+        final int c11 = ((ix1 * LUT_SIZE) + iy1) * BLOCK;
+
+        for (int k = 0; k < BLOCK; k++) {
+            sums[k] += ((w00 * lut[c00 + k]) + (w10 * lut[c10 + k]))
+                               + ((w01 * lut[c01 + k]) + (w11 * lut[c11 + k]));
+        }
+    }
+
+    //-------------//
+    // saveMoments //
+    //-------------//
+    /**
+     * Normalize the coefficient sums and save them to descriptor.
+     */
+    private void saveMoments ()
+    {
+        for (int p = 0; p < ANGULAR; p++) {
+            for (int r = 0; r < RADIAL; r++) {
+                final int k = 2 * ((p * RADIAL) + r);
+                double real = sums[k] / mass;
+                double imag = -sums[k + 1] / mass;
+                descriptor.setMoment(p, r, Math.hypot(imag, real));
+            }
+        }
+    }
+
+    //---------//
+    // initLUT //
+    //---------//
+    /**
+     * Compute, once for all, the lookup table values.
+     */
+    private static void initLUT ()
+    {
+        StopWatch watch = new StopWatch("LUT");
+        watch.start("initLUT");
+
+        for (int x = 0; x < LUT_SIZE; x++) {
+            double tx = (x - LUT_RADIUS) / (double) LUT_RADIUS; // [-1..+1]
+
+            for (int y = 0; y < LUT_SIZE; y++) {
+                double ty = (y - LUT_RADIUS) / (double) LUT_RADIUS; // [-1..+1]
+                double rad = Math.hypot(tx, ty); // [0..sqrt(2)]
+
+                // On or outside unit circle, values are left to 0
+                if (rad < 1) {
+                    // We are within unit circle
+                    final int cell = ((x * LUT_SIZE) + y) * BLOCK;
+                    double angle = Math.atan2(ty, tx);
+
+                    for (int p = 0; p < ANGULAR; p++) {
+                        for (int r = 0; r < RADIAL; r++) {
+                            final int k = cell + (2 * ((p * RADIAL) + r));
+                            double temp = Math.cos(rad * Math.PI * r);
+                            lut[k] = temp * Math.cos(angle * p);
+                            lut[k + 1] = temp * Math.sin(angle * p);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (constants.printWatch.isSet()) {
+            watch.print();
+        }
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean printWatch = new Constant.Boolean(
+                false,
+                "Should we print out the stop watch?");
+    }
+}
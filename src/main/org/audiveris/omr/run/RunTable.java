@@ -28,8 +28,8 @@ import static org.audiveris.omr.image.PixelSource.BACKGROUND;
 import org.audiveris.omr.math.PointUtil;
 import org.audiveris.omr.math.PointsCollector;
 import org.audiveris.omr.moments.ARTMoments;
-import org.audiveris.omr.moments.BasicARTExtractor;
 import org.audiveris.omr.moments.BasicARTMoments;
+import org.audiveris.omr.moments.FusedARTExtractor;
 import org.audiveris.omr.moments.GeometricMoments;
 import static org.audiveris.omr.run.Orientation.HORIZONTAL;
 import org.audiveris.omr.util.ByteUtil;
@@ -110,6 +110,12 @@ public class RunTable
     /** Un/marshalling context for use with JAXB. */
     private static volatile JAXBContext jaxbContext;
 
+    /** Initial value for content digest (FNV-1a offset basis). */
+    private static final long DIGEST_SEED = 0xCBF29CE484222325L;
+
+    /** Multiplier for content digest (FNV-1a prime). */
+    private static final long DIGEST_PRIME = 0x100000001B3L;
+
     //~ Instance fields ----------------------------------------------------------------------------
     // Persistent data
     //----------------
@@ -328,24 +334,30 @@ public class RunTable
     //-------------------//
     /**
      * Compute the Angular Radial Transform moments for this runTable
+     * <p>
+     * Runs are walked directly, without being expanded into foreground points.
+     * Since moments are computed around the mass center, they don't depend on table location.
      *
-     * @param left abscissa of topLeft corner (TODO: useful?)
-     * @param top  ordinate of topLeft corner (TODO: useful?)
+     * @param left abscissa of topLeft corner, unused and kept for API compatibility
+     * @param top  ordinate of topLeft corner, unused and kept for API compatibility
      * @return the ART moments
      */
     public ARTMoments computeArtMoments (int left,
                                          int top)
     {
-        // Retrieve glyph foreground points
-        final PointsCollector collector = new PointsCollector(null, getWeight());
-        cumulate(collector, new Point(left, top));
+        final int[][] rles = new int[sequences.length][];
+
+        for (int i = 0; i < rles.length; i++) {
+            final RunSequence seq = sequences[i];
+            rles[i] = (seq != null) ? seq.rle : null;
+        }
 
         ///ARTMoments artMoments = new QuantizedARTMoments();
         ARTMoments artMoments = new BasicARTMoments();
 
-        BasicARTExtractor extractor = new BasicARTExtractor();
+        FusedARTExtractor extractor = new FusedARTExtractor();
         extractor.setDescriptor(artMoments);
-        extractor.extract(collector.getXValues(), collector.getYValues(), collector.getSize());
+        extractor.extract(rles, orientation == HORIZONTAL);
 
         return artMoments;
     }
@@ -825,6 +837,62 @@ public class RunTable
         return buffer;
     }
 
+    //-----------//
+    // getBuffer //
+    //-----------//
+    /**
+     * Fill a buffer with the table runs found within the provided rectangle only.
+     * <p>
+     * Only the sequences that cross the rectangle are browsed, and their runs are clipped to
+     * the rectangle. Buffer pixels that lie outside the table are left as background.
+     *
+     * @param roi the rectangle of interest, in table coordinates
+     * @return the filled buffer, of roi dimension, with (0,0) at roi top left corner
+     */
+    public ByteProcessor getBuffer (Rectangle roi)
+    {
+        final ByteProcessor buffer = new ByteProcessor(roi.width, roi.height);
+        ByteUtil.raz(buffer);
+
+        final byte[] pixels = (byte[]) buffer.getPixels();
+        final boolean isVertical = orientation == Orientation.VERTICAL;
+
+        // Sequences and coordinates within roi, in table orientation
+        final int seqMin = Math.max(0, isVertical ? roi.x : roi.y);
+        final int seqMax = Math.min(getSize(), isVertical ? (roi.x + roi.width)
+                : (roi.y + roi.height)) - 1;
+        final int cMin = isVertical ? roi.y : roi.x;
+        final int cMax = (isVertical ? (roi.y + roi.height) : (roi.x + roi.width)) - 1;
+
+        for (int iSeq = seqMin; iSeq <= seqMax; iSeq++) {
+            for (Itr it = new Itr(iSeq); it.hasNext();) {
+                final Run run = it.next();
+                final int start = Math.max(cMin, run.getStart());
+                final int stop = Math.min(cMax, run.getStop());
+
+                if (start > cMax) {
+                    break; // Next runs are beyond roi
+                }
+
+                if (isVertical) {
+                    final int x = iSeq - roi.x;
+
+                    for (int y = start; y <= stop; y++) {
+                        pixels[((y - roi.y) * roi.width) + x] = 0;
+                    }
+                } else {
+                    final int offset = ((iSeq - roi.y) * roi.width) - roi.x;
+
+                    for (int x = start; x <= stop; x++) {
+                        pixels[offset + x] = 0;
+                    }
+                }
+            }
+        }
+
+        return buffer;
+    }
+
     //------------------//
     // getBufferedImage //
     //------------------//
@@ -1234,6 +1302,38 @@ public class RunTable
         return hash;
     }
 
+    //------------------//
+    // persistentDigest //
+    //------------------//
+    /**
+     * Provide a 64-bit digest of the whole table content (orientation, dimension and runs)
+     * that <b>PERSISTS</b> across application executions.
+     * <p>
+     * Unlike {@link #persistentHashCode()}, it discriminates tables of same weight, and can thus
+     * be used as a key for data computed out of table content.
+     *
+     * @return the persistent digest for this run table
+     */
+    public long persistentDigest ()
+    {
+        long hash = DIGEST_SEED;
+        hash = digest(hash, orientation.ordinal());
+        hash = digest(hash, width);
+        hash = digest(hash, height);
+
+        for (RunSequence seq : sequences) {
+            final int[] rle = (seq != null) ? seq.rle : null;
+            final int length = (rle != null) ? rle.length : 0;
+            hash = digest(hash, length);
+
+            for (int i = 0; i < length; i++) {
+                hash = digest(hash, rle[i]);
+            }
+        }
+
+        return hash;
+    }
+
     //-------//
     // purge //
     //-------//
@@ -1444,6 +1544,25 @@ public class RunTable
         sequences[index] = encode(list);
     }
 
+    //-------------//
+    // setSequence //
+    //-------------//
+    /**
+     * Set a whole run sequence, out of an already RLE-encoded buffer.
+     * <p>
+     * Different threads can set sequences at different indices concurrently.
+     *
+     * @param index position in sequences list
+     * @param rle   buffer of RLE lengths, perhaps larger than needed
+     * @param size  number of meaningful cells in rle buffer (0 for an empty sequence)
+     */
+    public void setSequence (int index,
+                             int[] rle,
+                             int size)
+    {
+        sequences[index] = encode(rle, size);
+    }
+
     //----------//
     // toString //
     //----------//
@@ -1589,6 +1708,22 @@ public class RunTable
         }
     }
 
+    //--------//
+    // digest //
+    //--------//
+    /**
+     * Fold an int value into a content digest.
+     *
+     * @param hash  the digest so far
+     * @param value the value to fold
+     * @return the new digest
+     */
+    private static long digest (long hash,
+                                int value)
+    {
+        return (hash ^ value) * DIGEST_PRIME;
+    }
+
     //----------------//
     // getJaxbContext //
     //----------------//
@@ -1653,6 +1788,26 @@ public class RunTable
         return new RunSequence(rle);
     }
 
+    //--------//
+    // encode //
+    //--------//
+    /**
+     * (Package-private) method to build a table sequence out of an already encoded buffer.
+     *
+     * @param rle  buffer of RLE lengths, perhaps larger than needed
+     * @param size number of meaningful cells in rle buffer
+     * @return the sequence ready to be inserted into table, or null if empty
+     */
+    static RunSequence encode (int[] rle,
+                               int size)
+    {
+        if (size == 0) {
+            return null;
+        }
+
+        return new RunSequence(Arrays.copyOf(rle, size));
+    }
+
     //-------------//
     // getSequence //
     //-------------//
@@ -1783,6 +1938,16 @@ public class RunTable
             return Arrays.equals(rle, that.rle);
         }
 
+        /**
+         * (package private) Report the RLE lengths of this sequence.
+         *
+         * @return the MODIFIABLE array of lengths, perhaps null
+         */
+        int[] getRle ()
+        {
+            return rle;
+        }
+
         @Override
         public int hashCode ()
         {
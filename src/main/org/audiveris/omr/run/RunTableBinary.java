@@ -0,0 +1,498 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  R u n T a b l e B i n a r y                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class <code>RunTableBinary</code> handles a compact binary encoding of {@link RunTable},
+ * meant to be used alongside the XML form.
+ * <p>
+ * The XML form writes every RLE length as a decimal string, which is bulky and slow to parse
+ * for large tables (sheet glyphs, sample sheet images).
+ * The binary form writes the same RLE lengths as unsigned variable-length integers (7 bits per
+ * byte, high bit set on all bytes but the last one), so that most lengths take a single byte.
+ * <p>
+ * Layout, all integers being varints except the magic number:
+ * <ol>
+ * <li>Magic number (4 bytes "RTB" + version)</li>
+ * <li>Orientation ordinal</li>
+ * <li>Width, height</li>
+ * <li>Offset index: for each sequence, the byte length of its encoded data (0 for an empty
+ * sequence)</li>
+ * <li>Sequences data, one after the other: the RLE lengths of each sequence</li>
+ * </ol>
+ * The offset index allows any sequence to be decoded on its own, see {@link View}, directly out of
+ * a memory-mapped file.
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class RunTableBinary
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(RunTableBinary.class);
+
+    /** Magic number: "RTB" + format version. */
+    private static final int MAGIC = 0x52544201;
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /** Not meant to be instantiated. */
+    private RunTableBinary ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //--------//
+    // decode //
+    //--------//
+    /**
+     * Decode a whole run table from the provided buffer.
+     *
+     * @param buffer buffer positioned at the beginning of binary data
+     * @return the decoded table
+     * @throws IllegalArgumentException if buffer does not contain a binary run table
+     */
+    public static RunTable decode (ByteBuffer buffer)
+    {
+        return new View(buffer).toRunTable();
+    }
+
+    //--------//
+    // decode //
+    //--------//
+    /**
+     * Decode a whole run table from the provided bytes.
+     *
+     * @param bytes the binary data
+     * @return the decoded table
+     * @throws IllegalArgumentException if bytes do not contain a binary run table
+     */
+    public static RunTable decode (byte[] bytes)
+    {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    //--------//
+    // encode //
+    //--------//
+    /**
+     * Encode the provided run table into binary data.
+     *
+     * @param table the table to encode
+     * @return the binary data
+     */
+    public static byte[] encode (RunTable table)
+    {
+        final int size = table.getSize();
+        final int[] lengths = new int[size];
+        int total = 4 + 1 + varintSize(table.getWidth()) + varintSize(table.getHeight());
+
+        // Pass #1: compute exact byte lengths
+        for (int i = 0; i < size; i++) {
+            final int[] rle = rleOf(table, i);
+
+            if (rle != null) {
+                int length = 0;
+
+                for (int v : rle) {
+                    length += varintSize(v);
+                }
+
+                lengths[i] = length;
+                total += length;
+            }
+
+            total += varintSize(lengths[i]);
+        }
+
+        // Pass #2: write
+        final byte[] bytes = new byte[total];
+        int pos = 0;
+        bytes[pos++] = (byte) (MAGIC >>> 24);
+        bytes[pos++] = (byte) (MAGIC >>> 16);
+        bytes[pos++] = (byte) (MAGIC >>> 8);
+        bytes[pos++] = (byte) MAGIC;
+        bytes[pos++] = (byte) table.getOrientation().ordinal();
+        pos = putVarint(bytes, pos, table.getWidth());
+        pos = putVarint(bytes, pos, table.getHeight());
+
+        for (int length : lengths) {
+            pos = putVarint(bytes, pos, length);
+        }
+
+        for (int i = 0; i < size; i++) {
+            final int[] rle = rleOf(table, i);
+
+            if (rle != null) {
+                for (int v : rle) {
+                    pos = putVarint(bytes, pos, v);
+                }
+            }
+        }
+
+        return bytes;
+    }
+
+    //------------------//
+    // isBinaryForGlyph //
+    //------------------//
+    /**
+     * Tell whether glyph run tables are to be marshalled in binary form.
+     *
+     * @return true for binary form, false for XML form
+     */
+    public static boolean isBinaryForGlyph ()
+    {
+        return constants.binaryGlyphs.isSet();
+    }
+
+    //------------------//
+    // isBinaryForImage //
+    //------------------//
+    /**
+     * Tell whether sample sheet images are to be stored in binary form.
+     *
+     * @return true for binary form, false for XML form
+     */
+    public static boolean isBinaryForImage ()
+    {
+        return constants.binaryImages.isSet();
+    }
+
+    //------//
+    // load //
+    //------//
+    /**
+     * Load a whole run table from the provided binary file.
+     *
+     * @param path path to binary file
+     * @return the loaded table
+     * @throws IOException on IO error or invalid content
+     */
+    public static RunTable load (Path path)
+            throws IOException
+    {
+        return open(path).toRunTable();
+    }
+
+    //------//
+    // open //
+    //------//
+    /**
+     * Open a view on the provided binary file, without decoding any sequence yet.
+     * <p>
+     * The file is memory-mapped when it belongs to the default file system, and fully read
+     * otherwise (for example within a zip file system).
+     *
+     * @param path path to binary file
+     * @return the view on binary data
+     * @throws IOException on IO error or invalid content
+     */
+    public static View open (Path path)
+            throws IOException
+    {
+        final ByteBuffer buffer;
+
+        if (path.getFileSystem() == FileSystems.getDefault()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } else {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        }
+
+        try {
+            return new View(buffer);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid binary run table " + path, ex);
+        }
+    }
+
+    //-------//
+    // store //
+    //-------//
+    /**
+     * Store the provided run table to the provided path, in binary form.
+     *
+     * @param table the table to store
+     * @param path  target path
+     * @throws IOException on IO error
+     */
+    public static void store (RunTable table,
+                              Path path)
+            throws IOException
+    {
+        Files.write(path, encode(table));
+        logger.debug("Stored {}", path);
+    }
+
+    //-----------//
+    // putVarint //
+    //-----------//
+    private static int putVarint (byte[] bytes,
+                                  int pos,
+                                  int value)
+    {
+        while ((value & ~0x7F) != 0) {
+            bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        bytes[pos++] = (byte) value;
+
+        return pos;
+    }
+
+    //-----------//
+    // getVarint //
+    //-----------//
+    /**
+     * Read a varint at current buffer position.
+     */
+    private static int getVarint (ByteBuffer buffer)
+    {
+        int value = 0;
+
+        for (int shift = 0;; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    //-------//
+    // rleOf //
+    //-------//
+    private static int[] rleOf (RunTable table,
+                                int index)
+    {
+        final RunTable.RunSequence seq = table.getSequence(index);
+
+        if (seq == null) {
+            return null;
+        }
+
+        final int[] rle = seq.getRle();
+
+        return ((rle == null) || (rle.length == 0)) ? null : rle;
+    }
+
+    //------------//
+    // varintSize //
+    //------------//
+    private static int varintSize (int value)
+    {
+        int size = 1;
+
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+
+        return size;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //------//
+    // View //
+    //------//
+    /**
+     * A read-only view on binary run table data, which decodes sequences on demand.
+     * <p>
+     * Only the header and the offset index are read when the view is created.
+     */
+    public static class View
+    {
+
+        /** Underlying binary data. */
+        private final ByteBuffer buffer;
+
+        private final Orientation orientation;
+
+        private final int width;
+
+        private final int height;
+
+        /** Absolute buffer position of each sequence data, plus end of last sequence. */
+        private final int[] offsets;
+
+        /**
+         * Create a view on binary data.
+         *
+         * @param buffer buffer positioned at the beginning of binary data
+         * @throws IllegalArgumentException if buffer does not contain a binary run table
+         */
+        public View (ByteBuffer buffer)
+        {
+            this.buffer = buffer.duplicate();
+
+            if ((this.buffer.remaining() < 5) || (this.buffer.getInt() != MAGIC)) {
+                throw new IllegalArgumentException("Not a binary run table");
+            }
+
+            orientation = Orientation.values()[this.buffer.get()];
+            width = getVarint(this.buffer);
+            height = getVarint(this.buffer);
+
+            final int size = orientation.isVertical() ? width : height;
+            final int[] lengths = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                lengths[i] = getVarint(this.buffer);
+            }
+
+            offsets = new int[size + 1];
+            offsets[0] = this.buffer.position();
+
+            for (int i = 0; i < size; i++) {
+                offsets[i + 1] = offsets[i] + lengths[i];
+            }
+
+            if (offsets[size] > this.buffer.limit()) {
+                throw new IllegalArgumentException("Truncated binary run table");
+            }
+        }
+
+        /**
+         * @return the table height
+         */
+        public int getHeight ()
+        {
+            return height;
+        }
+
+        /**
+         * @return the runs orientation
+         */
+        public Orientation getOrientation ()
+        {
+            return orientation;
+        }
+
+        /**
+         * Decode the RLE lengths of one sequence.
+         *
+         * @param index sequence index
+         * @return the RLE lengths, or null for an empty sequence
+         */
+        public int[] getRle (int index)
+        {
+            final int start = offsets[index];
+            final int stop = offsets[index + 1];
+
+            if (start == stop) {
+                return null;
+            }
+
+            // One value per byte with high bit clear
+            int count = 0;
+
+            for (int pos = start; pos < stop; pos++) {
+                if (buffer.get(pos) >= 0) {
+                    count++;
+                }
+            }
+
+            final int[] rle = new int[count];
+            final ByteBuffer buf = buffer.duplicate();
+            buf.position(start);
+
+            for (int i = 0; i < count; i++) {
+                rle[i] = getVarint(buf);
+            }
+
+            return rle;
+        }
+
+        /**
+         * @return the number of sequences
+         */
+        public int getSize ()
+        {
+            return offsets.length - 1;
+        }
+
+        /**
+         * @return the table width
+         */
+        public int getWidth ()
+        {
+            return width;
+        }
+
+        /**
+         * Decode all sequences into a new run table.
+         *
+         * @return the decoded table
+         */
+        public RunTable toRunTable ()
+        {
+            final RunTable table = new RunTable(orientation, width, height);
+
+            for (int i = 0, size = getSize(); i < size; i++) {
+                final int[] rle = getRle(i);
+
+                if (rle != null) {
+                    table.setSequence(i, new RunTable.RunSequence(rle));
+                }
+            }
+
+            return table;
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        // Binary forms are off until the book format version is bumped,
+        // since earlier releases cannot read them
+        private final Constant.Boolean binaryGlyphs = new Constant.Boolean(
+                false,
+                "Should we marshal glyph run tables in binary form (rather than XML)?");
+
+        private final Constant.Boolean binaryImages = new Constant.Boolean(
+                false,
+                "Should we store sample sheet images in binary form (rather than XML)?");
+    }
+}
@@ -192,6 +192,14 @@ public class RunTableFactory
             super(source, table, tableOffset);
         }
 
+        @Override
+        public void endPosition (int pos,
+                                 int[] rle,
+                                 int size)
+        {
+            table.setSequence(pos - tableOffset.y, RunTable.encode(rle, size));
+        }
+
         @Override
         public void endPosition (int pos,
                                  List<Run> runs)
@@ -256,15 +264,29 @@ public class RunTableFactory
         // isThreadSafe //
         //--------------//
         /**
-         * The concurrency aspects of the adapter depends on the underlying PixelFilter.
+         * The concurrency aspects of the adapter depends on the run filter and on the
+         * underlying pixel source.
+         * <p>
+         * A plain ByteProcessor is just read, and each position writes its own table sequence,
+         * so positions can be processed concurrently.
          *
          * @return true if safe, false otherwise
          */
         @Override
         public boolean isThreadSafe ()
         {
+            // A filter of unknown kind may not be safe
+            if ((filter != null) && !(filter instanceof LengthFilter)) {
+                return false;
+            }
+
             Class<?> classe = source.getClass();
 
+            // Plain pixel buffer
+            if (classe == ByteProcessor.class) {
+                return true;
+            }
+
             // Check for @ThreadSafe annotation
             ThreadSafe safe = classe.getAnnotation(ThreadSafe.class);
 
@@ -308,6 +330,14 @@ public class RunTableFactory
             super(source, table, tableOffset);
         }
 
+        @Override
+        public void endPosition (int pos,
+                                 int[] rle,
+                                 int size)
+        {
+            table.setSequence(pos - tableOffset.x, RunTable.encode(rle, size));
+        }
+
         @Override
         public void endPosition (int pos,
                                  List<Run> runs)
@@ -0,0 +1,469 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   R u n s C o l l e c t o r                                    //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Class <code>RunsCollector</code> collects the foreground runs of a binarization performed
+ * row by row, directly into horizontal and/or vertical {@link RunTable} instances, without any
+ * intermediate binary image.
+ * <p>
+ * The image height is split into bands of full rows, which can be processed in parallel.
+ * Within a band, rows are provided from top to bottom via {@link Band#addRow(int, boolean[])}:
+ * <ul>
+ * <li>A horizontal sequence is complete with its row, so it is encoded and set at once.
+ * <li>Vertical fore/back transitions are recorded per column, in band-local arrays.
+ * Once all bands are done, the transitions of each column are concatenated band after band,
+ * a run crossing a band border being simply merged, and then encoded.
+ * </ul>
+ * The resulting tables are identical to those a {@link RunTableFactory} would build from the
+ * binary image.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunsCollector
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(RunsCollector.class);
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Image width. */
+    private final int width;
+
+    /** Image height. */
+    private final int height;
+
+    /** Horizontal table being populated, if any. */
+    private RunTable horiTable;
+
+    /** Vertical table to be populated, if any. */
+    private RunTable vertTable;
+
+    /** Bands, sorted by ordinate. */
+    private final List<Band> bands = new ArrayList<>();
+
+    /** Have vertical sequences been encoded? */
+    private boolean vertDone;
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>RunsCollector</code> object.
+     *
+     * @param width      image width
+     * @param height     image height
+     * @param horizontal true for a horizontal table
+     * @param vertical   true for a vertical table
+     */
+    public RunsCollector (int width,
+                          int height,
+                          boolean horizontal,
+                          boolean vertical)
+    {
+        this.width = width;
+        this.height = height;
+
+        horiTable = horizontal ? new RunTable(Orientation.HORIZONTAL, width, height) : null;
+        vertTable = vertical ? new RunTable(Orientation.VERTICAL, width, height) : null;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //---------//
+    // collect //
+    //---------//
+    /**
+     * Collect all the runs of an already binarized image, through {@link RunTableFactory}.
+     * <p>
+     * This is the fallback for filters which cannot provide their rows on the fly, in lieu of
+     * {@link #process(Consumer)}.
+     *
+     * @param binary the binary image, with same dimension as this collector
+     */
+    public void collect (ByteProcessor binary)
+    {
+        if ((binary.getWidth() != width) || (binary.getHeight() != height)) {
+            throw new IllegalArgumentException(
+                    "Image " + binary.getWidth() + "x" + binary.getHeight()
+                            + " does not match collector " + width + "x" + height);
+        }
+
+        if (horiTable != null) {
+            horiTable = new RunTableFactory(Orientation.HORIZONTAL).createTable(binary);
+        }
+
+        if (vertTable != null) {
+            vertTable = new RunTableFactory(Orientation.VERTICAL).createTable(binary);
+            vertDone = true;
+        }
+    }
+
+    //-----------//
+    // getHeight //
+    //-----------//
+    /**
+     * Report image height.
+     *
+     * @return the height
+     */
+    public int getHeight ()
+    {
+        return height;
+    }
+
+    //--------------------//
+    // getHorizontalTable //
+    //--------------------//
+    /**
+     * Report the horizontal table, once all bands have been processed.
+     *
+     * @return the horizontal table, or null if not requested
+     */
+    public RunTable getHorizontalTable ()
+    {
+        return horiTable;
+    }
+
+    //------------------//
+    // getVerticalTable //
+    //------------------//
+    /**
+     * Report the vertical table, once all bands have been processed.
+     *
+     * @return the vertical table, or null if not requested
+     */
+    public RunTable getVerticalTable ()
+    {
+        if ((vertTable != null) && !vertDone) {
+            encodeColumns();
+            vertDone = true;
+            bands.clear(); // Release transitions
+        }
+
+        return vertTable;
+    }
+
+    //----------//
+    // getWidth //
+    //----------//
+    /**
+     * Report image width.
+     *
+     * @return the width
+     */
+    public int getWidth ()
+    {
+        return width;
+    }
+
+    //---------//
+    // process //
+    //---------//
+    /**
+     * Split the image height into bands and have the provided processor feed each band with
+     * its rows, in parallel when possible.
+     *
+     * @param minBandHeight minimum height for a band
+     * @param processor     the row provider, which must be thread-safe
+     */
+    public void process (int minBandHeight,
+                         Consumer<Band> processor)
+    {
+        if ((OmrExecutors.defaultParallelism.getValue() == false)
+                    || (height < (2 * minBandHeight))) {
+            processor.accept(createBand(0, height - 1));
+
+            return;
+        }
+
+        final int bandCount = Math.min(OmrExecutors.getParallelism(), height / minBandHeight);
+        final int bandHeight = (height + bandCount - 1) / bandCount;
+
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (int y = 0; y < height; y += bandHeight) {
+                final Band band = createBand(y, Math.min(height - 1, (y + bandHeight) - 1));
+                tasks.add(() -> {
+                    processor.accept(band);
+
+                    return null;
+                });
+            }
+
+            for (Future<Void> future : OmrScheduler.invokeAll(OmrScheduler.Level.ROW, tasks)) {
+                future.get(); // To propagate any exception
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("RunsCollector got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) ex.getCause();
+            }
+
+            logger.warn("Exception raised in RunsCollector", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    //---------//
+    // process //
+    //---------//
+    /**
+     * Same as {@link #process(int, Consumer)}, with default minimum band height.
+     *
+     * @param processor the row provider, which must be thread-safe
+     */
+    public void process (Consumer<Band> processor)
+    {
+        process(constants.minBandHeight.getValue(), processor);
+    }
+
+    //------------//
+    // createBand //
+    //------------//
+    private Band createBand (int yFirst,
+                             int yLast)
+    {
+        final Band band = new Band(yFirst, yLast);
+        bands.add(band);
+
+        return band;
+    }
+
+    //---------------//
+    // encodeColumns //
+    //---------------//
+    /**
+     * Concatenate the vertical transitions of all bands, column by column, and encode them.
+     */
+    private void encodeColumns ()
+    {
+        final int[] rle = new int[height + 2];
+        int[] marks = new int[16];
+
+        for (int x = 0; x < width; x++) {
+            int n = 0;
+
+            for (Band band : bands) {
+                final int[] m = band.marks[x];
+                final int count = band.markCounts[x];
+
+                if (n + count + 1 > marks.length) {
+                    marks = Arrays.copyOf(marks, Math.max(2 * marks.length, n + count + 1));
+                }
+
+                for (int k = 0; k < count; k++) {
+                    if ((k == 0) && (n > 0) && (marks[n - 1] == m[0])) {
+                        n--; // Run continued across band border
+                    } else {
+                        marks[n++] = m[k];
+                    }
+                }
+
+                if (band.fores[x]) {
+                    marks[n++] = band.yLast + 1; // Close last run of band
+                }
+            }
+
+            int size = 0;
+
+            if (n > 0) {
+                if (marks[0] > 0) {
+                    rle[size++] = 0; // Empty initial foreground
+                    rle[size++] = marks[0]; // Background
+                }
+
+                for (int k = 1; k < n; k++) {
+                    rle[size++] = marks[k] - marks[k - 1];
+                }
+            }
+
+            vertTable.setSequence(x, rle, size);
+        }
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //------//
+    // Band //
+    //------//
+    /**
+     * A band of full rows, to be fed row after row from top to bottom by a single thread.
+     */
+    public class Band
+    {
+
+        /** First row of band. */
+        public final int yFirst;
+
+        /** Last row of band. */
+        public final int yLast;
+
+        /** Per column, the ordinates of fore/back transitions. */
+        private final int[][] marks;
+
+        /** Per column, the number of transitions. */
+        private final int[] markCounts;
+
+        /** Per column, the current status. */
+        private final boolean[] fores;
+
+        /** Buffer for horizontal RLE. */
+        private final int[] rle;
+
+        /** Next expected row. */
+        private int nextY;
+
+        private Band (int yFirst,
+                      int yLast)
+        {
+            this.yFirst = yFirst;
+            this.yLast = yLast;
+            nextY = yFirst;
+
+            if (vertTable != null) {
+                marks = new int[width][8];
+                markCounts = new int[width];
+                fores = new boolean[width];
+            } else {
+                marks = null;
+                markCounts = null;
+                fores = null;
+            }
+
+            rle = (horiTable != null) ? new int[width + 2] : null;
+        }
+
+        //--------//
+        // addRow //
+        //--------//
+        /**
+         * Provide the binarized pixels of the next row of the band.
+         *
+         * @param y   row ordinate, expected to be the row after the previous one
+         * @param row  foreground status of each pixel, indexed by abscissa
+         */
+        public void addRow (int y,
+                            boolean[] row)
+        {
+            if (y != nextY) {
+                throw new IllegalArgumentException("Row " + y + " provided instead of " + nextY);
+            }
+
+            nextY++;
+
+            if (horiTable != null) {
+                horiTable.setSequence(y, rle, encodeRow(row));
+            }
+
+            if (vertTable != null) {
+                for (int x = 0; x < width; x++) {
+                    if (row[x] != fores[x]) {
+                        fores[x] = row[x];
+
+                        if (markCounts[x] == marks[x].length) {
+                            marks[x] = Arrays.copyOf(marks[x], 2 * marks[x].length);
+                        }
+
+                        marks[x][markCounts[x]++] = y;
+                    }
+                }
+            }
+        }
+
+        //-----------//
+        // encodeRow //
+        //-----------//
+        /**
+         * Encode the row into the horizontal RLE buffer.
+         *
+         * @return the number of meaningful cells in RLE buffer
+         */
+        private int encodeRow (boolean[] row)
+        {
+            int size = 0;
+            int end = 0; // Abscissa right after previous foreground run
+            int x = 0;
+
+            while (true) {
+                while ((x < width) && !row[x]) {
+                    x++;
+                }
+
+                if (x == width) {
+                    return size;
+                }
+
+                final int start = x;
+
+                while ((x < width) && row[x]) {
+                    x++;
+                }
+
+                if (size == 0) {
+                    if (start > 0) {
+                        rle[size++] = 0; // Empty initial foreground
+                        rle[size++] = start; // Background
+                    }
+                } else {
+                    rle[size++] = start - end; // Background
+                }
+
+                rle[size++] = x - start; // Foreground
+                end = x;
+            }
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer minBandHeight = new Constant.Integer(
+                "Pixels",
+                64,
+                "Minimum band height, for parallel binarization into runs");
+    }
+}
@@ -21,9 +21,12 @@
 // </editor-fold>
 package org.audiveris.omr.run;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.util.Concurrency;
 import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,12 +35,23 @@ import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class <code>RunsRetriever</code> is in charge of reading a source of pixels and
  * retrieving foreground runs and background runs from it.
  * <p>
  * What is done with the retrieved runs is essentially the purpose of the provided adapter.
+ * <p>
+ * Two retrieval modes are available:
+ * <ul>
+ * <li>The <b>chunked</b> mode (default) processes contiguous bands of positions per task and
+ * directly encodes each position into a reusable RLE buffer, handed over to
+ * {@link RunAdapter#endPosition(int, int[], int)}, without any intermediate {@link Run} object.
+ * <li>The <b>legacy</b> mode processes one position per task and hands a list of {@link Run}
+ * instances over to {@link RunAdapter#endPosition(int, List)}.
+ * </ul>
  *
  * @author Hervé Bitteur
  */
@@ -45,6 +59,8 @@ public class RunsRetriever
 {
     //~ Static fields/initializers -----------------------------------------------------------------
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(RunsRetriever.class);
 
     //~ Instance fields ----------------------------------------------------------------------------
@@ -86,7 +102,174 @@ public class RunsRetriever
         final int pMin = rect.y;
         final int pMax = (rect.y + rect.height) - 1;
 
-        rowBasedRetrieval(pMin, pMax, cMin, cMax);
+        if (constants.useChunkedRetrieval.isSet()) {
+            bandBasedRetrieval(pMin, pMax, cMin, cMax);
+        } else {
+            rowBasedRetrieval(pMin, pMax, cMin, cMax);
+        }
+    }
+
+    //---------------//
+    // isChunkedMode //
+    //---------------//
+    /**
+     * Tell whether the chunked retrieval mode is currently selected.
+     *
+     * @return true if so
+     */
+    public static boolean isChunkedMode ()
+    {
+        return constants.useChunkedRetrieval.isSet();
+    }
+
+    //----------------//
+    // setChunkedMode //
+    //----------------//
+    /**
+     * Select the retrieval mode (typically for benchmarking purpose).
+     *
+     * @param chunked true for chunked mode, false for legacy mode
+     */
+    public static void setChunkedMode (boolean chunked)
+    {
+        constants.useChunkedRetrieval.setValue(chunked);
+    }
+
+    //--------------------//
+    // bandBasedRetrieval //
+    //--------------------//
+    /**
+     * Retrieve runs band by band, a band being a contiguous range of positions.
+     * <p>
+     * Bands are processed either in parallel or in a serial way, according to the possibilities
+     * of the adapter and the OMR scheduler.
+     */
+    private void bandBasedRetrieval (final int pMin,
+                                     final int pMax,
+                                     final int cMin,
+                                     final int cMax)
+    {
+        final int count = pMax - pMin + 1;
+
+        if ((OmrExecutors.defaultParallelism.getValue() == false) || !adapter.isThreadSafe()
+                    || (count <= constants.minBandSize.getValue())) {
+            // Sequential, one single band
+            processBand(pMin, pMax, cMin, cMax);
+        } else {
+            // Parallel, one task per band
+            final int bandCount = OmrExecutors.getParallelism() * constants.bandsPerWorker
+                    .getValue();
+            final int bandSize = Math.max(
+                    constants.minBandSize.getValue(),
+                    (count + bandCount - 1) / bandCount);
+
+            try {
+                List<Callable<Void>> tasks = new ArrayList<>();
+
+                for (int p = pMin; p <= pMax; p += bandSize) {
+                    final int first = p;
+                    final int last = Math.min(pMax, (p + bandSize) - 1);
+                    tasks.add(() -> {
+                        processBand(first, last, cMin, cMax);
+
+                        return null;
+                    });
+                }
+
+                // Launch the tasks and wait for their completion
+                for (Future<Void> future : OmrScheduler.invokeAll(OmrScheduler.Level.ROW, tasks)) {
+                    future.get(); // To propagate any exception
+                }
+            } catch (InterruptedException ex) {
+                logger.warn("ParallelRuns got interrupted");
+                throw new ProcessingCancellationException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof ProcessingCancellationException) {
+                    throw (ProcessingCancellationException) ex.getCause();
+                }
+
+                logger.warn("Exception raised in ParallelRuns", ex.getCause());
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+    }
+
+    //----------------//
+    // encodePosition //
+    //----------------//
+    /**
+     * Encode the accepted foreground runs of position 'pos' into the provided RLE buffer,
+     * using the same RLE format as RunTable sequences.
+     *
+     * @param pos  the position in the pixels array (x for vertical)
+     * @param cMin the starting coordinate (y for vertical)
+     * @param cMax the ending coordinate
+     * @param rle  (output) the buffer to populate, large enough
+     * @return the number of meaningful cells in rle buffer (0 for an empty sequence)
+     */
+    private int encodePosition (int pos,
+                                int cMin,
+                                int cMax,
+                                int[] rle)
+    {
+        int size = 0; // Number of cells written so far
+        int lastEnd = 0; // Relative end of last accepted foreground run
+        int start = -1; // Relative start of foreground run in progress, -1 if none
+
+        for (int c = cMin; c <= cMax + 1; c++) {
+            final boolean fore = (c <= cMax) && adapter.isFore(c, pos);
+
+            if (fore) {
+                if (start == -1) {
+                    start = c - cMin;
+                }
+            } else if (start != -1) {
+                final int length = (c - cMin) - start;
+
+                if (adapter.foreRun(c, pos, length)) {
+                    if (size == 0) {
+                        if (start > 0) {
+                            rle[size++] = 0; // Empty initial foreground
+                            rle[size++] = start;
+                        }
+                    } else {
+                        rle[size++] = start - lastEnd; // Background
+                    }
+
+                    rle[size++] = length; // Foreground
+                    lastEnd = start + length;
+                }
+
+                start = -1;
+            }
+        }
+
+        return size;
+    }
+
+    //-------------//
+    // processBand //
+    //-------------//
+    /**
+     * Process the positions of a band, reusing the same RLE buffer for all positions.
+     *
+     * @param pFirst first position in band
+     * @param pLast  last position in band
+     * @param cMin   the starting coordinate
+     * @param cMax   the ending coordinate
+     */
+    private void processBand (int pFirst,
+                              int pLast,
+                              int cMin,
+                              int cMax)
+    {
+        // Worst case: 0, then alternating background & foreground lengths
+        final int[] rle = new int[(cMax - cMin) + 3];
+
+        for (int p = pFirst; p <= pLast; p++) {
+            final int size = encodePosition(p, cMin, cMax, rle);
+            adapter.endPosition(p, rle, size);
+        }
     }
 
     //-----------------//
@@ -146,7 +329,7 @@ public class RunsRetriever
 
         // Process end of last run in this position
         if (isFore) {
-            if (adapter.foreRun((cMax + 1) - cMin, pos, length)) {
+            if (adapter.foreRun(cMax + 1, pos, length)) {
                 // Bufferize the runs
                 posRuns.add(new Run((cMax + 1) - cMin - length, length));
             }
@@ -160,9 +343,9 @@ public class RunsRetriever
     // rowBasedRetrieval //
     //-------------------//
     /**
-     * Retrieve runs row by row.
+     * Retrieve runs row by row (legacy mode).
      * This method handles the pixels run either in a parallel or a serial way,
-     * according to the possibilities of the high OMR executor.
+     * according to the possibilities of the OMR scheduler.
      */
     private void rowBasedRetrieval (int pMin,
                                     int pMax,
@@ -175,7 +358,7 @@ public class RunsRetriever
                 processPosition(p, cMin, cMax);
             }
         } else {
-            // Parallel (TODO: should use Java 7 fork/join someday...)
+            // Parallel, on the shared fork/join scheduler
             try {
                 // Browse one dimension
                 List<Callable<Void>> tasks = new ArrayList<>(pMax - pMin + 1);
@@ -190,7 +373,7 @@ public class RunsRetriever
                 }
 
                 // Launch the tasks and wait for their completion
-                OmrExecutors.getHighExecutor().invokeAll(tasks);
+                OmrScheduler.invokeAll(OmrScheduler.Level.ROW, tasks);
             } catch (InterruptedException ex) {
                 logger.warn("ParallelRuns got interrupted");
                 throw new ProcessingCancellationException(ex);
@@ -216,7 +399,22 @@ public class RunsRetriever
     {
 
         /**
-         * Called at end of position.
+         * Called at end of position, in chunked mode.
+         * <p>
+         * The provided buffer is reused for the next position, so its content must be copied if
+         * needed.
+         *
+         * @param pos  position value
+         * @param rle  RLE-encoded foreground and background lengths for this position, using
+         *             {@link RunTable} sequence format
+         * @param size number of meaningful cells in rle (0 for an empty sequence)
+         */
+        void endPosition (int pos,
+                          int[] rle,
+                          int size);
+
+        /**
+         * Called at end of position, in legacy mode.
          *
          * @param pos  position value
          * @param runs sequence of runs for this position
@@ -246,4 +444,27 @@ public class RunsRetriever
         boolean isFore (int coord,
                         int pos);
     }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean useChunkedRetrieval = new Constant.Boolean(
+                true,
+                "Should we retrieve runs by bands of positions, without Run objects?");
+
+        private final Constant.Integer minBandSize = new Constant.Integer(
+                "positions",
+                64,
+                "Minimum number of positions per band, in chunked mode");
+
+        private final Constant.Integer bandsPerWorker = new Constant.Integer(
+                "bands",
+                4,
+                "Target number of bands per worker thread, in chunked mode");
+    }
 }
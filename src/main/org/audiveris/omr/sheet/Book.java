@@ -30,6 +30,7 @@ import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.image.FilterDescriptor;
 import org.audiveris.omr.image.FilterParam;
+import org.audiveris.omr.image.ImageLoaderPool;
 import org.audiveris.omr.image.ImageLoading;
 import org.audiveris.omr.log.LogUtil;
 import org.audiveris.omr.score.OpusExporter;
@@ -58,8 +59,10 @@ import org.audiveris.omr.util.Jaxb.OmrSchemaOutputResolver;
 import org.audiveris.omr.util.Memory;
 import org.audiveris.omr.util.NaturalSpec;
 import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
 import org.audiveris.omr.util.StopWatch;
 import org.audiveris.omr.util.Version;
+import org.audiveris.omr.util.ZipAppender;
 import org.audiveris.omr.util.ZipFileSystem;
 import org.audiveris.omr.util.param.Param;
 import org.audiveris.omr.util.param.StringParam;
@@ -284,6 +287,9 @@ public class Book
     /** Active parameter dialog, if any. */
     private JDialog parameterDialog;
 
+    /** Loaders kept open on book input file, if any. */
+    private volatile ImageLoaderPool imagePool;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Create a Book with a path to an input images file.
@@ -423,6 +429,11 @@ public class Book
             bookBrowser.close();
         }
 
+        // Release input file
+        if (imagePool != null) {
+            imagePool.dispose();
+        }
+
         // Remove from OMR instances
         OMR.engine.removeBook(this, sheetNumber);
 
@@ -1485,6 +1496,9 @@ public class Book
             logger.info("Loading book {}", bookPath);
             watch.start("book");
 
+            // Recover book file from any interrupted incremental store
+            ZipAppender.recover(bookPath);
+
             // Open book file
             Path rootPath = ZipFileSystem.open(bookPath);
 
@@ -1535,11 +1549,14 @@ public class Book
     //----------------//
     /**
      * Actually load the image that corresponds to the specified sheet id.
+     * <p>
+     * Loaders on book input file are kept open for a while, so that images of a multi-image input
+     * file can be loaded concurrently, without re-opening the file for each image.
      *
      * @param id specified sheet id
      * @return the loaded sheet image
      */
-    public synchronized BufferedImage loadSheetImage (int id)
+    public BufferedImage loadSheetImage (int id)
     {
         try {
             if (!Files.exists(path)) {
@@ -1548,17 +1565,13 @@ public class Book
                 return null;
             }
 
-            final ImageLoading.Loader loader = ImageLoading.getLoader(path);
+            final BufferedImage img = getImagePool().getImage(id);
 
-            if (loader == null) {
-                return null;
+            if (img != null) {
+                logger.info("Loaded image {} {}x{} from {}",
+                            id, img.getWidth(), img.getHeight(), path);
             }
 
-            BufferedImage img = loader.getImage(id);
-            logger.info("Loaded image {} {}x{} from {}", id, img.getWidth(), img.getHeight(), path);
-
-            loader.dispose();
-
             return img;
         } catch (IOException ex) {
             logger.warn("Error in book.loadSheetImage", ex);
@@ -1638,6 +1651,42 @@ public class Book
         return root.resolve(INTERNALS_RADIX + number);
     }
 
+    //---------------------//
+    // prefetchSheetImages //
+    //---------------------//
+    /**
+     * Launch the background loading of the images of the valid sheets that follow the
+     * specified sheet and are not yet loaded.
+     * <p>
+     * Nothing is prefetched in interactive mode, where the user may not visit following sheets.
+     *
+     * @param id specified sheet id
+     */
+    public void prefetchSheetImages (int id)
+    {
+        final int count = constants.prefetchedImages.getValue();
+
+        if ((count <= 0) || (OMR.gui != null) || !isMultiSheet() || !Files.exists(path)) {
+            return;
+        }
+
+        final List<Integer> ids = new ArrayList<>();
+
+        for (SheetStub stub : new ArrayList<>(stubs)) {
+            if (ids.size() >= count) {
+                break;
+            }
+
+            if ((stub.getNumber() > id) && stub.isValid() && !stub.isDone(OmrStep.LOAD)) {
+                ids.add(stub.getNumber());
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            getImagePool().prefetch(ids);
+        }
+    }
+
     //-------//
     // print //
     //-------//
@@ -1726,8 +1775,9 @@ public class Book
                     }
 
                     try {
-                        List<Future<Boolean>> futures = OmrExecutors.getCachedLowExecutor()
-                                .invokeAll(tasks);
+                        List<Future<Boolean>> futures = OmrScheduler.invokeAll(
+                                OmrScheduler.Level.BOOK,
+                                tasks);
 
                         for (Future<Boolean> future : futures) {
                             try {
@@ -1940,8 +1990,19 @@ public class Book
             checkRadixChange(bookPath);
             logger.debug("Storing book...");
 
-            if ((this.bookPath == null)
-                        || this.bookPath.toAbsolutePath().equals(bookPath.toAbsolutePath())) {
+            if ((this.bookPath != null)
+                        && this.bookPath.toAbsolutePath().equals(bookPath.toAbsolutePath())
+                        && constants.incrementalStore.isSet()
+                        && Files.exists(bookPath)) {
+                // Append modified entries only
+                diskWritten = storeIncrementally(bookPath);
+
+                // Separate repository
+                if ((repository != null) && repository.isModified()) {
+                    repository.storeRepository();
+                }
+            } else if ((this.bookPath == null)
+                               || this.bookPath.toAbsolutePath().equals(bookPath.toAbsolutePath())) {
                 if (this.bookPath == null) {
                     root = ZipFileSystem.create(bookPath);
                     diskWritten = true;
@@ -2030,6 +2091,93 @@ public class Book
         }
     }
 
+    //--------------------//
+    // storeIncrementally //
+    //--------------------//
+    /**
+     * Store the modified parts of book into the existing book file, by appending them at
+     * the end of the file.
+     * <p>
+     * Book info and modified sheets are first stored into a staging folder, where each sheet
+     * folder is shadowed by placeholders for its existing entries (see {@link ZipAppender}).
+     * Only the entries actually written or deleted are then appended to the book file.
+     * <p>
+     * When dead bytes get too many, the book file is compacted in background.
+     *
+     * @param bookPath path to the existing book file
+     * @return true if disk has been written
+     * @throws Exception if anything goes wrong
+     */
+    private boolean storeIncrementally (Path bookPath)
+            throws Exception
+    {
+        final StopWatch watch = new StopWatch("storeIncrementally " + bookPath);
+        final Path staging = Files.createTempDirectory("omr-store-");
+
+        try {
+            watch.start("index");
+            final ZipAppender appender = new ZipAppender(bookPath);
+
+            if (isModified() || isUpgraded()) {
+                storeBookInfo(staging); // Book info (book.xml)
+            }
+
+            // Contained sheets
+            for (SheetStub stub : stubs) {
+                if (stub.isModified() || stub.isUpgraded()) {
+                    watch.start("sheet#" + stub.getNumber());
+                    final String folder = INTERNALS_RADIX + stub.getNumber();
+                    appender.shadow(staging, folder);
+                    stub.getSheet().store(staging.resolve(folder), null);
+                }
+            }
+
+            watch.start("append");
+            appender.merge(staging);
+
+            final int count = appender.commit();
+            final double garbage = appender.getGarbageRatio();
+            logger.debug("Appended {} entries, garbage ratio: {}", count, garbage);
+
+            if (garbage > constants.maxGarbageRatio.getValue()) {
+                compactInBackground(bookPath);
+            }
+
+            return count > 0;
+        } finally {
+            FileUtil.deleteDirectory(staging);
+
+            if (constants.printWatch.isSet()) {
+                watch.print();
+            }
+        }
+    }
+
+    //---------------------//
+    // compactInBackground //
+    //---------------------//
+    /**
+     * Launch the compaction of book file, once the book lock can be acquired.
+     *
+     * @param bookPath path to book file
+     */
+    private void compactInBackground (Path bookPath)
+    {
+        OmrExecutors.getCachedLowExecutor().submit(() -> {
+            getLock().lock();
+
+            try {
+                if (bookPath.equals(this.bookPath)) {
+                    ZipAppender.compact(bookPath);
+                }
+            } catch (IOException ex) {
+                logger.warn("Error compacting " + bookPath + " " + ex, ex);
+            } finally {
+                getLock().unlock();
+            }
+        });
+    }
+
     //---------------//
     // storeBookInfo //
     //---------------//
@@ -2305,6 +2453,26 @@ public class Book
         return stubsToUpgrade;
     }
 
+    //--------------//
+    // getImagePool //
+    //--------------//
+    private ImageLoaderPool getImagePool ()
+    {
+        ImageLoaderPool pool = imagePool;
+
+        if (pool == null) {
+            synchronized (this) {
+                pool = imagePool;
+
+                if (pool == null) {
+                    imagePool = pool = new ImageLoaderPool(path);
+                }
+            }
+        }
+
+        return pool;
+    }
+
     //------------------------//
     // getStubsWithOldVersion //
     //------------------------//
@@ -2811,6 +2979,11 @@ public class Book
                 false,
                 "Should we process all stubs of a book in parallel? (beware of many stubs)");
 
+        private final Constant.Integer prefetchedImages = new Constant.Integer(
+                "Images",
+                2,
+                "Number of following sheet images to load in background (0 for none)");
+
         private final Constant.Boolean checkBookVersion = new Constant.Boolean(
                 true,
                 "Should we check version of loaded book files?");
@@ -2822,6 +2995,14 @@ public class Book
         private final Constant.Boolean batchUpgradeBooks = new Constant.Boolean(
                 false,
                 "In batch, should we automatically upgrade all book sheets?");
+
+        private final Constant.Boolean incrementalStore = new Constant.Boolean(
+                true,
+                "Should we store only the modified entries, appended to the book file?");
+
+        private final Constant.Ratio maxGarbageRatio = new Constant.Ratio(
+                0.5,
+                "Maximum ratio of dead bytes in book file before compaction");
     }
 
     //------------------//
@@ -21,6 +21,7 @@
 // </editor-fold>
 package org.audiveris.omr.sheet;
 
+import ij.process.Blitter;
 import ij.process.ByteProcessor;
 import ij.process.ColorProcessor;
 
@@ -41,6 +42,7 @@ import org.audiveris.omr.sheet.grid.LineInfo;
 import org.audiveris.omr.ui.selection.LocationEvent;
 import org.audiveris.omr.ui.selection.MouseMovement;
 import org.audiveris.omr.ui.selection.PixelEvent;
+import org.audiveris.omr.util.ByteUtil;
 import org.audiveris.omr.util.Navigable;
 import org.audiveris.omr.util.StopWatch;
 
@@ -84,6 +86,11 @@ import javax.xml.bind.annotation.XmlRootElement;
  * dimension, with the ability to retrieve them on demand or dispose them, via {@link #getSource}
  * and {@link #disposeSource} methods.
  * <p>
+ * A builder working on a limited area, such as a staff header, can rather ask for just a region
+ * of a source, via {@link #getSource(SourceKey, Rectangle)}.
+ * Unless the whole source is already cached, the region is built on demand and the whole source
+ * is neither built nor kept in memory.
+ * <p>
  * Any instance of this class is registered on the related Sheet location service, so that each time
  * a location event is received, the corresponding pixel gray value of the GRAY sources is
  * published.
@@ -687,6 +694,66 @@ public class Picture
         return src;
     }
 
+    //-----------//
+    // getSource //
+    //-----------//
+    /**
+     * Report a region of the desired source.
+     * <p>
+     * If the whole source is cached, the region is simply copied out of it.
+     * Otherwise, the region is built on demand, without building nor caching the whole source:
+     * <ul>
+     * <li>BINARY is decoded from the BINARY table.
+     * <li>NO_STAFF is the BINARY region, minus the staff lines that cross it.
+     * <li>MEDIAN and GAUSSIAN filter their input region, enlarged by the filter radius, so that
+     * pixels within the region are identical to those of the whole source.
+     * <li>GRAY is copied out of the whole GRAY source.
+     * </ul>
+     * Region pixels that lie outside the picture are set as background.
+     *
+     * @param key  the key of desired source
+     * @param rect the region of interest, in picture coordinates
+     * @return a buffer of rect dimension, with (0,0) at rect top left corner, or null
+     */
+    public ByteProcessor getSource (SourceKey key,
+                                    Rectangle rect)
+    {
+        final ByteProcessor whole = getStrongRef(key);
+
+        if (whole != null) {
+            return cropped(whole, rect);
+        }
+
+        switch (key) {
+        case BINARY:
+
+            final RunTable table = getTable(TableKey.BINARY);
+
+            if (table != null) {
+                return table.getBuffer(rect);
+            }
+
+            break;
+
+        case NO_STAFF:
+            return buildNoStaffRegion(rect);
+
+        case MEDIAN:
+            return filteredRegion(key, rect, constants.medianRadius.getValue());
+
+        case GAUSSIAN:
+            return filteredRegion(key, rect, constants.gaussianRadius.getValue());
+
+        default:
+            break;
+        }
+
+        // Fall back to whole source
+        final ByteProcessor src = getSource(key);
+
+        return (src != null) ? cropped(src, rect) : null;
+    }
+
     //----------//
     // getTable //
     //----------//
@@ -1084,6 +1151,118 @@ public class Picture
         return new ByteProcessor(img);
     }
 
+    //--------------------//
+    // buildNoStaffRegion //
+    //--------------------//
+    private ByteProcessor buildNoStaffRegion (Rectangle rect)
+    {
+        final ByteProcessor buf = getSource(SourceKey.BINARY, rect);
+
+        if (buf == null) {
+            return null;
+        }
+
+        boolean linesFound = false;
+        BufferedImage img = buf.getBufferedImage();
+        Graphics2D g = img.createGraphics();
+        g.translate(-rect.x, -rect.y);
+        g.setClip(rect);
+        g.setColor(Color.WHITE);
+
+        for (SystemInfo system : sheet.getSystems()) {
+            for (Staff staff : system.getStaves()) {
+                for (LineInfo li : staff.getLines()) {
+                    StaffLine line = (StaffLine) li;
+                    Glyph glyph = line.getGlyph();
+
+                    if ((glyph != null) && (glyph.getRunTable() != null)) {
+                        linesFound = true;
+
+                        if (glyph.getBounds().intersects(rect)) {
+                            glyph.getRunTable().render(g, glyph.getTopLeft());
+                        }
+                    }
+                }
+            }
+        }
+
+        g.dispose();
+
+        if (!linesFound) {
+            logger.warn("No system lines to build NO_STAFF region"); // Should not happen!
+
+            return null;
+        }
+
+        return new ByteProcessor(img);
+    }
+
+    //---------//
+    // cropped //
+    //---------//
+    /**
+     * Copy a rectangular region out of the provided buffer.
+     *
+     * @param src  the buffer to copy from
+     * @param rect the region, in src coordinates
+     * @return a buffer of rect dimension, with background outside of src
+     */
+    private static ByteProcessor cropped (ByteProcessor src,
+                                          Rectangle rect)
+    {
+        final ByteProcessor buf = new ByteProcessor(rect.width, rect.height);
+        ByteUtil.raz(buf);
+        buf.copyBits(src, -rect.x, -rect.y, Blitter.COPY);
+
+        return buf;
+    }
+
+    //----------------//
+    // filteredRegion //
+    //----------------//
+    /**
+     * Build a MEDIAN or GAUSSIAN region, by filtering the input region enlarged by the
+     * filter radius.
+     *
+     * @param key    MEDIAN or GAUSSIAN
+     * @param rect   the region of interest
+     * @param radius filter radius
+     * @return the filtered region
+     */
+    private ByteProcessor filteredRegion (SourceKey key,
+                                          Rectangle rect,
+                                          int radius)
+    {
+        final Rectangle outer = new Rectangle(rect);
+        outer.grow(radius, radius);
+        outer.setBounds(outer.intersection(new Rectangle(0, 0, width, height)));
+
+        if (outer.isEmpty()) {
+            final ByteProcessor buf = new ByteProcessor(rect.width, rect.height);
+            ByteUtil.raz(buf);
+
+            return buf;
+        }
+
+        final ByteProcessor filtered;
+
+        if (key == SourceKey.MEDIAN) {
+            final ByteProcessor input = getSource(SourceKey.NO_STAFF, outer);
+            filtered = (input != null) ? medianFiltered(input) : null;
+        } else {
+            final ByteProcessor input = getSource(SourceKey.MEDIAN, outer);
+            filtered = (input != null) ? gaussianFiltered(input) : null;
+        }
+
+        if (filtered == null) {
+            return null;
+        }
+
+        return cropped(
+                filtered,
+                new Rectangle(rect.x - outer.x, rect.y - outer.y, rect.width, rect.height));
+    }
+
     //--------------//
     // getStrongRef //
     //--------------//
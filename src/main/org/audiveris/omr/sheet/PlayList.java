@@ -149,13 +149,15 @@ public class PlayList
                                         tgtPath, tgtSheetPath);
                             FileUtil.copyTree(srcSheetPath, tgtSheetPath);
 
-                            // File sheet#srcId.xml, if any, must be renamed as sheet#tgtId.xml
-                            final Path tgtSheetXmlPath = tgtSheetPath.resolve(
-                                    srcSheetPath.getFileName() + ".xml");
-                            if (Files.exists(tgtSheetXmlPath)) {
-                                final Path newPath = tgtSheetPath.resolve(
-                                        tgtSheetPath.getFileName() + ".xml");
-                                Files.move(tgtSheetXmlPath, newPath);
+                            // File sheet#srcId.xml|bin, if any, must be renamed as sheet#tgtId
+                            for (String ext : new String[]{".xml", ".bin"}) {
+                                final Path tgtSheetXmlPath = tgtSheetPath.resolve(
+                                        srcSheetPath.getFileName() + ext);
+                                if (Files.exists(tgtSheetXmlPath)) {
+                                    final Path newPath = tgtSheetPath.resolve(
+                                            tgtSheetPath.getFileName() + ext);
+                                    Files.move(tgtSheetXmlPath, newPath);
+                                }
                             }
                         } else {
                             logger.warn("No {} in {}", srcSheetPath, srcBook.getBookPath());
@@ -69,6 +69,7 @@ import org.audiveris.omr.ui.selection.PixelEvent;
 import org.audiveris.omr.ui.selection.SelectionService;
 import org.audiveris.omr.ui.util.ItemRenderer;
 import org.audiveris.omr.ui.util.WeakItemRenderer;
+import org.audiveris.omr.util.BinaryXMLStreamReader;
 import org.audiveris.omr.util.Dumping;
 import org.audiveris.omr.util.FileUtil;
 import org.audiveris.omr.util.Jaxb;
@@ -1212,13 +1213,26 @@ public class Sheet
             }
         }
 
-        // Sheet structure (sheet#n.xml)
+        // Sheet structure (sheet#n.bin or sheet#n.xml)
         try {
-            Path structurePath = sheetFolder.resolve(sheetFolder.getFileName() + ".xml");
-            Files.deleteIfExists(structurePath);
+            final Path binPath = sheetFolder.resolve(sheetFolder.getFileName() + ".bin");
+            final Path xmlPath = sheetFolder.resolve(sheetFolder.getFileName() + ".xml");
+            Files.deleteIfExists(binPath);
+            Files.deleteIfExists(xmlPath);
             Files.createDirectories(sheetFolder);
 
-            Jaxb.marshal(this, structurePath, getJaxbContext());
+            final Path structurePath;
+
+            if (isBinaryStructure()) {
+                structurePath = binPath;
+
+                try (OutputStream os = Files.newOutputStream(structurePath, CREATE)) {
+                    Jaxb.marshalBinary(this, os, getJaxbContext());
+                }
+            } else {
+                structurePath = xmlPath;
+                Jaxb.marshal(this, structurePath, getJaxbContext());
+            }
 
             stub.setModified(false);
             stub.setUpgraded(false);
@@ -1462,6 +1476,33 @@ public class Sheet
         return Sheet.INTERNALS_RADIX + number + ".xml";
     }
 
+    //------------------------//
+    // getSheetBinaryFileName //
+    //------------------------//
+    /**
+     * Report the file name of a sheet in binary form in the .omr zip file system.
+     *
+     * @param number sheet number (counted from 1) within the containing book
+     * @return the sheet binary file name
+     */
+    public static String getSheetBinaryFileName (int number)
+    {
+        return Sheet.INTERNALS_RADIX + number + ".bin";
+    }
+
+    //-------------------//
+    // isBinaryStructure //
+    //-------------------//
+    /**
+     * Tell whether sheet structure is to be stored in binary form.
+     *
+     * @return true for binary form, false for XML form
+     */
+    public static boolean isBinaryStructure ()
+    {
+        return constants.binaryStructure.isSet();
+    }
+
     //-----------//
     // unmarshal //
     //-----------//
@@ -1488,6 +1529,35 @@ public class Sheet
         return sheet;
     }
 
+    //-----------------//
+    // unmarshalBinary //
+    //-----------------//
+    /**
+     * Unmarshal the provided binary stream to allocate the corresponding sheet.
+     *
+     * @param in the input stream that contains the sheet in binary format.
+     *           The stream is not closed by this method
+     * @return the allocated sheet.
+     * @exception JAXBException      raised when unmarshalling goes wrong
+     * @exception XMLStreamException raised when binary data cannot be read
+     * @see BinaryXMLStreamReader
+     */
+    public static Sheet unmarshalBinary (InputStream in)
+            throws JAXBException,
+                   XMLStreamException
+    {
+        Unmarshaller um = getJaxbContext().createUnmarshaller();
+
+        if (constants.useUnmarshalLogger.isSet()) {
+            um.setListener(new Jaxb.UnmarshalLogger());
+        }
+
+        Sheet sheet = (Sheet) um.unmarshal(new BinaryXMLStreamReader(in));
+        logger.debug("Sheet unmarshalled from binary");
+
+        return sheet;
+    }
+
     //----------------//
     // getJaxbContext //
     //----------------//
@@ -1517,6 +1587,11 @@ public class Sheet
         private final Constant.Boolean useUnmarshalLogger = new Constant.Boolean(
                 false,
                 "Should we log every sheet unmarshalling?");
+
+        // Off until the book format version is bumped, since earlier releases cannot read it
+        private final Constant.Boolean binaryStructure = new Constant.Boolean(
+                false,
+                "Should we store sheet structure in binary form (rather than XML)?");
     }
 
     //-----------//
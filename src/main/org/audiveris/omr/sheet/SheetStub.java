@@ -45,6 +45,7 @@ import org.audiveris.omr.util.Jaxb;
 import org.audiveris.omr.util.Memory;
 import org.audiveris.omr.util.Navigable;
 import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
 import org.audiveris.omr.util.StopWatch;
 import org.audiveris.omr.util.Version;
 import org.audiveris.omr.util.ZipFileSystem;
@@ -65,7 +66,6 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
@@ -82,6 +82,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlList;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.stream.XMLStreamException;
 import org.audiveris.omr.util.FileUtil;
 
 /**
@@ -681,12 +682,16 @@ public class SheetStub
                 // Open the book file system
                 try {
                     book.getLock().lock();
-                    sheetFile = book.openSheetFolder(number).resolve(Sheet.getSheetFileName(number));
+                    final Path sheetFolder = book.openSheetFolder(number);
+                    final Path binFile = sheetFolder.resolve(Sheet.getSheetBinaryFileName(number));
+                    final boolean binary = Files.exists(binFile);
+                    sheetFile = binary ? binFile
+                            : sheetFolder.resolve(Sheet.getSheetFileName(number));
 
                     try (InputStream is = Files.newInputStream(
                             sheetFile,
                             StandardOpenOption.READ)) {
-                        sheet = Sheet.unmarshal(is);
+                        sheet = binary ? Sheet.unmarshalBinary(is) : Sheet.unmarshal(is);
                     }
 
                     sheetFile.getFileSystem().close();
@@ -706,7 +711,8 @@ public class SheetStub
 
                 logger.info("Loaded {}", sheetFile);
             } catch (IOException |
-                     JAXBException ex) {
+                     JAXBException |
+                     XMLStreamException ex) {
                 logger.warn("Error in loading sheet structure " + ex, ex);
                 logger.info("Trying to restart from binary");
                 resetToBinary();
@@ -1039,7 +1045,9 @@ public class SheetStub
             logger.info("StepException detected in " + neededSteps);
         } catch (ExecutionException ex) {
             // A StepException may have been wrapped into an ExecutionException
-            if (ex.getCause() instanceof StepPause) {
+            if (ex.getCause() instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) ex.getCause();
+            } else if (ex.getCause() instanceof StepPause) {
                 logger.info("Processing stopped. Cause: {}", ex.getCause().getMessage());
                 ok = false;
             } else if (ex.getCause() instanceof StepException) {
@@ -1302,6 +1310,9 @@ public class SheetStub
      * Do just one specified step, synchronously, with display of related UI if any.
      * <p>
      * OmrStep duration is guarded by a timeout, so that processing cannot get blocked infinitely.
+     * The step is run on a dedicated thread, which gets interrupted on timeout, and the step is
+     * waited for until it has actually stopped (within a grace delay), so that it no longer
+     * modifies the sheet when this method exits.
      *
      * @param step the step to perform
      * @throws Exception
@@ -1310,7 +1321,6 @@ public class SheetStub
             throws Exception
     {
         final int timeout = Main.getSheetStepTimeOut();
-        Future<Void> future = null;
 
         try {
             // Make sure sheet is available
@@ -1319,9 +1329,12 @@ public class SheetStub
             }
 
             // Implement a timeout for this step on the stub
-            future = OmrExecutors.getCachedLowExecutor().submit(() -> {
+            OmrScheduler.call(OmrScheduler.Level.SHEET, () -> {
                 LogUtil.start(SheetStub.this);
 
+                final Memory.HeapSampler sampler = constants.printStepMemory.isSet()
+                        ? new Memory.HeapSampler(constants.stepMemoryPeriod.getValue()) : null;
+
                 try {
                     setCurrentStep(step);
                     setModified(true); // At beginning of processing
@@ -1337,13 +1350,19 @@ public class SheetStub
                         throw sp;
                     }
                 } finally {
+                    if (sampler != null) {
+                        logger.info(
+                                "{} heap peak: {} MB, occupied at end: {} MB",
+                                step,
+                                sampler.stop() / (1024 * 1024),
+                                Memory.occupied() / (1024 * 1024));
+                    }
+
                     LogUtil.stopStub();
                 }
 
                 return null;
-            });
-
-            future.get(timeout, TimeUnit.SECONDS);
+            }, timeout, constants.stepCancelDelay.getValue(), TimeUnit.SECONDS);
 
             // At end of each step, save sheet to disk?
             if ((OMR.gui == null) && Main.getCli().isSave()) {
@@ -1351,13 +1370,9 @@ public class SheetStub
                 storeSheet();
             }
         } catch (TimeoutException tex) {
+            // The step has been cancelled and waited for
             logger.warn("Timeout {} seconds for step {}", timeout, step, tex);
 
-            // Signal the on-going step processing to stop (if possible)
-            if (future != null) {
-                future.cancel(true);
-            }
-
             throw new ProcessingCancellationException(tex);
         } finally {
             setCurrentStep(null);
@@ -1475,6 +1490,20 @@ public class SheetStub
         private final Constant.Boolean printWatch = new Constant.Boolean(
                 false,
                 "Should we print out the stop watch for sheet loading");
+
+        private final Constant.Boolean printStepMemory = new Constant.Boolean(
+                false,
+                "Should we print out heap usage for each step? (for one sheet at a time)");
+
+        private final Constant.Integer stepMemoryPeriod = new Constant.Integer(
+                "ms",
+                10,
+                "Sampling period of heap usage for each step");
+
+        private final Constant.Integer stepCancelDelay = new Constant.Integer(
+                "seconds",
+                30,
+                "Maximum time to wait for a timed-out step to stop");
     }
 
     //-------------------//
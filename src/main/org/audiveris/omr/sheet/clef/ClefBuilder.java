@@ -21,7 +21,6 @@
 // </editor-fold>
 package org.audiveris.omr.sheet.clef;
 
-import ij.process.Blitter;
 import ij.process.ByteProcessor;
 
 import org.audiveris.omr.classifier.Classifier;
@@ -355,10 +354,8 @@ public class ClefBuilder
     {
         final Rectangle rect = isFirstPass ? outerRect : innerRect;
 
-        // Grab pixels out of staff-free source
-        ByteProcessor source = sheet.getPicture().getSource(Picture.SourceKey.NO_STAFF);
-        ByteProcessor buf = new ByteProcessor(rect.width, rect.height);
-        buf.copyBits(source, -rect.x, -rect.y, Blitter.COPY);
+        // Grab pixels out of staff-free source, just for the rectangle
+        ByteProcessor buf = sheet.getPicture().getSource(Picture.SourceKey.NO_STAFF, rect);
 
         // Extract parts
         RunTable runTable = new RunTableFactory(VERTICAL).createTable(buf);
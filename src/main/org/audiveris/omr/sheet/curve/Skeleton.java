@@ -37,9 +37,12 @@ import org.audiveris.omr.sheet.SystemInfo;
 import org.audiveris.omr.sheet.grid.LineInfo;
 import org.audiveris.omr.sig.SIGraph;
 import org.audiveris.omr.sig.inter.Inter;
+import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.ui.util.ItemRenderer;
 import org.audiveris.omr.util.HorizontalSide;
 import org.audiveris.omr.util.Navigable;
+import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
 import org.audiveris.omr.util.VerticalSide;
 
 import org.slf4j.Logger;
@@ -54,16 +57,26 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class <code>Skeleton</code> handles the skeleton structure used for slurs and segments
  * retrieval, including the navigation along the skeleton.
  * <p>
  * We use special color values to record information directly within the skeleton buffer.
+ * <p>
+ * Thinning the whole page is costly, while only the areas around staves are relevant for curves.
+ * Hence the skeleton is built only on these areas, split in horizontal stripes processed in
+ * parallel.
+ * Each stripe is thinned with a surrounding halo, so that the stripe result is not impacted
+ * by the artificial stripe borders and thus matches the result of a whole page thinning.
  *
  * @author Hervé Bitteur
  */
@@ -218,8 +231,17 @@ public class Skeleton
 
         ///ByteProcessor buffer = picture.getSource(Picture.SourceKey.NO_STAFF);
         ByteProcessor buffer = picture.getSource(Picture.SourceKey.BINARY);
-        buffer = (ByteProcessor) buffer.duplicate();
-        buffer.skeletonize();
+
+        if (constants.bandLimited.isSet()) {
+            buffer = skeletonize(
+                    buffer,
+                    getCurveAreas(sheet),
+                    sheet.getScale().toPixels(constants.stripeHalo),
+                    constants.minStripeHeight.getValue());
+        } else {
+            buffer = (ByteProcessor) buffer.duplicate();
+            buffer.skeletonize();
+        }
 
         BufferedImage img = buffer.getBufferedImage();
 
@@ -484,6 +506,300 @@ public class Skeleton
         return (dir % 2) == 0;
     }
 
+    //---------------//
+    // getCurveAreas //
+    //---------------//
+    /**
+     * Report the areas where curves are looked for, that is the staves areas enlarged
+     * horizontally and vertically.
+     *
+     * @param sheet the related sheet
+     * @return the list of areas, one per staff
+     */
+    static List<Rectangle> getCurveAreas (Sheet sheet)
+    {
+        final Scale scale = sheet.getScale();
+        final int maxDx = scale.toPixels(constants.maxDxFromStaff);
+        final int maxDy = scale.toPixels(constants.maxDyFromStaff);
+        final List<Rectangle> areas = new ArrayList<>();
+
+        for (Staff staff : sheet.getStaffManager().getStaves()) {
+            Rectangle staffRect = null;
+
+            for (VerticalSide vSide : VerticalSide.values()) {
+                LineInfo line = staff.getLine(vSide);
+
+                for (HorizontalSide hSide : HorizontalSide.values()) {
+                    int x = staff.getAbscissa(hSide);
+                    int y = line.yAt(x);
+
+                    if (staffRect == null) {
+                        staffRect = new Rectangle(x, y, 0, 0);
+                    } else {
+                        staffRect.add(x, y);
+                    }
+                }
+            }
+
+            staffRect.grow(maxDx, maxDy);
+            areas.add(staffRect);
+        }
+
+        return areas;
+    }
+
+    //-------------//
+    // skeletonize //
+    //-------------//
+    /**
+     * Build the skeleton of the provided binary image, limited to the provided areas.
+     * <p>
+     * Areas are merged into horizontal bands, which are split into stripes of similar heights.
+     * Each stripe is thinned on its own, in parallel when possible, together with a halo of
+     * surrounding rows and columns, then only the stripe part is kept.
+     * <p>
+     * Thinning removes at most one layer of pixels per sub-pass, hence a stripe border cannot
+     * impact pixels farther than the number of sub-passes, which grows with the thickness of the
+     * thickest black item.
+     * The provided halo is thus enlarged for any band where thicker items are met.
+     *
+     * @param source        the binary image, not modified
+     * @param areas         the areas of interest
+     * @param halo          minimum margin added around each stripe
+     * @param minStripeSize minimum stripe height
+     * @return a new image, with skeleton within areas and background elsewhere
+     */
+    static ByteProcessor skeletonize (ByteProcessor source,
+                                      List<Rectangle> areas,
+                                      int halo,
+                                      int minStripeSize)
+    {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final Rectangle imageRect = new Rectangle(0, 0, width, height);
+        final ByteProcessor target = (ByteProcessor) source.createProcessor(width, height);
+        final byte[] out = (byte[]) target.getPixels();
+        Arrays.fill(out, (byte) 255);
+
+        // Merge vertically overlapping areas into bands
+        final List<Rectangle> sorted = new ArrayList<>();
+
+        for (Rectangle area : areas) {
+            final Rectangle r = area.intersection(imageRect);
+
+            if (!r.isEmpty()) {
+                sorted.add(r);
+            }
+        }
+
+        sorted.sort(Comparator.comparingInt(r -> r.y));
+
+        final List<Rectangle> bands = new ArrayList<>();
+        Rectangle band = null;
+        int rows = 0;
+
+        for (Rectangle r : sorted) {
+            if ((band != null) && (r.y <= (band.y + band.height))) {
+                band.add(r);
+            } else {
+                bands.add(band = new Rectangle(r));
+            }
+        }
+
+        for (Rectangle b : bands) {
+            rows += b.height;
+        }
+
+        // Split bands into stripes, each with the halo of its band
+        final boolean parallel = OmrExecutors.defaultParallelism.getValue();
+        final int stripeSize = parallel
+                ? Math.max(minStripeSize, (rows + OmrExecutors.getParallelism() - 1)
+                                                  / OmrExecutors.getParallelism())
+                : Integer.MAX_VALUE;
+        final List<Rectangle> stripes = new ArrayList<>();
+        final List<Integer> halos = new ArrayList<>();
+
+        for (Rectangle b : bands) {
+            final int bandHalo = getHalo(source, b, halo);
+            final int count = Math.max(1, (int) Math.round((double) b.height / stripeSize));
+
+            for (int i = 0; i < count; i++) {
+                final int y1 = b.y + ((i * b.height) / count);
+                final int y2 = b.y + (((i + 1) * b.height) / count);
+                stripes.add(new Rectangle(b.x, y1, b.width, y2 - y1));
+                halos.add(bandHalo);
+            }
+        }
+
+        if (!parallel || (stripes.size() < 2)) {
+            for (int i = 0; i < stripes.size(); i++) {
+                skeletonizeStripe(source, stripes.get(i), halos.get(i), out);
+            }
+
+            return target;
+        }
+
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (int i = 0; i < stripes.size(); i++) {
+                final Rectangle stripe = stripes.get(i);
+                final int stripeHalo = halos.get(i);
+                tasks.add(() -> {
+                    skeletonizeStripe(source, stripe, stripeHalo, out);
+
+                    return null;
+                });
+            }
+
+            for (Future<Void> future : OmrScheduler.invokeAll(OmrScheduler.Level.ROW, tasks)) {
+                future.get(); // To propagate any exception
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("Skeleton got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) ex.getCause();
+            }
+
+            logger.warn("Exception raised in Skeleton", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+
+        return target;
+    }
+
+    //---------//
+    // getHalo //
+    //---------//
+    /**
+     * Report the halo to use around the provided band.
+     * <p>
+     * The halo must exceed the thickness of the thickest black item met around the band.
+     * Since a larger halo may bring thicker items into view, thickness is measured again until
+     * the halo no longer grows.
+     *
+     * @param source  the binary image
+     * @param band    the band of rows to process
+     * @param minHalo minimum halo value
+     * @return the halo value for this band
+     */
+    private static int getHalo (ByteProcessor source,
+                                Rectangle band,
+                                int minHalo)
+    {
+        final Rectangle imageRect = new Rectangle(0, 0, source.getWidth(), source.getHeight());
+        int halo = minHalo;
+
+        while (true) {
+            final Rectangle region = new Rectangle(band);
+            region.grow(halo, halo);
+
+            // Plus a margin for the final clean-up sub-passes
+            final int needed = getMaxThickness(source, region.intersection(imageRect)) + 2;
+
+            if (needed <= halo) {
+                return halo;
+            }
+
+            logger.debug("Skeleton halo raised from {} to {} for band {}", halo, needed, band);
+            halo = needed;
+        }
+    }
+
+    //-----------------//
+    // getMaxThickness //
+    //-----------------//
+    /**
+     * Report the thickness of the thickest black item within the provided region, measured as
+     * the side of the largest square of black pixels.
+     * <p>
+     * Unlike run lengths, this measure is not fooled by thin crossing lines, such as a staff line
+     * and a bar line.
+     * Rows are scanned only once, keeping for each column the side of the largest black square
+     * which ends at the pixel.
+     *
+     * @param source the binary image, with black pixels at 0
+     * @param region the region to scan, within image
+     * @return the maximum thickness, 0 if region has no black pixel
+     */
+    static int getMaxThickness (ByteProcessor source,
+                                Rectangle region)
+    {
+        final int width = source.getWidth();
+        final byte[] pixels = (byte[]) source.getPixels();
+        int[] prev = new int[region.width + 1]; // Previous row, shifted by 1 column
+        int[] curr = new int[region.width + 1]; // Current row, shifted by 1 column
+        int max = 0;
+
+        for (int y = region.y; y < (region.y + region.height); y++) {
+            final int offset = (y * width) + region.x;
+
+            for (int x = 0; x < region.width; x++) {
+                if (pixels[offset + x] == 0) {
+                    final int side = 1 + Math.min(Math.min(prev[x], prev[x + 1]), curr[x]);
+                    curr[x + 1] = side;
+                    max = Math.max(max, side);
+                } else {
+                    curr[x + 1] = 0;
+                }
+            }
+
+            final int[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+        }
+
+        return max;
+    }
+
+    //-------------------//
+    // skeletonizeStripe //
+    //-------------------//
+    /**
+     * Thin one stripe, with its halo, and copy the stripe result into target pixels.
+     *
+     * @param source the binary image
+     * @param stripe the stripe to process
+     * @param halo   margin around stripe
+     * @param out    the target pixels, with same dimension as source
+     */
+    private static void skeletonizeStripe (ByteProcessor source,
+                                           Rectangle stripe,
+                                           int halo,
+                                           byte[] out)
+    {
+        final int width = source.getWidth();
+        final Rectangle roi = new Rectangle(stripe);
+        roi.grow(halo, halo);
+        roi.setBounds(roi.intersection(new Rectangle(0, 0, width, source.getHeight())));
+
+        // Private copy of source pixels (source ROI is not touched, since shared)
+        final byte[] in = (byte[]) source.getPixels();
+        final ByteProcessor part = (ByteProcessor) source.createProcessor(roi.width, roi.height);
+        final byte[] pix = (byte[]) part.getPixels();
+
+        for (int y = 0; y < roi.height; y++) {
+            System.arraycopy(in, ((roi.y + y) * width) + roi.x, pix, y * roi.width, roi.width);
+        }
+
+        part.skeletonize();
+
+        // Keep only the stripe itself
+        final int dx = stripe.x - roi.x;
+        final int dy = stripe.y - roi.y;
+
+        for (int y = 0; y < stripe.height; y++) {
+            System.arraycopy(
+                    pix,
+                    ((dy + y) * roi.width) + dx,
+                    out,
+                    ((stripe.y + y) * width) + stripe.x,
+                    stripe.width);
+        }
+    }
+
     //~ Inner Classes ------------------------------------------------------------------------------
     //-----------//
     // Constants //
@@ -511,6 +827,19 @@ public class Skeleton
         private final Scale.Fraction maxDyFromStaff = new Scale.Fraction(
                 10,
                 "Maximum vertical gap from any staff");
+
+        private final Constant.Boolean bandLimited = new Constant.Boolean(
+                true,
+                "Should we build skeleton only around staves, stripe by stripe?");
+
+        private final Scale.Fraction stripeHalo = new Scale.Fraction(
+                3.0,
+                "Minimum margin thinned around each skeleton stripe");
+
+        private final Constant.Integer minStripeHeight = new Constant.Integer(
+                "rows",
+                256,
+                "Minimum number of rows per skeleton stripe");
     }
 
     //---------------//
@@ -554,33 +883,10 @@ public class Skeleton
          */
         public void eraseDistantRegions ()
         {
-            final Scale scale = sheet.getScale();
-            final int maxDx = scale.toPixels(constants.maxDxFromStaff);
-            final int maxDy = scale.toPixels(constants.maxDyFromStaff);
             final Area sheetArea = new Area(new Rectangle(buffer.getWidth(), buffer.getHeight()));
 
-            for (Staff staff : sheet.getStaffManager().getStaves()) {
-                Rectangle staffRect = null;
-
-                for (VerticalSide vSide : VerticalSide.values()) {
-                    LineInfo line = staff.getLine(vSide);
-
-                    for (HorizontalSide hSide : HorizontalSide.values()) {
-                        int x = staff.getAbscissa(hSide);
-                        int y = line.yAt(x);
-
-                        if (staffRect == null) {
-                            staffRect = new Rectangle(x, y, 0, 0);
-                        } else {
-                            staffRect.add(x, y);
-                        }
-                    }
-                }
-
-                staffRect.grow(maxDx, maxDy);
-
-                Area staffArea = new Area(staffRect);
-                sheetArea.subtract(staffArea);
+            for (Rectangle staffRect : getCurveAreas(sheet)) {
+                sheetArea.subtract(new Area(staffRect));
             }
 
             g.fill(sheetArea);
@@ -26,6 +26,7 @@ import ij.process.ByteProcessor;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.glyph.Grades;
+import org.audiveris.omr.image.ColumnProjector;
 import org.audiveris.omr.math.AreaUtil;
 import org.audiveris.omr.math.AreaUtil.CoreData;
 import org.audiveris.omr.math.GeoPath;
@@ -867,44 +868,43 @@ public class StaffProjector
     {
         projection = new Projection.Short(0, sheet.getWidth() - 1);
 
-        final ArrayList<Integer> derivatives = new ArrayList<>();
         final LineInfo firstLine = staff.getFirstLine();
         final LineInfo lastLine = staff.getLastLine();
         final int dx = params.staffAbscissaMargin;
         final int xMin = xClamp(staff.getAbscissa(LEFT) - dx);
         final int xMax = xClamp(staff.getAbscissa(RIGHT) + dx);
+        final int length = xMax - xMin + 1;
 
         // Correction for ordinates of a 1-line staff
         final int dy = staff.isOneLineStaff() ? (2 * scale.getInterline()) : 0;
 
-        // Populating projection data
-        for (int x = xMin; x <= xMax; x++) {
-            int yMin = firstLine.yAt(x) - dy;
-            int yMax = lastLine.yAt(x) - 1 + dy;
-            short count = 0;
+        // Vertical limits for each abscissa
+        final int[] yMins = new int[length];
+        final int[] yMaxs = new int[length];
 
-            for (int y = yMin; y <= yMax; y++) {
-                if (pixelFilter.get(x, y) == 0) {
-                    count++;
-                }
-            }
+        for (int i = 0; i < length; i++) {
+            yMins[i] = firstLine.yAt(xMin + i) - dy;
+            yMaxs[i] = lastLine.yAt(xMin + i) - 1 + dy;
+        }
+
+        // Populating projection data
+        final int[] counts = ColumnProjector.project(pixelFilter, xMin, yMins, yMaxs);
+        final int[] derivatives = new int[length];
 
-            projection.increment(x, count);
+        for (int i = 0; i < length; i++) {
+            projection.increment(xMin + i, counts[i]);
 
-            if (x > xMin) {
-                derivatives.add(Math.abs(projection.getDerivative(x)));
+            if (i > 0) {
+                derivatives[i] = Math.abs(counts[i] - counts[i - 1]);
             }
         }
 
         // Computing minDerivative from observed top values
-        Collections.sort(derivatives);
-
-        final int size = derivatives.size();
         final int top = constants.topDerivativeNumber.getValue();
         int derCumul = 0;
 
-        for (int i = 1; i <= top; i++) {
-            derCumul += derivatives.get(size - i);
+        for (int der : ColumnProjector.topValues(derivatives, 1, length - 1, top)) {
+            derCumul += der;
         }
 
         final double eliteDer = (double) derCumul / top;
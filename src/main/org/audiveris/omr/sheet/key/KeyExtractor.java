@@ -35,6 +35,7 @@ import org.audiveris.omr.glyph.GlyphLink;
 import org.audiveris.omr.glyph.Glyphs;
 import org.audiveris.omr.glyph.Grades;
 import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.ColumnProjector;
 import org.audiveris.omr.math.GeoUtil;
 import org.audiveris.omr.math.IntegerFunction;
 import static org.audiveris.omr.run.Orientation.VERTICAL;
@@ -95,8 +96,11 @@ public class KeyExtractor
     /** Scale-dependent parameters. */
     private final Parameters params;
 
-    /** Staff-free pixel source. */
-    private final ByteProcessor staffFreeSource;
+    /** Sheet region covered by staff-free pixel source so far. */
+    private Rectangle region;
+
+    /** Staff-free pixel source, for just the region. */
+    private ByteProcessor staffFreeSource;
 
     /** Shape classifier to use. */
     private final Classifier classifier = ShapeClassifier.getInstance();
@@ -119,8 +123,6 @@ public class KeyExtractor
         sheet = system.getSheet();
         id = staff.getId();
         params = new Parameters(sheet.getScale(), staff.getSpecificInterline());
-
-        staffFreeSource = sheet.getPicture().getSource(Picture.SourceKey.NO_STAFF);
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -147,7 +149,12 @@ public class KeyExtractor
                                        boolean cropNeighbors)
     {
         Rectangle sliceRect = slice.getRect();
-        ByteProcessor sliceBuf = roi.getSlicePixels(staffFreeSource, slice, cropNeighbors);
+        ByteProcessor source = getSource(sliceRect);
+        ByteProcessor sliceBuf = roi.getSlicePixels(
+                source,
+                region.getLocation(),
+                slice,
+                cropNeighbors);
         RunTable runTable = new RunTableFactory(VERTICAL).createTable(sliceBuf);
         List<Glyph> parts = GlyphFactory.buildGlyphs(runTable, sliceRect.getLocation());
         purgeParts(parts, (sliceRect.x + sliceRect.width) - 1);
@@ -196,23 +203,10 @@ public class KeyExtractor
     {
         final int xMin = Math.min(measureStart, rect.x);
         final int xMax = (rect.x + rect.width) - 1;
-        final int yMin = rect.y;
-        final int yMax = (rect.y + rect.height) - 1;
-        final IntegerFunction table = new IntegerFunction(xMin, xMax);
-
-        for (int x = xMin; x <= xMax; x++) {
-            short cumul = 0;
-
-            for (int y = yMin; y <= yMax; y++) {
-                if (staffFreeSource.get(x, y) == 0) {
-                    cumul++;
-                }
-            }
-
-            table.setValue(x, cumul);
-        }
+        final Rectangle projRect = new Rectangle(xMin, rect.y, xMax - xMin + 1, rect.height);
+        final ByteProcessor source = getSource(projRect);
 
-        return table;
+        return ColumnProjector.projectAsFunction(source, region.getLocation(), projRect);
     }
 
     //---------//
@@ -234,12 +228,15 @@ public class KeyExtractor
                             double minBlackRatio)
     {
         // Process all rows
+        final ByteProcessor source = getSource(area);
+        final int dx = area.x - region.x;
+        final int dy = area.y - region.y;
         final boolean[] blacks = new boolean[area.height];
         Arrays.fill(blacks, false);
 
         for (int y = 0; y < area.height; y++) {
             for (int x = 0; x < area.width; x++) {
-                if (staffFreeSource.get(area.x + x, area.y + y) == 0) {
+                if (source.get(dx + x, dy + y) == 0) {
                     blacks[y] = true;
 
                     break;
@@ -294,21 +291,12 @@ public class KeyExtractor
                                   int maxCumul,
                                   int minWidth)
     {
-        final int xMin = rect.x;
-        final int xMax = (rect.x + rect.width) - 1;
-        final int yMin = rect.y;
-        final int yMax = (rect.y + rect.height) - 1;
-
+        final ByteProcessor source = getSource(rect);
+        final int[] counts = ColumnProjector.project(source, region.getLocation(), rect);
         int spaceStart = -1;
 
-        for (int x = xMin; x <= xMax; x++) {
-            int cumul = 0;
-
-            for (int y = yMin; y <= yMax; y++) {
-                if (staffFreeSource.get(x, y) == 0) {
-                    cumul++;
-                }
-            }
+        for (int x = rect.x, xMax = (rect.x + rect.width) - 1; x <= xMax; x++) {
+            final int cumul = counts[x - rect.x];
 
             if (cumul <= maxCumul) {
                 if (spaceStart == -1) {
@@ -344,7 +332,9 @@ public class KeyExtractor
         logger.debug("retrieveCandidates for staff#{}", id);
 
         // Key-signature area pixels
-        ByteProcessor keyBuf = roi.getAreaPixels(staffFreeSource, range);
+        ByteProcessor source = getSource(
+                new Rectangle(range.getStart(), roi.y, range.getWidth(), roi.height));
+        ByteProcessor keyBuf = roi.getAreaPixels(source, region.getLocation(), range);
         RunTable runTable = new RunTableFactory(VERTICAL).createTable(keyBuf);
         List<Glyph> parts = GlyphFactory.buildGlyphs(runTable, new Point(range.getStart(), roi.y));
 
@@ -454,23 +444,38 @@ public class KeyExtractor
      */
     private int getInk (Rectangle rect)
     {
-        final int xMin = rect.x;
-        final int xMax = (rect.x + rect.width) - 1;
-        final int yMin = rect.y;
-        final int yMax = (rect.y + rect.height) - 1;
+        final ByteProcessor source = getSource(rect);
         int weight = 0;
 
-        for (int x = xMin; x <= xMax; x++) {
-            for (int y = yMin; y <= yMax; y++) {
-                if (staffFreeSource.get(x, y) == 0) {
-                    weight++;
-                }
-            }
+        for (int count : ColumnProjector.project(source, region.getLocation(), rect)) {
+            weight += count;
         }
 
         return weight;
     }
 
+    //-----------//
+    // getSource //
+    //-----------//
+    /**
+     * Report the staff-free pixels of a sheet region which contains the provided rectangle.
+     * <p>
+     * Rather than the whole NO_STAFF source, only the region used so far is built, and it is
+     * enlarged whenever a rectangle beyond it is needed.
+     *
+     * @param rect the rectangle of interest
+     * @return the staff-free buffer, with (0,0) at {@link #region} location
+     */
+    private ByteProcessor getSource (Rectangle rect)
+    {
+        if ((region == null) || (!rect.isEmpty() && !region.contains(rect))) {
+            region = (region == null) ? new Rectangle(rect) : region.union(rect);
+            staffFreeSource = sheet.getPicture().getSource(Picture.SourceKey.NO_STAFF, region);
+        }
+
+        return staffFreeSource;
+    }
+
     //-----------------//
     // purgeCandidates //
     //-----------------//
@@ -192,16 +192,18 @@ public class KeyRoi
     /**
      * Report the pixels buffer for the whole key area
      *
-     * @param source pixel source (staff free)
+     * @param source pixel source (staff free) of a sheet region
+     * @param origin location of source region
      * @param range  start/stop values for key area
      * @return the buffer of area pixels
      */
     public ByteProcessor getAreaPixels (ByteProcessor source,
+                                        Point origin,
                                         StaffHeader.Range range)
     {
         Rectangle keyRect = new Rectangle(range.getStart(), y, range.getWidth(), height);
         ByteProcessor keyBuffer = new ByteProcessor(keyRect.width, height);
-        keyBuffer.copyBits(source, -keyRect.x, -y, Blitter.COPY);
+        keyBuffer.copyBits(source, origin.x - keyRect.x, origin.y - y, Blitter.COPY);
 
         return keyBuffer;
     }
@@ -262,12 +264,14 @@ public class KeyRoi
     /**
      * Report the pixels buffer for just a slice
      *
-     * @param source        pixel source (staff free)
+     * @param source        pixel source (staff free) of a sheet region
+     * @param origin        location of source region
      * @param slice         the current slice
      * @param cropNeighbors true for discarding pixels taken by neighboring slices
      * @return the buffer of slice pixels
      */
     public ByteProcessor getSlicePixels (ByteProcessor source,
+                                         Point origin,
                                          KeySlice slice,
                                          boolean cropNeighbors)
     {
@@ -275,7 +279,7 @@ public class KeyRoi
         BufferedImage sImage = new BufferedImage(sRect.width, sRect.height,
                                                  BufferedImage.TYPE_BYTE_GRAY);
         ByteProcessor sBuffer = new ByteProcessor(sImage);
-        sBuffer.copyBits(source, -sRect.x, -sRect.y, Blitter.COPY);
+        sBuffer.copyBits(source, origin.x - sRect.x, origin.y - sRect.y, Blitter.COPY);
 
         if (cropNeighbors) {
             // Erase good key items from adjacent slices, if any
@@ -82,9 +82,11 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.audiveris.omr.sig.inter.AbstractBeamInter;
 import org.audiveris.omr.sig.relation.Exclusion;
@@ -166,6 +168,9 @@ public class NoteHeadsBuilder
     /** The <b>properly scaled</b> templates to use, based on <b>current</b> staff. */
     private Catalog catalog;
 
+    /** Compiled templates from current catalog, lazily populated. */
+    private final Map<Shape, Template.Compiled> compileds = new EnumMap<>(Shape.class);
+
     /** The competing interpretations for the system. */
     private List<Inter> systemCompetitors;
 
@@ -266,6 +271,7 @@ public class NoteHeadsBuilder
             // Determine the proper catalog, based on staff size
             final int pointSize = staff.getHeadPointSize();
             catalog = TemplateFactory.getInstance().getCatalog(pointSize);
+            compileds.clear();
 
             final List<HeadInter> ch = new ArrayList<>(); // Created Heads, for this staff
 
@@ -470,6 +476,26 @@ public class NoteHeadsBuilder
         return filtered;
     }
 
+    //-------------//
+    // getCompiled //
+    //-------------//
+    /**
+     * Report the compiled template for the provided shape in current catalog.
+     *
+     * @param shape the desired shape
+     * @return the compiled template
+     */
+    private Template.Compiled getCompiled (Shape shape)
+    {
+        Template.Compiled compiled = compileds.get(shape);
+
+        if (compiled == null) {
+            compileds.put(shape, compiled = catalog.getTemplate(shape).getCompiled());
+        }
+
+        return compiled;
+    }
+
     //---------------------//
     // getCompetitorsSlice //
     //---------------------//
@@ -1320,7 +1346,7 @@ public class NoteHeadsBuilder
             }
 
             // Then try (all variants for) the shape and keep the best dist
-            double dist = template.evaluate(x, y, anchor, distances);
+            double dist = getCompiled(shape).evaluate(x, y, anchor, distances);
 
             // Trick to boost cross heads
             if (shape == Shape.NOTEHEAD_CROSS) {
@@ -1352,8 +1378,8 @@ public class NoteHeadsBuilder
                                        int y,
                                        Anchor anchor)
         {
-            final Template template = catalog.getTemplate(Shape.NOTEHEAD_VOID);
-            final double holeWhiteRatio = template.evaluateHole(x, y, anchor, distances);
+            final Template.Compiled compiled = getCompiled(Shape.NOTEHEAD_VOID);
+            final double holeWhiteRatio = compiled.evaluateHole(x, y, anchor, distances);
 
             if (holeWhiteRatio >= constants.minHoleWhiteRatio.getValue()) {
                 return Shape.NOTEHEAD_VOID;
@@ -94,6 +94,12 @@ public class SymbolsBuilder
     /** Aras where fine glyphs may be needed. */
     private final List<Rectangle> fineBoxes = new ArrayList<>();
 
+    /** Glyphs collected for evaluation. */
+    private final List<Glyph> candidates = new ArrayList<>();
+
+    /** Closest staff of each candidate. */
+    private final List<Staff> candidateStaves = new ArrayList<>();
+
     /** Scale-dependent global constants. */
     private final Parameters params;
 
@@ -133,10 +139,13 @@ public class SymbolsBuilder
      *       + cluster.decompose()                      // Decompose cluster into all subsets
      *       + FOREACH subset process(subset):
      *          - build compound glyph                  // Build one compound glyph per subset
-     *          - evaluateGlyph(compound)               // Run shape classifier on compound
-     *          - FOREACH acceptable evaluation
-     *             + interFactory.create(eval, glyph) // Create inter(s) related to evaluation
+     *          - collectGlyph(compound)                // Record compound for evaluation
+     * - evaluateGlyphs()                               // Run shape classifier on all compounds
+     *    + FOREACH compound with acceptable evaluation
+     *       - interFactory.create(eval, glyph)         // Create inter related to evaluation
      * </pre>
+     * Shape checks do not depend on the inters created, hence evaluating all compounds in one
+     * batch gives the same inters as evaluating each compound when it is built.
      *
      * @param optionalsMap the optional (weak) glyphs per system
      */
@@ -163,29 +172,33 @@ public class SymbolsBuilder
         watch.start("processClusters");
         processClusters(systemGraph);
 
+        // Evaluate all collected glyphs at once
+        watch.start("evaluateGlyphs");
+        evaluateGlyphs();
+
         if (constants.printWatch.isSet()) {
             watch.print();
         }
     }
 
-    //---------------//
-    // evaluateGlyph //
-    //---------------//
+    //--------------//
+    // collectGlyph //
+    //--------------//
     /**
-     * Evaluate a provided glyph and create all acceptable inter instances.
+     * Record a provided glyph for later evaluation.
      *
      * @param glyph the glyph to evaluate
      */
-    private void evaluateGlyph (Glyph glyph)
+    private void collectGlyph (Glyph glyph)
     {
         if (glyph.getId() == 0) {
             glyph = sheet.getGlyphIndex().registerOriginal(glyph);
         }
 
-        logger.debug("evaluateGlyph on {}", glyph);
+        logger.debug("collectGlyph on {}", glyph);
 
         if (glyph.isVip()) {
-            logger.info("VIP evaluateGlyph on {}", glyph);
+            logger.info("VIP collectGlyph on {}", glyph);
         }
 
         final Point2D center = glyph.getCenter2D();
@@ -195,14 +208,24 @@ public class SymbolsBuilder
             return;
         }
 
-        // TODO: checks should be run only AFTER both classifiers have been run
-        Evaluation[] evals = classifier.evaluate(
-                glyph,
-                system,
-                2,
-                Grades.symbolMinGrade,
-                EnumSet.of(Classifier.Condition.CHECKED));
+        candidates.add(glyph);
+        candidateStaves.add(closestStaff);
+    }
 
+    //-------------//
+    // createInter //
+    //-------------//
+    /**
+     * Create the inter, if any, for the best acceptable evaluation of a glyph.
+     *
+     * @param glyph        the evaluated glyph
+     * @param closestStaff the staff closest to glyph center
+     * @param evals        the acceptable evaluations of glyph
+     */
+    private void createInter (Glyph glyph,
+                              Staff closestStaff,
+                              Evaluation[] evals)
+    {
         //        Evaluation[] evals2 = classifier2.evaluate(
         //                glyph,
         //                system,
@@ -233,6 +256,35 @@ public class SymbolsBuilder
         }
     }
 
+    //----------------//
+    // evaluateGlyphs //
+    //----------------//
+    /**
+     * Evaluate all collected glyphs in one batch and create acceptable inter instances,
+     * in collection order.
+     */
+    private void evaluateGlyphs ()
+    {
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        // TODO: checks should be run only AFTER both classifiers have been run
+        final Evaluation[][] allEvals = classifier.evaluate(
+                candidates,
+                system,
+                2,
+                Grades.symbolMinGrade,
+                EnumSet.of(Classifier.Condition.CHECKED));
+
+        for (int i = 0; i < allEvals.length; i++) {
+            createInter(candidates.get(i), candidateStaves.get(i), allEvals[i]);
+        }
+
+        candidates.clear();
+        candidateStaves.clear();
+    }
+
     //------------------//
     // getSymbolsGlyphs //
     //------------------//
@@ -349,7 +401,7 @@ public class SymbolsBuilder
                 final Glyph glyph = set.iterator().next();
 
                 if (classifier.isBigEnough(glyph, interline)) {
-                    evaluateGlyph(glyph);
+                    collectGlyph(glyph);
                 }
             }
         }
@@ -470,7 +522,7 @@ public class SymbolsBuilder
         public void evaluateGlyph (Glyph glyph,
                                    Set<Glyph> parts)
         {
-            SymbolsBuilder.this.evaluateGlyph(glyph);
+            SymbolsBuilder.this.collectGlyph(glyph);
         }
 
         @Override
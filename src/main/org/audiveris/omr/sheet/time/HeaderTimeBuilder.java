@@ -21,7 +21,6 @@
 // </editor-fold>
 package org.audiveris.omr.sheet.time;
 
-import ij.process.Blitter;
 import ij.process.ByteProcessor;
 
 import org.audiveris.omr.classifier.Evaluation;
@@ -33,6 +32,7 @@ import org.audiveris.omr.glyph.GlyphIndex;
 import org.audiveris.omr.glyph.Glyphs;
 import org.audiveris.omr.glyph.Grades;
 import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.ColumnProjector;
 import org.audiveris.omr.math.GeoOrder;
 import org.audiveris.omr.math.IntegerFunction;
 import org.audiveris.omr.run.Orientation;
@@ -307,10 +307,8 @@ public class HeaderTimeBuilder
     {
         final Sheet sheet = system.getSheet();
 
-        // Grab pixels out of staff-free source
-        ByteProcessor source = sheet.getPicture().getSource(Picture.SourceKey.NO_STAFF);
-        ByteProcessor buf = new ByteProcessor(rect.width, rect.height);
-        buf.copyBits(source, -rect.x, -rect.y, Blitter.COPY);
+        // Grab pixels out of staff-free source, just for the rectangle
+        ByteProcessor buf = sheet.getPicture().getSource(Picture.SourceKey.NO_STAFF, rect);
 
         // Extract parts
         RunTable runTable = new RunTableFactory(Orientation.VERTICAL).createTable(buf);
@@ -335,7 +333,7 @@ public class HeaderTimeBuilder
     // getProjection //
     //---------------//
     /**
-     * We use the NO_STAFF source of pixels.
+     * We use the NO_STAFF source of pixels, just for the roi.
      *
      * @return the projection on x-axis
      */
@@ -343,24 +341,10 @@ public class HeaderTimeBuilder
     {
         // Staff-free pixel source
         final ByteProcessor source = system.getSheet().getPicture().getSource(
-                Picture.SourceKey.NO_STAFF);
-        final int xMin = roi.x;
-        final int xMax = (roi.x + roi.width) - 1;
-        final IntegerFunction function = new IntegerFunction(xMin, xMax);
-
-        for (int x = xMin; x <= xMax; x++) {
-            short cumul = 0;
-
-            for (int y = roi.y, yBreak = roi.y + roi.height; y < yBreak; y++) {
-                if (source.get(x, y) == 0) {
-                    cumul++;
-                }
-            }
-
-            function.setValue(x, cumul);
-        }
+                Picture.SourceKey.NO_STAFF,
+                roi);
 
-        return function;
+        return ColumnProjector.projectAsFunction(source, roi.getLocation(), roi);
     }
 
     //-----------//
@@ -0,0 +1,280 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                E x c l u s i o n R e d u c e r                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sig;
+
+import org.audiveris.omr.sig.inter.Inter;
+import org.audiveris.omr.sig.relation.Relation;
+import org.audiveris.omr.util.RankedHeap;
+
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class <code>ExclusionReducer</code> reduces a collection of exclusions, using a priority
+ * queue rather than a full scan of exclusions at each iteration.
+ * <p>
+ * The removal sequence is the same as the one of the scan-based reduction: at each iteration,
+ * the exclusion picked up is the first one (in collection order) with the strictly highest
+ * positive grade of its source or target inter.
+ * <p>
+ * The priority of an exclusion depends on the current best grades of its two inters.
+ * Rather than recomputing all priorities at each iteration, we listen to the sig and update only
+ * the exclusions linked to an inter whose grade may have changed, that is:
+ * <ul>
+ * <li>an inter whose contextual grade has been recomputed,</li>
+ * <li>an inter which has lost some relation (a removed relation may trigger a grade update, as
+ * for an ensemble losing a member),</li>
+ * <li>and, recursively, any ensemble containing such inter (ensemble grade may depend on members
+ * grades).</li>
+ * </ul>
+ *
+ * @author Hervé Bitteur
+ */
+class ExclusionReducer
+        implements GraphListener<Inter, Relation>
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Logger logger = LoggerFactory.getLogger(ExclusionReducer.class);
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** The sig to reduce. */
+    private final SIGraph sig;
+
+    /** Exclusions to process, in collection order. */
+    private final Collection<? extends Relation> exclusions;
+
+    /** Pending exclusions, by decreasing priority then collection order. */
+    private final RankedHeap<Relation> heap = new RankedHeap<>();
+
+    /** Pending exclusions, per inter. */
+    private final Map<Inter, List<Relation>> interExclusions = new HashMap<>();
+
+    /** Inters whose grade may have changed since last update. */
+    private final Set<Inter> touched = new LinkedHashSet<>();
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>ExclusionReducer</code> object.
+     *
+     * @param sig        the sig to reduce
+     * @param exclusions the exclusions to process
+     */
+    ExclusionReducer (SIGraph sig,
+                      Collection<? extends Relation> exclusions)
+    {
+        this.sig = sig;
+        this.exclusions = exclusions;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //-------------//
+    // edgeRemoved //
+    //-------------//
+    @Override
+    public void edgeRemoved (GraphEdgeChangeEvent<Inter, Relation> e)
+    {
+        touched.add(e.getEdgeSource());
+        touched.add(e.getEdgeTarget());
+    }
+
+    //-----------//
+    // edgeAdded //
+    //-----------//
+    @Override
+    public void edgeAdded (GraphEdgeChangeEvent<Inter, Relation> e)
+    {
+        touched.add(e.getEdgeSource());
+        touched.add(e.getEdgeTarget());
+    }
+
+    //-------------//
+    // vertexAdded //
+    //-------------//
+    @Override
+    public void vertexAdded (GraphVertexChangeEvent<Inter> e)
+    {
+    }
+
+    //---------------//
+    // vertexRemoved //
+    //---------------//
+    @Override
+    public void vertexRemoved (GraphVertexChangeEvent<Inter> e)
+    {
+        touched.add(e.getVertex());
+    }
+
+    //--------//
+    // reduce //
+    //--------//
+    /**
+     * Reduce the exclusions as much as possible by removing the source or target inter of
+     * lower contextual grade.
+     * <p>
+     * As with the scan-based reduction, the exclusions no longer in sig are finally removed from
+     * the provided collection.
+     *
+     * @return the set of inters removed
+     */
+    Set<Inter> reduce ()
+    {
+        final Set<Inter> removed = new LinkedHashSet<>();
+
+        for (Relation rel : exclusions) {
+            if (sig.containsEdge(rel) && heap.add(rel, priorityOf(rel))) {
+                link(sig.getEdgeSource(rel), rel);
+                link(sig.getEdgeTarget(rel), rel);
+            }
+        }
+
+        sig.addGraphListener(this);
+
+        try {
+            while (!heap.isEmpty() && (heap.getPriority(heap.peek()) > 0)) {
+                final Relation bestRel = heap.poll();
+                final Inter source = sig.getEdgeSource(bestRel);
+                final double scp = source.getBestGrade();
+                final Inter target = sig.getEdgeTarget(bestRel);
+                final double tcp = target.getBestGrade();
+                final Inter weaker = (scp < tcp) ? source : target;
+
+                if (weaker.isVip()) {
+                    logger.info(
+                            "VIP conflict {} deleting weaker {}",
+                            bestRel.toLongString(sig),
+                            weaker);
+                }
+
+                // Which inters were involved in some support relation with this weaker inter?
+                final Set<Inter> involved = sig.involvedInters(sig.getSupports(weaker));
+                involved.remove(weaker);
+
+                final Set<Inter> weakerEnsembles = weaker.getAllEnsembles(); // Before weaker is deleted!
+
+                // Remove the weaker inter
+                removed.add(weaker);
+                weaker.remove();
+
+                // If removal of weaker has resulted in removal of an ensemble, count this ensemble
+                for (Inter ensemble : weakerEnsembles) {
+                    if (ensemble.isRemoved()) {
+                        removed.add(ensemble);
+                    }
+                }
+
+                // Update contextual values for all inters that were involved with 'weaker'
+                for (Inter inter : involved) {
+                    sig.computeContextualGrade(inter);
+                    touched.add(inter);
+                }
+
+                updateTouched();
+            }
+        } finally {
+            sig.removeGraphListener(this);
+        }
+
+        exclusions.removeIf(rel -> !sig.containsEdge(rel));
+
+        return removed;
+    }
+
+    //------//
+    // link //
+    //------//
+    private void link (Inter inter,
+                       Relation rel)
+    {
+        interExclusions.computeIfAbsent(inter, i -> new ArrayList<>()).add(rel);
+    }
+
+    //------------//
+    // priorityOf //
+    //------------//
+    /**
+     * Report the priority of an exclusion, that is the highest grade of its inters.
+     * Priority is 0 for an exclusion not eligible for reduction.
+     */
+    private double priorityOf (Relation rel)
+    {
+        final double cp = Math.max(
+                sig.getEdgeSource(rel).getBestGrade(),
+                sig.getEdgeTarget(rel).getBestGrade());
+
+        return (cp > 0) ? cp : 0;
+    }
+
+    //---------------//
+    // updateTouched //
+    //---------------//
+    /**
+     * Update the pending exclusions linked to touched inters, as well as to the ensembles
+     * that contain touched inters.
+     */
+    private void updateTouched ()
+    {
+        final List<Inter> queue = new ArrayList<>(touched);
+        final Set<Inter> seen = new LinkedHashSet<>(touched);
+        touched.clear();
+
+        for (int i = 0; i < queue.size(); i++) {
+            final Inter inter = queue.get(i);
+
+            if (!inter.isRemoved() && sig.containsVertex(inter)) {
+                for (Inter ensemble : inter.getAllEnsembles()) {
+                    if (seen.add(ensemble)) {
+                        queue.add(ensemble);
+                    }
+                }
+            }
+
+            final List<Relation> rels = interExclusions.get(inter);
+
+            if (rels == null) {
+                continue;
+            }
+
+            for (Relation rel : rels) {
+                if (heap.contains(rel)) {
+                    if (sig.containsEdge(rel)) {
+                        heap.update(rel, priorityOf(rel));
+                    } else {
+                        heap.remove(rel);
+                    }
+                }
+            }
+        }
+    }
+}
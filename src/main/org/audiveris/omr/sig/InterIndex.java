@@ -29,13 +29,23 @@ import org.audiveris.omr.sheet.SystemInfo;
 import org.audiveris.omr.sig.inter.Inter;
 import org.audiveris.omr.sig.ui.InterService;
 import org.audiveris.omr.util.BasicIndex;
+import org.audiveris.omr.util.Entities;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Class <code>InterIndex</code> keeps an index of all Inter instances registered
  * in a sheet, regardless of their containing system.
+ * <p>
+ * Geometric lookups are delegated to the spatial index of each system SIG, rather than browsing
+ * the whole index.
  *
  * @author Hervé Bitteur
  */
@@ -48,6 +58,10 @@ public class InterIndex
 
     private static final Logger logger = LoggerFactory.getLogger(InterIndex.class);
 
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Related sheet, if known. */
+    private Sheet sheet;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new InterIndex object.
@@ -57,6 +71,74 @@ public class InterIndex
     }
 
     //~ Methods ------------------------------------------------------------------------------------
+    //----------------------//
+    // getContainedEntities //
+    //----------------------//
+    @Override
+    public List<Inter> getContainedEntities (Rectangle rectangle)
+    {
+        if (sheet == null) {
+            return super.getContainedEntities(rectangle);
+        }
+
+        final List<Inter> found = new ArrayList<>();
+
+        for (SystemInfo system : sheet.getSystems()) {
+            found.addAll(system.getSig().containedInters(rectangle));
+        }
+
+        Collections.sort(found, Entities.byId);
+
+        return found;
+    }
+
+    //-----------------------//
+    // getContainingEntities //
+    //-----------------------//
+    @Override
+    public List<Inter> getContainingEntities (Point point)
+    {
+        if (sheet == null) {
+            return super.getContainingEntities(point);
+        }
+
+        final Rectangle pointBox = new Rectangle(point.x, point.y, 1, 1);
+        final List<Inter> found = new ArrayList<>();
+
+        for (SystemInfo system : sheet.getSystems()) {
+            for (Inter inter : system.getSig().intersectedInters(pointBox)) {
+                if (inter.contains(point)) {
+                    found.add(inter);
+                }
+            }
+        }
+
+        Collections.sort(found, Entities.byId);
+
+        return found;
+    }
+
+    //------------------------//
+    // getIntersectedEntities //
+    //------------------------//
+    @Override
+    public List<Inter> getIntersectedEntities (Rectangle rectangle)
+    {
+        if (sheet == null) {
+            return super.getIntersectedEntities(rectangle);
+        }
+
+        final List<Inter> found = new ArrayList<>();
+
+        for (SystemInfo system : sheet.getSystems()) {
+            found.addAll(system.getSig().intersectedInters(rectangle));
+        }
+
+        Collections.sort(found, Entities.byId);
+
+        return found;
+    }
+
     //----------------//
     // initTransients //
     //----------------//
@@ -68,6 +150,8 @@ public class InterIndex
      */
     public final void initTransients (Sheet sheet)
     {
+        this.sheet = sheet;
+
         // Use sheet ID generator
         lastId = sheet.getPersistentIdGenerator();
 
@@ -21,8 +21,11 @@
 // </editor-fold>
 package org.audiveris.omr.sig;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.glyph.Grades;
 import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.sheet.Scale;
 import org.audiveris.omr.sheet.SheetStub;
 import org.audiveris.omr.sheet.Staff;
 import org.audiveris.omr.sheet.SystemInfo;
@@ -40,7 +43,9 @@ import org.audiveris.omr.sig.relation.Relations;
 import org.audiveris.omr.sig.relation.Relations.RelationClassPredicate;
 import org.audiveris.omr.sig.relation.Support;
 import org.audiveris.omr.ui.selection.SelectionHint;
+import org.audiveris.omr.util.Entities;
 import org.audiveris.omr.util.Navigable;
+import org.audiveris.omr.util.SpatialGrid;
 import org.audiveris.omr.util.Version;
 
 import org.jgrapht.DirectedGraph;
@@ -73,6 +78,11 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 /**
  * Class <code>SIGraph</code> represents the Symbol Interpretation Graph that aims at
  * finding the best global interpretation of all symbols in a system.
+ * <p>
+ * Geometric lookups ({@link #containedInters(Rectangle)}, {@link #containingInters(Point)} and
+ * {@link #intersectedInters(Rectangle)}) are driven by a spatial grid on inter bounds, lazily
+ * built and then kept in sync with vertex additions and removals, and with inter bounds
+ * modifications notified through {@link #boundsChanged(Inter)}.
  *
  * @author Hervé Bitteur
  */
@@ -83,6 +93,8 @@ public class SIGraph
 {
     //~ Static fields/initializers -----------------------------------------------------------------
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(SIGraph.class);
 
     //~ Instance fields ----------------------------------------------------------------------------
@@ -93,6 +105,9 @@ public class SIGraph
     /** Content for differed populating after unmarshalling. */
     private SigValue sigValue;
 
+    /** Spatial index on inters bounds, lazily built. */
+    private SpatialGrid<Inter> grid;
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new SIGraph object at system level.
@@ -154,6 +169,10 @@ public class SIGraph
         if (added) {
             inter.setSig(this);
 
+            if (grid != null) {
+                grid.insert(inter);
+            }
+
             // Additional actions
             inter.added();
         }
@@ -186,6 +205,23 @@ public class SIGraph
         }
     }
 
+    //---------------//
+    // boundsChanged //
+    //---------------//
+    /**
+     * Notify that the bounds of provided inter may have changed.
+     * <p>
+     * New bounds are not read immediately, but only when the next geometric lookup occurs.
+     *
+     * @param inter the inter whose bounds may have changed
+     */
+    public void boundsChanged (Inter inter)
+    {
+        if (grid != null) {
+            grid.update(inter);
+        }
+    }
+
     //------------------------//
     // computeContextualGrade //
     //------------------------//
@@ -219,7 +255,7 @@ public class SIGraph
     {
         List<Inter> found = new ArrayList<>();
 
-        for (Inter inter : vertexSet()) {
+        for (Inter inter : getGrid().intersected(rect)) {
             final Rectangle box = inter.getBounds();
 
             if ((box != null) && rect.contains(box)) {
@@ -227,6 +263,8 @@ public class SIGraph
             }
         }
 
+        Collections.sort(found, Entities.byId);
+
         return found;
     }
 
@@ -244,7 +282,7 @@ public class SIGraph
     {
         List<Inter> found = new ArrayList<>();
 
-        for (Inter inter : vertexSet()) {
+        for (Inter inter : getGrid().intersected(new Rectangle(point.x, point.y, 1, 1))) {
             Rectangle bounds = inter.getBounds();
 
             if ((bounds != null) && bounds.contains(point)) {
@@ -257,6 +295,8 @@ public class SIGraph
             }
         }
 
+        Collections.sort(found, Entities.byId);
+
         return found;
     }
 
@@ -723,6 +763,10 @@ public class SIGraph
     {
         for (Inter inter : inters) {
             super.addVertex(inter);
+
+            if (grid != null) {
+                grid.insert(inter);
+            }
         }
     }
 
@@ -1003,7 +1047,7 @@ public class SIGraph
     {
         List<Inter> found = new ArrayList<>();
 
-        for (Inter inter : vertexSet()) {
+        for (Inter inter : getGrid().intersected(box)) {
             if (inter.isRemoved()) {
                 continue;
             }
@@ -1015,6 +1059,8 @@ public class SIGraph
             }
         }
 
+        Collections.sort(found, Entities.byId);
+
         return found;
     }
 
@@ -1059,6 +1105,10 @@ public class SIGraph
 
         for (Inter inter : oldSig.vertexSet()) {
             super.removeVertex(inter); // This removes related relations
+
+            if (grid != null) {
+                grid.remove(inter);
+            }
         }
     }
 
@@ -1134,79 +1184,20 @@ public class SIGraph
      * <li>Recompute all impacted contextual grades values,</li>
      * <li>Iterate until no more exclusion is left.</li>
      * </ol>
+     * Unless disabled by constant <code>useExclusionHeap</code>, exclusions are handled via a
+     * priority queue (see {@link ExclusionReducer}), which results in the same removal sequence as
+     * the original scan of all exclusions at each iteration.
      *
      * @param exclusions the collection of exclusions to process
      * @return the set of vertices removed
      */
     public Set<Inter> reduceExclusions (Collection<? extends Relation> exclusions)
     {
-        final Set<Inter> removed = new LinkedHashSet<>();
-        Relation bestRel;
-
-        do {
-            // Choose exclusion with the highest source or target grade
-            double bestCP = 0;
-            bestRel = null;
-
-            for (Iterator<? extends Relation> it = exclusions.iterator(); it.hasNext();) {
-                Relation rel = it.next();
-
-                if (containsEdge(rel)) {
-                    final double cp = Math.max(
-                            getEdgeSource(rel).getBestGrade(),
-                            getEdgeTarget(rel).getBestGrade());
-
-                    if (bestCP < cp) {
-                        bestCP = cp;
-                        bestRel = rel;
-                    }
-                } else {
-                    it.remove();
-                }
-            }
-
-            // Remove the weaker branch of the selected exclusion
-            if (bestRel != null) {
-                final Inter source = getEdgeSource(bestRel);
-                final double scp = source.getBestGrade();
-                final Inter target = getEdgeTarget(bestRel);
-                final double tcp = target.getBestGrade();
-                final Inter weaker = (scp < tcp) ? source : target;
-
-                if (weaker.isVip()) {
-                    logger.info(
-                            "VIP conflict {} deleting weaker {}",
-                            bestRel.toLongString(this),
-                            weaker);
-                }
-
-                // Which inters were involved in some support relation with this weaker inter?
-                final Set<Inter> involved = involvedInters(getSupports(weaker));
-                involved.remove(weaker);
-
-                final Set<Inter> weakerEnsembles = weaker.getAllEnsembles(); // Before weaker is deleted!
-
-                // Remove the weaker inter
-                removed.add(weaker);
-                weaker.remove();
-
-                // If removal of weaker has resulted in removal of an ensemble, count this ensemble
-                for (Inter ensemble : weakerEnsembles) {
-                    if (ensemble.isRemoved()) {
-                        removed.add(ensemble);
-                    }
-                }
-
-                // Update contextual values for all inters that were involved with 'weaker'
-                for (Inter inter : involved) {
-                    computeContextualGrade(inter);
-                }
-
-                exclusions.remove(bestRel);
-            }
-        } while (bestRel != null);
-
-        return removed;
+        if (constants.useExclusionHeap.isSet()) {
+            return new ExclusionReducer(this, exclusions).reduce();
+        } else {
+            return scanExclusions(exclusions);
+        }
     }
 
     //------------------//
@@ -1268,6 +1259,10 @@ public class SIGraph
             logger.info("VIP removeVertex {}", inter);
         }
 
+        if (grid != null) {
+            grid.remove(inter);
+        }
+
         return super.removeVertex(inter);
     }
 
@@ -1395,10 +1390,36 @@ public class SIGraph
         return bestCg;
     }
 
+    //---------//
+    // getGrid //
+    //---------//
+    /**
+     * Report the spatial index on inters, building it if needed.
+     *
+     * @return the spatial grid
+     */
+    private SpatialGrid<Inter> getGrid ()
+    {
+        if (grid == null) {
+            final Scale scale = (system != null) ? system.getSheet().getScale() : null;
+            final int cellSize = (scale != null) ? scale.toPixels(constants.gridCellSize)
+                    : constants.defaultGridCellSize.getValue();
+            final SpatialGrid<Inter> newGrid = new SpatialGrid<>(cellSize);
+
+            for (Inter inter : vertexSet()) {
+                newGrid.insert(inter);
+            }
+
+            grid = newGrid;
+        }
+
+        return grid;
+    }
+
     //----------------//
     // involvedInters //
     //----------------//
-    private Set<Inter> involvedInters (Collection<? extends Relation> relations)
+    Set<Inter> involvedInters (Collection<? extends Relation> relations)
     {
         Set<Inter> inters = new LinkedHashSet<>();
 
@@ -1410,6 +1431,87 @@ public class SIGraph
         return inters;
     }
 
+    //----------------//
+    // scanExclusions //
+    //----------------//
+    /**
+     * Reduce the provided exclusions, by scanning all remaining exclusions at each iteration.
+     *
+     * @param exclusions the collection of exclusions to process
+     * @return the set of vertices removed
+     * @see #reduceExclusions(Collection)
+     */
+    Set<Inter> scanExclusions (Collection<? extends Relation> exclusions)
+    {
+        final Set<Inter> removed = new LinkedHashSet<>();
+        Relation bestRel;
+
+        do {
+            // Choose exclusion with the highest source or target grade
+            double bestCP = 0;
+            bestRel = null;
+
+            for (Iterator<? extends Relation> it = exclusions.iterator(); it.hasNext();) {
+                Relation rel = it.next();
+
+                if (containsEdge(rel)) {
+                    final double cp = Math.max(
+                            getEdgeSource(rel).getBestGrade(),
+                            getEdgeTarget(rel).getBestGrade());
+
+                    if (bestCP < cp) {
+                        bestCP = cp;
+                        bestRel = rel;
+                    }
+                } else {
+                    it.remove();
+                }
+            }
+
+            // Remove the weaker branch of the selected exclusion
+            if (bestRel != null) {
+                final Inter source = getEdgeSource(bestRel);
+                final double scp = source.getBestGrade();
+                final Inter target = getEdgeTarget(bestRel);
+                final double tcp = target.getBestGrade();
+                final Inter weaker = (scp < tcp) ? source : target;
+
+                if (weaker.isVip()) {
+                    logger.info(
+                            "VIP conflict {} deleting weaker {}",
+                            bestRel.toLongString(this),
+                            weaker);
+                }
+
+                // Which inters were involved in some support relation with this weaker inter?
+                final Set<Inter> involved = involvedInters(getSupports(weaker));
+                involved.remove(weaker);
+
+                final Set<Inter> weakerEnsembles = weaker.getAllEnsembles(); // Before weaker is deleted!
+
+                // Remove the weaker inter
+                removed.add(weaker);
+                weaker.remove();
+
+                // If removal of weaker has resulted in removal of an ensemble, count this ensemble
+                for (Inter ensemble : weakerEnsembles) {
+                    if (ensemble.isRemoved()) {
+                        removed.add(ensemble);
+                    }
+                }
+
+                // Update contextual values for all inters that were involved with 'weaker'
+                for (Inter inter : involved) {
+                    computeContextualGrade(inter);
+                }
+
+                exclusions.remove(bestRel);
+            }
+        } while (bestRel != null);
+
+        return removed;
+    }
+
     //---------//
     // stemsOf //
     //---------//
@@ -1452,6 +1554,27 @@ public class SIGraph
     }
 
     //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Scale.Fraction gridCellSize = new Scale.Fraction(
+                4.0,
+                "Side of a cell in the spatial index on inters");
+
+        private final Constant.Integer defaultGridCellSize = new Constant.Integer(
+                "pixels",
+                64,
+                "Side of a cell in the spatial index on inters, when scale is not known");
+
+        private final Constant.Boolean useExclusionHeap = new Constant.Boolean(
+                true,
+                "Should exclusions be reduced via a priority queue rather than by full scans?");
+    }
+
     //----------//
     // Sequence //
     //----------//
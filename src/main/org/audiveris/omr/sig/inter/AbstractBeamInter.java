@@ -832,6 +832,7 @@ public abstract class AbstractBeamInter
         // Define precise bounds based on this path
         // NOTA: these bounds may go slightly beyond the sheet image limits...
         bounds = getArea().getBounds();
+        notifyBoundsChange();
     }
 
     //----------------//
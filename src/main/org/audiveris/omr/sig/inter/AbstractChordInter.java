@@ -1074,6 +1074,7 @@ public abstract class AbstractChordInter
     {
         beams = null;
         bounds = null;
+        notifyBoundsChange();
         headLocation = null;
         tailLocation = null;
 
@@ -516,6 +516,7 @@ public abstract class AbstractInter
     public void setBounds (Rectangle bounds)
     {
         this.bounds = (bounds != null) ? new Rectangle(bounds) : null;
+        notifyBoundsChange();
     }
 
     //-----------//
@@ -722,6 +723,7 @@ public abstract class AbstractInter
     public void setGlyph (Glyph glyph)
     {
         this.glyph = glyph;
+        notifyBoundsChange();
     }
 
     //----------//
@@ -1523,6 +1525,22 @@ public abstract class AbstractInter
         return sb.toString();
     }
 
+    //--------------------//
+    // notifyBoundsChange //
+    //--------------------//
+    /**
+     * Notify the containing sig, if any, that inter bounds may have changed.
+     * <p>
+     * This must be called whenever bounds are modified or reset, so that sig spatial index stays
+     * in sync.
+     */
+    protected void notifyBoundsChange ()
+    {
+        if (sig != null) {
+            sig.boundsChanged(this);
+        }
+    }
+
     //------------//
     // getStaffId //
     //------------//
@@ -354,6 +354,7 @@ public abstract class AbstractVerticalInter
 
         // Define precise bounds based on this path
         bounds = getArea().getBounds();
+        notifyBoundsChange();
     }
 
     //~ Inner Classes ------------------------------------------------------------------------------
@@ -714,6 +714,7 @@ public class BeamGroupInter
     public void invalidateCache ()
     {
         bounds = null;
+        notifyBoundsChange();
     }
 
     //--------------//
@@ -215,6 +215,7 @@ public class BracketInter
         // because AbstractVerticalInter.setBounds() assigns bounds width to item width variable.
         // And bracket width variable is only the trunk width, much less than the serifs width.
         this.bounds = (bounds != null) ? new Rectangle(bounds) : null;
+        notifyBoundsChange();
     }
 
     //-------------//
@@ -262,5 +263,6 @@ public class BracketInter
         }
 
         bounds = area.getBounds();
+        notifyBoundsChange();
     }
 }
@@ -206,6 +206,7 @@ public class FermataInter
     public void invalidateCache ()
     {
         bounds = null;
+        notifyBoundsChange();
 
         setGrade(EnsembleHelper.computeMeanContextualGrade(this));
     }
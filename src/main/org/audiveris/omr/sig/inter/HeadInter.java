@@ -1019,6 +1019,7 @@ public class HeadInter
 
         // Use glyph bounds as inter bounds
         bounds = glyph.getBounds();
+        notifyBoundsChange();
 
         return glyph;
     }
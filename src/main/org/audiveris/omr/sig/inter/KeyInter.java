@@ -439,6 +439,7 @@ public class KeyInter
     public void invalidateCache ()
     {
         bounds = null;
+        notifyBoundsChange();
         fifths = null;
 
         setGrade(EnsembleHelper.computeMeanContextualGrade(this));
@@ -439,6 +439,7 @@ public class LedgerInter
 
         // Define precise bounds based on this path
         bounds = getArea().getBounds();
+        notifyBoundsChange();
     }
 
     //----------------//
@@ -380,6 +380,7 @@ public class SentenceInter
     public void invalidateCache ()
     {
         bounds = null;
+        notifyBoundsChange();
 
         if (meanFont == null) {
             List<Inter> members = getMembers();
@@ -721,6 +721,7 @@ public final class StaffBarlineInter
     public void invalidateCache ()
     {
         bounds = null;
+        notifyBoundsChange();
         style = null;
 
         // Recompute ensemble grade
@@ -199,6 +199,7 @@ public class TimeCustomInter
     {
         timeRational = null;
         bounds = getSymbolBounds(staff.getSpecificInterline());
+        notifyBoundsChange();
     }
 
     //-----------//
@@ -252,6 +252,7 @@ public class TimePairInter
     public void invalidateCache ()
     {
         bounds = null;
+        notifyBoundsChange();
         timeRational = null;
 
         setGrade(EnsembleHelper.computeMeanContextualGrade(this));
@@ -26,7 +26,7 @@ import org.audiveris.omr.OMR;
 import org.audiveris.omr.log.LogUtil;
 import org.audiveris.omr.sheet.Sheet;
 import org.audiveris.omr.sheet.SystemInfo;
-import org.audiveris.omr.util.OmrExecutors;
+import org.audiveris.omr.util.OmrScheduler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -101,9 +101,11 @@ public abstract class AbstractSystemStep<C>
         final C context = doProlog(sheet);
 
         // Processing system per system
+        OmrScheduler.checkCancelled();
         doitPerSystem(sheet, context);
 
         // Final actions
+        OmrScheduler.checkCancelled();
         doEpilog(sheet, context);
     }
 
@@ -204,10 +206,11 @@ public abstract class AbstractSystemStep<C>
             // Process all systems
             if (parallel) {
                 // In parallel
-                OmrExecutors.getLowExecutor().invokeAll(tasks);
+                OmrScheduler.invokeAll(OmrScheduler.Level.SYSTEM, tasks);
             } else {
                 // In sequence
                 for (Callable<Void> task : tasks) {
+                    OmrScheduler.checkCancelled();
                     task.call();
                 }
             }
@@ -30,6 +30,7 @@ import org.audiveris.omr.image.PixelFilter;
 import org.audiveris.omr.run.Orientation;
 import org.audiveris.omr.run.RunTable;
 import org.audiveris.omr.run.RunTableFactory;
+import org.audiveris.omr.run.RunsCollector;
 import org.audiveris.omr.sheet.Picture;
 import org.audiveris.omr.sheet.Picture.SourceKey;
 import org.audiveris.omr.sheet.ProcessingSwitch;
@@ -92,14 +93,30 @@ public class BinaryStep
         logger.debug("{}", "Binarization");
 
         PixelFilter filter = desc.getFilter(initial);
-        watch.start("Binarize source");
+        RunTable wholeVertTable;
 
-        ByteProcessor binary = filter.filteredImage();
+        if (constants.fusedBinarization.isSet()) {
+            // Binarize directly into the RunTable, with no intermediate binary image
+            watch.start("Binarize source into RunTable");
 
-        watch.start("Create binary RunTable");
+            RunsCollector collector = new RunsCollector(
+                    initial.getWidth(),
+                    initial.getHeight(),
+                    false,
+                    true);
+            filter.filterRuns(collector);
+            wholeVertTable = collector.getVerticalTable();
+        } else {
+            watch.start("Binarize source");
+
+            ByteProcessor binary = filter.filteredImage();
+
+            watch.start("Create binary RunTable");
+
+            RunTableFactory vertFactory = new RunTableFactory(Orientation.VERTICAL);
+            wholeVertTable = vertFactory.createTable(binary);
+        }
 
-        RunTableFactory vertFactory = new RunTableFactory(Orientation.VERTICAL);
-        RunTable wholeVertTable = vertFactory.createTable(binary);
         picture.setTable(Picture.TableKey.BINARY, wholeVertTable, true);
 
         // Dispose of GRAY source
@@ -160,5 +177,9 @@ public class BinaryStep
         private final Constant.Boolean printWatch = new Constant.Boolean(
                 false,
                 "Should we print out the stop watch?");
+
+        private final Constant.Boolean fusedBinarization = new Constant.Boolean(
+                true,
+                "Should we binarize directly into the RunTable, by parallel bands of rows?");
     }
 }
@@ -70,6 +70,9 @@ public class LoadStep
 
         BufferedImage image = book.loadSheetImage(number);
 
+        // Following sheets images get loaded in background, while this sheet is being processed
+        book.prefetchSheetImages(number);
+
         if (image != null) {
             // Threshold on image size
             final int count = image.getWidth() * image.getHeight();
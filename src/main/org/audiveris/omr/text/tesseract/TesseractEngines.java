@@ -0,0 +1,466 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                T e s s e r a c t E n g i n e s                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.text.tesseract;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.bytedeco.javacpp.tesseract.TessBaseAPI;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class <code>TesseractEngines</code> is a bounded pool of initialized Tesseract engines,
+ * keyed by language specification.
+ * <p>
+ * Initializing a {@link TessBaseAPI} loads the trained data of all its languages, which costs
+ * much more than recognizing a typical text line. So, rather than initializing and ending an
+ * engine for every OCR order, an engine is leased by the worker thread for the order duration,
+ * then cleared and kept idle for a later order on the same language specification.
+ * <ul>
+ * <li>The count of engines alive is capped, by default to the count of processors. When the cap
+ * is reached, the least recently used idle engine of another language is ended to make room,
+ * otherwise the lease waits for a release.
+ * This wait is a managed blocking, so that a fork-join pool can compensate for a blocked worker.
+ * <li>Engines idle for too long are ended.
+ * <li>All idle engines are ended by {@link OmrExecutors#shutdown()}.
+ * </ul>
+ * Cumulated times for engine initializations and for recognitions are kept, to be printed at
+ * shutdown.
+ *
+ * @author Hervé Bitteur
+ */
+class TesseractEngines
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(TesseractEngines.class);
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** To create and initialize engines. */
+    private final EngineFactory factory;
+
+    /** Specific cap on count of engines alive, 0 for the default cap. */
+    private final int maxEngines;
+
+    /** Idle engines, per language specification, most recently used last. */
+    private final Map<String, Deque<Engine>> idles = new HashMap<>();
+
+    /** Count of engines alive, either leased or idle. */
+    private int alive;
+
+    /** Count of engine initializations. */
+    private final AtomicLong initCount = new AtomicLong();
+
+    /** Cumulated time of engine initializations. */
+    private final AtomicLong initNanos = new AtomicLong();
+
+    /** Count of recognitions. */
+    private final AtomicLong recognizeCount = new AtomicLong();
+
+    /** Cumulated time of recognitions. */
+    private final AtomicLong recognizeNanos = new AtomicLong();
+
+    //~ Constructors -------------------------------------------------------------------------------
+    private TesseractEngines ()
+    {
+        this(TesseractEngines::initEngine, 0);
+
+        OmrExecutors.addShutdownHook(this::shutdown);
+    }
+
+    /**
+     * Creates a <code>TesseractEngines</code> pool with a specific engine factory.
+     *
+     * @param factory    to create engines
+     * @param maxEngines specific cap on count of engines alive, 0 for the default cap
+     */
+    TesseractEngines (EngineFactory factory,
+                      int maxEngines)
+    {
+        this.factory = factory;
+        this.maxEngines = maxEngines;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //-------//
+    // lease //
+    //-------//
+    /**
+     * Lease an engine initialized for the provided language specification.
+     * <p>
+     * The engine must be handed back via {@link #release(Engine)} once the order is processed.
+     *
+     * @param lang the language specification
+     * @return the engine, or null if Tesseract could not be initialized for this language
+     */
+    Engine lease (String lang)
+    {
+        synchronized (this) {
+            evictIdles();
+
+            while (true) {
+                final Deque<Engine> deque = idles.get(lang);
+
+                if ((deque != null) && !deque.isEmpty()) {
+                    return deque.pollLast();
+                }
+
+                if (alive < getMaxEngines()) {
+                    alive++;
+
+                    break;
+                }
+
+                // Make room by ending the least recently used idle engine
+                final Engine lru = removeLeastRecentlyUsed();
+
+                if (lru != null) {
+                    lru.end();
+                    alive--;
+                } else {
+                    try {
+                        ForkJoinPool.managedBlock(new ReleaseWaiter());
+                    } catch (InterruptedException ex) {
+                        logger.warn("TesseractEngines got interrupted");
+                        throw new ProcessingCancellationException(ex);
+                    }
+                }
+            }
+        }
+
+        // Initialize a new engine, outside of synchronized block
+        boolean ok = false;
+
+        try {
+            final long start = System.nanoTime();
+            final Engine engine = factory.create(lang);
+
+            if (engine == null) {
+                return null;
+            }
+
+            initCount.incrementAndGet();
+            initNanos.addAndGet(System.nanoTime() - start);
+            ok = true;
+
+            return engine;
+        } finally {
+            if (!ok) {
+                synchronized (this) {
+                    alive--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    //-----------------//
+    // recordRecognize //
+    //-----------------//
+    /**
+     * Record the duration of one recognition.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    void recordRecognize (long nanos)
+    {
+        recognizeCount.incrementAndGet();
+        recognizeNanos.addAndGet(nanos);
+    }
+
+    //---------//
+    // release //
+    //---------//
+    /**
+     * Hand a leased engine back, so that it can be leased again for the same language.
+     *
+     * @param engine the engine to release
+     */
+    void release (Engine engine)
+    {
+        engine.clear(); // Free image and recognition results, but keep language data
+
+        synchronized (this) {
+            engine.lastUse = System.nanoTime();
+            idles.computeIfAbsent(engine.lang, k -> new ArrayDeque<>()).addLast(engine);
+            evictIdles();
+            notifyAll();
+        }
+    }
+
+    //------------//
+    // evictIdles //
+    //------------//
+    /**
+     * End the engines that have been idle for too long.
+     */
+    private void evictIdles ()
+    {
+        final long now = System.nanoTime();
+        final long maxIdle = TimeUnit.SECONDS.toNanos(constants.maxIdleSeconds.getValue());
+
+        for (Deque<Engine> deque : idles.values()) {
+            for (Iterator<Engine> it = deque.iterator(); it.hasNext();) {
+                final Engine engine = it.next();
+
+                if ((now - engine.lastUse) > maxIdle) {
+                    it.remove();
+                    engine.end();
+                    alive--;
+                }
+            }
+        }
+    }
+
+    //---------------//
+    // getMaxEngines //
+    //---------------//
+    private int getMaxEngines ()
+    {
+        if (maxEngines > 0) {
+            return maxEngines;
+        }
+
+        final int max = constants.maxEngines.getValue();
+
+        return (max > 0) ? max : Runtime.getRuntime().availableProcessors();
+    }
+
+    //------------//
+    // initEngine //
+    //------------//
+    /**
+     * Create a Tesseract engine initialized for the provided language specification.
+     *
+     * @param lang the language specification
+     * @return the engine, or null if Tesseract could not be initialized for this language
+     */
+    private static Engine initEngine (String lang)
+    {
+        final Path ocrFolder = TesseractOCR.getInstance().getOcrFolder();
+        final TessBaseAPI api = new TessBaseAPI();
+
+        if (api.Init(ocrFolder.toString(), lang) != 0) {
+            logger.warn("Could not initialize Tesseract with lang {}", lang);
+            api.End();
+
+            return null;
+        }
+
+        return new Engine(lang, api);
+    }
+
+    //-------------------------//
+    // removeLeastRecentlyUsed //
+    //-------------------------//
+    private Engine removeLeastRecentlyUsed ()
+    {
+        Deque<Engine> lruDeque = null;
+
+        for (Deque<Engine> deque : idles.values()) {
+            if (!deque.isEmpty()
+                        && ((lruDeque == null)
+                            || (deque.peekFirst().lastUse < lruDeque.peekFirst().lastUse))) {
+                lruDeque = deque;
+            }
+        }
+
+        return (lruDeque != null) ? lruDeque.pollFirst() : null;
+    }
+
+    //----------//
+    // shutdown //
+    //----------//
+    /**
+     * End all idle engines and report statistics.
+     */
+    private synchronized void shutdown ()
+    {
+        for (Deque<Engine> deque : idles.values()) {
+            for (Engine engine : deque) {
+                engine.end();
+                alive--;
+            }
+        }
+
+        idles.clear();
+
+        if (constants.printStatistics.isSet() && (initCount.get() > 0)) {
+            logger.info(
+                    "Tesseract engines. inits: {} in {} ms, recognitions: {} in {} ms",
+                    initCount.get(),
+                    TimeUnit.NANOSECONDS.toMillis(initNanos.get()),
+                    recognizeCount.get(),
+                    TimeUnit.NANOSECONDS.toMillis(recognizeNanos.get()));
+        }
+    }
+
+    //-------------//
+    // getInstance //
+    //-------------//
+    /**
+     * Report the single instance of this class in application.
+     *
+     * @return the instance
+     */
+    static TesseractEngines getInstance ()
+    {
+        return LazySingleton.INSTANCE;
+    }
+
+    //~ Inner Interfaces ---------------------------------------------------------------------------
+    //---------------//
+    // EngineFactory //
+    //---------------//
+    /**
+     * Creates engines for the pool.
+     */
+    interface EngineFactory
+    {
+
+        /**
+         * Create an engine initialized for the provided language specification.
+         *
+         * @param lang the language specification
+         * @return the engine, or null if it could not be initialized for this language
+         */
+        Engine create (String lang);
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //--------//
+    // Engine //
+    //--------//
+    /**
+     * An initialized Tesseract API, with its language specification.
+     */
+    static class Engine
+    {
+
+        /** Language specification. */
+        final String lang;
+
+        /** The initialized API. */
+        final TessBaseAPI api;
+
+        /** Time of last release. */
+        long lastUse;
+
+        Engine (String lang,
+                TessBaseAPI api)
+        {
+            this.lang = lang;
+            this.api = api;
+        }
+
+        /**
+         * Free image and recognition results, but keep language data.
+         */
+        void clear ()
+        {
+            api.Clear();
+        }
+
+        /**
+         * Free all engine resources.
+         */
+        void end ()
+        {
+            api.End();
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer maxEngines = new Constant.Integer(
+                "engines",
+                0,
+                "Maximum count of Tesseract engines alive (0 for count of processors)");
+
+        private final Constant.Integer maxIdleSeconds = new Constant.Integer(
+                "seconds",
+                300,
+                "Maximum idle time before a Tesseract engine is ended");
+
+        private final Constant.Boolean printStatistics = new Constant.Boolean(
+                false,
+                "Should we print Tesseract init and recognition times at shutdown?");
+    }
+
+    //---------------//
+    // LazySingleton //
+    //---------------//
+    private static class LazySingleton
+    {
+
+        static final TesseractEngines INSTANCE = new TesseractEngines();
+    }
+
+    //---------------//
+    // ReleaseWaiter //
+    //---------------//
+    /**
+     * Waits for the next engine release, to be called with the pool monitor held.
+     */
+    private class ReleaseWaiter
+            implements ForkJoinPool.ManagedBlocker
+    {
+
+        @Override
+        public boolean block ()
+                throws InterruptedException
+        {
+            synchronized (TesseractEngines.this) {
+                TesseractEngines.this.wait();
+            }
+
+            return true; // Caller checks the pool again
+        }
+
+        @Override
+        public boolean isReleasable ()
+        {
+            return false;
+        }
+    }
+}
@@ -54,6 +54,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Class <code>TesseractOCR</code> is an OCR service built on Google Tesseract engine.
  * <p>
  * It relies on <b>tesseract3</b> C++ program, accessed through a <b>JavaCPP</b>-based bridge.
+ * <p>
+ * Initialized engines are pooled per language specification by {@link TesseractEngines}.
  *
  * @author Hervé Bitteur
  */
@@ -99,18 +101,22 @@ public class TesseractOCR
     public Set<String> getLanguages ()
     {
         if (isAvailable()) {
-            final Path ocrFolder = getOcrFolder();
             TreeSet<String> set = new TreeSet<>();
 
             try {
-                TessBaseAPI api = new TessBaseAPI();
+                final TesseractEngines engines = TesseractEngines.getInstance();
+                final TesseractEngines.Engine engine = engines.lease("eng");
 
-                if (api.Init(ocrFolder.toString(), "eng") == 0) {
-                    StringGenericVector languages = new StringGenericVector();
-                    api.GetAvailableLanguagesAsVector(languages);
+                if (engine != null) {
+                    try {
+                        StringGenericVector languages = new StringGenericVector();
+                        engine.api.GetAvailableLanguagesAsVector(languages);
 
-                    while (!languages.empty()) {
-                        set.add(languages.pop_back().string().getString());
+                        while (!languages.empty()) {
+                            set.add(languages.pop_back().string().getString());
+                        }
+                    } finally {
+                        engines.release(engine);
                     }
                 } else {
                     logger.warn("Error in loading Tesseract languages");
@@ -170,6 +176,12 @@ public class TesseractOCR
     //-----------//
     // recognize //
     //-----------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The Tesseract engine, already initialized for the language code if possible, is leased
+     * out of {@link TesseractEngines} pool by the current thread, for this recognition only.
+     */
     @Override
     public List<TextLine> recognize (int interline,
                                      BufferedImage bufferedImage,
@@ -70,6 +70,9 @@ public class TesseractOrder
     /** To specify UTF-8 encoding. */
     private static final String UTF8 = "UTF-8";
 
+    /** Resolution written by TIFF writer when image has no resolution metadata. */
+    private static final int TIFF_DEFAULT_DPI = 72;
+
     /** To avoid repetitive warnings if OCR binding failed. */
     private static volatile boolean userWarned;
 
@@ -97,7 +100,10 @@ public class TesseractOrder
     /** Desired handling of layout. */
     private final int segMode;
 
-    /** The dedicated API. */
+    /** The engine leased for this order. */
+    private TesseractEngines.Engine engine;
+
+    /** The API of leased engine. */
     private TessBaseAPI api;
 
     /** The image being processed. */
@@ -117,7 +123,7 @@ public class TesseractOrder
      * @param segMode       The desired page segmentation mode
      * @param bufferedImage The image to process
      * @throws UnsatisfiedLinkError When bridge to C++ could not be loaded
-     * @throws IOException          When temporary Tiff buffer failed
+     * @throws IOException          When disk copy of image failed
      * @throws RuntimeException     When PIX image failed
      */
     public TesseractOrder (String label,
@@ -136,14 +142,18 @@ public class TesseractOrder
         this.segMode = segMode;
 
         // Build a PIX from the image provided
-        ByteBuffer buf = toTiffBuffer(bufferedImage);
-        buf.position(0);
-        image = pixReadMemTiff(buf, buf.capacity(), 0);
+        image = (bufferedImage.getType() == BufferedImage.TYPE_BYTE_GRAY)
+                ? pixFromGray(bufferedImage) : pixFromTiff(bufferedImage);
 
         if (image == null) {
             logger.warn("Invalid image {}", label);
             throw new RuntimeException("Invalid image");
         }
+
+        // Should we keep a local copy of this image on disk?
+        if (keepImage) {
+            keepOnDisk(bufferedImage);
+        }
     }
 
     //~ Methods ------------------------------------------------------------------------------------
@@ -151,7 +161,7 @@ public class TesseractOrder
     // process //
     //---------//
     /**
-     * Actually allocate a Tesseract API and recognize the image.
+     * Actually lease a Tesseract engine and recognize the image.
      *
      * @return the sequence of lines found
      */
@@ -162,16 +172,17 @@ public class TesseractOrder
         }
 
         try {
-            final Path ocrFolder = TesseractOCR.getInstance().getOcrFolder();
-            api = new TessBaseAPI();
-
-            // Init API with proper language
-            if (api.Init(ocrFolder.toString(), lang) != 0) {
-                logger.warn("Could not initialize Tesseract with lang {}", lang);
+            // Lease an engine already initialized with proper language, if possible
+            engine = TesseractEngines.getInstance().lease(lang);
 
+            if (engine == null) {
                 return finish(null);
             }
 
+            api = engine.api;
+
+            final long start = System.nanoTime();
+
             // Set API image
             api.SetImage(image);
 
@@ -189,7 +200,10 @@ public class TesseractOrder
             }
 
             // Extract lines
-            return finish(getLines());
+            final List<TextLine> lines = getLines();
+            TesseractEngines.getInstance().recordRecognize(System.nanoTime() - start);
+
+            return finish(lines);
         } catch (UnsatisfiedLinkError ex) {
             if (!userWarned) {
                 logger.warn("Could not link Tesseract engine", ex);
@@ -198,6 +212,10 @@ public class TesseractOrder
             }
 
             throw new RuntimeException(ex);
+        } finally {
+            if (engine != null) {
+                finish(null); // Processing aborted, engine must be handed back anyway
+            }
         }
     }
 
@@ -205,19 +223,23 @@ public class TesseractOrder
     // finish //
     //--------//
     /**
-     * Convenient way to cleanup Tesseract resources while ending the current processing
+     * Convenient way to cleanup Tesseract resources while ending the current processing.
+     * <p>
+     * The engine is not ended but handed back to the pool of engines.
      *
      * @param lines the lines found, if any
      * @return the lines found, if nay
      */
     private List<TextLine> finish (List<TextLine> lines)
     {
-        if (image != null) {
-            pixDestroy(image);
+        if (engine != null) {
+            TesseractEngines.getInstance().release(engine);
+            engine = null;
+            api = null;
         }
 
-        if (api != null) {
-            api.End();
+        if (image != null) {
+            pixDestroy(image);
         }
 
         return lines;
@@ -396,20 +418,120 @@ public class TesseractOrder
         }
     }
 
+    //------------//
+    // keepOnDisk //
+    //------------//
+    /**
+     * Save a TIFF copy of the given image in TEMP folder.
+     *
+     * @param image the input image
+     */
+    private void keepOnDisk (BufferedImage image)
+            throws IOException
+    {
+        String name = String.format("%03d-", serial) + ((label != null) ? label : "");
+        Path path = WellKnowns.TEMP_FOLDER.resolve(name + ".tif");
+
+        // Make sure the TEMP directory exists
+        if (!Files.exists(WellKnowns.TEMP_FOLDER)) {
+            Files.createDirectories(WellKnowns.TEMP_FOLDER);
+        }
+
+        try (FileOutputStream fos = new FileOutputStream(path.toFile())) {
+            fos.write(toTiffBuffer(image).array());
+        } catch (IOException ex) {
+            logger.warn("Could not write to {}", path, ex);
+        }
+    }
+
+    //-------------//
+    // pixFromGray //
+    //-------------//
+    /**
+     * Build a PIX directly from the raster of the given gray image.
+     * <p>
+     * Leptonica stores an 8-bit image as rows of 32-bit words, with the leftmost pixel in the
+     * most significant byte.
+     * Rows are thus packed one at a time into words, and copied straight into the PIX data,
+     * with no intermediate image format.
+     * <p>
+     * Resolution is set to the value the TIFF writer would have put, so that Tesseract sees
+     * exactly the same image as via {@link #pixFromTiff}.
+     *
+     * @param image the input image, of type TYPE_BYTE_GRAY
+     * @return the PIX image (to be destroyed by caller), or null if failed
+     */
+    static PIX pixFromGray (BufferedImage image)
+    {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final PIX pix = pixCreate(width, height, 8);
+
+        if (pix == null) {
+            return null;
+        }
+
+        pixSetResolution(pix, TIFF_DEFAULT_DPI, TIFF_DEFAULT_DPI);
+
+        final int wpl = pixGetWpl(pix);
+        final IntPointer data = pixGetData(pix);
+        final byte[] row = new byte[width];
+        final int[] words = new int[wpl];
+
+        for (int y = 0; y < height; y++) {
+            image.getRaster().getDataElements(0, y, width, 1, row);
+
+            for (int i = 0; i < wpl; i++) {
+                final int x = i << 2;
+                int word = 0;
+
+                for (int k = 0; k < 4; k++) {
+                    word <<= 8;
+
+                    if ((x + k) < width) {
+                        word |= (row[x + k] & 0xFF);
+                    }
+                }
+
+                words[i] = word;
+            }
+
+            data.position((long) y * wpl).put(words, 0, wpl);
+        }
+
+        return pix;
+    }
+
+    //-------------//
+    // pixFromTiff //
+    //-------------//
+    /**
+     * Build a PIX from the given image, by encoding it as an in-memory TIFF buffer which
+     * Leptonica then decodes.
+     * <p>
+     * This works for any image type, but costs much more than {@link #pixFromGray}.
+     *
+     * @param image the input image
+     * @return the PIX image (to be destroyed by caller), or null if failed
+     */
+    static PIX pixFromTiff (BufferedImage image)
+    {
+        ByteBuffer buf = toTiffBuffer(image);
+        buf.position(0);
+
+        return pixReadMemTiff(buf, buf.capacity(), 0);
+    }
+
     //--------------//
     // toTiffBuffer //
     //--------------//
     /**
-     * Convert the given image into a TIFF-formatted ByteBuffer for passing it directly
-     * to Tesseract.
-     * <p>
-     * A copy of the tiff buffer can be saved on disk, if so desired.
+     * Convert the given image into a TIFF-formatted ByteBuffer.
      *
      * @param image the input image
      * @return a buffer in TIFF format
      */
-    private ByteBuffer toTiffBuffer (BufferedImage image)
-            throws IOException
+    private static ByteBuffer toTiffBuffer (BufferedImage image)
     {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
@@ -421,28 +543,7 @@ public class TesseractOrder
             logger.warn("Could not write image", ex);
         }
 
-        ByteBuffer buf = ByteBuffer.allocate(baos.size());
-        byte[] bytes = baos.toByteArray();
-        buf.put(bytes);
-
-        // Should we keep a local copy of this buffer on disk?
-        if (keepImage) {
-            String name = String.format("%03d-", serial) + ((label != null) ? label : "");
-            Path path = WellKnowns.TEMP_FOLDER.resolve(name + ".tif");
-
-            // Make sure the TEMP directory exists
-            if (!Files.exists(WellKnowns.TEMP_FOLDER)) {
-                Files.createDirectories(WellKnowns.TEMP_FOLDER);
-            }
-
-            try (FileOutputStream fos = new FileOutputStream(path.toFile())) {
-                fos.write(bytes);
-            } catch (IOException ex) {
-                logger.warn("Could not write to {}", path, ex);
-            }
-        }
-
-        return buf;
+        return ByteBuffer.wrap(baos.toByteArray());
     }
 
     /**
@@ -21,6 +21,8 @@
 // </editor-fold>
 package org.audiveris.omr.util;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.glyph.Glyph;
 import org.audiveris.omr.ui.selection.EntityListEvent;
 import org.audiveris.omr.ui.selection.EntityService;
@@ -38,7 +40,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.SwingUtilities;
@@ -52,7 +53,13 @@ import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 /**
- * Class <code>BasicIndex</code>
+ * Class <code>BasicIndex</code> is the basic implementation of {@link EntityIndex}.
+ * <p>
+ * Entities are kept in a {@link DenseIdMap}, an array indexed by entity ID.
+ * <p>
+ * If entity bounds never change once the entity is registered, a subclass may override
+ * {@link #useSpatialGrid()}, so that geometric lookups are driven by a {@link SpatialGrid},
+ * built on first lookup, rather than by a scan of all entities.
  *
  * @param <E> precise type for indexed entities
  *
@@ -65,6 +72,8 @@ public class BasicIndex<E extends Entity>
 {
     //~ Static fields/initializers -----------------------------------------------------------------
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(BasicIndex.class);
 
     //~ Instance fields ----------------------------------------------------------------------------
@@ -74,7 +83,7 @@ public class BasicIndex<E extends Entity>
     /** Collection of all entities registered in this index, sorted on ID. */
     @XmlElement(name = "entities")
     @XmlJavaTypeAdapter(MapAdapter.class)
-    protected final ConcurrentSkipListMap<Integer, E> entities = new ConcurrentSkipListMap<>();
+    protected final DenseIdMap<E> entities = new DenseIdMap<>();
 
     // Transient data
     //---------------
@@ -88,6 +97,12 @@ public class BasicIndex<E extends Entity>
     /** List of IDs for declared VIP entities. */
     private List<Integer> vipIds;
 
+    /** Spatial grid on entities bounds, if any, created on first geometric lookup. */
+    private SpatialGrid<E> grid;
+
+    /** Lock for grid creation and update. */
+    private final Object gridLock = new Object();
+
     //~ Constructors -------------------------------------------------------------------------------
     /**
      * Creates a new <code>BasicIndex</code> object.
@@ -114,7 +129,7 @@ public class BasicIndex<E extends Entity>
     @Override
     public List<E> getContainedEntities (Rectangle rectangle)
     {
-        return Entities.containedEntities(iterator(), rectangle);
+        return Entities.containedEntities(candidates(rectangle), rectangle);
     }
 
     //-----------------------//
@@ -123,7 +138,9 @@ public class BasicIndex<E extends Entity>
     @Override
     public List<E> getContainingEntities (Point point)
     {
-        return Entities.containingEntities(iterator(), point);
+        return Entities.containingEntities(
+                candidates(new Rectangle(point.x, point.y, 1, 1)),
+                point);
     }
 
     //-------------//
@@ -221,7 +238,7 @@ public class BasicIndex<E extends Entity>
     @Override
     public List<E> getIntersectedEntities (Rectangle rectangle)
     {
-        return Entities.intersectedEntities(iterator(), rectangle);
+        return Entities.intersectedEntities(candidates(rectangle), rectangle);
     }
 
     //-----------//
@@ -268,7 +285,8 @@ public class BasicIndex<E extends Entity>
             throw new IllegalArgumentException("Entity has no ID");
         }
 
-        entities.put(id, entity);
+        final E old = entities.put(id, entity);
+        gridInsert(entity, old);
 
         if (isVipId(id)) {
             entity.setVip(true);
@@ -344,7 +362,8 @@ public class BasicIndex<E extends Entity>
         int id = generateId();
         entity.setId(id);
 
-        entities.put(id, entity);
+        final E old = entities.put(id, entity);
+        gridInsert(entity, old);
 
         if (isVipId(id)) {
             entity.setVip(true);
@@ -360,7 +379,16 @@ public class BasicIndex<E extends Entity>
     @Override
     public void remove (E entity)
     {
-        entities.remove(entity.getId());
+        // NOTA: Removed entity may be a different (yet equal) instance than the provided one
+        final E removed = entities.remove(entity.getId());
+
+        if (removed != null) {
+            synchronized (gridLock) {
+                if (grid != null) {
+                    grid.remove(removed);
+                }
+            }
+        }
     }
 
     //-------//
@@ -371,6 +399,10 @@ public class BasicIndex<E extends Entity>
     {
         lastId.set(0);
         entities.clear();
+
+        synchronized (gridLock) {
+            grid = null;
+        }
     }
 
     //-------------//
@@ -421,6 +453,32 @@ public class BasicIndex<E extends Entity>
         return sb.toString();
     }
 
+    //------------//
+    // candidates //
+    //------------//
+    /**
+     * Report an iterator on the entities that may intersect the provided rectangle,
+     * by increasing ID.
+     * <p>
+     * Without spatial grid, this is simply an iterator on all entities.
+     *
+     * @param rectangle the provided rectangle
+     * @return iterator on candidates
+     */
+    protected Iterator<E> candidates (Rectangle rectangle)
+    {
+        final SpatialGrid<E> theGrid = getGrid();
+
+        if (theGrid == null) {
+            return iterator();
+        }
+
+        final List<E> found = theGrid.intersected(rectangle);
+        Collections.sort(found, Entities.byId);
+
+        return found.iterator();
+    }
+
     //------------//
     // generateId //
     //------------//
@@ -461,7 +519,94 @@ public class BasicIndex<E extends Entity>
         return entity != null;
     }
 
+    //----------------//
+    // useSpatialGrid //
+    //----------------//
+    /**
+     * Tell whether geometric lookups can use a spatial grid.
+     * <p>
+     * This is false by default, since the grid is not notified of any bounds modification.
+     * A subclass whose entities bounds never change once registered may return true.
+     *
+     * @return true to use a spatial grid
+     */
+    protected boolean useSpatialGrid ()
+    {
+        return false;
+    }
+
+    //---------//
+    // getGrid //
+    //---------//
+    /**
+     * Report the spatial grid on entities, building it if needed.
+     *
+     * @return the grid, or null if no grid is used
+     */
+    private SpatialGrid<E> getGrid ()
+    {
+        if (!useSpatialGrid() || !constants.useSpatialGrid.isSet()) {
+            return null;
+        }
+
+        synchronized (gridLock) {
+            if (grid == null) {
+                grid = new SpatialGrid<>(constants.gridCellSize.getValue());
+
+                for (E entity : entities.values()) {
+                    if (isValid(entity)) {
+                        grid.insert(entity);
+                    }
+                }
+            }
+
+            return grid;
+        }
+    }
+
+    //------------//
+    // gridInsert //
+    //------------//
+    /**
+     * Insert a new entity into the grid, if any.
+     *
+     * @param entity the inserted entity
+     * @param old    the entity formerly registered with the same ID, if any
+     */
+    private void gridInsert (E entity,
+                             E old)
+    {
+        synchronized (gridLock) {
+            if (grid != null) {
+                if ((old != null) && (old != entity)) {
+                    grid.remove(old);
+                }
+
+                if (isValid(entity)) {
+                    grid.insert(entity);
+                }
+            }
+        }
+    }
+
     //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean useSpatialGrid = new Constant.Boolean(
+                true,
+                "Should we use a spatial grid for geometric lookups in suitable indexes?");
+
+        private final Constant.Integer gridCellSize = new Constant.Integer(
+                "pixels",
+                80,
+                "Side of spatial grid cells");
+    }
+
     //--------------//
     // IndexAdapter //
     //--------------//
@@ -491,17 +636,17 @@ public class BasicIndex<E extends Entity>
     // MapAdapter //
     //------------//
     /**
-     * This adapter converts an un-mappable ConcurrentHashMap<String, E> to/from
+     * This adapter converts an un-mappable DenseIdMap<E> to/from
      * a JAXB-mappable IndexValue<E> (a flat list).
      *
      * @param <E> the specific entity type
      */
     private static class MapAdapter<E extends AbstractEntity>
-            extends XmlAdapter<IndexValue<E>, ConcurrentSkipListMap<Integer, E>>
+            extends XmlAdapter<IndexValue<E>, DenseIdMap<E>>
     {
 
         @Override
-        public IndexValue<E> marshal (ConcurrentSkipListMap<Integer, E> map)
+        public IndexValue<E> marshal (DenseIdMap<E> map)
                 throws Exception
         {
             IndexValue<E> value = new IndexValue<>();
@@ -511,11 +656,11 @@ public class BasicIndex<E extends Entity>
         }
 
         @Override
-        public ConcurrentSkipListMap<Integer, E> unmarshal (IndexValue<E> value)
+        public DenseIdMap<E> unmarshal (IndexValue<E> value)
                 throws Exception
         {
             Collections.sort(value.list, (E e1, E e2) -> Integer.compare(e1.getId(), e2.getId()));
-            ConcurrentSkipListMap<Integer, E> map = new ConcurrentSkipListMap<>();
+            DenseIdMap<E> map = new DenseIdMap<>();
 
             for (E entity : value.list) {
                 map.put(entity.getId(), entity);
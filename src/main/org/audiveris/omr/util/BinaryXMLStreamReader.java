@@ -0,0 +1,843 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                           B i n a r y X M L S t r e a m R e a d e r                            //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Class <code>BinaryXMLStreamReader</code> reads XML events from the compact binary form written
+ * by {@link BinaryXMLStreamWriter}.
+ * <p>
+ * It is meant to be used as the source of a JAXB unmarshaller.
+ * Only start element, end element, characters and document events are reported.
+ *
+ * @author Hervé Bitteur
+ */
+public class BinaryXMLStreamReader
+        implements XMLStreamReader
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String[] NO_STRINGS = new String[0];
+
+    private static final Location LOCATION = new Location()
+    {
+        @Override
+        public int getCharacterOffset ()
+        {
+            return -1;
+        }
+
+        @Override
+        public int getColumnNumber ()
+        {
+            return -1;
+        }
+
+        @Override
+        public int getLineNumber ()
+        {
+            return -1;
+        }
+
+        @Override
+        public String getPublicId ()
+        {
+            return null;
+        }
+
+        @Override
+        public String getSystemId ()
+        {
+            return null;
+        }
+    };
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Underlying input stream. */
+    private final InputStream is;
+
+    /** Input buffer. */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** Current position in buffer. */
+    private int pos;
+
+    /** Number of valid bytes in buffer. */
+    private int limit;
+
+    /** Names read so far, by index. */
+    private final List<String> names = new ArrayList<>();
+
+    /** Indexed values read so far, by index. */
+    private final List<String> values = new ArrayList<>();
+
+    /** Open elements, current one first. */
+    private final Deque<Element> elements = new ArrayDeque<>();
+
+    /** Current event type. */
+    private int eventType = START_DOCUMENT;
+
+    /** Current element, for a start or end event. */
+    private Element element;
+
+    /** Current text, for a characters event. */
+    private String text;
+
+    /** Characters of current text, allocated on demand. */
+    private char[] textChars;
+
+    /** Namespace context on declarations in scope. */
+    private final NamespaceContext namespaceContext = new Context();
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>BinaryXMLStreamReader</code> object.
+     *
+     * @param is the underlying input stream, not closed by this reader
+     * @throws XMLStreamException if input does not start with the expected magic number
+     */
+    public BinaryXMLStreamReader (InputStream is)
+            throws XMLStreamException
+    {
+        this.is = is;
+
+        final int magic = (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+
+        if (magic != BinaryXMLStreamWriter.MAGIC) {
+            throw new XMLStreamException("Not a binary XML stream");
+        }
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    @Override
+    public void close ()
+            throws XMLStreamException
+    {
+        // Underlying stream is left open
+    }
+
+    @Override
+    public int getAttributeCount ()
+    {
+        checkStart();
+
+        return element.attValues.length;
+    }
+
+    @Override
+    public String getAttributeLocalName (int index)
+    {
+        checkStart();
+
+        return element.attLocalNames[index];
+    }
+
+    @Override
+    public QName getAttributeName (int index)
+    {
+        checkStart();
+
+        return new QName(
+                element.attNamespaces[index],
+                element.attLocalNames[index],
+                element.attPrefixes[index]);
+    }
+
+    @Override
+    public String getAttributeNamespace (int index)
+    {
+        checkStart();
+
+        final String uri = element.attNamespaces[index];
+
+        return uri.isEmpty() ? null : uri;
+    }
+
+    @Override
+    public String getAttributePrefix (int index)
+    {
+        checkStart();
+
+        return element.attPrefixes[index];
+    }
+
+    @Override
+    public String getAttributeType (int index)
+    {
+        checkStart();
+
+        return "CDATA";
+    }
+
+    @Override
+    public String getAttributeValue (int index)
+    {
+        checkStart();
+
+        return element.attValues[index];
+    }
+
+    @Override
+    public String getAttributeValue (String namespaceURI,
+                                     String localName)
+    {
+        checkStart();
+
+        for (int i = 0; i < element.attValues.length; i++) {
+            if (element.attLocalNames[i].equals(localName)
+                        && ((namespaceURI == null)
+                                    || element.attNamespaces[i].equals(namespaceURI))) {
+                return element.attValues[i];
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String getCharacterEncodingScheme ()
+    {
+        return null;
+    }
+
+    @Override
+    public String getElementText ()
+            throws XMLStreamException
+    {
+        if (eventType != START_ELEMENT) {
+            throw new XMLStreamException("Not positioned on a start element");
+        }
+
+        final StringBuilder sb = new StringBuilder();
+
+        while (next() == CHARACTERS) {
+            sb.append(text);
+        }
+
+        if (eventType != END_ELEMENT) {
+            throw new XMLStreamException("Element text contains a child element");
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String getEncoding ()
+    {
+        return null;
+    }
+
+    @Override
+    public int getEventType ()
+    {
+        return eventType;
+    }
+
+    @Override
+    public String getLocalName ()
+    {
+        checkElement();
+
+        return element.localName;
+    }
+
+    @Override
+    public Location getLocation ()
+    {
+        return LOCATION;
+    }
+
+    @Override
+    public QName getName ()
+    {
+        checkElement();
+
+        return new QName(element.namespaceURI, element.localName, element.prefix);
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext ()
+    {
+        return namespaceContext;
+    }
+
+    @Override
+    public int getNamespaceCount ()
+    {
+        checkElement();
+
+        return element.nsPrefixes.length;
+    }
+
+    @Override
+    public String getNamespacePrefix (int index)
+    {
+        checkElement();
+
+        final String prefix = element.nsPrefixes[index];
+
+        return prefix.isEmpty() ? null : prefix;
+    }
+
+    @Override
+    public String getNamespaceURI ()
+    {
+        checkElement();
+
+        return element.namespaceURI.isEmpty() ? null : element.namespaceURI;
+    }
+
+    @Override
+    public String getNamespaceURI (int index)
+    {
+        checkElement();
+
+        return element.nsURIs[index];
+    }
+
+    @Override
+    public String getNamespaceURI (String prefix)
+    {
+        return namespaceContext.getNamespaceURI(prefix);
+    }
+
+    @Override
+    public String getPIData ()
+    {
+        return null;
+    }
+
+    @Override
+    public String getPITarget ()
+    {
+        return null;
+    }
+
+    @Override
+    public String getPrefix ()
+    {
+        checkElement();
+
+        return element.prefix;
+    }
+
+    @Override
+    public Object getProperty (String name)
+            throws IllegalArgumentException
+    {
+        return null;
+    }
+
+    @Override
+    public String getText ()
+    {
+        checkText();
+
+        return text;
+    }
+
+    @Override
+    public char[] getTextCharacters ()
+    {
+        checkText();
+
+        if (textChars == null) {
+            textChars = text.toCharArray();
+        }
+
+        return textChars;
+    }
+
+    @Override
+    public int getTextCharacters (int sourceStart,
+                                  char[] target,
+                                  int targetStart,
+                                  int length)
+            throws XMLStreamException
+    {
+        checkText();
+
+        final int count = Math.max(0, Math.min(length, text.length() - sourceStart));
+        text.getChars(sourceStart, sourceStart + count, target, targetStart);
+
+        return count;
+    }
+
+    @Override
+    public int getTextLength ()
+    {
+        checkText();
+
+        return text.length();
+    }
+
+    @Override
+    public int getTextStart ()
+    {
+        checkText();
+
+        return 0;
+    }
+
+    @Override
+    public String getVersion ()
+    {
+        return null;
+    }
+
+    @Override
+    public boolean hasName ()
+    {
+        return (eventType == START_ELEMENT) || (eventType == END_ELEMENT);
+    }
+
+    @Override
+    public boolean hasNext ()
+            throws XMLStreamException
+    {
+        return eventType != END_DOCUMENT;
+    }
+
+    @Override
+    public boolean hasText ()
+    {
+        return eventType == CHARACTERS;
+    }
+
+    @Override
+    public boolean isAttributeSpecified (int index)
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isCharacters ()
+    {
+        return eventType == CHARACTERS;
+    }
+
+    @Override
+    public boolean isEndElement ()
+    {
+        return eventType == END_ELEMENT;
+    }
+
+    @Override
+    public boolean isStandalone ()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isStartElement ()
+    {
+        return eventType == START_ELEMENT;
+    }
+
+    @Override
+    public boolean isWhiteSpace ()
+    {
+        return (eventType == CHARACTERS) && text.trim().isEmpty();
+    }
+
+    @Override
+    public int next ()
+            throws XMLStreamException
+    {
+        if (eventType == END_DOCUMENT) {
+            throw new IllegalStateException("No more events");
+        }
+
+        if (eventType == END_ELEMENT) {
+            elements.pop();
+        }
+
+        text = null;
+        textChars = null;
+
+        final int token = readVarint();
+
+        switch (token) {
+        case BinaryXMLStreamWriter.START_ELEMENT:
+            element = readElement();
+            elements.push(element);
+
+            return eventType = START_ELEMENT;
+
+        case BinaryXMLStreamWriter.CHARACTERS:
+            element = null;
+            text = readValue();
+
+            return eventType = CHARACTERS;
+
+        case BinaryXMLStreamWriter.END_ELEMENT:
+            element = elements.peek();
+
+            if (element == null) {
+                throw new XMLStreamException("Unbalanced end element");
+            }
+
+            return eventType = END_ELEMENT;
+
+        case BinaryXMLStreamWriter.END_DOCUMENT:
+            element = null;
+
+            if (!elements.isEmpty()) {
+                throw new XMLStreamException("Unexpected end of document");
+            }
+
+            return eventType = END_DOCUMENT;
+
+        default:
+            throw new XMLStreamException("Invalid token " + token);
+        }
+    }
+
+    @Override
+    public int nextTag ()
+            throws XMLStreamException
+    {
+        int event = next();
+
+        while ((event == CHARACTERS) && isWhiteSpace()) {
+            event = next();
+        }
+
+        if ((event != START_ELEMENT) && (event != END_ELEMENT)) {
+            throw new XMLStreamException("Expected start or end tag");
+        }
+
+        return event;
+    }
+
+    @Override
+    public void require (int type,
+                         String namespaceURI,
+                         String localName)
+            throws XMLStreamException
+    {
+        if (type != eventType) {
+            throw new XMLStreamException("Expected event " + type + ", got " + eventType);
+        }
+
+        if ((namespaceURI != null) && !namespaceURI.equals(getNamespaceURI())) {
+            throw new XMLStreamException("Expected namespace " + namespaceURI);
+        }
+
+        if ((localName != null) && !localName.equals(getLocalName())) {
+            throw new XMLStreamException("Expected element " + localName);
+        }
+    }
+
+    @Override
+    public boolean standaloneSet ()
+    {
+        return false;
+    }
+
+    //--------------//
+    // checkElement //
+    //--------------//
+    private void checkElement ()
+    {
+        if (element == null) {
+            throw new IllegalStateException("Not positioned on an element");
+        }
+    }
+
+    //------------//
+    // checkStart //
+    //------------//
+    private void checkStart ()
+    {
+        if (eventType != START_ELEMENT) {
+            throw new IllegalStateException("Not positioned on a start element");
+        }
+    }
+
+    //-----------//
+    // checkText //
+    //-----------//
+    private void checkText ()
+    {
+        if (eventType != CHARACTERS) {
+            throw new IllegalStateException("Not positioned on characters");
+        }
+    }
+
+    //----------//
+    // readByte //
+    //----------//
+    private int readByte ()
+            throws XMLStreamException
+    {
+        if (pos == limit) {
+            try {
+                limit = is.read(buffer, 0, buffer.length);
+                pos = 0;
+            } catch (IOException ex) {
+                throw new XMLStreamException(ex);
+            }
+
+            if (limit <= 0) {
+                limit = 0;
+                throw new XMLStreamException("Unexpected end of binary XML stream");
+            }
+        }
+
+        return buffer[pos++] & 0xFF;
+    }
+
+    //-------------//
+    // readElement //
+    //-------------//
+    /**
+     * Read a start element, with its namespace declarations and attributes.
+     */
+    private Element readElement ()
+            throws XMLStreamException
+    {
+        final String namespaceURI = readName();
+        final String localName = readName();
+        final String prefix = readName();
+        final Element elem = new Element(namespaceURI, localName, prefix);
+
+        final int nsCount = readVarint();
+
+        if (nsCount > 0) {
+            elem.nsPrefixes = new String[nsCount];
+            elem.nsURIs = new String[nsCount];
+
+            for (int i = 0; i < nsCount; i++) {
+                elem.nsPrefixes[i] = readName();
+                elem.nsURIs[i] = readName();
+            }
+        }
+
+        final int attCount = readVarint();
+
+        if (attCount > 0) {
+            elem.attPrefixes = new String[attCount];
+            elem.attNamespaces = new String[attCount];
+            elem.attLocalNames = new String[attCount];
+            elem.attValues = new String[attCount];
+
+            for (int i = 0; i < attCount; i++) {
+                elem.attPrefixes[i] = readName();
+                elem.attNamespaces[i] = readName();
+                elem.attLocalNames[i] = readName();
+                elem.attValues[i] = readValue();
+            }
+        }
+
+        return elem;
+    }
+
+    //-------------//
+    // readLiteral //
+    //-------------//
+    private String readLiteral ()
+            throws XMLStreamException
+    {
+        final int length = readVarint();
+
+        if (length <= (limit - pos)) {
+            final String str = new String(buffer, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+
+            return str;
+        }
+
+        final byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) readByte();
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //----------//
+    // readName //
+    //----------//
+    private String readName ()
+            throws XMLStreamException
+    {
+        final int index = readVarint();
+
+        if (index > 0) {
+            return names.get(index - 1);
+        }
+
+        final String name = readLiteral();
+        names.add(name);
+
+        return name;
+    }
+
+    //-----------//
+    // readValue //
+    //-----------//
+    private String readValue ()
+            throws XMLStreamException
+    {
+        final int index = readVarint();
+
+        if (index > 0) {
+            return values.get(index - 1);
+        }
+
+        final String value = readLiteral();
+
+        if (BinaryXMLStreamWriter.isIndexed(value, values.size())) {
+            values.add(value);
+        }
+
+        return value;
+    }
+
+    //------------//
+    // readVarint //
+    //------------//
+    private int readVarint ()
+            throws XMLStreamException
+    {
+        int value = 0;
+
+        for (int shift = 0;; shift += 7) {
+            final int b = readByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //---------//
+    // Context //
+    //---------//
+    /**
+     * Namespace context based on declarations of open elements.
+     */
+    private class Context
+            implements NamespaceContext
+    {
+
+        @Override
+        public String getNamespaceURI (String prefix)
+        {
+            if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+                return XMLConstants.XML_NS_URI;
+            }
+
+            for (Element elem : elements) {
+                for (int i = 0; i < elem.nsPrefixes.length; i++) {
+                    if (elem.nsPrefixes[i].equals(prefix)) {
+                        return elem.nsURIs[i];
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public String getPrefix (String namespaceURI)
+        {
+            for (Element elem : elements) {
+                for (int i = 0; i < elem.nsURIs.length; i++) {
+                    if (elem.nsURIs[i].equals(namespaceURI)) {
+                        return elem.nsPrefixes[i];
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes (String namespaceURI)
+        {
+            final String prefix = getPrefix(namespaceURI);
+
+            return (prefix != null) ? Collections.singletonList(prefix).iterator()
+                    : Collections.emptyIterator();
+        }
+    }
+
+    //---------//
+    // Element //
+    //---------//
+    /**
+     * An open element, with its namespace declarations and attributes.
+     */
+    private static class Element
+    {
+
+        final String namespaceURI;
+
+        final String localName;
+
+        final String prefix;
+
+        String[] nsPrefixes = NO_STRINGS;
+
+        String[] nsURIs = NO_STRINGS;
+
+        String[] attPrefixes = NO_STRINGS;
+
+        String[] attNamespaces = NO_STRINGS;
+
+        String[] attLocalNames = NO_STRINGS;
+
+        String[] attValues = NO_STRINGS;
+
+        Element (String namespaceURI,
+                 String localName,
+                 String prefix)
+        {
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+            this.prefix = prefix;
+        }
+    }
+}
@@ -0,0 +1,693 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                           B i n a r y X M L S t r e a m W r i t e r                            //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Class <code>BinaryXMLStreamWriter</code> writes XML events in a compact binary form, to be
+ * read back by {@link BinaryXMLStreamReader}.
+ * <p>
+ * It is meant to be used as the target of a JAXB marshaller, for large structures such as a sheet,
+ * whose XML text would be bulky and slow to parse.
+ * The binary form is a sequence of tokens (start element, text, end element, end document):
+ * <ul>
+ * <li>All integers are unsigned variable-length integers (7 bits per byte).</li>
+ * <li>Names (element and attribute names, namespace URIs and prefixes) are written once, and
+ * referred to by their index afterwards.</li>
+ * <li>Short values (attribute values and texts) are indexed the same way, so that frequent values
+ * (shapes, booleans, small numbers, IDREFs) are written just once.</li>
+ * <li>Longer values are written literally, as UTF-8 bytes.</li>
+ * </ul>
+ * Comments, processing instructions and DTD are ignored.
+ *
+ * @author Hervé Bitteur
+ */
+public class BinaryXMLStreamWriter
+        implements XMLStreamWriter
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    /** Magic number: "AXB" + format version. */
+    static final int MAGIC = 0x41584201;
+
+    /** Token for end of document. */
+    static final int END_DOCUMENT = 0;
+
+    /** Token for start of element. */
+    static final int START_ELEMENT = 1;
+
+    /** Token for text. */
+    static final int CHARACTERS = 2;
+
+    /** Token for end of element. */
+    static final int END_ELEMENT = 3;
+
+    /** Maximum length for a value to be indexed. */
+    static final int MAX_INDEXED_LENGTH = 32;
+
+    /** Maximum number of indexed values. */
+    static final int MAX_INDEXED_VALUES = 1 << 16;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Underlying output stream. */
+    private final OutputStream os;
+
+    /** Output buffer. */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** Current position in buffer. */
+    private int pos;
+
+    /** Indices of names already written. */
+    private final Map<String, Integer> names = new HashMap<>();
+
+    /** Indices of values already written. */
+    private final Map<String, Integer> values = new HashMap<>();
+
+    /** Start element not yet written, waiting for its attributes and namespaces. */
+    private Start pending;
+
+    /** Is pending start element an empty element?. */
+    private boolean pendingEmpty;
+
+    /** Number of open elements. */
+    private int depth;
+
+    /** Namespace declarations, per open element. */
+    private final Deque<List<String[]>> scopes = new ArrayDeque<>();
+
+    /** Namespace context on declarations in scope. */
+    private final NamespaceContext namespaceContext = new Context();
+
+    /** Root namespace context, if any, used after declarations in scope. */
+    private NamespaceContext rootContext;
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>BinaryXMLStreamWriter</code> object.
+     *
+     * @param os the underlying output stream, not closed by this writer
+     */
+    public BinaryXMLStreamWriter (OutputStream os)
+    {
+        this.os = os;
+
+        // Magic number
+        buffer[pos++] = (byte) (MAGIC >>> 24);
+        buffer[pos++] = (byte) (MAGIC >>> 16);
+        buffer[pos++] = (byte) (MAGIC >>> 8);
+        buffer[pos++] = (byte) MAGIC;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    @Override
+    public void close ()
+            throws XMLStreamException
+    {
+        flush();
+    }
+
+    @Override
+    public void flush ()
+            throws XMLStreamException
+    {
+        try {
+            os.write(buffer, 0, pos);
+            pos = 0;
+            os.flush();
+        } catch (IOException ex) {
+            throw new XMLStreamException(ex);
+        }
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext ()
+    {
+        return namespaceContext;
+    }
+
+    @Override
+    public void setNamespaceContext (NamespaceContext context)
+            throws XMLStreamException
+    {
+        if ((depth > 0) || (pending != null)) {
+            throw new XMLStreamException("Namespace context can be set only at document start");
+        }
+
+        rootContext = context;
+    }
+
+    @Override
+    public String getPrefix (String uri)
+            throws XMLStreamException
+    {
+        return namespaceContext.getPrefix(uri);
+    }
+
+    @Override
+    public Object getProperty (String name)
+            throws IllegalArgumentException
+    {
+        return null;
+    }
+
+    @Override
+    public void setDefaultNamespace (String uri)
+            throws XMLStreamException
+    {
+        setPrefix(XMLConstants.DEFAULT_NS_PREFIX, uri);
+    }
+
+    @Override
+    public void setPrefix (String prefix,
+                           String uri)
+            throws XMLStreamException
+    {
+        final List<String[]> scope = scopes.peek();
+
+        if (scope != null) {
+            scope.add(new String[]{nonNull(prefix), nonNull(uri)});
+        }
+    }
+
+    @Override
+    public void writeAttribute (String localName,
+                                String value)
+            throws XMLStreamException
+    {
+        writeAttribute(null, null, localName, value);
+    }
+
+    @Override
+    public void writeAttribute (String prefix,
+                                String namespaceURI,
+                                String localName,
+                                String value)
+            throws XMLStreamException
+    {
+        if (pending == null) {
+            throw new XMLStreamException("Attribute " + localName + " outside of start element");
+        }
+
+        pending.attributes.add(
+                new String[]{nonNull(prefix), nonNull(namespaceURI), localName, nonNull(value)});
+    }
+
+    @Override
+    public void writeAttribute (String namespaceURI,
+                                String localName,
+                                String value)
+            throws XMLStreamException
+    {
+        writeAttribute(getPrefix(namespaceURI), namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeCData (String data)
+            throws XMLStreamException
+    {
+        writeCharacters(data);
+    }
+
+    @Override
+    public void writeCharacters (String text)
+            throws XMLStreamException
+    {
+        if ((text == null) || text.isEmpty()) {
+            return;
+        }
+
+        flushPending();
+        writeVarint(CHARACTERS);
+        writeValue(text);
+    }
+
+    @Override
+    public void writeCharacters (char[] text,
+                                 int start,
+                                 int len)
+            throws XMLStreamException
+    {
+        writeCharacters(new String(text, start, len));
+    }
+
+    @Override
+    public void writeComment (String data)
+            throws XMLStreamException
+    {
+        // Ignored
+    }
+
+    @Override
+    public void writeDTD (String dtd)
+            throws XMLStreamException
+    {
+        // Ignored
+    }
+
+    @Override
+    public void writeDefaultNamespace (String namespaceURI)
+            throws XMLStreamException
+    {
+        writeNamespace(XMLConstants.DEFAULT_NS_PREFIX, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement (String localName)
+            throws XMLStreamException
+    {
+        writeEmptyElement(null, localName, null);
+    }
+
+    @Override
+    public void writeEmptyElement (String namespaceURI,
+                                   String localName)
+            throws XMLStreamException
+    {
+        writeEmptyElement(getPrefix(namespaceURI), localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement (String prefix,
+                                   String localName,
+                                   String namespaceURI)
+            throws XMLStreamException
+    {
+        writeStartElement(prefix, localName, namespaceURI);
+        pendingEmpty = true;
+    }
+
+    @Override
+    public void writeEndDocument ()
+            throws XMLStreamException
+    {
+        while (depth > 0) {
+            writeEndElement();
+        }
+
+        writeVarint(END_DOCUMENT);
+        flush();
+    }
+
+    @Override
+    public void writeEndElement ()
+            throws XMLStreamException
+    {
+        flushPending();
+
+        if (depth == 0) {
+            throw new XMLStreamException("No element to end");
+        }
+
+        writeVarint(END_ELEMENT);
+        depth--;
+        scopes.pop();
+    }
+
+    @Override
+    public void writeEntityRef (String name)
+            throws XMLStreamException
+    {
+        throw new XMLStreamException("Entity references are not supported");
+    }
+
+    @Override
+    public void writeNamespace (String prefix,
+                                String namespaceURI)
+            throws XMLStreamException
+    {
+        if (pending == null) {
+            throw new XMLStreamException("Namespace " + namespaceURI + " outside of start element");
+        }
+
+        final String[] decl = new String[]{nonNull(prefix), nonNull(namespaceURI)};
+        pending.namespaces.add(decl);
+        scopes.peek().add(decl);
+    }
+
+    @Override
+    public void writeProcessingInstruction (String target)
+            throws XMLStreamException
+    {
+        // Ignored
+    }
+
+    @Override
+    public void writeProcessingInstruction (String target,
+                                            String data)
+            throws XMLStreamException
+    {
+        // Ignored
+    }
+
+    @Override
+    public void writeStartDocument ()
+            throws XMLStreamException
+    {
+        // Magic number already written
+    }
+
+    @Override
+    public void writeStartDocument (String version)
+            throws XMLStreamException
+    {
+        // Magic number already written
+    }
+
+    @Override
+    public void writeStartDocument (String encoding,
+                                    String version)
+            throws XMLStreamException
+    {
+        // Magic number already written
+    }
+
+    @Override
+    public void writeStartElement (String localName)
+            throws XMLStreamException
+    {
+        writeStartElement(null, localName, null);
+    }
+
+    @Override
+    public void writeStartElement (String namespaceURI,
+                                   String localName)
+            throws XMLStreamException
+    {
+        writeStartElement(getPrefix(namespaceURI), localName, namespaceURI);
+    }
+
+    @Override
+    public void writeStartElement (String prefix,
+                                   String localName,
+                                   String namespaceURI)
+            throws XMLStreamException
+    {
+        flushPending();
+        pending = new Start(nonNull(prefix), localName, nonNull(namespaceURI));
+        pendingEmpty = false;
+        depth++;
+        scopes.push(new ArrayList<>());
+    }
+
+    //--------------//
+    // flushPending //
+    //--------------//
+    /**
+     * Write the pending start element, if any, now that its attributes are known.
+     */
+    private void flushPending ()
+            throws XMLStreamException
+    {
+        if (pending == null) {
+            return;
+        }
+
+        final Start start = pending;
+        pending = null;
+
+        writeVarint(START_ELEMENT);
+        writeName(start.namespaceURI);
+        writeName(start.localName);
+        writeName(start.prefix);
+
+        writeVarint(start.namespaces.size());
+
+        for (String[] decl : start.namespaces) {
+            writeName(decl[0]);
+            writeName(decl[1]);
+        }
+
+        writeVarint(start.attributes.size());
+
+        for (String[] att : start.attributes) {
+            writeName(att[0]);
+            writeName(att[1]);
+            writeName(att[2]);
+            writeValue(att[3]);
+        }
+
+        if (pendingEmpty) {
+            pendingEmpty = false;
+            writeEndElement();
+        }
+    }
+
+    //---------//
+    // nonNull //
+    //---------//
+    private static String nonNull (String str)
+    {
+        return (str != null) ? str : "";
+    }
+
+    //---------//
+    // reserve //
+    //---------//
+    /**
+     * Make sure buffer can accept the provided number of bytes.
+     */
+    private void reserve (int count)
+            throws XMLStreamException
+    {
+        if ((pos + count) > buffer.length) {
+            try {
+                os.write(buffer, 0, pos);
+                pos = 0;
+            } catch (IOException ex) {
+                throw new XMLStreamException(ex);
+            }
+        }
+    }
+
+    //------------//
+    // writeBytes //
+    //------------//
+    private void writeBytes (byte[] bytes)
+            throws XMLStreamException
+    {
+        if (bytes.length > buffer.length) {
+            reserve(buffer.length);
+
+            try {
+                os.write(bytes);
+            } catch (IOException ex) {
+                throw new XMLStreamException(ex);
+            }
+        } else {
+            reserve(bytes.length);
+            System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+            pos += bytes.length;
+        }
+    }
+
+    //-------------//
+    // writeString //
+    //-------------//
+    /**
+     * Write a string either by its index, or literally.
+     *
+     * @param str     the string to write
+     * @param table   the table of indexed strings
+     * @param indexed true if a literal string is to be indexed
+     */
+    private void writeString (String str,
+                              Map<String, Integer> table,
+                              boolean indexed)
+            throws XMLStreamException
+    {
+        final Integer index = table.get(str);
+
+        if (index != null) {
+            writeVarint(index + 1);
+        } else {
+            final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarint(0);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+
+            if (indexed) {
+                table.put(str, table.size());
+            }
+        }
+    }
+
+    //-----------//
+    // writeName //
+    //-----------//
+    private void writeName (String name)
+            throws XMLStreamException
+    {
+        writeString(name, names, true);
+    }
+
+    //------------//
+    // writeValue //
+    //------------//
+    private void writeValue (String value)
+            throws XMLStreamException
+    {
+        writeString(value, values, isIndexed(value, values.size()));
+    }
+
+    //-----------//
+    // isIndexed //
+    //-----------//
+    /**
+     * Tell whether a literal value gets indexed.
+     *
+     * @param value the value
+     * @param count the current number of indexed values
+     * @return true if so
+     */
+    static boolean isIndexed (String value,
+                              int count)
+    {
+        return (value.length() <= MAX_INDEXED_LENGTH) && (count < MAX_INDEXED_VALUES);
+    }
+
+    //-------------//
+    // writeVarint //
+    //-------------//
+    private void writeVarint (int value)
+            throws XMLStreamException
+    {
+        reserve(5);
+
+        while ((value & ~0x7F) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[pos++] = (byte) value;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //---------//
+    // Context //
+    //---------//
+    /**
+     * Namespace context based on declarations in scope.
+     */
+    private class Context
+            implements NamespaceContext
+    {
+
+        @Override
+        public String getNamespaceURI (String prefix)
+        {
+            for (List<String[]> scope : scopes) {
+                for (String[] decl : scope) {
+                    if (decl[0].equals(prefix)) {
+                        return decl[1];
+                    }
+                }
+            }
+
+            if (rootContext != null) {
+                final String uri = rootContext.getNamespaceURI(prefix);
+
+                if (uri != null) {
+                    return uri;
+                }
+            }
+
+            return XMLConstants.NULL_NS_URI;
+        }
+
+        @Override
+        public String getPrefix (String namespaceURI)
+        {
+            if ((namespaceURI == null) || namespaceURI.isEmpty()) {
+                return XMLConstants.DEFAULT_NS_PREFIX;
+            }
+
+            for (List<String[]> scope : scopes) {
+                for (String[] decl : scope) {
+                    if (decl[1].equals(namespaceURI)) {
+                        return decl[0];
+                    }
+                }
+            }
+
+            return (rootContext != null) ? rootContext.getPrefix(namespaceURI) : null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes (String namespaceURI)
+        {
+            final String prefix = getPrefix(namespaceURI);
+
+            return (prefix != null) ? Collections.singletonList(prefix).iterator()
+                    : Collections.emptyIterator();
+        }
+    }
+
+    //-------//
+    // Start //
+    //-------//
+    /**
+     * A start element, with its attributes and namespace declarations.
+     */
+    private static class Start
+    {
+
+        final String prefix;
+
+        final String localName;
+
+        final String namespaceURI;
+
+        /** Namespace declarations: prefix, URI. */
+        final List<String[]> namespaces = new ArrayList<>();
+
+        /** Attributes: prefix, URI, local name, value. */
+        final List<String[]> attributes = new ArrayList<>();
+
+        Start (String prefix,
+               String localName,
+               String namespaceURI)
+        {
+            this.prefix = prefix;
+            this.localName = localName;
+            this.namespaceURI = namespaceURI;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                      D e n s e I d M a p                                       //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class <code>DenseIdMap</code> maps positive int IDs to values, using an array indexed by ID.
+ * <p>
+ * Entity IDs are allocated in sequence by an index (or by the sheet persistent ID generator),
+ * hence they are dense enough for an array to be much lighter than a map of boxed keys, and
+ * much faster to access.
+ * <p>
+ * Reads are lock-free, modifications are serialized.
+ * As with a concurrent map, iteration is weakly consistent: it never fails on concurrent
+ * modification, and browses values by increasing ID.
+ *
+ * @param <V> type of values
+ * @author Hervé Bitteur
+ */
+public class DenseIdMap<V>
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Values indexed by ID. */
+    private volatile AtomicReferenceArray<V> slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    /** Number of non-null values. */
+    private volatile int size;
+
+    /** View on values. */
+    private final Collection<V> values = new Values();
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new empty <code>DenseIdMap</code> object.
+     */
+    public DenseIdMap ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //-------//
+    // clear //
+    //-------//
+    /**
+     * Remove all values.
+     */
+    public synchronized void clear ()
+    {
+        slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    //-----//
+    // get //
+    //-----//
+    /**
+     * Report the value for the provided ID.
+     *
+     * @param id the provided ID
+     * @return the value found, or null
+     */
+    public V get (int id)
+    {
+        final AtomicReferenceArray<V> s = slots;
+
+        return ((id >= 0) && (id < s.length())) ? s.get(id) : null;
+    }
+
+    //---------//
+    // isEmpty //
+    //---------//
+    /**
+     * Tell whether the map is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty ()
+    {
+        return size == 0;
+    }
+
+    //-----//
+    // put //
+    //-----//
+    /**
+     * Assign a value to the provided ID.
+     *
+     * @param id    the provided ID, positive or zero
+     * @param value the value, not null
+     * @return the previous value for this ID, if any
+     */
+    public synchronized V put (int id,
+                               V value)
+    {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id " + id);
+        }
+
+        if (value == null) {
+            throw new NullPointerException("Null value for id " + id);
+        }
+
+        AtomicReferenceArray<V> s = slots;
+
+        if (id >= s.length()) {
+            final AtomicReferenceArray<V> bigger = new AtomicReferenceArray<>(
+                    Math.max(id + 1, s.length() + (s.length() >> 1)));
+
+            for (int i = 0, iMax = s.length(); i < iMax; i++) {
+                bigger.set(i, s.get(i));
+            }
+
+            slots = s = bigger;
+        }
+
+        final V old = s.getAndSet(id, value);
+
+        if (old == null) {
+            size++;
+        }
+
+        return old;
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Remove the value for the provided ID.
+     *
+     * @param id the provided ID
+     * @return the removed value, if any
+     */
+    public synchronized V remove (int id)
+    {
+        final AtomicReferenceArray<V> s = slots;
+
+        if ((id < 0) || (id >= s.length())) {
+            return null;
+        }
+
+        final V old = s.getAndSet(id, null);
+
+        if (old != null) {
+            size--;
+        }
+
+        return old;
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of values.
+     *
+     * @return the count of values
+     */
+    public int size ()
+    {
+        return size;
+    }
+
+    //--------//
+    // values //
+    //--------//
+    /**
+     * Report a view on values, ordered by increasing ID.
+     * Its iterator supports removal.
+     *
+     * @return view on values
+     */
+    public Collection<V> values ()
+    {
+        return values;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //--------//
+    // Values //
+    //--------//
+    private class Values
+            extends AbstractCollection<V>
+    {
+
+        @Override
+        public Iterator<V> iterator ()
+        {
+            return new Itr();
+        }
+
+        @Override
+        public int size ()
+        {
+            return size;
+        }
+    }
+
+    //-----//
+    // Itr //
+    //-----//
+    /**
+     * Iterator on the array in use when iteration started, skipping null slots.
+     */
+    private class Itr
+            implements Iterator<V>
+    {
+
+        private final AtomicReferenceArray<V> s = slots;
+
+        /** Index of next value to return, if any. */
+        private int cursor = -1;
+
+        /** Next value to return, if any. */
+        private V nextValue;
+
+        /** Index of last value returned, if any. */
+        private int lastIndex = -1;
+
+        Itr ()
+        {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext ()
+        {
+            return nextValue != null;
+        }
+
+        @Override
+        public V next ()
+        {
+            if (nextValue == null) {
+                throw new NoSuchElementException();
+            }
+
+            final V value = nextValue;
+            lastIndex = cursor;
+            advance();
+
+            return value;
+        }
+
+        @Override
+        public void remove ()
+        {
+            if (lastIndex == -1) {
+                throw new IllegalStateException();
+            }
+
+            DenseIdMap.this.remove(lastIndex);
+            lastIndex = -1;
+        }
+
+        private void advance ()
+        {
+            nextValue = null;
+
+            for (int len = s.length(); ++cursor < len;) {
+                final V value = s.get(cursor);
+
+                if (value != null) {
+                    nextValue = value;
+
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -142,6 +142,31 @@ public abstract class Jaxb
         m.marshal(object, writer);
     }
 
+    //---------------//
+    // marshalBinary //
+    //---------------//
+    /**
+     * Marshal an object to a stream, in compact binary form, using provided JAXB context.
+     *
+     * @param object      instance to marshal
+     * @param os          output stream, not closed by this method
+     * @param jaxbContext proper context
+     * @throws JAXBException      on JAXB error
+     * @throws XMLStreamException on IO error
+     * @see BinaryXMLStreamWriter
+     */
+    public static void marshalBinary (Object object,
+                                      OutputStream os,
+                                      JAXBContext jaxbContext)
+            throws JAXBException,
+                   XMLStreamException
+    {
+        Marshaller m = jaxbContext.createMarshaller();
+        XMLStreamWriter writer = new BinaryXMLStreamWriter(os);
+        m.marshal(object, writer);
+        writer.flush();
+    }
+
     //-----------//
     // unmarshal //
     //-----------//
@@ -21,6 +21,17 @@
 // </editor-fold>
 package org.audiveris.omr.util;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Class <code>Memory</code> is a collection of static methods to ease the interaction with
  * the memory characteristics.
@@ -33,6 +44,9 @@ public abstract class Memory
 
     private static final Runtime rt = Runtime.getRuntime();
 
+    /** Executor for heap samplers, created on first use. */
+    private static ScheduledExecutorService samplingExecutor;
+
     //~ Constructors -------------------------------------------------------------------------------
     /** Not meant to be instantiated. */
     private Memory ()
@@ -140,4 +154,94 @@ public abstract class Memory
     {
         return rt.totalMemory();
     }
+
+    //---------------------//
+    // getSamplingExecutor //
+    //---------------------//
+    private static synchronized ScheduledExecutorService getSamplingExecutor ()
+    {
+        if (samplingExecutor == null) {
+            samplingExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "heap-sampler");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+
+        return samplingExecutor;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-------------//
+    // HeapSampler //
+    //-------------//
+    /**
+     * Class <code>HeapSampler</code> samples the heap usage at a fixed period, to report the
+     * peak met between its creation and its {@link #stop()}.
+     * <p>
+     * Each sample adds the current usages of all heap memory pools, taken at the same time,
+     * whereas the peak usages of these pools are generally met at different times.
+     * Samplers are independent of one another, nothing is reset for the whole JVM.
+     * However, the heap is shared: when several sheets are processed in parallel, a sample
+     * includes the memory used by all of them.
+     * And a peak shorter than the sampling period may be missed.
+     */
+    public static class HeapSampler
+    {
+
+        /** Heap memory pools. */
+        private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+
+        /** Highest sample so far. */
+        private final AtomicLong peak = new AtomicLong();
+
+        /** Periodic sampling. */
+        private final ScheduledFuture<?> future;
+
+        /**
+         * Create a sampler and start sampling.
+         *
+         * @param periodMillis sampling period, in milliseconds
+         */
+        public HeapSampler (long periodMillis)
+        {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pools.add(pool);
+                }
+            }
+
+            sample();
+            future = getSamplingExecutor().scheduleAtFixedRate(
+                    this::sample,
+                    periodMillis,
+                    periodMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stop sampling and report the peak.
+         *
+         * @return the highest heap usage met, in bytes
+         */
+        public long stop ()
+        {
+            future.cancel(false);
+            sample();
+
+            return peak.get();
+        }
+
+        private void sample ()
+        {
+            long used = 0;
+
+            for (MemoryPoolMXBean pool : pools) {
+                used += pool.getUsage().getUsed();
+            }
+
+            peak.accumulateAndGet(used, Math::max);
+        }
+    }
 }
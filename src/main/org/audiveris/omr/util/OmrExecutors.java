@@ -31,8 +31,12 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -41,9 +45,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Class <code>OmrExecutors</code> handles several pools of threads provided to Audiveris
  * application:
  * <ul>
- * <li>lowExecutor: a fixed nb (#cpu+1) of threads with low priority</li>
- * <li>highExecutor: a fixed nb (#cpu+1) of threads with high priority</li>
- * <li>cachedLowExecutor: a varying nb of threads with low priority</li>
+ * <li>forkJoinPool: a work-stealing pool, capped to a global parallelism, shared by all the
+ * nested processing levels (batch, book, system, row, compute) through {@link OmrScheduler}</li>
+ * <li>cachedLowExecutor: a varying nb of threads with low priority, for background tasks and
+ * for the dedicated (interruptible) thread of each sheet step</li>
  * </ul>
  *
  * @author Hervé Bitteur
@@ -63,24 +68,26 @@ public class OmrExecutors
     private static final int cpuCount = Runtime.getRuntime().availableProcessors();
 
     // Specific pools
-    private static final Pool highs = new Highs();
-
-    private static final Pool lows = new Lows();
+    private static final Pool forkJoins = new ForkJoins();
 
     private static final Pool cachedLows = new CachedLows();
 
     /** To handle all the pools as a whole. */
-    private static final Collection<Pool> allPools = Arrays.asList(cachedLows, lows, highs);
+    private static final Collection<Pool> allPools = Arrays.asList(cachedLows, forkJoins);
 
     /** To prevent parallel creation of pools when closing. */
     private static volatile boolean creationAllowed = true;
 
+    /** Actions to run at shutdown, once all pools are closed. */
+    private static final List<Runnable> shutdownHooks = new CopyOnWriteArrayList<>();
+
     static {
         if (constants.printEnvironment.isSet()) {
             logger.info(
-                    "Environment. CPU count: {}, Use of parallelism: {}",
+                    "Environment. CPU count: {}, Use of parallelism: {}, Parallelism cap: {}",
                     cpuCount,
-                    defaultParallelism.getValue());
+                    defaultParallelism.getValue(),
+                    getParallelism());
         }
     }
 
@@ -93,6 +100,21 @@ public class OmrExecutors
     }
 
     //~ Methods ------------------------------------------------------------------------------------
+    //-----------------//
+    // addShutdownHook //
+    //-----------------//
+    /**
+     * Register an action to be run by {@link #shutdown()}, once all pools are closed.
+     * <p>
+     * This is meant for the release of resources used by pool tasks, such as native engines.
+     *
+     * @param hook the action to run
+     */
+    public static void addShutdownHook (Runnable hook)
+    {
+        shutdownHooks.add(hook);
+    }
+
     //----------------------//
     // getCachedLowExecutor //
     //----------------------//
@@ -107,29 +129,19 @@ public class OmrExecutors
     }
 
     //-----------------//
-    // getHighExecutor //
+    // getForkJoinPool //
     //-----------------//
     /**
-     * Return the (single) pool of high priority threads
-     *
-     * @return the high pool, allocated if needed
-     */
-    public static ExecutorService getHighExecutor ()
-    {
-        return highs.getPool();
-    }
-
-    //----------------//
-    // getLowExecutor //
-    //----------------//
-    /**
-     * Return the (single) pool of low priority threads
+     * Return the (single) work-stealing pool, shared by all processing levels.
+     * <p>
+     * Tasks should rather be submitted through {@link OmrScheduler}, which handles nested joins
+     * and per-level statistics.
      *
-     * @return the low pool, allocated if needed
+     * @return the fork/join pool, allocated if needed
      */
-    public static ExecutorService getLowExecutor ()
+    public static ForkJoinPool getForkJoinPool ()
     {
-        return lows.getPool();
+        return (ForkJoinPool) forkJoins.getPool();
     }
 
     //-----------------//
@@ -145,6 +157,26 @@ public class OmrExecutors
         return cpuCount;
     }
 
+    //----------------//
+    // getParallelism //
+    //----------------//
+    /**
+     * Report the global parallelism cap, that is the target number of active worker threads
+     * in the fork/join pool.
+     *
+     * @return the parallelism cap (1 if parallelism is not allowed)
+     */
+    public static int getParallelism ()
+    {
+        if (!defaultParallelism.getValue()) {
+            return 1;
+        }
+
+        final int cap = constants.maxParallelism.getValue();
+
+        return (cap > 0) ? Math.min(cap, cpuCount) : cpuCount;
+    }
+
     //---------//
     // restart //
     //---------//
@@ -183,6 +215,18 @@ public class OmrExecutors
             }
         }
 
+        for (Runnable hook : shutdownHooks) {
+            try {
+                hook.run();
+            } catch (Throwable ex) {
+                logger.warn("Error in shutdown hook {}", ex.toString(), ex);
+            }
+        }
+
+        if (constants.printEnvironment.isSet()) {
+            OmrScheduler.printStatistics();
+        }
+
         logger.debug("OmrExecutors closed");
 
         return result;
@@ -225,6 +269,11 @@ public class OmrExecutors
                 false, //true, // Disabled for the time being
                 "Should we use parallelism when we have several processors?");
 
+        private final Constant.Integer maxParallelism = new Constant.Integer(
+                "threads",
+                0,
+                "Maximum number of active fork/join workers (0 for CPU count)");
+
         private final Constant.Integer graceDelay = new Constant.Integer(
                 "seconds",
                 60,
@@ -324,49 +373,38 @@ public class OmrExecutors
         }
     }
 
-    //-------//
-    // Highs //
-    //-------//
-    /** Fixed pool with high priority. */
-    private static class Highs
-            extends Pool
-    {
-
-        @Override
-        public String getName ()
-        {
-            return "high";
-        }
-
-        @Override
-        protected ExecutorService createPool ()
-        {
-            return Executors.newFixedThreadPool(
-                    defaultParallelism.getValue() ? (cpuCount + 1) : 1,
-                    new Factory(getName(), Thread.NORM_PRIORITY, 0));
-        }
-    }
-
-    //------//
-    // Lows //
-    //------//
-    /** Fixed pool with low priority. */
-    private static class Lows
+    //-----------//
+    // ForkJoins //
+    //-----------//
+    /** Work-stealing pool, capped to global parallelism. */
+    private static class ForkJoins
             extends Pool
     {
 
         @Override
         public String getName ()
         {
-            return "low";
+            return "forkJoin";
         }
 
         @Override
         protected ExecutorService createPool ()
         {
-            return Executors.newFixedThreadPool(
-                    defaultParallelism.getValue() ? (cpuCount + 1) : 1,
-                    new Factory(getName(), Thread.MIN_PRIORITY, 0));
+            final String prefix = getName();
+            final AtomicInteger threadNumber = new AtomicInteger(0);
+
+            return new ForkJoinPool(
+                    getParallelism(),
+                    (ForkJoinPool p) -> {
+                        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                                .newThread(p);
+                        t.setName(prefix + "-thread-" + threadNumber.incrementAndGet());
+                        t.setPriority(Thread.NORM_PRIORITY);
+
+                        return t;
+                    },
+                    null,
+                    false);
         }
     }
 
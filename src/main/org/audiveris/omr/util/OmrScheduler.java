@@ -0,0 +1,701 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    O m r S c h e d u l e r                                     //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import org.audiveris.omr.step.ProcessingCancellationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class <code>OmrScheduler</code> is the single entry point for nested parallel processing
+ * (batch &rarr; book &rarr; sheet &rarr; system &rarr; row &rarr; compute), all levels sharing
+ * the same work-stealing pool provided by {@link OmrExecutors#getForkJoinPool()}.
+ * <p>
+ * When fine-grained tasks (system, row, compute) are submitted from within a pool worker, the
+ * caller does not block while waiting for sub-tasks completion but helps executing pending tasks.
+ * The number of active workers is thus bounded by the global parallelism cap, whatever the
+ * nesting depth.
+ * <p>
+ * Coarse tasks (batch, book, sheet) are never waited for that way, since their caller may hold
+ * book or sheet monitors and a helping worker could run a task of another book or sheet within
+ * these monitors.
+ * Their caller rather blocks, through {@link ForkJoinPool#managedBlock}, so that the pool can
+ * activate a spare worker meanwhile.
+ * <p>
+ * Cancellation is cooperative: cancelling a task flags it, together with all the sub-tasks it
+ * has submitted, and a flagged task stops with a {@link ProcessingCancellationException} at the
+ * next level boundary or at the next call to {@link #checkCancelled()}.
+ * Pool workers are never interrupted, only the dedicated thread of a task launched by
+ * {@link #call} can be.
+ * A task future completes only when the task has actually exited.
+ * <p>
+ * Statistics are recorded per level: number of tasks, number of failed tasks, maximum number of
+ * concurrently running tasks and cumulated execution time.
+ *
+ * @author Hervé Bitteur
+ */
+public class OmrScheduler
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Logger logger = LoggerFactory.getLogger(OmrScheduler.class);
+
+    /** Statistics per level. */
+    private static final Map<Level, LevelStats> allStats = new EnumMap<>(Level.class);
+
+    static {
+        for (Level level : Level.values()) {
+            allStats.put(level, new LevelStats());
+        }
+    }
+
+    /** Task currently run by each thread, if any. */
+    private static final ThreadLocal<LevelTask<?>> currentTask = new ThreadLocal<>();
+
+    /** Pseudo timeout, to wait with no time limit. */
+    private static final long NO_TIMEOUT = Long.MAX_VALUE;
+
+    //~ Enumerations -------------------------------------------------------------------------------
+    /**
+     * Processing level of a submitted task.
+     */
+    public enum Level
+    {
+        /** One task per book, within a batch of CLI tasks. */
+        BATCH(false),
+        /** One task per sheet stub, within a book. */
+        BOOK(false),
+        /** One task per step, within a sheet. */
+        SHEET(false),
+        /** One task per system, within a sheet. */
+        SYSTEM(true),
+        /** One task per pixel row (or band of rows), within an image. */
+        ROW(true),
+        /** One task per independent piece of pure computation (template, training shard). */
+        COMPUTE(true);
+
+        /** Can a pool worker waiting for tasks of this level help running other tasks?. */
+        private final boolean helping;
+
+        Level (boolean helping)
+        {
+            this.helping = helping;
+        }
+    }
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Not meant to be instantiated.
+     */
+    private OmrScheduler ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //------//
+    // call //
+    //------//
+    /**
+     * Run one task at the provided level on a dedicated thread, and wait for its result within
+     * the provided timeout.
+     * <p>
+     * On timeout, the task is cancelled: its thread is interrupted and the task is flagged,
+     * together with all its sub-tasks.
+     * The caller then waits, within the provided grace delay, for the task to actually stop, so
+     * that it no longer modifies the processed data once this method has returned.
+     *
+     * @param <T>     type of task result
+     * @param level   processing level
+     * @param task    the task to run
+     * @param timeout maximum processing time
+     * @param grace   maximum time to wait for a cancelled task to stop
+     * @param unit    time unit of timeout and grace
+     * @return the task result
+     * @throws InterruptedException if interrupted while waiting, the task being cancelled
+     * @throws ExecutionException   if the task failed, the exception raised by the task being
+     *                              reported as the cause
+     * @throws TimeoutException     if timeout has elapsed, the task being cancelled
+     */
+    public static <T> T call (Level level,
+                              Callable<T> task,
+                              long timeout,
+                              long grace,
+                              TimeUnit unit)
+            throws InterruptedException,
+                   ExecutionException,
+                   TimeoutException
+    {
+        final LevelTask<T> fork = new LevelTask<>(level, task);
+        OmrExecutors.getCachedLowExecutor().execute(() -> fork.run(true));
+
+        try {
+            if (fork.awaitExit(unit.toNanos(timeout))) {
+                return fork.report();
+            }
+        } catch (InterruptedException ex) {
+            fork.cancel(true);
+            fork.awaitExitUninterruptibly();
+            throw ex;
+        }
+
+        // Timeout
+        fork.cancel(true);
+
+        if (!fork.awaitExitUninterruptibly(unit.toNanos(grace))) {
+            logger.warn("{} task still running {} {} after cancellation", level, grace, unit);
+        }
+
+        throw new TimeoutException(level + " task timeout");
+    }
+
+    //----------------//
+    // checkCancelled //
+    //----------------//
+    /**
+     * Check whether the task run by the current thread, or any of its parent tasks, has been
+     * cancelled.
+     * <p>
+     * This is meant to be called at processing boundaries, for example between steps.
+     *
+     * @throws ProcessingCancellationException if cancellation has been requested
+     */
+    public static void checkCancelled ()
+    {
+        final LevelTask<?> task = currentTask.get();
+
+        if ((task != null) && task.isCancelRequested()) {
+            throw new ProcessingCancellationException("Task cancelled");
+        }
+    }
+
+    //-----------//
+    // invokeAll //
+    //-----------//
+    /**
+     * Execute the provided tasks at the provided level, and wait for their completion.
+     * <p>
+     * Exceptions raised by any task are not thrown here, they are reported through the
+     * corresponding returned future, just like {@link
+     * java.util.concurrent.ExecutorService#invokeAll(Collection)}.
+     *
+     * @param <T>   type of task result
+     * @param level processing level
+     * @param tasks the tasks to execute
+     * @return the list of futures, in the same order as the provided tasks, all completed
+     * @throws InterruptedException if interrupted while waiting (only for a blocking caller),
+     *                              in which case the tasks are cancelled and have exited
+     * @throws ProcessingCancellationException if the calling task has been cancelled
+     */
+    public static <T> List<Future<T>> invokeAll (Level level,
+                                                 Collection<? extends Callable<T>> tasks)
+            throws InterruptedException
+    {
+        checkCancelled();
+
+        final List<LevelTask<T>> forks = new ArrayList<>(tasks.size());
+
+        for (Callable<T> task : tasks) {
+            forks.add(new LevelTask<>(level, task));
+        }
+
+        final ForkJoinPool pool = OmrExecutors.getForkJoinPool();
+
+        if (level.helping && isWorkerOf(pool)) {
+            // Nested level: fork all tasks but the first one, run the first one directly,
+            // then join the others in reverse order (most likely still in our local queue).
+            for (int i = forks.size() - 1; i > 0; i--) {
+                forks.get(i).fork();
+            }
+
+            if (!forks.isEmpty()) {
+                forks.get(0).quietlyInvoke();
+            }
+
+            for (int i = 1; i < forks.size(); i++) {
+                forks.get(i).quietlyJoin(); // Helps rather than blocks
+            }
+        } else {
+            // Top or coarse level: submit to pool, then block
+            for (LevelTask<T> fork : forks) {
+                pool.execute(fork);
+            }
+
+            try {
+                for (LevelTask<T> fork : forks) {
+                    fork.awaitExit(NO_TIMEOUT);
+                }
+            } catch (InterruptedException ex) {
+                for (LevelTask<T> fork : forks) {
+                    fork.cancel(false);
+                }
+
+                for (LevelTask<T> fork : forks) {
+                    fork.awaitExitUninterruptibly();
+                }
+
+                throw ex;
+            }
+        }
+
+        final List<Future<T>> futures = new ArrayList<>(forks.size());
+
+        for (LevelTask<T> fork : forks) {
+            futures.add(new LevelFuture<>(fork));
+        }
+
+        return futures;
+    }
+
+    //-----------------//
+    // printStatistics //
+    //-----------------//
+    /**
+     * Print out the statistics recorded so far for each level.
+     */
+    public static void printStatistics ()
+    {
+        StringBuilder sb = new StringBuilder("OmrScheduler statistics:");
+
+        for (Level level : Level.values()) {
+            LevelStats stats = allStats.get(level);
+            sb.append(String.format(
+                    "%n%-7s tasks:%8d failed:%5d maxActive:%4d time:%9d ms",
+                    level,
+                    stats.tasks.get(),
+                    stats.failures.get(),
+                    stats.maxActive.get(),
+                    stats.nanos.get() / 1_000_000));
+        }
+
+        logger.info("{}", sb);
+    }
+
+    //------------//
+    // isWorkerOf //
+    //------------//
+    private static boolean isWorkerOf (ForkJoinPool pool)
+    {
+        final Thread thread = Thread.currentThread();
+
+        return (thread instanceof ForkJoinWorkerThread)
+                       && (((ForkJoinWorkerThread) thread).getPool() == pool);
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------//
+    // LevelTask //
+    //-----------//
+    /**
+     * Fork/join wrapper around a callable, which records level statistics and preserves the
+     * logging context of the worker thread (a worker may execute a task of another sheet while
+     * helping a join).
+     * <p>
+     * A task created while running another task is a sub-task of it, and is thus cancelled
+     * together with its parent.
+     * <p>
+     * Completion is tracked here rather than through fork/join status, since fork/join reports a
+     * cancelled task as completed while it may still be running.
+     *
+     * @param <T> type of task result
+     */
+    private static class LevelTask<T>
+            extends ForkJoinTask<T>
+    {
+
+        private static final int PENDING = 0;
+
+        private static final int RUNNING = 1;
+
+        private static final int EXITED = 2;
+
+        private final Level level;
+
+        private final Callable<T> callable;
+
+        /** Task that submitted this one, if any. */
+        private final LevelTask<?> parent;
+
+        /** Current phase: PENDING, RUNNING or EXITED. */
+        private final AtomicInteger phase = new AtomicInteger(PENDING);
+
+        /** Lock for exit signalling and for thread interruption. */
+        private final Object lock = new Object();
+
+        /** Dedicated thread running the task, if any, which may be interrupted. */
+        private Thread runner;
+
+        /** Has callable been started?. */
+        private volatile boolean started;
+
+        private volatile T result;
+
+        /** Exception raised by callable, if any. */
+        private volatile Throwable failure;
+
+        /** Set when cancellation has been requested. */
+        private volatile boolean cancelRequested;
+
+        LevelTask (Level level,
+                   Callable<T> callable)
+        {
+            this.level = level;
+            this.callable = callable;
+            parent = currentTask.get();
+        }
+
+        /**
+         * Flag this task (and thus its sub-tasks) for cancellation.
+         * A pending task will never run, a running task is left to stop by itself.
+         *
+         * @param mayInterruptIfRunning true to interrupt the dedicated thread, if any
+         * @return true
+         */
+        @Override
+        public boolean cancel (boolean mayInterruptIfRunning)
+        {
+            cancelRequested = true;
+
+            if (phase.compareAndSet(PENDING, EXITED)) {
+                signalExit();
+            } else if (mayInterruptIfRunning) {
+                synchronized (lock) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public T getRawResult ()
+        {
+            return result;
+        }
+
+        /**
+         * Wait until this task has exited (or will never run), within the provided timeout.
+         *
+         * @param nanos maximum waiting time, NO_TIMEOUT for no limit
+         * @return true if exited
+         * @throws InterruptedException if interrupted while waiting
+         */
+        boolean awaitExit (long nanos)
+                throws InterruptedException
+        {
+            final boolean timed = nanos != NO_TIMEOUT;
+            final long deadline = timed ? (System.nanoTime() + nanos) : 0;
+
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+            {
+                @Override
+                public boolean block ()
+                        throws InterruptedException
+                {
+                    synchronized (lock) {
+                        while (!isReleasable()) {
+                            if (!timed) {
+                                lock.wait();
+                            } else {
+                                TimeUnit.NANOSECONDS.timedWait(lock, deadline - System.nanoTime());
+                            }
+                        }
+                    }
+
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable ()
+                {
+                    return (phase.get() == EXITED) || (timed && (System.nanoTime() >= deadline));
+                }
+            });
+
+            return phase.get() == EXITED;
+        }
+
+        /**
+         * Wait with no time limit until this task has exited, even if interrupted.
+         */
+        void awaitExitUninterruptibly ()
+        {
+            awaitExitUninterruptibly(NO_TIMEOUT);
+        }
+
+        /**
+         * Wait until this task has exited, within the provided timeout, even if interrupted.
+         *
+         * @param nanos maximum waiting time, NO_TIMEOUT for no limit
+         * @return true if exited
+         */
+        boolean awaitExitUninterruptibly (long nanos)
+        {
+            final boolean timed = nanos != NO_TIMEOUT;
+            final long deadline = timed ? (System.nanoTime() + nanos) : 0;
+            boolean interrupted = false;
+
+            try {
+                while (true) {
+                    try {
+                        final long left = timed ? Math.max(0, deadline - System.nanoTime())
+                                : NO_TIMEOUT;
+
+                        return awaitExit(left);
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Report whether cancellation has been requested for this task or any of its parents.
+         *
+         * @return true if cancelled
+         */
+        boolean isCancelRequested ()
+        {
+            for (LevelTask<?> task = this; task != null; task = task.parent) {
+                if (task.cancelRequested) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Report the outcome of this exited task.
+         *
+         * @return the task result
+         * @throws ExecutionException if the task failed
+         */
+        T report ()
+                throws ExecutionException
+        {
+            if (!started) {
+                throw new CancellationException(level + " task cancelled");
+            }
+
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+
+            return result;
+        }
+
+        /**
+         * Run the callable, unless this task has been cancelled before.
+         *
+         * @param dedicated true if run on a dedicated thread, which may thus be interrupted
+         */
+        void run (boolean dedicated)
+        {
+            if (!phase.compareAndSet(PENDING, RUNNING)) {
+                return; // Cancelled before start
+            }
+
+            final LevelStats stats = allStats.get(level);
+            final Map<String, String> context = MDC.getCopyOfContextMap();
+            final LevelTask<?> previous = currentTask.get(); // Non-null when helping a join
+            final long start = System.nanoTime();
+            stats.start();
+            currentTask.set(this);
+            started = true;
+
+            if (dedicated) {
+                synchronized (lock) {
+                    runner = Thread.currentThread();
+                }
+            }
+
+            try {
+                checkCancelled();
+                result = callable.call();
+            } catch (Throwable ex) {
+                stats.failures.incrementAndGet();
+                failure = ex;
+            } finally {
+                synchronized (lock) {
+                    runner = null;
+                }
+
+                if (previous != null) {
+                    currentTask.set(previous);
+                } else {
+                    currentTask.remove();
+                }
+
+                stats.stop(System.nanoTime() - start);
+
+                if (context != null) {
+                    MDC.setContextMap(context);
+                } else {
+                    MDC.clear();
+                }
+
+                phase.set(EXITED);
+                signalExit();
+            }
+        }
+
+        @Override
+        protected boolean exec ()
+        {
+            run(false);
+
+            return true; // Outcome is reported by LevelFuture
+        }
+
+        @Override
+        protected void setRawResult (T value)
+        {
+            result = value;
+        }
+
+        private void signalExit ()
+        {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    //-------------//
+    // LevelFuture //
+    //-------------//
+    /**
+     * Future view on a LevelTask, based on the task actual exit.
+     * <p>
+     * It reports an exception raised by the task as the cause of ExecutionException, rather than
+     * the RuntimeException wrapped around a checked exception by fork/join.
+     *
+     * @param <T> type of task result
+     */
+    private static class LevelFuture<T>
+            implements Future<T>
+    {
+
+        private final LevelTask<T> task;
+
+        LevelFuture (LevelTask<T> task)
+        {
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel (boolean mayInterruptIfRunning)
+        {
+            return task.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public T get ()
+                throws InterruptedException,
+                       ExecutionException
+        {
+            task.awaitExit(NO_TIMEOUT);
+
+            return task.report();
+        }
+
+        @Override
+        public T get (long timeout,
+                      TimeUnit unit)
+                throws InterruptedException,
+                       ExecutionException,
+                       TimeoutException
+        {
+            if (!task.awaitExit(unit.toNanos(timeout))) {
+                throw new TimeoutException();
+            }
+
+            return task.report();
+        }
+
+        @Override
+        public boolean isCancelled ()
+        {
+            return task.cancelRequested;
+        }
+
+        @Override
+        public boolean isDone ()
+        {
+            return task.phase.get() == LevelTask.EXITED;
+        }
+    }
+
+    //------------//
+    // LevelStats //
+    //------------//
+    private static class LevelStats
+    {
+
+        final AtomicLong tasks = new AtomicLong();
+
+        final AtomicLong failures = new AtomicLong();
+
+        final AtomicLong nanos = new AtomicLong();
+
+        final AtomicInteger active = new AtomicInteger();
+
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        void start ()
+        {
+            tasks.incrementAndGet();
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        }
+
+        void stop (long duration)
+        {
+            active.decrementAndGet();
+            nanos.addAndGet(duration);
+        }
+    }
+}
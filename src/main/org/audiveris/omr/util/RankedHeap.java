@@ -0,0 +1,356 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                      R a n k e d H e a p                                       //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class <code>RankedHeap</code> is an indexed max-heap of elements, whose priority can be
+ * modified or which can be removed at any time in O(log n).
+ * <p>
+ * Among elements of equal priority, the first inserted element comes first.
+ * Hence the heap head is exactly the element a linear scan of the insertion sequence would pick
+ * up, when looking for the first element of strictly highest priority.
+ * <p>
+ * Elements are indexed by identity.
+ *
+ * @param <E> element type
+ * @author Hervé Bitteur
+ */
+public class RankedHeap<E>
+{
+    //~ Instance fields ----------------------------------------------------------------------------
+
+    /** Heap of nodes, head at index 0. */
+    private final List<Node<E>> nodes = new ArrayList<>();
+
+    /** Node of each element present. */
+    private final Map<E, Node<E>> index = new IdentityHashMap<>();
+
+    /** Rank to be assigned to the next inserted element. */
+    private int nextRank;
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new empty <code>RankedHeap</code> object.
+     */
+    public RankedHeap ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //-----//
+    // add //
+    //-----//
+    /**
+     * Insert an element, with the lowest precedence among elements of equal priority.
+     *
+     * @param element  the element to insert
+     * @param priority its priority
+     * @return true if inserted, false if element was already present (and left unchanged)
+     */
+    public boolean add (E element,
+                        double priority)
+    {
+        if (index.containsKey(element)) {
+            return false;
+        }
+
+        final Node<E> node = new Node<>(element, nextRank++, priority, nodes.size());
+        nodes.add(node);
+        index.put(element, node);
+        siftUp(node.pos);
+
+        return true;
+    }
+
+    //----------//
+    // contains //
+    //----------//
+    /**
+     * Tell whether the provided element is present in heap.
+     *
+     * @param element the element to check
+     * @return true if present
+     */
+    public boolean contains (E element)
+    {
+        return index.containsKey(element);
+    }
+
+    //-------------//
+    // getPriority //
+    //-------------//
+    /**
+     * Report the current priority of the provided element.
+     *
+     * @param element the element to check
+     * @return its priority
+     * @throws IllegalArgumentException if element is not present
+     */
+    public double getPriority (E element)
+    {
+        return nodeOf(element).priority;
+    }
+
+    //---------//
+    // isEmpty //
+    //---------//
+    /**
+     * Tell whether the heap is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty ()
+    {
+        return nodes.isEmpty();
+    }
+
+    //------//
+    // peek //
+    //------//
+    /**
+     * Report the head element, without removing it.
+     *
+     * @return the element of highest priority (first inserted in case of tie), or null if empty
+     */
+    public E peek ()
+    {
+        return nodes.isEmpty() ? null : nodes.get(0).element;
+    }
+
+    //------//
+    // poll //
+    //------//
+    /**
+     * Remove and report the head element.
+     *
+     * @return the element of highest priority (first inserted in case of tie), or null if empty
+     */
+    public E poll ()
+    {
+        final E head = peek();
+
+        if (head != null) {
+            remove(head);
+        }
+
+        return head;
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Remove the provided element.
+     *
+     * @param element the element to remove
+     * @return true if removed, false if not present
+     */
+    public boolean remove (E element)
+    {
+        final Node<E> node = index.remove(element);
+
+        if (node == null) {
+            return false;
+        }
+
+        final Node<E> last = nodes.remove(nodes.size() - 1);
+
+        if (last != node) {
+            last.pos = node.pos;
+            nodes.set(last.pos, last);
+
+            if (!siftUp(last.pos)) {
+                siftDown(last.pos);
+            }
+        }
+
+        return true;
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of elements in heap.
+     *
+     * @return the heap size
+     */
+    public int size ()
+    {
+        return nodes.size();
+    }
+
+    //--------//
+    // update //
+    //--------//
+    /**
+     * Modify the priority of an element already present, keeping its insertion rank.
+     *
+     * @param element  the element to modify
+     * @param priority the new priority
+     * @throws IllegalArgumentException if element is not present
+     */
+    public void update (E element,
+                        double priority)
+    {
+        final Node<E> node = nodeOf(element);
+
+        if (node.priority != priority) {
+            node.priority = priority;
+
+            if (!siftUp(node.pos)) {
+                siftDown(node.pos);
+            }
+        }
+    }
+
+    //--------//
+    // before //
+    //--------//
+    /**
+     * Tell whether node 'a' must precede node 'b'.
+     */
+    private static boolean before (Node<?> a,
+                                   Node<?> b)
+    {
+        if (a.priority != b.priority) {
+            return a.priority > b.priority;
+        }
+
+        return a.rank < b.rank;
+    }
+
+    //--------//
+    // nodeOf //
+    //--------//
+    private Node<E> nodeOf (E element)
+    {
+        final Node<E> node = index.get(element);
+
+        if (node == null) {
+            throw new IllegalArgumentException("Element not in heap: " + element);
+        }
+
+        return node;
+    }
+
+    //----------//
+    // siftDown //
+    //----------//
+    private void siftDown (int pos)
+    {
+        final Node<E> node = nodes.get(pos);
+        final int size = nodes.size();
+
+        while (true) {
+            final int left = (2 * pos) + 1;
+
+            if (left >= size) {
+                break;
+            }
+
+            int child = left;
+            final int right = left + 1;
+
+            if ((right < size) && before(nodes.get(right), nodes.get(left))) {
+                child = right;
+            }
+
+            final Node<E> childNode = nodes.get(child);
+
+            if (!before(childNode, node)) {
+                break;
+            }
+
+            childNode.pos = pos;
+            nodes.set(pos, childNode);
+            pos = child;
+        }
+
+        node.pos = pos;
+        nodes.set(pos, node);
+    }
+
+    //--------//
+    // siftUp //
+    //--------//
+    /**
+     * Move node up as needed.
+     *
+     * @return true if node has moved
+     */
+    private boolean siftUp (int pos)
+    {
+        final Node<E> node = nodes.get(pos);
+        final int start = pos;
+
+        while (pos > 0) {
+            final int parent = (pos - 1) / 2;
+            final Node<E> parentNode = nodes.get(parent);
+
+            if (!before(node, parentNode)) {
+                break;
+            }
+
+            parentNode.pos = pos;
+            nodes.set(pos, parentNode);
+            pos = parent;
+        }
+
+        node.pos = pos;
+        nodes.set(pos, node);
+
+        return pos != start;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //------//
+    // Node //
+    //------//
+    private static class Node<E>
+    {
+
+        final E element;
+
+        final int rank;
+
+        double priority;
+
+        int pos;
+
+        Node (E element,
+              int rank,
+              double priority,
+              int pos)
+        {
+            this.element = element;
+            this.rank = rank;
+            this.priority = priority;
+            this.pos = pos;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                     S p a t i a l G r i d                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class <code>SpatialGrid</code> is a uniform grid index on entity bounds, meant to quickly
+ * retrieve the entities whose bounds intersect a given rectangle.
+ * <p>
+ * The grid only provides <b>candidates</b>: the caller is expected to check the precise
+ * geometric predicate on the current entity bounds.
+ * <p>
+ * Entity bounds may evolve, so the grid must be notified through {@link #update(Entity)} of any
+ * potential bounds modification.
+ * Such entity is simply flagged as dirty, and its bounds are not read before the next query.
+ * Similarly, an entity with no bounds yet is kept aside until it gets some bounds.
+ * <p>
+ * An entity whose bounds span too many cells is kept in a separate list, browsed by every query.
+ *
+ * @param <E> precise type of entity handled
+ * @author Hervé Bitteur
+ */
+public class SpatialGrid<E extends Entity>
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    /** Maximum number of cells for an entity to be registered in cells. */
+    private static final int MAX_CELLS = 64;
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Side of a (square) cell, in pixels. */
+    private final int cellSize;
+
+    /** Slots of all placed entities, cell by cell. */
+    private final Map<Long, List<Slot<E>>> cells = new HashMap<>();
+
+    /** Slots of placed entities, too large to be registered in cells. */
+    private final List<Slot<E>> larges = new ArrayList<>();
+
+    /** Current slot of each placed entity. */
+    private final Map<E, Slot<E>> slots = new IdentityHashMap<>();
+
+    /** Entities waiting to be (re-)placed, because of unknown or modified bounds. */
+    private final Set<E> dirties = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>SpatialGrid</code> object.
+     *
+     * @param cellSize side of a grid cell, in pixels
+     */
+    public SpatialGrid (int cellSize)
+    {
+        this.cellSize = Math.max(1, cellSize);
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //-------//
+    // clear //
+    //-------//
+    /**
+     * Remove all entities.
+     */
+    public synchronized void clear ()
+    {
+        cells.clear();
+        larges.clear();
+        slots.clear();
+        dirties.clear();
+    }
+
+    //--------//
+    // insert //
+    //--------//
+    /**
+     * Insert an entity into the grid.
+     *
+     * @param entity the entity to insert
+     */
+    public synchronized void insert (E entity)
+    {
+        unplace(entity);
+        dirties.add(entity);
+    }
+
+    //-------------//
+    // intersected //
+    //-------------//
+    /**
+     * Report the candidate entities whose (indexed) bounds intersect the provided rectangle.
+     *
+     * @param rect the provided rectangle
+     * @return the candidates found, each only once, perhaps empty but not null
+     */
+    public synchronized List<E> intersected (Rectangle rect)
+    {
+        flushDirties();
+
+        final List<E> found = new ArrayList<>();
+
+        if (rect.isEmpty()) {
+            return found;
+        }
+
+        final int cx0 = cell(rect.x);
+        final int cy0 = cell(rect.y);
+        final int cx1 = cell((rect.x + rect.width) - 1);
+        final int cy1 = cell((rect.y + rect.height) - 1);
+
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                final List<Slot<E>> list = cells.get(key(cx, cy));
+
+                if (list == null) {
+                    continue;
+                }
+
+                for (Slot<E> slot : list) {
+                    // Report the entity only in the first cell shared by entity and rectangle
+                    if ((cx == Math.max(slot.cx0, cx0)) && (cy == Math.max(slot.cy0, cy0))
+                                && rect.intersects(slot.box)) {
+                        found.add(slot.entity);
+                    }
+                }
+            }
+        }
+
+        for (Slot<E> slot : larges) {
+            if (rect.intersects(slot.box)) {
+                found.add(slot.entity);
+            }
+        }
+
+        return found;
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Remove an entity from the grid.
+     *
+     * @param entity the entity to remove
+     */
+    public synchronized void remove (E entity)
+    {
+        unplace(entity);
+        dirties.remove(entity);
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of entities in the grid.
+     *
+     * @return the count of entities, placed or not
+     */
+    public synchronized int size ()
+    {
+        return slots.size() + dirties.size();
+    }
+
+    //--------//
+    // update //
+    //--------//
+    /**
+     * Notify that the bounds of a (registered) entity may have changed.
+     *
+     * @param entity the entity to update
+     */
+    public synchronized void update (E entity)
+    {
+        if (slots.containsKey(entity) || dirties.contains(entity)) {
+            unplace(entity);
+            dirties.add(entity);
+        }
+    }
+
+    //------//
+    // cell //
+    //------//
+    private int cell (int coord)
+    {
+        return Math.floorDiv(coord, cellSize);
+    }
+
+    //--------------//
+    // flushDirties //
+    //--------------//
+    /**
+     * Place every dirty entity which now has some bounds.
+     */
+    private void flushDirties ()
+    {
+        if (dirties.isEmpty()) {
+            return;
+        }
+
+        for (Iterator<E> it = dirties.iterator(); it.hasNext();) {
+            final E entity = it.next();
+            final Rectangle box = entity.getBounds();
+
+            if (box != null) {
+                place(entity, box);
+                it.remove();
+            }
+        }
+    }
+
+    //-----//
+    // key //
+    //-----//
+    private static long key (int cx,
+                             int cy)
+    {
+        return (((long) cx) << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    //-------//
+    // place //
+    //-------//
+    private void place (E entity,
+                        Rectangle box)
+    {
+        final Slot<E> slot = new Slot<>(entity, new Rectangle(box), cell(box.x), cell(box.y));
+        final int cx1 = cell((box.x + box.width) - 1);
+        final int cy1 = cell((box.y + box.height) - 1);
+        slots.put(entity, slot);
+
+        if ((((long) (cx1 - slot.cx0 + 1)) * (cy1 - slot.cy0 + 1)) > MAX_CELLS) {
+            larges.add(slot);
+        } else {
+            for (int cy = slot.cy0; cy <= cy1; cy++) {
+                for (int cx = slot.cx0; cx <= cx1; cx++) {
+                    cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(slot);
+                }
+            }
+        }
+    }
+
+    //---------//
+    // unplace //
+    //---------//
+    private void unplace (E entity)
+    {
+        final Slot<E> slot = slots.remove(entity);
+
+        if (slot == null) {
+            return;
+        }
+
+        if (larges.remove(slot)) {
+            return;
+        }
+
+        final int cx1 = cell((slot.box.x + slot.box.width) - 1);
+        final int cy1 = cell((slot.box.y + slot.box.height) - 1);
+
+        for (int cy = slot.cy0; cy <= cy1; cy++) {
+            for (int cx = slot.cx0; cx <= cx1; cx++) {
+                final Long key = key(cx, cy);
+                final List<Slot<E>> list = cells.get(key);
+
+                if (list != null) {
+                    list.remove(slot);
+
+                    if (list.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //------//
+    // Slot //
+    //------//
+    /**
+     * Placement of an entity, with the bounds used for placement.
+     */
+    private static class Slot<E>
+    {
+
+        final E entity;
+
+        final Rectangle box;
+
+        final int cx0;
+
+        final int cy0;
+
+        Slot (E entity,
+              Rectangle box,
+              int cx0,
+              int cy0)
+        {
+            this.entity = entity;
+            this.box = box;
+            this.cx0 = cx0;
+            this.cy0 = cy0;
+        }
+    }
+}
@@ -0,0 +1,871 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                     Z i p A p p e n d e r                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Class <code>ZipAppender</code> updates a few entries of an existing zip file, by appending
+ * them at the end of the file, followed by a new central directory.
+ * <p>
+ * A zip file locates its entries through the central directory found at its very end.
+ * Hence, replaced or deleted entries can simply be left in place as dead bytes, and the file
+ * remains a standard zip file, readable by {@link ZipFileSystem} or any zip tool.
+ * This saves the rewriting of the whole file, which is what the zip file system does on close
+ * as soon as one entry has been modified.
+ * <p>
+ * Crash safety: nothing before the current end of file is ever overwritten.
+ * New entries and the new central directory are written and forced to disk before the end record
+ * is written and forced in turn.
+ * If the process dies before the end record is complete, {@link #recover(Path)} truncates the
+ * file back to the last complete end record, that is to the previous state of the zip file.
+ * <p>
+ * Dead bytes accumulate across updates, and {@link #compact(Path)} copies the live entries only
+ * into a new file which atomically replaces the old one.
+ * <p>
+ * Zip64 files and multi-disk archives are not supported.
+ *
+ * @author Hervé Bitteur
+ */
+public class ZipAppender
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    private static final Logger logger = LoggerFactory.getLogger(ZipAppender.class);
+
+    private static final int LOC_SIG = 0x04034b50;
+
+    private static final int CEN_SIG = 0x02014b50;
+
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    private static final int EXT_SIG = 0x08074b50;
+
+    private static final int LOC_HDR = 30;
+
+    private static final int CEN_HDR = 46;
+
+    private static final int END_HDR = 22;
+
+    /** General purpose flag: sizes and CRC in data descriptor. */
+    private static final int FLAG_DESCRIPTOR = 0x08;
+
+    /** General purpose flag: names in UTF-8. */
+    private static final int FLAG_UTF8 = 0x800;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    /** Last modified time of placeholder files, see {@link #shadow(Path, String)}. */
+    private static final FileTime PLACEHOLDER_TIME = FileTime.fromMillis(0);
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    /** Path to zip file. */
+    private final Path path;
+
+    /** Live entries, by name, in central directory order. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /** File size, which is also the offset of next appended entry. */
+    private long fileSize;
+
+    /** New or replacing entries, by name, with the staged file providing their content. */
+    private final Map<String, Path> puts = new LinkedHashMap<>();
+
+    /** Entries to delete. */
+    private final Set<String> deletions = new LinkedHashSet<>();
+
+    /** Shadowed folders. */
+    private final Set<String> shadowed = new LinkedHashSet<>();
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new <code>ZipAppender</code> object on an existing zip file, after having
+     * recovered the file from any interrupted update.
+     *
+     * @param path path to the zip file
+     * @throws ZipException if the file is not a zip file supported for appending
+     * @throws IOException  on IO error
+     */
+    public ZipAppender (Path path)
+            throws IOException
+    {
+        this.path = path;
+        recover(path);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+
+            final long endPos = findEnd(channel, fileSize, false);
+
+            if (endPos < 0) {
+                throw new ZipException("No zip end record in " + path);
+            }
+
+            readDirectory(channel, endPos);
+        }
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    //--------//
+    // commit //
+    //--------//
+    /**
+     * Append all pending entries and the new central directory to the zip file.
+     *
+     * @return the number of entries added, replaced or deleted
+     * @throws IOException on IO error
+     */
+    public int commit ()
+            throws IOException
+    {
+        final int count = puts.size() + deletions.size();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        for (String name : deletions) {
+            entries.remove(name);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            long pos = fileSize;
+
+            // New entries, with their missing parent directories
+            for (Map.Entry<String, Path> put : puts.entrySet()) {
+                for (String dir : parentsOf(put.getKey())) {
+                    if (!entries.containsKey(dir)) {
+                        pos = appendEntry(channel, pos, dir, new byte[0]);
+                    }
+                }
+
+                pos = appendEntry(channel, pos, put.getKey(), Files.readAllBytes(put.getValue()));
+            }
+
+            // New central directory
+            final long cenPos = pos;
+
+            for (Entry entry : entries.values()) {
+                pos += writeFully(channel, pos, ByteBuffer.wrap(entry.cen));
+            }
+
+            channel.force(false);
+
+            // New end record, which validates the whole update
+            final ByteBuffer end = newBuffer(END_HDR);
+            end.putInt(END_SIG).putShort((short) 0).putShort((short) 0);
+            end.putShort((short) entries.size()).putShort((short) entries.size());
+            end.putInt((int) (pos - cenPos)).putInt((int) cenPos).putShort((short) 0);
+            end.flip();
+            pos += writeFully(channel, pos, end);
+            channel.force(true);
+            fileSize = pos;
+        }
+
+        logger.debug("Appended {} puts, {} deletions to {}", puts.size(), deletions.size(), path);
+        puts.clear();
+        deletions.clear();
+        shadowed.clear();
+
+        return count;
+    }
+
+    //--------//
+    // delete //
+    //--------//
+    /**
+     * Register the deletion of an entry.
+     *
+     * @param name entry name
+     */
+    public void delete (String name)
+    {
+        puts.remove(name);
+
+        if (entries.containsKey(name)) {
+            deletions.add(name);
+        }
+    }
+
+    //-----------------//
+    // getGarbageRatio //
+    //-----------------//
+    /**
+     * Report the estimated ratio of dead bytes in the zip file.
+     *
+     * @return ratio of dead bytes, in [0..1]
+     */
+    public double getGarbageRatio ()
+    {
+        if (fileSize == 0) {
+            return 0;
+        }
+
+        long live = END_HDR;
+
+        for (Entry entry : entries.values()) {
+            live += entry.cen.length + entry.getEstimatedLocalSize();
+        }
+
+        return Math.max(0, 1 - ((double) live / fileSize));
+    }
+
+    //----------//
+    // getNames //
+    //----------//
+    /**
+     * Report the names of current entries, as committed so far.
+     *
+     * @return entry names
+     */
+    public Set<String> getNames ()
+    {
+        return entries.keySet();
+    }
+
+    //-------//
+    // merge //
+    //-------//
+    /**
+     * Register the changes found in a staging folder, which mirrors the zip root.
+     * <p>
+     * Any staged file is put into the zip file, except for untouched placeholders.
+     * Within a shadowed folder, any zip entry with no staged file is deleted.
+     *
+     * @param stagingRoot staging root folder
+     * @throws IOException on IO error
+     */
+    public void merge (Path stagingRoot)
+            throws IOException
+    {
+        final Set<String> staged = new LinkedHashSet<>();
+
+        Files.walkFileTree(
+                stagingRoot,
+                new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile (Path file,
+                                              BasicFileAttributes attrs)
+                    throws IOException
+            {
+                final String name = nameOf(stagingRoot, file);
+                staged.add(name);
+
+                if (!entries.containsKey(name)
+                            || !attrs.lastModifiedTime().equals(PLACEHOLDER_TIME)) {
+                    put(name, file);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (String folder : shadowed) {
+            for (String name : entries.keySet()) {
+                if (name.startsWith(folder) && !name.endsWith("/") && !staged.contains(name)) {
+                    delete(name);
+                }
+            }
+        }
+    }
+
+    //-----//
+    // put //
+    //-----//
+    /**
+     * Register an entry to add or replace.
+     *
+     * @param name entry name
+     * @param file file providing entry content, to be read at commit time
+     */
+    public void put (String name,
+                     Path file)
+    {
+        deletions.remove(name);
+        puts.put(name, file);
+    }
+
+    //--------//
+    // shadow //
+    //--------//
+    /**
+     * Populate a staging folder with an empty placeholder file for each entry of the provided
+     * zip folder.
+     * <p>
+     * Code meant to write the zip folder can then write to the staging folder instead:
+     * any placeholder deleted means an entry to delete, any placeholder rewritten or any new file
+     * means an entry to put.
+     *
+     * @param stagingRoot staging root folder, which mirrors the zip root
+     * @param folder      name of zip folder, such as "sheet#1"
+     * @throws IOException on IO error
+     */
+    public void shadow (Path stagingRoot,
+                        String folder)
+            throws IOException
+    {
+        final String prefix = folder.endsWith("/") ? folder : (folder + "/");
+        shadowed.add(prefix);
+        Files.createDirectories(stagingRoot.resolve(folder));
+
+        for (String name : entries.keySet()) {
+            if (name.startsWith(prefix) && !name.endsWith("/")) {
+                final Path file = stagingRoot.resolve(name);
+                Files.createDirectories(file.getParent());
+                Files.write(file, new byte[0]);
+                Files.setLastModifiedTime(file, PLACEHOLDER_TIME);
+            }
+        }
+    }
+
+    //---------//
+    // compact //
+    //---------//
+    /**
+     * Rewrite the zip file with its live entries only.
+     * <p>
+     * The compacted file is written aside, then atomically moved to replace the zip file.
+     *
+     * @param path path to zip file
+     * @return the number of bytes saved
+     * @throws IOException on IO error
+     */
+    public static long compact (Path path)
+            throws IOException
+    {
+        final ZipAppender appender = new ZipAppender(path);
+        final Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+        final List<byte[]> cens = new ArrayList<>();
+        long pos = 0;
+
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(
+                     tmp,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            for (Entry entry : appender.entries.values()) {
+                final long length = entry.getLocalSize(in);
+
+                for (long done = 0; done < length;) {
+                    done += in.transferTo(entry.locOffset + done, length - done, out);
+                }
+
+                final byte[] cen = entry.cen.clone();
+                newBuffer(cen).putInt(42, (int) pos);
+                cens.add(cen);
+                pos += length;
+            }
+
+            final long cenPos = pos;
+
+            for (byte[] cen : cens) {
+                pos += writeFully(out, pos, ByteBuffer.wrap(cen));
+            }
+
+            final ByteBuffer end = newBuffer(END_HDR);
+            end.putInt(END_SIG).putShort((short) 0).putShort((short) 0);
+            end.putShort((short) cens.size()).putShort((short) cens.size());
+            end.putInt((int) (pos - cenPos)).putInt((int) cenPos).putShort((short) 0);
+            end.flip();
+            pos += writeFully(out, pos, end);
+            out.force(true);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        final long saved = appender.fileSize - pos;
+        logger.info("Compacted {} saving {} bytes", path, saved);
+
+        return saved;
+    }
+
+    //---------//
+    // recover //
+    //---------//
+    /**
+     * Make sure the provided zip file ends with a complete end record, by truncating any
+     * incomplete update at the end of the file.
+     *
+     * @param path path to zip file
+     * @return true if file was truncated
+     * @throws IOException on IO error
+     */
+    public static boolean recover (Path path)
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final long size = channel.size();
+
+            if (findEnd(channel, size, false) >= 0) {
+                return false; // File is OK
+            }
+
+            final long endPos = findEnd(channel, size, true);
+
+            if (endPos < 0) {
+                return false; // Not a zip file, left as it is
+            }
+
+            final ByteBuffer end = newBuffer(END_HDR);
+            readFully(channel, endPos, end);
+
+            final long validSize = endPos + END_HDR + (end.getShort(20) & 0xFFFF);
+            channel.truncate(validSize);
+            channel.force(true);
+            logger.warn("Recovered {} truncated from {} to {} bytes", path, size, validSize);
+
+            return true;
+        }
+    }
+
+    //-------------//
+    // appendEntry //
+    //-------------//
+    /**
+     * Append a local entry, and register its central directory record.
+     *
+     * @return the position after the appended entry
+     */
+    private long appendEntry (FileChannel channel,
+                              long pos,
+                              String name,
+                              byte[] data)
+            throws IOException
+    {
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+
+        byte[] stored = data;
+        int method = STORED;
+
+        if (data.length > 0) {
+            final byte[] deflated = deflate(data);
+
+            if (deflated.length < data.length) {
+                stored = deflated;
+                method = DEFLATED;
+            }
+        }
+
+        final int dosTime = dosTime(LocalDateTime.now());
+        final int version = (method == DEFLATED) ? 20 : 10;
+
+        final ByteBuffer loc = newBuffer(LOC_HDR + nameBytes.length);
+        loc.putInt(LOC_SIG).putShort((short) version).putShort((short) FLAG_UTF8);
+        loc.putShort((short) method).putInt(dosTime).putInt((int) crc.getValue());
+        loc.putInt(stored.length).putInt(data.length);
+        loc.putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes);
+        loc.flip();
+
+        if (((pos + loc.remaining() + stored.length) > 0xFFFFFFFFL) || (entries.size() >= 0xFFFF)) {
+            throw new ZipException("Zip64 not supported for " + path);
+        }
+
+        final long locOffset = pos;
+        pos += writeFully(channel, pos, loc);
+        pos += writeFully(channel, pos, ByteBuffer.wrap(stored));
+
+        final ByteBuffer cen = newBuffer(CEN_HDR + nameBytes.length);
+        cen.putInt(CEN_SIG).putShort((short) version).putShort((short) version);
+        cen.putShort((short) FLAG_UTF8).putShort((short) method).putInt(dosTime);
+        cen.putInt((int) crc.getValue()).putInt(stored.length).putInt(data.length);
+        cen.putShort((short) nameBytes.length).putShort((short) 0).putShort((short) 0);
+        cen.putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) locOffset);
+        cen.put(nameBytes);
+
+        entries.remove(name); // To move the entry at the end of directory
+        entries.put(name, new Entry(name, cen.array()));
+
+        return pos;
+    }
+
+    //---------//
+    // deflate //
+    //---------//
+    private static byte[] deflate (byte[] data)
+    {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            final ByteBuffer out = ByteBuffer.allocate(data.length + 64);
+
+            while (!deflater.finished()) {
+                if (!out.hasRemaining()) {
+                    return data; // No gain
+                }
+
+                deflater.deflate(out);
+            }
+
+            final byte[] bytes = new byte[out.position()];
+            out.flip();
+            out.get(bytes);
+
+            return bytes;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    //---------//
+    // dosTime //
+    //---------//
+    private static int dosTime (LocalDateTime t)
+    {
+        return ((t.getYear() - 1980) << 25) | (t.getMonthValue() << 21) | (t.getDayOfMonth() << 16)
+                       | (t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() >> 1);
+    }
+
+    //---------//
+    // findEnd //
+    //---------//
+    /**
+     * Look for the end record of the zip file.
+     *
+     * @param channel   file channel
+     * @param size      file size
+     * @param anywhere  false to check only for an end record which ends the file,
+     *                  true to look for the last complete end record anywhere in the file
+     * @return position of end record found, or -1
+     */
+    private static long findEnd (FileChannel channel,
+                                 long size,
+                                 boolean anywhere)
+            throws IOException
+    {
+        final int chunk = 1 << 20;
+        long stop = anywhere ? 0 : Math.max(0, size - END_HDR - 0xFFFF);
+
+        for (long hi = size; hi > stop;) {
+            final long lo = Math.max(stop, hi - chunk);
+            final int length = (int) Math.min(size - lo, chunk + END_HDR);
+            final ByteBuffer buf = newBuffer(length);
+            readFully(channel, lo, buf);
+
+            for (int i = (int) Math.min(hi - lo, length - END_HDR); i >= 0; i--) {
+                if ((buf.getInt(i) == END_SIG) && isValidEnd(channel, size, lo + i, buf, i,
+                                                             anywhere)) {
+                    return lo + i;
+                }
+            }
+
+            hi = lo;
+        }
+
+        return -1;
+    }
+
+    //------------//
+    // isValidEnd //
+    //------------//
+    /**
+     * Check whether the candidate end record is consistent.
+     */
+    private static boolean isValidEnd (FileChannel channel,
+                                       long size,
+                                       long endPos,
+                                       ByteBuffer buf,
+                                       int i,
+                                       boolean anywhere)
+            throws IOException
+    {
+        final long commentLength = buf.getShort(i + 20) & 0xFFFF;
+
+        if (!anywhere && ((endPos + END_HDR + commentLength) != size)) {
+            return false;
+        }
+
+        final long cenSize = buf.getInt(i + 12) & 0xFFFFFFFFL;
+        final long cenPos = buf.getInt(i + 16) & 0xFFFFFFFFL;
+
+        if ((cenPos + cenSize) != endPos) {
+            return false;
+        }
+
+        if (cenSize == 0) {
+            return true;
+        }
+
+        final ByteBuffer sig = newBuffer(4);
+        readFully(channel, cenPos, sig);
+
+        return sig.getInt(0) == CEN_SIG;
+    }
+
+    //-----------//
+    // newBuffer //
+    //-----------//
+    private static ByteBuffer newBuffer (int capacity)
+    {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    //-----------//
+    // newBuffer //
+    //-----------//
+    private static ByteBuffer newBuffer (byte[] bytes)
+    {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    //--------//
+    // nameOf //
+    //--------//
+    private static String nameOf (Path root,
+                                  Path file)
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        for (Path part : root.relativize(file)) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+
+            sb.append(part.toString());
+        }
+
+        return sb.toString();
+    }
+
+    //-----------//
+    // parentsOf //
+    //-----------//
+    /**
+     * Report the names of parent directories of an entry, from top down.
+     */
+    private static List<String> parentsOf (String name)
+    {
+        final List<String> parents = new ArrayList<>();
+
+        for (int i = name.indexOf('/'); (i >= 0) && (i < (name.length() - 1));
+                i = name.indexOf('/', i + 1)) {
+            parents.add(name.substring(0, i + 1));
+        }
+
+        return parents;
+    }
+
+    //---------------//
+    // readDirectory //
+    //---------------//
+    private void readDirectory (FileChannel channel,
+                                long endPos)
+            throws IOException
+    {
+        final ByteBuffer end = newBuffer(END_HDR);
+        readFully(channel, endPos, end);
+
+        final int count = end.getShort(10) & 0xFFFF;
+        final long cenSize = end.getInt(12) & 0xFFFFFFFFL;
+        final long cenPos = end.getInt(16) & 0xFFFFFFFFL;
+
+        if ((end.getShort(4) != 0) || (end.getShort(6) != 0)) {
+            throw new ZipException("Multi-disk zip not supported " + path);
+        }
+
+        if (endPos >= 20) {
+            final ByteBuffer locator = newBuffer(4);
+            readFully(channel, endPos - 20, locator);
+
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIG) {
+                throw new ZipException("Zip64 not supported " + path);
+            }
+        }
+
+        final ByteBuffer cen = newBuffer((int) cenSize);
+        readFully(channel, cenPos, cen);
+
+        for (int i = 0, pos = 0; i < count; i++) {
+            if (cen.getInt(pos) != CEN_SIG) {
+                throw new ZipException("Invalid central directory in " + path);
+            }
+
+            final int length = CEN_HDR + (cen.getShort(pos + 28) & 0xFFFF)
+                                       + (cen.getShort(pos + 30) & 0xFFFF)
+                                       + (cen.getShort(pos + 32) & 0xFFFF);
+            final byte[] record = new byte[length];
+            cen.position(pos);
+            cen.get(record);
+
+            final Entry entry = new Entry(record);
+
+            if ((entry.compSize == 0xFFFFFFFFL) || (entry.locOffset == 0xFFFFFFFFL)) {
+                throw new ZipException("Zip64 not supported " + path);
+            }
+
+            entries.put(entry.name, entry);
+            pos += length;
+        }
+    }
+
+    //-----------//
+    // readFully //
+    //-----------//
+    private static void readFully (FileChannel channel,
+                                   long pos,
+                                   ByteBuffer buf)
+            throws IOException
+    {
+        while (buf.hasRemaining()) {
+            final int n = channel.read(buf, pos);
+
+            if (n < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+
+            pos += n;
+        }
+
+        buf.flip();
+    }
+
+    //------------//
+    // writeFully //
+    //------------//
+    private static int writeFully (FileChannel channel,
+                                   long pos,
+                                   ByteBuffer buf)
+            throws IOException
+    {
+        final int length = buf.remaining();
+
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+
+        return length;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-------//
+    // Entry //
+    //-------//
+    /**
+     * A live entry, with its central directory record.
+     */
+    private static class Entry
+    {
+
+        final String name;
+
+        /** Raw central directory record. */
+        final byte[] cen;
+
+        final int flags;
+
+        final long compSize;
+
+        final long locOffset;
+
+        Entry (byte[] cen)
+        {
+            this(null, cen);
+        }
+
+        Entry (String name,
+               byte[] cen)
+        {
+            final ByteBuffer buf = newBuffer(cen);
+            this.cen = cen;
+            flags = buf.getShort(8) & 0xFFFF;
+            compSize = buf.getInt(20) & 0xFFFFFFFFL;
+            locOffset = buf.getInt(42) & 0xFFFFFFFFL;
+            this.name = (name != null) ? name
+                    : new String(cen, CEN_HDR, buf.getShort(28) & 0xFFFF, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Estimate local size, using central directory data only.
+         */
+        long getEstimatedLocalSize ()
+        {
+            final int nameLength = newBuffer(cen).getShort(28) & 0xFFFF;
+            final int extraLength = newBuffer(cen).getShort(30) & 0xFFFF;
+            final int descriptor = ((flags & FLAG_DESCRIPTOR) != 0) ? 16 : 0;
+
+            return LOC_HDR + nameLength + extraLength + compSize + descriptor;
+        }
+
+        /**
+         * Report the exact size of local header, data and data descriptor if any.
+         */
+        long getLocalSize (FileChannel channel)
+                throws IOException
+        {
+            final ByteBuffer loc = newBuffer(LOC_HDR);
+            readFully(channel, locOffset, loc);
+
+            if (loc.getInt(0) != LOC_SIG) {
+                throw new ZipException("Invalid local header for " + name);
+            }
+
+            long size = LOC_HDR + (loc.getShort(26) & 0xFFFF) + (loc.getShort(28) & 0xFFFF)
+                                + compSize;
+
+            if ((flags & FLAG_DESCRIPTOR) != 0) {
+                final ByteBuffer sig = newBuffer(4);
+                readFully(channel, locOffset + size, sig);
+                size += (sig.getInt(0) == EXT_SIG) ? 16 : 12;
+            }
+
+            return size;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                F e a t u r e C a c h e T e s t                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.classifier;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that features read back from a {@link FeatureCache} file are identical to computed
+ * ones, and that removed samples and obsolete files are discarded.
+ * <p>
+ * Method testTimings, not run by default, compares the time to gather features for a retrain,
+ * without and with the cache file.
+ *
+ * @author Hervé Bitteur
+ */
+public class FeatureCacheTest
+{
+
+    private static final int INTERLINE = 20;
+
+    /**
+     * Creates a new <code>FeatureCacheTest</code> object.
+     */
+    public FeatureCacheTest ()
+    {
+    }
+
+    @Test
+    public void testIdentical ()
+            throws IOException
+    {
+        System.out.println("\n+++ identical");
+
+        final Random random = new Random(0);
+        final List<RunTable> tables = createTables(random, 200);
+        final GlyphDescriptor descriptor = new MixGlyphDescriptor();
+        final Path file = Files.createTempFile("mix-", "-features.bin");
+
+        try {
+            Files.delete(file);
+
+            // Cold cache, all features get computed
+            final List<Sample> samples = createSamples(tables);
+            final FeatureCache cache = new FeatureCache(file, descriptor);
+
+            for (Sample sample : samples) {
+                assertArrayEquals(
+                        descriptor.getFeatures(sample, INTERLINE),
+                        cache.getFeatures(sample),
+                        0.0);
+            }
+
+            assertTrue(cache.isModified());
+            cache.store(samples);
+            assertFalse(cache.isModified());
+
+            // Warm cache, on new sample instances, nothing gets computed
+            final List<Sample> copies = createSamples(tables);
+            final FeatureCache warm = new FeatureCache(file, descriptor);
+
+            for (int i = 0; i < copies.size(); i++) {
+                assertArrayEquals(
+                        descriptor.getFeatures(samples.get(i), INTERLINE),
+                        warm.getFeatures(copies.get(i)),
+                        0.0);
+            }
+
+            assertFalse(warm.isModified());
+
+            // Removal of half the samples
+            final List<Sample> kept = copies.subList(0, copies.size() / 2);
+            warm.stateChanged(null);
+            warm.store(kept);
+
+            final FeatureCache purged = new FeatureCache(file, descriptor);
+
+            for (Sample sample : kept) {
+                purged.getFeatures(sample);
+            }
+
+            assertFalse(purged.isModified());
+            purged.getFeatures(copies.get(copies.size() - 1));
+            assertTrue(purged.isModified());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testObsolete ()
+            throws IOException
+    {
+        System.out.println("\n+++ obsolete");
+
+        final Random random = new Random(1);
+        final List<Sample> samples = createSamples(createTables(random, 20));
+        final Path file = Files.createTempFile("mix-", "-features.bin");
+
+        try {
+            final FeatureCache cache = new FeatureCache(file, new MixGlyphDescriptor());
+
+            for (Sample sample : samples) {
+                cache.getFeatures(sample);
+            }
+
+            cache.store(samples);
+
+            // Same file, read by a newer descriptor version
+            final FeatureCache newer = new FeatureCache(file, new MixGlyphDescriptor()
+                                                {
+                                                    @Override
+                                                    public int getVersion ()
+                                                    {
+                                                        return super.getVersion() + 1;
+                                                    }
+                                                });
+            newer.getFeatures(samples.get(0));
+            assertTrue(newer.isModified());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    //    @Test
+    public void testTimings ()
+            throws IOException
+    {
+        System.out.println("\n+++ timings");
+
+        final Random random = new Random(2);
+        final List<RunTable> tables = createTables(random, 5_000);
+        final GlyphDescriptor descriptor = new MixGlyphDescriptor();
+        final Path file = Files.createTempFile("mix-", "-features.bin");
+
+        try {
+            Files.delete(file);
+
+            for (int loop = 0; loop < 3; loop++) {
+                // Before: every retrain computes the features of fresh sample instances
+                final List<Sample> samples = createSamples(tables);
+                long start = System.nanoTime();
+
+                for (Sample sample : samples) {
+                    descriptor.getFeatures(sample, INTERLINE);
+                }
+
+                final long computed = System.nanoTime() - start;
+
+                // After: features are read from cache file
+                if (loop == 0) {
+                    final FeatureCache cache = new FeatureCache(file, descriptor);
+
+                    for (Sample sample : samples) {
+                        cache.getFeatures(sample);
+                    }
+
+                    cache.store(samples);
+                }
+
+                final List<Sample> copies = createSamples(tables);
+                start = System.nanoTime();
+
+                final FeatureCache cache = new FeatureCache(file, descriptor);
+
+                for (Sample sample : copies) {
+                    cache.getFeatures(sample);
+                }
+
+                final long cached = System.nanoTime() - start;
+                assertFalse(cache.isModified());
+                System.out.printf(
+                        "%d samples computed:%6d ms cached:%5d ms%n",
+                        tables.size(),
+                        computed / 1_000_000,
+                        cached / 1_000_000);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    //---------------//
+    // createSamples //
+    //---------------//
+    private List<Sample> createSamples (List<RunTable> tables)
+    {
+        final List<Sample> samples = new ArrayList<>();
+
+        for (int i = 0; i < tables.size(); i++) {
+            samples.add(new Sample(0, 0, tables.get(i), INTERLINE, i + 1, Shape.CLUTTER, null));
+        }
+
+        return samples;
+    }
+
+    //--------------//
+    // createTables //
+    //--------------//
+    /**
+     * Random blobs, of about interline size.
+     */
+    private List<RunTable> createTables (Random random,
+                                         int count)
+    {
+        final RunTableFactory factory = new RunTableFactory(Orientation.VERTICAL);
+        final List<RunTable> tables = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final int w = 5 + random.nextInt(30);
+            final int h = 5 + random.nextInt(30);
+            final ByteProcessor buffer = new ByteProcessor(w, h);
+            buffer.invert(); // All white
+
+            for (int b = 0; b < 4; b++) {
+                final int x0 = random.nextInt(w);
+                final int y0 = random.nextInt(h);
+                final int r = 1 + random.nextInt(Math.min(w, h) / 2);
+
+                for (int y = Math.max(0, y0 - r); y < Math.min(h, y0 + r); y++) {
+                    for (int x = Math.max(0, x0 - r); x < Math.min(w, x0 + r); x++) {
+                        if ((((x - x0) * (x - x0)) + ((y - y0) * (y - y0))) <= (r * r)) {
+                            buffer.set(x, y, 0);
+                        }
+                    }
+                }
+            }
+
+            tables.add(factory.createTable(buffer));
+        }
+
+        return tables;
+    }
+}
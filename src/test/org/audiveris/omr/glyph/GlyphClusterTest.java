@@ -0,0 +1,283 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 G l y p h C l u s t e r T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.glyph;
+
+import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+
+import org.audiveris.omr.run.RunTable;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import org.jgrapht.graph.SimpleGraph;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that {@link GlyphCluster} evaluates the same compounds, in the same order, as the
+ * former enumeration based on glyph sets, and compares their costs.
+ *
+ * @author Hervé Bitteur
+ */
+public class GlyphClusterTest
+{
+
+    /**
+     * Creates a new <code>GlyphClusterTest</code> object.
+     */
+    public GlyphClusterTest ()
+    {
+    }
+
+    @Test
+    public void testSameCompounds ()
+    {
+        System.out.println("\n+++ sameCompounds");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 50; i++) {
+            final SimpleGraph<Glyph, GlyphLink> graph = createGraph(random, 3 + random.nextInt(8));
+            final Adapter adapter = new Adapter(graph, 20 + random.nextInt(40), false);
+            final GlyphCluster cluster = new GlyphCluster(adapter, null);
+            cluster.decompose();
+
+            final Adapter legacyAdapter = new Adapter(graph, adapter.maxSide, false);
+            final int legacySubsets = new LegacyCluster(legacyAdapter).decompose();
+
+            assertEquals(legacyAdapter.evaluated, adapter.evaluated);
+            assertEquals(legacySubsets, cluster.getSubsetCount());
+            assertEquals(adapter.evaluated.size(), cluster.getCompoundCount());
+        }
+    }
+
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\n+++ timings");
+
+        final Random random = new Random(1);
+
+        for (int count : new int[]{8, 12, 16}) {
+            final SimpleGraph<Glyph, GlyphLink> graph = createGraph(random, count);
+
+            // Enumeration only, compounds are not built
+            final Adapter adapter = new Adapter(graph, 80, true);
+            final Adapter legacyAdapter = new Adapter(graph, 80, true);
+            new GlyphCluster(adapter, null).decompose(); // Warm-up
+            new LegacyCluster(legacyAdapter).decompose();
+
+            long start = System.nanoTime();
+            final int legacySubsets = new LegacyCluster(legacyAdapter).decompose();
+            final long legacyNanos = System.nanoTime() - start;
+
+            final GlyphCluster cluster = new GlyphCluster(adapter, null);
+            start = System.nanoTime();
+            cluster.decompose();
+
+            final long nanos = System.nanoTime() - start;
+            assertEquals(legacySubsets, cluster.getSubsetCount());
+
+            System.out.printf(
+                    "parts:%3d subsets:%8d sets:%9.2f ms indices:%9.2f ms%n",
+                    count,
+                    legacySubsets,
+                    legacyNanos / 1e6,
+                    nanos / 1e6);
+        }
+    }
+
+    //-------------//
+    // createGraph //
+    //-------------//
+    /**
+     * Build a connected graph of small square glyphs, laid out side by side, each glyph
+     * being linked to its predecessor and randomly to other ones.
+     */
+    private SimpleGraph<Glyph, GlyphLink> createGraph (Random random,
+                                                       int count)
+    {
+        final SimpleGraph<Glyph, GlyphLink> graph = new SimpleGraph<>(GlyphLink.class);
+        final List<Glyph> glyphs = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final int side = 2 + random.nextInt(5);
+            final RunTable table = new RunTable(HORIZONTAL, side, side);
+
+            for (int y = 0; y < side; y++) {
+                table.addRun(y, 0, side);
+            }
+
+            final Glyph glyph = new Glyph(8 * i, random.nextInt(10), table);
+            graph.addVertex(glyph);
+
+            if (i > 0) {
+                graph.addEdge(glyphs.get(random.nextInt(i)), glyph, new GlyphLink.Nearby(1));
+
+                if (random.nextBoolean()) {
+                    final Glyph other = glyphs.get(random.nextInt(i));
+
+                    if (!graph.containsEdge(other, glyph)) {
+                        graph.addEdge(other, glyph, new GlyphLink.Nearby(1));
+                    }
+                }
+            }
+
+            glyphs.add(glyph);
+        }
+
+        return graph;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //---------//
+    // Adapter //
+    //---------//
+    private static class Adapter
+            extends GlyphCluster.AbstractAdapter
+    {
+
+        final int maxSide;
+
+        final boolean light;
+
+        /** Parts of each evaluated compound, in evaluation order. */
+        final List<Set<Glyph>> evaluated = new ArrayList<>();
+
+        Adapter (SimpleGraph<Glyph, GlyphLink> graph,
+                 int maxSide,
+                 boolean light)
+        {
+            super(graph);
+            this.maxSide = maxSide;
+            this.light = light;
+        }
+
+        @Override
+        public void evaluateGlyph (Glyph glyph,
+                                   Set<Glyph> parts)
+        {
+            assertEquals(Glyphs.weightOf(parts), glyph.getWeight());
+            evaluated.add(new LinkedHashSet<>(parts));
+        }
+
+        @Override
+        public boolean isTooLarge (Rectangle bounds)
+        {
+            return (bounds.width > maxSide) || (bounds.height > maxSide);
+        }
+
+        @Override
+        public boolean isTooLight (int weight)
+        {
+            return light || (weight < 10);
+        }
+    }
+
+    //---------------//
+    // LegacyCluster //
+    //---------------//
+    /**
+     * Former enumeration, which recomputed weight and bounds and copied glyph sets for each
+     * subset.
+     */
+    private static class LegacyCluster
+    {
+
+        final GlyphCluster.GlyphAdapter adapter;
+
+        int subsets;
+
+        LegacyCluster (GlyphCluster.GlyphAdapter adapter)
+        {
+            this.adapter = adapter;
+        }
+
+        int decompose ()
+        {
+            final List<Glyph> seeds = adapter.getParts();
+            Collections.sort(seeds, Glyphs.byReverseWeight);
+
+            final Set<Glyph> considered = new LinkedHashSet<>();
+
+            for (Glyph seed : seeds) {
+                considered.add(seed);
+                process(Collections.singleton(seed), considered);
+            }
+
+            return subsets;
+        }
+
+        private void process (Set<Glyph> parts,
+                              Set<Glyph> seen)
+        {
+            subsets++;
+
+            final int weight = Glyphs.weightOf(parts);
+
+            if (adapter.isTooHeavy(weight)) {
+                return;
+            }
+
+            final Rectangle box = Glyphs.getBounds(parts);
+
+            if (adapter.isTooLarge(box)) {
+                return;
+            }
+
+            if (!adapter.isTooLight(weight)) {
+                final Glyph compound = (parts.size() > 1) ? GlyphFactory.buildGlyph(parts)
+                        : parts.iterator().next();
+                adapter.evaluateGlyph(compound, parts);
+            }
+
+            final Set<Glyph> outliers = new LinkedHashSet<>();
+
+            for (Glyph part : parts) {
+                outliers.addAll(adapter.getNeighbors(part));
+            }
+
+            outliers.removeAll(parts);
+            outliers.removeAll(seen);
+
+            final Set<Glyph> newConsidered = new LinkedHashSet<>(seen);
+
+            for (Glyph outlier : outliers) {
+                newConsidered.add(outlier);
+
+                final Rectangle symBox = outlier.getBounds().union(box);
+
+                if (!adapter.isTooLarge(symBox)) {
+                    final Set<Glyph> largerSet = new LinkedHashSet<>(parts);
+                    largerSet.add(outlier);
+                    process(largerSet, newConsidered);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                              A d a p t i v e F i l t e r T e s t                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+import org.audiveris.omr.run.RunsCollector;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Class <code>AdaptiveFilterTest</code> checks that binarization straight into a RunTable, by
+ * bands of rows, gives the same runs as the {@link VerticalFilter} image, and compares their
+ * throughputs.
+ *
+ * @author Hervé Bitteur
+ */
+public class AdaptiveFilterTest
+{
+
+    private static final double MEAN_COEFF = 0.7;
+
+    private static final double STD_DEV_COEFF = 0.9;
+
+    /**
+     * Creates a new AdaptiveFilterTest object.
+     */
+    public AdaptiveFilterTest ()
+    {
+    }
+
+    /**
+     * Check identical tables on random gray images, some narrower or lower than the window.
+     */
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\nidentical");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 100; i++) {
+            final int w = 1 + random.nextInt(400);
+            final int h = 1 + random.nextInt(300);
+            final ByteProcessor source = createGraySheet(random, w, h);
+
+            assertEquals(
+                    w + "x" + h,
+                    imageTable(new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF)),
+                    runsTable(new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF)));
+        }
+    }
+
+    /**
+     * Compare throughputs, in megapixels per second, on an A4 gray sheet at 300 dpi.
+     */
+    //    @Test
+    public void testThroughput ()
+    {
+        System.out.println("\nthroughput");
+
+        final Random random = new Random(1);
+        final ByteProcessor source = createGraySheet(random, 2480, 3508);
+        final double megaPixels = (source.getWidth() * source.getHeight()) / 1e6;
+
+        for (int loop = 0; loop < 3; loop++) {
+            long start = System.nanoTime();
+            final RunTable expected = imageTable(
+                    new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF));
+            final long imageNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+
+            final RunTable table = runsTable(
+                    new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF));
+            final long tableNanos = System.nanoTime() - start;
+            assertEquals(expected, table);
+
+            System.out.printf(
+                    "image + runs:%6.1f MP/s  bands:%6.1f MP/s%n",
+                    (megaPixels * 1e9) / imageNanos,
+                    (megaPixels * 1e9) / tableNanos);
+        }
+    }
+
+    //-----------------//
+    // createGraySheet //
+    //-----------------//
+    /**
+     * Gray image with an uneven background, random dark strokes and noise.
+     */
+    private static ByteProcessor createGraySheet (Random random,
+                                                  int width,
+                                                  int height)
+    {
+        final ByteProcessor image = new ByteProcessor(width, height);
+        final byte[] pixels = (byte[]) image.getPixels();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int back = 180 + ((40 * (x + y)) / (width + height));
+                pixels[(y * width) + x] = (byte) (back + random.nextInt(30));
+            }
+        }
+
+        for (int s = (width * height) / 500; s >= 0; s--) {
+            final int x0 = random.nextInt(width);
+            final int y0 = random.nextInt(height);
+            final boolean vertical = random.nextBoolean();
+            final int length = 1 + random.nextInt(40);
+            final int thickness = 1 + random.nextInt(4);
+            final int w = vertical ? thickness : length;
+            final int h = vertical ? length : thickness;
+
+            for (int y = y0; y < Math.min(height, y0 + h); y++) {
+                for (int x = x0; x < Math.min(width, x0 + w); x++) {
+                    pixels[(y * width) + x] = (byte) random.nextInt(90);
+                }
+            }
+        }
+
+        return image;
+    }
+
+    //------------//
+    // imageTable //
+    //------------//
+    /**
+     * Legacy way: filtered image, then vertical runs.
+     */
+    private static RunTable imageTable (AdaptiveFilter filter)
+    {
+        return new RunTableFactory(Orientation.VERTICAL).createTable(filter.filteredImage());
+    }
+
+    //-----------//
+    // runsTable //
+    //-----------//
+    /**
+     * Fused way: binarization straight into vertical runs.
+     */
+    private static RunTable runsTable (AdaptiveFilter filter)
+    {
+        final RunsCollector collector = new RunsCollector(
+                filter.source.getWidth(),
+                filter.source.getHeight(),
+                false,
+                true);
+        filter.filterRuns(collector);
+
+        return collector.getVerticalTable();
+    }
+}
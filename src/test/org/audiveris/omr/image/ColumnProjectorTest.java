@@ -0,0 +1,319 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                             C o l u m n P r o j e c t o r T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class <code>ColumnProjectorTest</code> checks row-wise projection against column-wise
+ * browsing.
+ *
+ * @author Hervé Bitteur
+ */
+public class ColumnProjectorTest
+{
+
+    /**
+     * Creates a new ColumnProjectorTest object.
+     */
+    public ColumnProjectorTest ()
+    {
+    }
+
+    /**
+     * Check rectangular projections, some of them partly outside the buffer.
+     */
+    @Test
+    public void testRectangle ()
+    {
+        System.out.println("\nrectangle");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 200; i++) {
+            final int w = 1 + random.nextInt(100);
+            final int h = 1 + random.nextInt(100);
+            final ByteProcessor source = createRandomImage(random, w, h);
+            final Rectangle rect = new Rectangle(
+                    random.nextInt(w + 10) - 5,
+                    random.nextInt(h + 10) - 5,
+                    1 + random.nextInt(w),
+                    1 + random.nextInt(h));
+            final int[] yMins = new int[rect.width];
+            final int[] yMaxs = new int[rect.width];
+            Arrays.fill(yMins, rect.y);
+            Arrays.fill(yMaxs, (rect.y + rect.height) - 1);
+
+            assertArrayEquals(
+                    w + "x" + h + " " + rect,
+                    bruteForce(source, rect.x, yMins, yMaxs),
+                    ColumnProjector.project(source, rect));
+        }
+    }
+
+    /**
+     * Check rectangular projections on a buffer which covers just a region of the image.
+     */
+    @Test
+    public void testRegion ()
+    {
+        System.out.println("\nregion");
+
+        final Random random = new Random(3);
+
+        for (int i = 0; i < 200; i++) {
+            final int w = 1 + random.nextInt(100);
+            final int h = 1 + random.nextInt(100);
+            final ByteProcessor source = createRandomImage(random, w, h);
+            final int rx = random.nextInt(w);
+            final int ry = random.nextInt(h);
+            final Rectangle region = new Rectangle(
+                    rx,
+                    ry,
+                    1 + random.nextInt(w - rx),
+                    1 + random.nextInt(h - ry));
+            final Rectangle rect = new Rectangle(
+                    region.x + random.nextInt(region.width),
+                    region.y + random.nextInt(region.height),
+                    0,
+                    0);
+            rect.width = 1 + random.nextInt((region.x + region.width) - rect.x);
+            rect.height = 1 + random.nextInt((region.y + region.height) - rect.y);
+
+            source.setRoi(region);
+
+            final ByteProcessor regionSource = (ByteProcessor) source.crop();
+            source.resetRoi();
+
+            assertArrayEquals(
+                    w + "x" + h + " " + region + " " + rect,
+                    ColumnProjector.project(source, rect),
+                    ColumnProjector.project(regionSource, new Point(region.x, region.y), rect));
+        }
+    }
+
+    /**
+     * Check projections on bands with slanted limits, as for a staff.
+     */
+    @Test
+    public void testSlanted ()
+    {
+        System.out.println("\nslanted");
+
+        final Random random = new Random(1);
+
+        for (int i = 0; i < 200; i++) {
+            final int w = 20 + random.nextInt(200);
+            final int h = 20 + random.nextInt(100);
+            final ByteProcessor source = createRandomImage(random, w, h);
+            final int xMin = random.nextInt(w / 2);
+            final int length = 1 + random.nextInt(w - xMin);
+            final int[] yMins = new int[length];
+            final int[] yMaxs = new int[length];
+            fillSlanted(random, h, yMins, yMaxs);
+
+            assertArrayEquals(
+                    bruteForce(source, xMin, yMins, yMaxs),
+                    ColumnProjector.project(source, xMin, yMins, yMaxs));
+        }
+    }
+
+    /**
+     * Check top values against a full sort.
+     */
+    @Test
+    public void testTopValues ()
+    {
+        System.out.println("\ntopValues");
+
+        final Random random = new Random(2);
+
+        for (int i = 0; i < 500; i++) {
+            final int[] values = new int[1 + random.nextInt(50)];
+
+            for (int j = 0; j < values.length; j++) {
+                values[j] = random.nextInt(20);
+            }
+
+            final int from = random.nextInt(values.length);
+            final int to = from + random.nextInt(values.length - from);
+            final int k = random.nextInt(8);
+
+            final int[] sorted = Arrays.copyOfRange(values, from, to + 1);
+            Arrays.sort(sorted);
+
+            final int[] expected = new int[Math.min(k, sorted.length)];
+
+            for (int j = 0; j < expected.length; j++) {
+                expected[j] = sorted[sorted.length - 1 - j];
+            }
+
+            assertArrayEquals(expected, ColumnProjector.topValues(values, from, to, k));
+        }
+    }
+
+    /**
+     * Compare column-wise and row-wise timings, for the staves of an A4 sheet at 300 dpi
+     * (GRID step) and for the header areas of these staves (HEADERS step).
+     */
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\ntimings");
+
+        final Random random = new Random(3);
+        final int w = 2480;
+        final int h = 3508;
+        final ByteProcessor source = createRandomImage(random, w, h);
+        final int staffCount = 12;
+        final int staffHeight = 80;
+        final int[] yMins = new int[w - 200];
+        final int[] yMaxs = new int[w - 200];
+
+        for (int loop = 0; loop < 3; loop++) {
+            long columnNanos = 0;
+            long rowNanos = 0;
+
+            for (int s = 0; s < staffCount; s++) {
+                final int yTop = 200 + (s * 260);
+
+                for (int i = 0; i < yMins.length; i++) {
+                    yMins[i] = yTop + (i / 100);
+                    yMaxs[i] = (yMins[i] + staffHeight) - 1;
+                }
+
+                long start = System.nanoTime();
+                final int[] expected = bruteForce(source, 100, yMins, yMaxs);
+                columnNanos += (System.nanoTime() - start);
+
+                start = System.nanoTime();
+                final int[] counts = ColumnProjector.project(source, 100, yMins, yMaxs);
+                rowNanos += (System.nanoTime() - start);
+                assertArrayEquals(expected, counts);
+            }
+
+            System.out.printf(
+                    "staves  column-wise:%5d ms row-wise:%5d ms%n",
+                    columnNanos / 1_000_000,
+                    rowNanos / 1_000_000);
+
+            columnNanos = 0;
+            rowNanos = 0;
+
+            for (int s = 0; s < staffCount; s++) {
+                final Rectangle rect = new Rectangle(150, 180 + (s * 260), 300, 120);
+                final int[] rMins = new int[rect.width];
+                final int[] rMaxs = new int[rect.width];
+                Arrays.fill(rMins, rect.y);
+                Arrays.fill(rMaxs, (rect.y + rect.height) - 1);
+
+                long start = System.nanoTime();
+                final int[] expected = bruteForce(source, rect.x, rMins, rMaxs);
+                columnNanos += (System.nanoTime() - start);
+
+                start = System.nanoTime();
+                final int[] counts = ColumnProjector.project(source, rect);
+                rowNanos += (System.nanoTime() - start);
+                assertArrayEquals(expected, counts);
+            }
+
+            System.out.printf(
+                    "headers column-wise:%5d ms row-wise:%5d ms%n",
+                    columnNanos / 1_000_000,
+                    rowNanos / 1_000_000);
+        }
+    }
+
+    //------------//
+    // bruteForce //
+    //------------//
+    /**
+     * Column-wise counting, as formerly done by StaffProjector.
+     */
+    private static int[] bruteForce (ByteProcessor source,
+                                     int xMin,
+                                     int[] yMins,
+                                     int[] yMaxs)
+    {
+        final int[] counts = new int[yMins.length];
+
+        for (int i = 0; i < counts.length; i++) {
+            final int x = xMin + i;
+
+            if ((x < 0) || (x >= source.getWidth())) {
+                continue;
+            }
+
+            for (int y = Math.max(0, yMins[i]),
+                    yMax = Math.min(source.getHeight() - 1, yMaxs[i]); y <= yMax; y++) {
+                if (source.get(x, y) == 0) {
+                    counts[i]++;
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    //-------------------//
+    // createRandomImage //
+    //-------------------//
+    private static ByteProcessor createRandomImage (Random random,
+                                                    int width,
+                                                    int height)
+    {
+        final ByteProcessor source = new ByteProcessor(width, height);
+        final byte[] pixels = (byte[]) source.getPixels();
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (random.nextInt(5) == 0) ? 0 : (byte) 255;
+        }
+
+        return source;
+    }
+
+    //-------------//
+    // fillSlanted //
+    //-------------//
+    private static void fillSlanted (Random random,
+                                     int height,
+                                     int[] yMins,
+                                     int[] yMaxs)
+    {
+        final int bandHeight = 1 + random.nextInt(height / 2);
+        final double slope = (random.nextDouble() - 0.5) / 5;
+        final int y0 = random.nextInt(height) - (bandHeight / 2);
+
+        for (int i = 0; i < yMins.length; i++) {
+            yMins[i] = y0 + (int) Math.rint(slope * i);
+            yMaxs[i] = (yMins[i] + bandHeight) - 1;
+        }
+    }
+}
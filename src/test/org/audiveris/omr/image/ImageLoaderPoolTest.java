@@ -0,0 +1,281 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                             I m a g e L o a d e r P o o l T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import static org.junit.Assert.*;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Checks {@link ImageLoaderPool} against plain {@link ImageLoading} use, and compares their
+ * ingest times on a large multi-page TIFF input: one loader per image (former behavior), pool
+ * used by several threads, pool with prefetching while each image is being "processed".
+ *
+ * @author Hervé Bitteur
+ */
+public class ImageLoaderPoolTest
+{
+
+    private static final File dir = new File("data/temp");
+
+    private static final int PAGES = 40;
+
+    private static Path bookPath;
+
+    /**
+     * Creates a new <code>ImageLoaderPoolTest</code> object.
+     */
+    public ImageLoaderPoolTest ()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass ()
+            throws Exception
+    {
+        dir.mkdirs();
+        bookPath = dir.toPath().resolve("pool-book.tif");
+        writeBook(bookPath, new Random(0));
+    }
+
+    @AfterClass
+    public static void tearDownClass ()
+            throws Exception
+    {
+        Files.deleteIfExists(bookPath);
+    }
+
+    @Test
+    public void testIdentical ()
+            throws Exception
+    {
+        System.out.println("\n+++ identical");
+
+        final ImageLoaderPool pool = new ImageLoaderPool(bookPath);
+        pool.prefetch(Arrays.asList(3, 4));
+
+        for (int id = 1; id <= 5; id++) {
+            final ImageLoading.Loader loader = ImageLoading.getLoader(bookPath);
+            final BufferedImage expected = loader.getImage(id);
+            loader.dispose();
+
+            assertArrayEquals(pixels(expected), pixels(pool.getImage(id)));
+        }
+
+        pool.dispose();
+
+        // Pool is still usable after disposal
+        assertNotNull(pool.getImage(PAGES));
+        pool.dispose();
+    }
+
+    @Test
+    public void testPrefetchCap ()
+            throws Exception
+    {
+        System.out.println("\n+++ prefetchCap");
+
+        final ImageLoaderPool pool = new ImageLoaderPool(bookPath);
+        pool.prefetch(Arrays.asList(2, 3, 4, 5));
+        assertEquals(2, pool.getPrefetchedCount());
+
+        // Loaders disposal keeps prefetched images
+        pool.disposeLoaders();
+        assertEquals(2, pool.getPrefetchedCount());
+
+        final ImageLoading.Loader loader = ImageLoading.getLoader(bookPath);
+        final BufferedImage expected = loader.getImage(2);
+        loader.dispose();
+
+        assertArrayEquals(pixels(expected), pixels(pool.getImage(2)));
+        assertEquals(1, pool.getPrefetchedCount());
+
+        // Room for one more
+        pool.prefetch(Arrays.asList(4, 5));
+        assertEquals(2, pool.getPrefetchedCount());
+
+        pool.dispose();
+        assertEquals(0, pool.getPrefetchedCount());
+    }
+
+    //    @Test
+    public void testIngest ()
+            throws Exception
+    {
+        System.out.println("\n+++ ingest");
+
+        final int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        final long processNanos = 20_000_000L; // Simulated processing per sheet
+
+        // Former behavior: one loader per image, loads serialized
+        long start = System.nanoTime();
+
+        for (int id = 1; id <= PAGES; id++) {
+            final ImageLoading.Loader loader = ImageLoading.getLoader(bookPath);
+            assertNotNull(loader.getImage(id));
+            loader.dispose();
+        }
+
+        final long single = System.nanoTime() - start;
+
+        // Pool used by several threads
+        final ImageLoaderPool pool = new ImageLoaderPool(bookPath);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Callable<BufferedImage>> tasks = new ArrayList<>();
+
+        for (int id = 1; id <= PAGES; id++) {
+            final int i = id;
+            tasks.add(() -> pool.getImage(i));
+        }
+
+        start = System.nanoTime();
+
+        for (Future<BufferedImage> future : executor.invokeAll(tasks)) {
+            assertNotNull(future.get());
+        }
+
+        final long parallel = System.nanoTime() - start;
+        executor.shutdown();
+        pool.dispose();
+
+        // Sequential processing, without then with prefetching
+        final long[] sequential = new long[2];
+
+        for (int prefetch = 0; prefetch <= 1; prefetch++) {
+            start = System.nanoTime();
+
+            for (int id = 1; id <= PAGES; id++) {
+                assertNotNull(pool.getImage(id));
+
+                if (prefetch == 1) {
+                    pool.prefetch(Arrays.asList(id + 1, id + 2).subList(
+                            0,
+                            Math.min(2, PAGES - id)));
+                }
+
+                process(processNanos);
+            }
+
+            sequential[prefetch] = System.nanoTime() - start;
+            pool.dispose();
+        }
+
+        System.out.printf("pages:%d threads:%d%n", PAGES, threads);
+        System.out.printf("one loader per image: %8.1f ms%n", single / 1e6);
+        System.out.printf("pool, parallel:       %8.1f ms%n", parallel / 1e6);
+        System.out.printf("pool + processing:    %8.1f ms%n", sequential[0] / 1e6);
+        System.out.printf("prefetch + processing:%8.1f ms%n", sequential[1] / 1e6);
+    }
+
+    //--------//
+    // pixels //
+    //--------//
+    private static byte[] pixels (BufferedImage img)
+    {
+        return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    }
+
+    //---------//
+    // process //
+    //---------//
+    private static void process (long nanos)
+    {
+        final long end = System.nanoTime() + nanos;
+
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    //-----------//
+    // writeBook //
+    //-----------//
+    /**
+     * Write a multi-page TIFF file, with pages of A4 size at 150 DPI.
+     */
+    private static void writeBook (Path path,
+                                   Random random)
+            throws Exception
+    {
+        Files.deleteIfExists(path);
+
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+
+        try (ImageOutputStream os = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(os);
+            writer.prepareWriteSequence(null);
+
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionType("Deflate");
+
+            for (int p = 0; p < PAGES; p++) {
+                final BufferedImage img = new BufferedImage(
+                        1240,
+                        1754,
+                        BufferedImage.TYPE_BYTE_GRAY);
+                final Graphics2D g = img.createGraphics();
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, img.getWidth(), img.getHeight());
+                g.setColor(Color.BLACK);
+
+                for (int i = 0; i < 2_000; i++) {
+                    g.fillRect(
+                            random.nextInt(img.getWidth()),
+                            random.nextInt(img.getHeight()),
+                            1 + random.nextInt(20),
+                            1 + random.nextInt(5));
+                }
+
+                g.dispose();
+                writer.writeToSequence(new IIOImage(img, null, null), param);
+            }
+
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+}
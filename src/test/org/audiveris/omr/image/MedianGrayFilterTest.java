@@ -21,12 +21,16 @@
 // </editor-fold>
 package org.audiveris.omr.image;
 
+import ij.process.ByteProcessor;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.util.Random;
 
 /**
  * Class <code>MedianGrayFilterTest</code>
@@ -47,6 +51,69 @@ public class MedianGrayFilterTest
     {
     }
 
+    /**
+     * Check that sliding histogram and brute force give identical outputs, on random images of
+     * various sizes (some smaller than kernel) and various radii.
+     */
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\nidentical");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 300; i++) {
+            final int w = 1 + random.nextInt(90);
+            final int h = 1 + random.nextInt(90);
+            final int radius = random.nextInt(12);
+            final ByteProcessor input = createRandomImage(random, w, h, i % 3);
+            final MedianGrayFilter filter = new MedianGrayFilter(radius);
+
+            final ByteProcessor expected = new ByteProcessor(w, h);
+            filter.filterBruteForce(input, expected);
+
+            final ByteProcessor result = filter.filter(input);
+            assertArrayEquals(
+                    w + "x" + h + " radius:" + radius,
+                    (byte[]) expected.getPixels(),
+                    (byte[]) result.getPixels());
+        }
+    }
+
+    /**
+     * Compare brute force and sliding histogram timings across radii, on a half A4 sheet at
+     * 300 dpi.
+     */
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\ntimings");
+
+        final Random random = new Random(1);
+        final ByteProcessor input = createRandomImage(random, 1240, 1754, 2);
+
+        for (int radius : new int[]{1, 2, 3, 5, 8, 12, 20}) {
+            final MedianGrayFilter filter = new MedianGrayFilter(radius);
+            final ByteProcessor expected = new ByteProcessor(input.getWidth(), input.getHeight());
+
+            long start = System.nanoTime();
+            filter.filterBruteForce(input, expected);
+
+            final long bruteNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            final ByteProcessor result = filter.filter(input);
+            final long slidingNanos = System.nanoTime() - start;
+            assertArrayEquals((byte[]) expected.getPixels(), (byte[]) result.getPixels());
+
+            System.out.printf(
+                    "radius:%3d brute force:%7d ms sliding:%5d ms%n",
+                    radius,
+                    bruteNanos / 1_000_000,
+                    slidingNanos / 1_000_000);
+        }
+    }
+
     //    @Test
     public void testProcess_black_1 ()
     {
@@ -196,6 +263,46 @@ public class MedianGrayFilterTest
         return img;
     }
 
+    /**
+     * Build a gray image.
+     *
+     * @param kind 0 for uniform noise, 1 for black and white noise, 2 for sparse dark spots on a
+     *             light background
+     */
+    private ByteProcessor createRandomImage (Random random,
+                                             int width,
+                                             int height,
+                                             int kind)
+    {
+        final ByteProcessor img = new ByteProcessor(width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int val;
+
+                switch (kind) {
+                case 0:
+                    val = random.nextInt(256);
+
+                    break;
+
+                case 1:
+                    val = random.nextBoolean() ? 0 : 255;
+
+                    break;
+
+                default:
+                    val = (random.nextInt(10) == 0) ? random.nextInt(256)
+                            : (220 + random.nextInt(20));
+                }
+
+                img.set(x, y, val);
+            }
+        }
+
+        return img;
+    }
+
     private BufferedImage createWhiteImage (int width,
                                             int height)
     {
@@ -0,0 +1,172 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                              M o r p h o P r o c e s s o r T e s t                             //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Class <code>MorphoProcessorTest</code> checks line-decomposed morphology against the brute
+ * force computation.
+ *
+ * @author Hervé Bitteur
+ */
+public class MorphoProcessorTest
+{
+
+    /**
+     * Creates a new MorphoProcessorTest object.
+     */
+    public MorphoProcessorTest ()
+    {
+    }
+
+    /**
+     * Check close, open, dilate and erode on random images with various structuring elements,
+     * some larger than the image.
+     */
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\nidentical");
+
+        final Random random = new Random(0);
+        final int[] types = {MorphoConstants.CIRCLE, MorphoConstants.DIAMOND};
+
+        for (int i = 0; i < 200; i++) {
+            final int w = 1 + random.nextInt(80);
+            final int h = 1 + random.nextInt(80);
+            final float radius = random.nextInt(16) / 2f;
+            final int type = types[random.nextInt(types.length)];
+            final int[] offset = {random.nextInt(3) - 1, random.nextInt(3) - 1};
+            final StructureElement se = new StructureElement(type, 1, radius, offset);
+            final MorphoProcessor mp = new MorphoProcessor(se);
+            final ByteProcessor input = createRandomImage(random, w, h);
+            final String msg = w + "x" + h + " type:" + type + " radius:" + radius;
+
+            ByteProcessor expected = (ByteProcessor) input.duplicate();
+            ByteProcessor result = (ByteProcessor) input.duplicate();
+            mp.closeBruteForce(expected);
+            mp.close(result);
+            assertArrayEquals("close " + msg, pixels(expected), pixels(result));
+
+            expected = (ByteProcessor) input.duplicate();
+            result = (ByteProcessor) input.duplicate();
+            mp.openBruteForce(expected);
+            mp.open(result);
+            assertArrayEquals("open " + msg, pixels(expected), pixels(result));
+
+            expected = (ByteProcessor) input.duplicate();
+            result = (ByteProcessor) input.duplicate();
+            mp.dilateBruteForce(expected);
+            mp.dilate(result);
+            assertArrayEquals("dilate " + msg, pixels(expected), pixels(result));
+
+            expected = (ByteProcessor) input.duplicate();
+            result = (ByteProcessor) input.duplicate();
+            mp.erodeBruteForce(expected);
+            mp.erode(result);
+            assertArrayEquals("erode " + msg, pixels(expected), pixels(result));
+        }
+    }
+
+    /**
+     * Compare brute force and line-decomposed closing timings, as in BEAMS step, on a half A4
+     * sheet at 300 dpi, for typical beam circle radii.
+     */
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\ntimings");
+
+        final Random random = new Random(1);
+        final ByteProcessor input = createRandomImage(random, 1240, 1754);
+        final int[] seOffset = {0, 0};
+
+        for (float radius : new float[]{3f, 5f, 8f}) {
+            final MorphoProcessor mp = new MorphoProcessor(
+                    new StructureElement(0, 1, radius, seOffset));
+            final ByteProcessor expected = (ByteProcessor) input.duplicate();
+            final ByteProcessor result = (ByteProcessor) input.duplicate();
+
+            long start = System.nanoTime();
+            mp.closeBruteForce(expected);
+
+            final long bruteNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            mp.close(result);
+
+            final long linesNanos = System.nanoTime() - start;
+            assertArrayEquals(pixels(expected), pixels(result));
+
+            System.out.printf(
+                    "radius:%4.1f brute force:%6d ms lines:%5d ms%n",
+                    radius,
+                    bruteNanos / 1_000_000,
+                    linesNanos / 1_000_000);
+        }
+    }
+
+    //-------------------//
+    // createRandomImage //
+    //-------------------//
+    /**
+     * Gray image made of random blobs on a noisy background.
+     */
+    private static ByteProcessor createRandomImage (Random random,
+                                                    int width,
+                                                    int height)
+    {
+        final ByteProcessor image = new ByteProcessor(width, height);
+        final byte[] pixels = (byte[]) image.getPixels();
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (200 + random.nextInt(56));
+        }
+
+        for (int b = (width * height) / 200; b >= 0; b--) {
+            final int x0 = random.nextInt(width);
+            final int y0 = random.nextInt(height);
+            final int size = 1 + random.nextInt(12);
+
+            for (int y = y0; y < Math.min(height, y0 + size); y++) {
+                for (int x = x0; x < Math.min(width, x0 + (size / 2) + 1); x++) {
+                    pixels[(y * width) + x] = (byte) random.nextInt(100);
+                }
+            }
+        }
+
+        return image;
+    }
+
+    //--------//
+    // pixels //
+    //--------//
+    private static byte[] pixels (ByteProcessor image)
+    {
+        return (byte[]) image.getPixels();
+    }
+}
@@ -0,0 +1,189 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               T e m p l a t e C a c h e T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.TemplateFactory.Catalog;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Checks that templates loaded from {@link TemplateCache} are identical to built templates,
+ * and compares the latency of a first catalog access, with and without on-disk cache,
+ * as met at application start or on first sheet of a given interline.
+ *
+ * @author Hervé Bitteur
+ */
+public class TemplateCacheTest
+{
+
+    private static final File dir = new File("data/temp/template-cache");
+
+    /**
+     * Creates a new <code>TemplateCacheTest</code> object.
+     */
+    public TemplateCacheTest ()
+    {
+    }
+
+    @Test
+    public void testIdentical ()
+            throws Exception
+    {
+        System.out.println("\n+++ identical");
+
+        final Path folder = cleanFolder();
+        final Catalog built = new TemplateFactory(new TemplateCache(folder)).getCatalog(64);
+        final Catalog loaded = new TemplateFactory(new TemplateCache(folder)).getCatalog(64);
+
+        assertFalse(built.getShapes().isEmpty());
+        assertEquals(built.getShapes(), loaded.getShapes());
+
+        for (Shape shape : built.getShapes()) {
+            final Template b = built.getTemplate(shape);
+            final Template l = loaded.getTemplate(shape);
+            assertSame(l, loaded.getTemplate(shape));
+            assertEquals(b.getPointSize(), l.getPointSize());
+            assertEquals(b.getWidth(), l.getWidth());
+            assertEquals(b.getHeight(), l.getHeight());
+            assertEquals(b.getSlimBounds(), l.getSlimBounds());
+            assertEquals(b.getOffsets(), l.getOffsets());
+            assertEquals(b.getKeyPoints().size(), l.getKeyPoints().size());
+
+            for (int i = 0; i < b.getKeyPoints().size(); i++) {
+                final PixelDistance bp = b.getKeyPoints().get(i);
+                final PixelDistance lp = l.getKeyPoints().get(i);
+                assertEquals(bp.x, lp.x);
+                assertEquals(bp.y, lp.y);
+                assertEquals(bp.d, lp.d, 0);
+            }
+        }
+
+        // Another key must not reuse the file
+        assertNull(new TemplateCache(folder).load("other", 64));
+    }
+
+    @Test
+    public void testStoreOverLoaded ()
+            throws Exception
+    {
+        System.out.println("\n+++ storeOverLoaded");
+
+        final Path folder = cleanFolder();
+        final Catalog built = new TemplateFactory(null).getCatalog(64);
+        final List<Template> templates = new ArrayList<>();
+
+        for (Shape shape : built.getShapes()) {
+            templates.add(built.getTemplate(shape));
+        }
+
+        final TemplateCache cache = new TemplateCache(folder);
+        cache.store("key", 64, templates);
+
+        final TemplateCache.View view = cache.load("key", 64);
+        assertNotNull(view);
+
+        // Replace the file while its view is still in use
+        final Template first = templates.get(0);
+        cache.store("key", 64, templates.subList(0, 1));
+
+        assertEquals(built.getShapes(), view.getShapes());
+        assertEquals(first.getWidth(), view.getTemplate(first.getShape()).getWidth());
+        assertEquals(1, cache.load("key", 64).getShapes().size());
+    }
+
+    //    @Test
+    public void testTimings ()
+            throws Exception
+    {
+        System.out.println("\n+++ timings");
+
+        final Path folder = cleanFolder();
+        new TemplateFactory(null).getCatalog(40); // Warm-up (font, classes)
+
+        for (int pointSize : new int[]{44, 64, 84, 104}) {
+            long start = System.nanoTime();
+            Catalog catalog = new TemplateFactory(null).getCatalog(pointSize);
+            touchAll(catalog);
+
+            final long noCache = System.nanoTime() - start;
+            start = System.nanoTime();
+            catalog = new TemplateFactory(new TemplateCache(folder)).getCatalog(pointSize);
+            touchAll(catalog);
+
+            final long cold = System.nanoTime() - start;
+            start = System.nanoTime();
+            catalog = new TemplateFactory(new TemplateCache(folder)).getCatalog(pointSize);
+
+            final long warmLoad = System.nanoTime() - start;
+            touchAll(catalog);
+
+            final long warm = System.nanoTime() - start;
+
+            System.out.printf(
+                    "pointSize:%4d no cache:%8.1f ms cold cache:%8.1f ms"
+                            + " warm cache load:%6.2f ms all templates:%6.2f ms%n",
+                    pointSize,
+                    noCache / 1e6,
+                    cold / 1e6,
+                    warmLoad / 1e6,
+                    warm / 1e6);
+        }
+    }
+
+    //-------------//
+    // cleanFolder //
+    //-------------//
+    private Path cleanFolder ()
+            throws IOException
+    {
+        final Path folder = dir.toPath();
+
+        if (Files.exists(folder)) {
+            try (Stream<Path> paths = Files.walk(folder)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+
+        return folder;
+    }
+
+    //----------//
+    // touchAll //
+    //----------//
+    private void touchAll (Catalog catalog)
+    {
+        for (Shape shape : catalog.getShapes()) {
+            assertNotNull(catalog.getTemplate(shape));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    T e m p l a t e T e s t                                     //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.Anchored.Anchor;
+import org.audiveris.omr.image.TemplateFactory.Catalog;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link Template.Compiled} evaluation gives exactly the same values as the
+ * key point based evaluation, for all shapes of a template catalog, and compares their costs.
+ *
+ * @author Hervé Bitteur
+ */
+public class TemplateTest
+{
+
+    /** Typical head point size (interline 20). */
+    private static final int POINT_SIZE = 64;
+
+    /**
+     * Creates a new <code>TemplateTest</code> object.
+     */
+    public TemplateTest ()
+    {
+    }
+
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\n+++ identical");
+
+        final Catalog catalog = TemplateFactory.getInstance().getCatalog(POINT_SIZE);
+        final DistanceTable distances = createDistances(200, 150, 0);
+        final Random random = new Random(1);
+
+        for (Shape shape : catalog.getShapes()) {
+            final Template template = catalog.getTemplate(shape);
+            final Template.Compiled compiled = template.getCompiled();
+            final List<Anchor> anchors = new ArrayList<>(template.getOffsets().keySet());
+            anchors.add(null);
+
+            for (Anchor anchor : anchors) {
+                for (int i = 0; i < 2_000; i++) {
+                    // Some locations are close to or beyond image borders
+                    final int x = random.nextInt(distances.getWidth() + 40) - 20;
+                    final int y = random.nextInt(distances.getHeight() + 40) - 20;
+                    final double expected = template.evaluateKeyPoints(x, y, anchor, distances);
+                    assertEquals(
+                            shape + " " + anchor + " at " + x + "," + y,
+                            Double.doubleToLongBits(expected),
+                            Double.doubleToLongBits(compiled.evaluate(x, y, anchor, distances)));
+                }
+            }
+        }
+    }
+
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\n+++ timings");
+
+        final Catalog catalog = TemplateFactory.getInstance().getCatalog(POINT_SIZE);
+        final DistanceTable distances = createDistances(400, 300, 2);
+
+        for (Shape shape : catalog.getShapes()) {
+            final Template template = catalog.getTemplate(shape);
+            final Template.Compiled compiled = template.getCompiled();
+            final int xMax = distances.getWidth() - template.getWidth();
+            final int yMax = distances.getHeight() - template.getHeight();
+            double sum = 0;
+
+            // Warm-up
+            for (int y = 0; y < yMax; y += 7) {
+                for (int x = 0; x < xMax; x += 7) {
+                    sum += template.evaluateKeyPoints(x, y, Anchor.CENTER, distances);
+                    sum -= compiled.evaluate(x, y, Anchor.CENTER, distances);
+                }
+            }
+
+            long start = System.nanoTime();
+
+            for (int y = 0; y < yMax; y++) {
+                for (int x = 0; x < xMax; x++) {
+                    sum += template.evaluateKeyPoints(x, y, Anchor.CENTER, distances);
+                }
+            }
+
+            final long pointsNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int y = 0; y < yMax; y++) {
+                for (int x = 0; x < xMax; x++) {
+                    sum -= compiled.evaluate(x, y, Anchor.CENTER, distances);
+                }
+            }
+
+            final long compiledNanos = System.nanoTime() - start;
+            final int evals = xMax * yMax;
+            assertEquals(0, sum, 1e-6);
+
+            System.out.printf(
+                    "%-22s keyPoints:%4d points:%7.1f ns/eval compiled:%7.1f ns/eval%n",
+                    shape,
+                    template.getKeyPoints().size(),
+                    (double) pointsNanos / evals,
+                    (double) compiledNanos / evals);
+        }
+    }
+
+    //-----------------//
+    // createDistances //
+    //-----------------//
+    /**
+     * Build a distance table on a random image with head-like blobs, with a few
+     * neutralized (unknown) areas.
+     */
+    private DistanceTable createDistances (int width,
+                                           int height,
+                                           long seed)
+    {
+        final Random random = new Random(seed);
+        final ByteProcessor img = new ByteProcessor(width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.set(x, y, 255);
+            }
+        }
+
+        for (int i = 0, count = (width * height) / 400; i < count; i++) {
+            final int cx = random.nextInt(width);
+            final int cy = random.nextInt(height);
+            final int rx = 3 + random.nextInt(10);
+            final int ry = 2 + random.nextInt(8);
+
+            for (int y = Math.max(0, cy - ry); y < Math.min(height, cy + ry); y++) {
+                for (int x = Math.max(0, cx - rx); x < Math.min(width, cx + rx); x++) {
+                    final double dx = (double) (x - cx) / rx;
+                    final double dy = (double) (y - cy) / ry;
+
+                    if (((dx * dx) + (dy * dy)) <= 1) {
+                        img.set(x, y, 0);
+                    }
+                }
+            }
+        }
+
+        final DistanceTable distances = new ChamferDistance.Short().computeToFore(img);
+
+        // Neutralized horizontal lines, as for staff lines
+        for (int y = 10; y < height; y += 20) {
+            for (int x = 0; x < width; x++) {
+                distances.setValue(x, y, ChamferDistance.VALUE_UNKNOWN);
+            }
+        }
+
+        return distances;
+    }
+}
@@ -0,0 +1,384 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               N e u r a l N e t w o r k T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.math;
+
+import org.audiveris.omr.classifier.TrainingMonitor;
+import org.audiveris.omr.util.OmrExecutors;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link NeuralNetwork#runBatch} gives the same outputs as {@link NeuralNetwork#run},
+ * that mini-batch training is deterministic with a seed, whether shards are computed in parallel
+ * or not, and compares throughputs, for a network sized like the basic glyph classifier.
+ *
+ * @author Hervé Bitteur
+ */
+public class NeuralNetworkTest
+{
+
+    /** Input size, close to MixGlyphDescriptor length. */
+    private static final int INPUTS = 110;
+
+    /** Hidden and output sizes, close to the number of physical shapes. */
+    private static final int SHAPES = 170;
+
+    /**
+     * Creates a new <code>NeuralNetworkTest</code> object.
+     */
+    public NeuralNetworkTest ()
+    {
+    }
+
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\n+++ identical");
+
+        final Random random = new Random(0);
+        final NeuralNetwork network = createNetwork(7, 5, 3);
+
+        for (int count : new int[]{0, 1, 63, 64, 65, 200}) {
+            final double[] inputs = createInputs(random, count, 7);
+            final double[] outputs = network.runBatch(inputs, count, null);
+            assertEquals(count * 3, outputs.length);
+
+            for (int p = 0; p < count; p++) {
+                final double[] ins = new double[7];
+                System.arraycopy(inputs, p * 7, ins, 0, 7);
+
+                final double[] outs = network.run(ins, null, null);
+
+                for (int o = 0; o < 3; o++) {
+                    assertEquals(outs[o], outputs[(p * 3) + o], 0.0);
+                }
+            }
+        }
+
+        // Weights modified by a backup restoration
+        final NeuralNetwork.Backup backup = createNetwork(7, 5, 3).backup();
+        network.restore(backup);
+
+        final double[] inputs = createInputs(random, 1, 7);
+        assertArrayEquals(network.run(inputs, null, null), network.runBatch(inputs, 1, null), 0.0);
+    }
+
+    @Test
+    public void testMiniBatch ()
+    {
+        System.out.println("\n+++ miniBatch");
+
+        final Random random = new Random(2);
+        final int count = 300;
+        final double[][] inputs = new double[count][];
+        final double[][] desired = new double[count][];
+        createClusters(random, 7, 3, inputs, desired);
+
+        final NeuralNetwork network = createNetwork(7, 12, 3);
+        final NeuralNetwork.Backup backup = network.backup();
+        network.setEpochs(40);
+        network.setMiniBatchSize(50);
+        network.setSeed(5);
+        network.setLearningRate(2.0);
+        network.setMomentum(0.5);
+
+        final List<Double> scores = new ArrayList<>();
+        network.train(inputs, desired, createMonitor(scores), 10);
+
+        final double[] first = network.run(inputs[0], null, null);
+
+        // Decreasing error
+        assertEquals(4, scores.size());
+        assertTrue(scores.toString(), scores.get(3) < scores.get(0));
+
+        // Same seed, same starting weights, same result
+        network.restore(backup);
+        network.train(inputs, desired, null, 10);
+        assertArrayEquals(first, network.run(inputs[0], null, null), 0.0);
+    }
+
+    @Test
+    public void testParallelMiniBatch ()
+            throws Exception
+    {
+        System.out.println("\n+++ parallelMiniBatch");
+
+        final Random random = new Random(6);
+        final int count = 400;
+        final double[][] inputs = new double[count][];
+        final double[][] desired = new double[count][];
+        createClusters(random, 7, 3, inputs, desired);
+
+        // Mini-batches of 4 shards
+        final NeuralNetwork network = createNetwork(7, 12, 3, 13);
+        final NeuralNetwork.Backup backup = network.backup();
+        network.setEpochs(10);
+        network.setMiniBatchSize(128);
+        network.setSeed(5);
+        network.setLearningRate(2.0);
+        network.setMomentum(0.5);
+
+        final boolean parallelism = OmrExecutors.defaultParallelism.getValue();
+        final byte[] sequential;
+        final byte[] parallel;
+
+        try {
+            OmrExecutors.defaultParallelism.setSpecific(false);
+            network.train(inputs, desired, null, 10);
+            sequential = marshal(network);
+
+            OmrExecutors.defaultParallelism.setSpecific(true);
+            network.restore(backup);
+            network.train(inputs, desired, null, 10);
+            parallel = marshal(network);
+        } finally {
+            OmrExecutors.defaultParallelism.setSpecific(parallelism);
+        }
+
+        // Same bits for all weights
+        assertArrayEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testSeededWeights ()
+    {
+        System.out.println("\n+++ seededWeights");
+
+        final double[] inputs = createInputs(new Random(4), 1, 7);
+        final NeuralNetwork first = createNetwork(7, 5, 3, 11);
+        final NeuralNetwork second = createNetwork(7, 5, 3, 11);
+        assertArrayEquals(first.run(inputs, null, null), second.run(inputs, null, null), 0.0);
+    }
+
+    //    @Test
+    public void testTrainingThroughput ()
+    {
+        System.out.println("\n+++ training throughput");
+
+        final Random random = new Random(3);
+        final int count = 2_000;
+        final double[][] inputs = new double[count][];
+        final double[][] desired = new double[count][];
+        createClusters(random, INPUTS, SHAPES, inputs, desired);
+
+        final NeuralNetwork network = createNetwork(INPUTS, SHAPES, SHAPES);
+        final NeuralNetwork.Backup backup = network.backup();
+        network.setEpochs(2);
+
+        for (int iter = 0; iter < 3; iter++) {
+            network.restore(backup);
+            network.setMiniBatchSize(0);
+
+            long start = System.nanoTime();
+            network.train(inputs, desired, null, 1);
+
+            final long single = System.nanoTime() - start;
+            network.restore(backup);
+            network.setMiniBatchSize(256);
+            start = System.nanoTime();
+            network.train(inputs, desired, null, 1);
+
+            final long batch = System.nanoTime() - start;
+            System.out.printf(
+                    "epochs/s per pattern:%7.3f mini-batch:%7.3f%n",
+                    2e9 / single,
+                    2e9 / batch);
+        }
+    }
+
+    //    @Test
+    public void testThroughput ()
+    {
+        System.out.println("\n+++ throughput");
+
+        final Random random = new Random(1);
+        final NeuralNetwork network = createNetwork(INPUTS, SHAPES, SHAPES);
+        final int count = 10_000;
+        final double[] inputs = createInputs(random, count, INPUTS);
+        final double[][] rows = new double[count][INPUTS];
+
+        for (int p = 0; p < count; p++) {
+            System.arraycopy(inputs, p * INPUTS, rows[p], 0, INPUTS);
+        }
+
+        final double[] hiddens = new double[SHAPES];
+        final double[] outs = new double[SHAPES];
+        final double[] outputs = new double[count * SHAPES];
+
+        for (int iter = 0; iter < 5; iter++) {
+            long start = System.nanoTime();
+            double sum = 0;
+
+            for (double[] row : rows) {
+                network.run(row, hiddens, outs);
+                sum += outs[0];
+            }
+
+            final long single = System.nanoTime() - start;
+            start = System.nanoTime();
+            network.runBatch(inputs, count, outputs);
+
+            final long batch = System.nanoTime() - start;
+
+            for (int p = 0; p < count; p++) {
+                sum -= outputs[p * SHAPES];
+            }
+
+            assertEquals(0, sum, 1e-6);
+            System.out.printf(
+                    "per 1000 glyphs single:%7.3f ms batch:%7.3f ms%n",
+                    single / (1e6 * count / 1000),
+                    batch / (1e6 * count / 1000));
+        }
+    }
+
+    //----------------//
+    // createClusters //
+    //----------------//
+    /**
+     * Populate patterns around one random center per class.
+     */
+    private void createClusters (Random random,
+                                 int size,
+                                 int classes,
+                                 double[][] inputs,
+                                 double[][] desired)
+    {
+        final double[][] centers = new double[classes][];
+
+        for (int c = 0; c < classes; c++) {
+            centers[c] = createInputs(random, 1, size);
+        }
+
+        for (int p = 0; p < inputs.length; p++) {
+            final int c = random.nextInt(classes);
+            inputs[p] = createInputs(random, 1, size);
+            desired[p] = new double[classes];
+            desired[p][c] = 1;
+
+            for (int i = 0; i < size; i++) {
+                inputs[p][i] = centers[c][i] + (0.5 * inputs[p][i]);
+            }
+        }
+    }
+
+    //--------------//
+    // createInputs //
+    //--------------//
+    private double[] createInputs (Random random,
+                                   int count,
+                                   int size)
+    {
+        final double[] inputs = new double[count * size];
+
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextGaussian();
+        }
+
+        return inputs;
+    }
+
+    //---------------//
+    // createMonitor //
+    //---------------//
+    private TrainingMonitor createMonitor (List<Double> scores)
+    {
+        return new TrainingMonitor()
+        {
+            @Override
+            public void epochStarted (int epoch)
+            {
+            }
+
+            @Override
+            public int getIterationPeriod ()
+            {
+                return 10;
+            }
+
+            @Override
+            public void iterationPeriodDone (int iteration,
+                                             double score)
+            {
+                scores.add(score);
+            }
+        };
+    }
+
+    //---------------//
+    // createNetwork //
+    //---------------//
+    private NeuralNetwork createNetwork (int inputSize,
+                                        int hiddenSize,
+                                        int outputSize)
+    {
+        return createNetwork(inputSize, hiddenSize, outputSize, 0);
+    }
+
+    private NeuralNetwork createNetwork (int inputSize,
+                                        int hiddenSize,
+                                        int outputSize,
+                                        long seed)
+    {
+        return new NeuralNetwork(
+                inputSize,
+                hiddenSize,
+                outputSize,
+                0.5,
+                labels("in", inputSize),
+                labels("out", outputSize),
+                seed);
+    }
+
+    //--------//
+    // labels //
+    //--------//
+    private String[] labels (String prefix,
+                             int count)
+    {
+        final String[] labels = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            labels[i] = prefix + i;
+        }
+
+        return labels;
+    }
+
+    //---------//
+    // marshal //
+    //---------//
+    private byte[] marshal (NeuralNetwork network)
+            throws Exception
+    {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        network.marshal(os);
+
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,214 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                           F u s e d A R T E x t r a c t o r T e s t                            //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.moment;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.math.PointsCollector;
+import org.audiveris.omr.moments.ARTMoments;
+import org.audiveris.omr.moments.BasicARTExtractor;
+import org.audiveris.omr.moments.BasicARTMoments;
+import org.audiveris.omr.moments.FusedARTExtractor;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Class <code>FusedARTExtractorTest</code> checks that moments extracted from runs by
+ * {@link FusedARTExtractor} are those extracted from points by {@link BasicARTExtractor}.
+ * <p>
+ * Method testTimings, not run by default, compares their timings on typical glyph sizes.
+ *
+ * @author Hervé Bitteur
+ */
+public class FusedARTExtractorTest
+{
+
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Creates a new FusedARTExtractorTest object.
+     */
+    public FusedARTExtractorTest ()
+    {
+    }
+
+    /**
+     * Check identical moments on random glyphs, from points and from runs in both orientations.
+     */
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\nidentical");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 200; i++) {
+            final int w = 1 + random.nextInt(120);
+            final int h = 1 + random.nextInt(120);
+            final ByteProcessor image = createGlyph(random, w, h);
+            final RunTable hTable = new RunTableFactory(Orientation.HORIZONTAL).createTable(image);
+            final RunTable vTable = new RunTableFactory(Orientation.VERTICAL).createTable(image);
+            final String msg = w + "x" + h;
+
+            final ARTMoments expected = basicMoments(hTable);
+
+            final PointsCollector collector = new PointsCollector(null, hTable.getWeight());
+            hTable.cumulate(collector, null);
+
+            final ARTMoments fromPoints = new BasicARTMoments();
+            final FusedARTExtractor extractor = new FusedARTExtractor();
+            extractor.setDescriptor(fromPoints);
+            extractor.extract(collector.getXValues(), collector.getYValues(), collector.getSize());
+
+            assertMoments("points " + msg, expected, fromPoints);
+            assertMoments("horizontal " + msg, expected, hTable.computeArtMoments(0, 0));
+            assertMoments("vertical " + msg, expected, vTable.computeArtMoments(0, 0));
+        }
+    }
+
+    /**
+     * Compare timings, in microseconds per glyph, for typical glyph sizes at interline 20:
+     * dot, note head, flag or clef, brace.
+     */
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\ntimings");
+
+        final Random random = new Random(1);
+        final int[][] sizes = {{8, 8}, {24, 20}, {30, 80}, {40, 200}};
+        final int count = 500;
+
+        for (int loop = 0; loop < 3; loop++) {
+            for (int[] size : sizes) {
+                final RunTable[] tables = new RunTable[count];
+
+                for (int i = 0; i < count; i++) {
+                    tables[i] = new RunTableFactory(Orientation.VERTICAL).createTable(
+                            createGlyph(random, size[0], size[1]));
+                }
+
+                long start = System.nanoTime();
+
+                for (RunTable table : tables) {
+                    basicMoments(table);
+                }
+
+                final long basicNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+
+                for (RunTable table : tables) {
+                    table.computeArtMoments(0, 0);
+                }
+
+                final long fusedNanos = System.nanoTime() - start;
+
+                System.out.printf(
+                        "%3dx%-3d points + basic:%8.1f us runs + fused:%7.1f us%n",
+                        size[0],
+                        size[1],
+                        basicNanos / (1e3 * count),
+                        fusedNanos / (1e3 * count));
+            }
+        }
+    }
+
+    //---------------//
+    // assertMoments //
+    //---------------//
+    private static void assertMoments (String msg,
+                                       ARTMoments expected,
+                                       ARTMoments actual)
+    {
+        for (int p = 0; p < ARTMoments.ANGULAR; p++) {
+            for (int r = 0; r < ARTMoments.RADIAL; r++) {
+                assertEquals(
+                        msg + " p:" + p + " r:" + r,
+                        expected.getMoment(p, r),
+                        actual.getMoment(p, r),
+                        EPSILON);
+            }
+        }
+    }
+
+    //--------------//
+    // basicMoments //
+    //--------------//
+    /**
+     * Legacy way: points collected from runs, then basic extraction.
+     */
+    private static ARTMoments basicMoments (RunTable table)
+    {
+        final PointsCollector collector = new PointsCollector(null, table.getWeight());
+        table.cumulate(collector, null);
+
+        final ARTMoments moments = new BasicARTMoments();
+        final BasicARTExtractor extractor = new BasicARTExtractor();
+        extractor.setDescriptor(moments);
+        extractor.extract(collector.getXValues(), collector.getYValues(), collector.getSize());
+
+        return moments;
+    }
+
+    //-------------//
+    // createGlyph //
+    //-------------//
+    /**
+     * Binary image made of a few random blobs, with at least one foreground pixel.
+     */
+    private static ByteProcessor createGlyph (Random random,
+                                              int width,
+                                              int height)
+    {
+        final ByteProcessor image = new ByteProcessor(width, height);
+        final byte[] pixels = (byte[]) image.getPixels();
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) 255;
+        }
+
+        pixels[random.nextInt(pixels.length)] = 0;
+
+        for (int b = 1 + random.nextInt(4); b > 0; b--) {
+            final int x0 = random.nextInt(width);
+            final int y0 = random.nextInt(height);
+            final int w = 1 + random.nextInt(width);
+            final int h = 1 + random.nextInt(height);
+
+            for (int y = y0; y < Math.min(height, y0 + h); y++) {
+                for (int x = x0; x < Math.min(width, x0 + w); x++) {
+                    if (random.nextInt(10) != 0) {
+                        pixels[(y * width) + x] = 0;
+                    }
+                }
+            }
+        }
+
+        return image;
+    }
+}
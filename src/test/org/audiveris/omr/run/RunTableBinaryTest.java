@@ -0,0 +1,303 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                              R u n T a b l e B i n a r y T e s t                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+import static org.audiveris.omr.run.Orientation.VERTICAL;
+import org.audiveris.omr.util.Jaxb;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.bind.JAXBContext;
+
+/**
+ * Checks {@link RunTableBinary} round trips, and compares binary and XML forms in size and
+ * store/load times, for a dense sheet image and for a repository of glyph-sized tables.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunTableBinaryTest
+{
+
+    private static final File dir = new File("data/temp");
+
+    /**
+     * Creates a new <code>RunTableBinaryTest</code> object.
+     */
+    public RunTableBinaryTest ()
+    {
+    }
+
+    @Test
+    public void testRoundTrip ()
+    {
+        System.out.println("\n+++ roundTrip");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 200; i++) {
+            final Orientation orientation = ((i % 2) == 0) ? HORIZONTAL : VERTICAL;
+            final int width = 1 + random.nextInt((i < 100) ? 30 : 500);
+            final int height = 1 + random.nextInt((i < 100) ? 30 : 500);
+            final RunTable table = createTable(random, orientation, width, height, 0.3);
+            final RunTable copy = RunTableBinary.decode(RunTableBinary.encode(table));
+
+            assertEquals(table, copy);
+            assertEquals(table.dumpOf(), copy.dumpOf());
+        }
+
+        // Empty table and table with long runs (multi-byte varints)
+        final RunTable empty = new RunTable(VERTICAL, 5, 0);
+        assertEquals(empty, RunTableBinary.decode(RunTableBinary.encode(empty)));
+
+        final RunTable wide = new RunTable(HORIZONTAL, 100_000, 3);
+        wide.addRun(0, 1, 99_990);
+        wide.addRun(2, 20_000, 300);
+        assertEquals(wide, RunTableBinary.decode(RunTableBinary.encode(wide)));
+    }
+
+    @Test
+    public void testView ()
+    {
+        System.out.println("\n+++ view");
+
+        final RunTable table = createTable(new Random(1), VERTICAL, 300, 200, 0.3);
+        final RunTableBinary.View view = new RunTableBinary.View(
+                ByteBuffer.wrap(RunTableBinary.encode(table)));
+        assertEquals(VERTICAL, view.getOrientation());
+        assertEquals(300, view.getWidth());
+        assertEquals(200, view.getHeight());
+        assertEquals(300, view.getSize());
+
+        // Random access to sequences, in any order
+        for (int i = view.getSize() - 1; i >= 0; i--) {
+            final RunTable.RunSequence seq = table.getSequence(i);
+            assertArrayEquals((seq != null) ? seq.getRle() : null, view.getRle(i));
+        }
+
+        try {
+            new RunTableBinary.View(ByteBuffer.wrap("<run-table/>".getBytes()));
+            fail("Invalid data accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    //    @Test
+    public void testSheetTimings ()
+            throws Exception
+    {
+        System.out.println("\n+++ sheetTimings");
+
+        dir.mkdirs();
+
+        final Path xmlPath = dir.toPath().resolve("sheet-image.xml");
+        final Path binPath = dir.toPath().resolve("sheet-image.bin");
+        final JAXBContext jaxbContext = JAXBContext.newInstance(RunTable.class);
+
+        // Dense orchestral sheet at 300 DPI
+        final RunTable table = createTable(new Random(2), HORIZONTAL, 2480, 3508, 0.6);
+
+        Jaxb.marshal(table, xmlPath, jaxbContext); // Warm-up
+        RunTable.unmarshal(xmlPath);
+        RunTableBinary.store(table, binPath);
+        RunTableBinary.load(binPath);
+
+        long start = System.nanoTime();
+        Jaxb.marshal(table, xmlPath, jaxbContext);
+
+        final long xmlStore = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        final RunTable xmlTable = RunTable.unmarshal(xmlPath);
+        final long xmlLoad = System.nanoTime() - start;
+        start = System.nanoTime();
+        RunTableBinary.store(table, binPath);
+
+        final long binStore = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        final RunTable binTable = RunTableBinary.load(binPath);
+        final long binLoad = System.nanoTime() - start;
+
+        assertEquals(table, xmlTable);
+        assertEquals(table, binTable);
+
+        System.out.printf(
+                "sheet   xml: %9d bytes store:%7.1f ms load:%7.1f ms%n",
+                Files.size(xmlPath),
+                xmlStore / 1e6,
+                xmlLoad / 1e6);
+        System.out.printf(
+                "sheet   bin: %9d bytes store:%7.1f ms load:%7.1f ms%n",
+                Files.size(binPath),
+                binStore / 1e6,
+                binLoad / 1e6);
+
+        Files.deleteIfExists(xmlPath);
+        Files.deleteIfExists(binPath);
+    }
+
+    //    @Test
+    public void testGlyphTimings ()
+            throws Exception
+    {
+        System.out.println("\n+++ glyphTimings");
+
+        final Random random = new Random(3);
+        final JAXBContext jaxbContext = JAXBContext.newInstance(RunTable.class);
+        final List<RunTable> tables = new ArrayList<>();
+
+        // Large sample repository: many glyph-sized tables
+        for (int i = 0; i < 20_000; i++) {
+            tables.add(createTable(
+                    random,
+                    HORIZONTAL,
+                    5 + random.nextInt(40),
+                    5 + random.nextInt(40),
+                    0.8));
+        }
+
+        long xmlSize = 0;
+        long binSize = 0;
+        final List<byte[]> xmls = new ArrayList<>();
+        final List<byte[]> bins = new ArrayList<>();
+
+        long start = System.nanoTime();
+
+        for (RunTable table : tables) {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            Jaxb.marshal(table, os, jaxbContext);
+            xmls.add(os.toByteArray());
+            xmlSize += os.size();
+        }
+
+        final long xmlStore = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        for (RunTable table : tables) {
+            final byte[] bytes = RunTableBinary.encode(table);
+            bins.add(bytes);
+            binSize += bytes.length;
+        }
+
+        final long binStore = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        for (int i = 0; i < tables.size(); i++) {
+            final Object table = Jaxb.unmarshal(
+                    new ByteArrayInputStream(xmls.get(i)),
+                    jaxbContext);
+            assertEquals(tables.get(i), table);
+        }
+
+        final long xmlLoad = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        for (int i = 0; i < tables.size(); i++) {
+            assertEquals(tables.get(i), RunTableBinary.decode(bins.get(i)));
+        }
+
+        final long binLoad = System.nanoTime() - start;
+
+        System.out.printf(
+                "glyphs  xml: %9d bytes store:%7.1f ms load:%7.1f ms%n",
+                xmlSize,
+                xmlStore / 1e6,
+                xmlLoad / 1e6);
+        System.out.printf(
+                "glyphs  bin: %9d bytes store:%7.1f ms load:%7.1f ms%n",
+                binSize,
+                binStore / 1e6,
+                binLoad / 1e6);
+    }
+
+    //-------------//
+    // createTable //
+    //-------------//
+    /**
+     * Build a table with random runs, some sequences being left empty.
+     *
+     * @param density ratio of foreground pixels in a non-empty sequence
+     */
+    private RunTable createTable (Random random,
+                                  Orientation orientation,
+                                  int width,
+                                  int height,
+                                  double density)
+    {
+        final RunTable table = new RunTable(orientation, width, height);
+        final int length = orientation.isVertical() ? height : width;
+
+        final int[] rle = new int[length + 1];
+
+        for (int i = 0, size = table.getSize(); i < size; i++) {
+            if (random.nextInt(10) == 0) {
+                continue;
+            }
+
+            // Initial background, then foreground/background alternation
+            int pos = random.nextInt(10);
+            int count = 0;
+
+            if (pos > 0) {
+                rle[count++] = 0;
+                rle[count++] = pos;
+            }
+
+            while (pos < length) {
+                final int fore = Math.min(
+                        1 + random.nextInt((int) Math.ceil(20 * density)),
+                        length - pos);
+                rle[count++] = fore;
+                pos += fore;
+
+                if (pos < length) {
+                    final int back = Math.min(
+                            1 + random.nextInt((int) Math.ceil(20 * (1 - density))),
+                            length - pos);
+                    rle[count++] = back;
+                    pos += back;
+                }
+            }
+
+            // A trailing background is not encoded
+            if ((count > 0) && ((count % 2) == 0)) {
+                count--;
+            }
+
+            table.setSequence(i, RunTable.encode(rle, count));
+        }
+
+        return table;
+    }
+}
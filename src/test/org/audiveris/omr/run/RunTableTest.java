@@ -31,6 +31,7 @@ import org.junit.Test;
 
 import java.awt.Dimension;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.function.Predicate;
 
 /**
@@ -165,6 +166,43 @@ public class RunTableTest
         assertEquals(expResult, result.toString());
     }
 
+    /**
+     * Test of getBuffer method with a region, of class RunTable.
+     * Regions partly outside the table get background there.
+     */
+    @Test
+    public void testGetBuffer_Rectangle ()
+    {
+        System.out.println("\n+++ getBuffer(Rectangle)");
+
+        for (RunTable instance : new RunTable[]{
+            createHorizontalInstance(), createVerticalInstance()}) {
+            final ByteProcessor whole = instance.getBuffer();
+
+            for (Rectangle roi : new Rectangle[]{
+                new Rectangle(0, 0, 10, 5),
+                new Rectangle(3, 1, 4, 3),
+                new Rectangle(-2, -1, 6, 4),
+                new Rectangle(7, 3, 6, 5),
+                new Rectangle(12, 0, 3, 2)}) {
+                final ByteProcessor region = instance.getBuffer(roi);
+
+                for (int y = 0; y < roi.height; y++) {
+                    for (int x = 0; x < roi.width; x++) {
+                        final int ax = roi.x + x;
+                        final int ay = roi.y + y;
+                        final boolean inside = (ax >= 0) && (ax < dim.width) && (ay >= 0)
+                                                       && (ay < dim.height);
+                        assertEquals(
+                                roi + " at " + ax + "," + ay,
+                                inside ? whole.get(ax, ay) : 255,
+                                region.get(x, y));
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Test of getDimension method, of class RunTable.
      */
@@ -0,0 +1,251 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               R u n s C o l l e c t o r T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.image.GlobalFilter;
+import org.audiveris.omr.image.PixelFilter;
+import org.audiveris.omr.image.VerticalFilter;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks that binarization straight into a {@link RunsCollector} gives the same horizontal and
+ * vertical tables as the binary image, and compares time and heap on a sheet at 600 dpi.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunsCollectorTest
+{
+
+    /**
+     * Creates a new <code>RunsCollectorTest</code> object.
+     */
+    public RunsCollectorTest ()
+    {
+    }
+
+    /**
+     * Check identical tables, for adaptive and global filters, on random gray images.
+     * Some images are higher than several bands, some are smaller than the adaptive window.
+     */
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\n+++ identical");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 100; i++) {
+            final int w = 1 + random.nextInt(400);
+            final int h = 1 + random.nextInt(500);
+            final ByteProcessor source = createGraySheet(random, w, h);
+
+            checkIdentical(new VerticalFilter(source, 0.7, 0.9));
+            checkIdentical(new GlobalFilter(source, 140));
+            checkIdentical(new ImageOnlyFilter(new GlobalFilter(source, 140)));
+        }
+    }
+
+    /**
+     * Compare time and retained heap, between the binary image path and the fused path,
+     * on an A4 gray sheet at 600 dpi.
+     */
+    //    @Test
+    public void testSheet600 ()
+    {
+        System.out.println("\n+++ sheet600");
+
+        final ByteProcessor source = createGraySheet(new Random(1), 4960, 7016);
+
+        for (int loop = 0; loop < 3; loop++) {
+            final long base = usedHeap();
+
+            // Fused path, retaining just the table
+            long start = System.nanoTime();
+            final RunsCollector collector = new RunsCollector(
+                    source.getWidth(),
+                    source.getHeight(),
+                    false,
+                    true);
+            new VerticalFilter(source, 0.7, 0.9).filterRuns(collector);
+
+            final RunTable table = collector.getVerticalTable();
+            final long fusedNanos = System.nanoTime() - start;
+            final long fusedHeap = usedHeap() - base;
+
+            // Image path, retaining binary image and table, on top of fused table
+            start = System.nanoTime();
+
+            final ByteProcessor binary = new VerticalFilter(source, 0.7, 0.9).filteredImage();
+            final RunTable expected = new RunTableFactory(Orientation.VERTICAL).createTable(binary);
+            final long imageNanos = System.nanoTime() - start;
+            final long imageHeap = usedHeap() - base - fusedHeap;
+            assertEquals(expected, table);
+
+            System.out.printf(
+                    "image + runs:%6d ms %4d MB  fused:%6d ms %4d MB%n",
+                    imageNanos / 1_000_000,
+                    imageHeap / (1024 * 1024),
+                    fusedNanos / 1_000_000,
+                    fusedHeap / (1024 * 1024));
+        }
+    }
+
+    //----------------//
+    // checkIdentical //
+    //----------------//
+    private static void checkIdentical (PixelFilter filter)
+    {
+        final ByteProcessor binary = filter.filteredImage();
+        final RunsCollector collector = new RunsCollector(
+                binary.getWidth(),
+                binary.getHeight(),
+                true,
+                true);
+        filter.filterRuns(collector);
+
+        final String msg = filter.getClass().getSimpleName() + " " + binary.getWidth() + "x"
+                                   + binary.getHeight();
+        assertEquals(
+                msg,
+                new RunTableFactory(Orientation.HORIZONTAL).createTable(binary),
+                collector.getHorizontalTable());
+        assertEquals(
+                msg,
+                new RunTableFactory(Orientation.VERTICAL).createTable(binary),
+                collector.getVerticalTable());
+    }
+
+    //-----------------//
+    // createGraySheet //
+    //-----------------//
+    /**
+     * Gray image with an uneven background, random dark strokes and noise.
+     */
+    private static ByteProcessor createGraySheet (Random random,
+                                                  int width,
+                                                  int height)
+    {
+        final ByteProcessor image = new ByteProcessor(width, height);
+        final byte[] pixels = (byte[]) image.getPixels();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int back = 180 + ((40 * (x + y)) / (width + height));
+                pixels[(y * width) + x] = (byte) (back + random.nextInt(30));
+            }
+        }
+
+        for (int s = (width * height) / 500; s >= 0; s--) {
+            final int x0 = random.nextInt(width);
+            final int y0 = random.nextInt(height);
+            final boolean vertical = random.nextBoolean();
+            final int length = 1 + random.nextInt(40);
+            final int thickness = 1 + random.nextInt(4);
+            final int w = vertical ? thickness : length;
+            final int h = vertical ? length : thickness;
+
+            for (int y = y0; y < Math.min(height, y0 + h); y++) {
+                for (int x = x0; x < Math.min(width, x0 + w); x++) {
+                    pixels[(y * width) + x] = (byte) random.nextInt(90);
+                }
+            }
+        }
+
+        return image;
+    }
+
+    //----------//
+    // usedHeap //
+    //----------//
+    private static long usedHeap ()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-----------------//
+    // ImageOnlyFilter //
+    //-----------------//
+    /**
+     * A filter which relies on the default {@link PixelFilter#filterRuns(RunsCollector)},
+     * that is on its filtered image.
+     */
+    private static class ImageOnlyFilter
+            implements PixelFilter
+    {
+
+        private final PixelFilter filter;
+
+        ImageOnlyFilter (PixelFilter filter)
+        {
+            this.filter = filter;
+        }
+
+        @Override
+        public ByteProcessor filteredImage ()
+        {
+            return filter.filteredImage();
+        }
+
+        @Override
+        public int get (int x,
+                        int y)
+        {
+            return filter.get(x, y);
+        }
+
+        @Override
+        public Context getContext (int x,
+                                   int y)
+        {
+            return filter.getContext(x, y);
+        }
+
+        @Override
+        public int getHeight ()
+        {
+            return filter.getHeight();
+        }
+
+        @Override
+        public int getWidth ()
+        {
+            return filter.getWidth();
+        }
+
+        @Override
+        public boolean isFore (int x,
+                               int y)
+        {
+            return filter.isFore(x, y);
+        }
+    }
+}
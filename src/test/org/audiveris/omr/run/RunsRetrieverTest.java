@@ -0,0 +1,213 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               R u n s R e t r i e v e r T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import ij.process.ByteProcessor;
+
+import static org.audiveris.omr.run.Orientation.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that chunked and legacy modes of {@link RunsRetriever} produce identical tables,
+ * and compares their timings on synthetic sheets at 300 and 400 dpi.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunsRetrieverTest
+{
+
+    /** Number of timed iterations per mode. */
+    private static final int ITERATIONS = 5;
+
+    private final boolean initialMode = RunsRetriever.isChunkedMode();
+
+    /**
+     * Creates a new <code>RunsRetrieverTest</code> object.
+     */
+    public RunsRetrieverTest ()
+    {
+    }
+
+    @After
+    public void tearDown ()
+    {
+        RunsRetriever.setChunkedMode(initialMode);
+    }
+
+    /**
+     * Check identical results, with and without run filter, on a small random image.
+     * <p>
+     * The location-based filter checks that both modes report the same run coordinates,
+     * including for runs that end on the ROI border.
+     */
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\n+++ identical");
+
+        ByteProcessor source = createSheet(157, 93, 0);
+        RunTableFactory.Filter filter = new RunTableFactory.LengthFilter(3);
+        RunTableFactory.Filter locFilter = (int x, int y, int length) -> ((x + y) % 3) != 0;
+        Rectangle roi = new Rectangle(7, 5, 120, 80);
+
+        for (Orientation orientation : Orientation.values()) {
+            checkIdentical(new RunTableFactory(orientation), source, null);
+            checkIdentical(new RunTableFactory(orientation, filter), source, null);
+            checkIdentical(new RunTableFactory(orientation), source, roi);
+            checkIdentical(new RunTableFactory(orientation, locFilter), source, null);
+            checkIdentical(new RunTableFactory(orientation, locFilter), source, roi);
+        }
+    }
+
+    /**
+     * Compare timings of both modes on A4 sheets at 300 and 400 dpi.
+     */
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\n+++ timings");
+
+        timeSheet("300 dpi", createSheet(2480, 3508, 1));
+        timeSheet("400 dpi", createSheet(3307, 4677, 2));
+    }
+
+    //----------------//
+    // checkIdentical //
+    //----------------//
+    private void checkIdentical (RunTableFactory factory,
+                                 ByteProcessor source,
+                                 Rectangle roi)
+    {
+        if (roi == null) {
+            roi = new Rectangle(0, 0, source.getWidth(), source.getHeight());
+        }
+
+        RunsRetriever.setChunkedMode(false);
+
+        RunTable legacy = factory.createTable(source, roi);
+
+        RunsRetriever.setChunkedMode(true);
+
+        RunTable chunked = factory.createTable(source, roi);
+
+        assertEquals(legacy, chunked);
+    }
+
+    //-------------//
+    // createSheet //
+    //-------------//
+    /**
+     * Build a binary sheet-like image, with staff lines, stems and random blobs.
+     */
+    private ByteProcessor createSheet (int width,
+                                       int height,
+                                       long seed)
+    {
+        final Random random = new Random(seed);
+        final ByteProcessor buf = new ByteProcessor(width, height);
+        Arrays.fill((byte[]) buf.getPixels(), (byte) 255);
+
+        final int interline = Math.max(5, width / 120);
+
+        for (int top = 2 * interline; top < (height - (6 * interline)); top += 12 * interline) {
+            for (int line = 0; line < 5; line++) {
+                int y = top + (line * interline);
+                fill(buf, interline, y, width - (2 * interline), 2);
+            }
+        }
+
+        for (int i = 0, count = (width * height) / 2_000; i < count; i++) {
+            int x = random.nextInt(width - 20);
+            int y = random.nextInt(height - 40);
+
+            if (random.nextBoolean()) {
+                fill(buf, x, y, 2, 10 + random.nextInt(30)); // Stem
+            } else {
+                fill(buf, x, y, 2 + random.nextInt(15), 2 + random.nextInt(10));
+            }
+        }
+
+        return buf;
+    }
+
+    //------//
+    // fill //
+    //------//
+    private void fill (ByteProcessor buf,
+                       int x,
+                       int y,
+                       int width,
+                       int height)
+    {
+        for (int iy = y; iy < (y + height); iy++) {
+            for (int ix = x; ix < (x + width); ix++) {
+                buf.set(ix, iy, 0);
+            }
+        }
+    }
+
+    //-----------//
+    // timeSheet //
+    //-----------//
+    private void timeSheet (String label,
+                            ByteProcessor source)
+    {
+        for (Orientation orientation : new Orientation[]{HORIZONTAL, VERTICAL}) {
+            final RunTableFactory factory = new RunTableFactory(orientation);
+            final long legacy = timeMode(factory, source, false);
+            final long chunked = timeMode(factory, source, true);
+            System.out.printf(
+                    "%s %s %dx%d legacy: %d ms, chunked: %d ms (per sheet)%n",
+                    label,
+                    orientation,
+                    source.getWidth(),
+                    source.getHeight(),
+                    legacy,
+                    chunked);
+        }
+    }
+
+    //----------//
+    // timeMode //
+    //----------//
+    private long timeMode (RunTableFactory factory,
+                           ByteProcessor source,
+                           boolean chunked)
+    {
+        RunsRetriever.setChunkedMode(chunked);
+        factory.createTable(source); // Warm-up
+
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            factory.createTable(source);
+        }
+
+        return (System.nanoTime() - start) / (ITERATIONS * 1_000_000L);
+    }
+}
@@ -0,0 +1,281 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    S k e l e t o n T e s t                                     //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet.curve;
+
+import ij.process.ByteProcessor;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the band-limited stripe skeleton is identical to the whole page skeleton
+ * within the areas of interest, and compares their costs on a synthetic sheet.
+ *
+ * @author Hervé Bitteur
+ */
+public class SkeletonTest
+{
+
+    /** Typical interline. */
+    private static final int INTERLINE = 20;
+
+    /** Halo, as 3 interlines. */
+    private static final int HALO = 3 * INTERLINE;
+
+    /**
+     * Creates a new <code>SkeletonTest</code> object.
+     */
+    public SkeletonTest ()
+    {
+    }
+
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\n+++ identical");
+
+        final List<Rectangle> staves = new ArrayList<>();
+        final ByteProcessor source = createSheet(new Random(0), 1200, 1600, staves);
+        final ByteProcessor whole = (ByteProcessor) source.duplicate();
+        whole.skeletonize();
+
+        // Whole image as a single area, with small stripes
+        final Rectangle all = new Rectangle(0, 0, source.getWidth(), source.getHeight());
+        final ByteProcessor striped = Skeleton.skeletonize(source, Arrays.asList(all), HALO, 50);
+        assertArrayEquals((byte[]) whole.getPixels(), (byte[]) striped.getPixels());
+
+        // Staff areas only
+        final List<Rectangle> areas = curveAreas(staves, source);
+        final ByteProcessor limited = Skeleton.skeletonize(source, areas, HALO, 50);
+
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                final int expected = contains(areas, x, y) ? whole.get(x, y) : 255;
+                assertEquals("at " + x + "," + y, expected, limited.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testThickBlob ()
+    {
+        System.out.println("\n+++ thickBlob");
+
+        final List<Rectangle> staves = new ArrayList<>();
+        final ByteProcessor source = createSheet(new Random(2), 1200, 1600, staves);
+
+        // A black disc, much thicker than twice the halo, across several stripes
+        final int radius = 5 * INTERLINE;
+        final int cx = 600;
+        final int cy = staves.get(1).y;
+
+        for (int y = cy - radius; y <= (cy + radius); y++) {
+            for (int x = cx - radius; x <= (cx + radius); x++) {
+                if ((((x - cx) * (x - cx)) + ((y - cy) * (y - cy))) <= (radius * radius)) {
+                    source.set(x, y, 0);
+                }
+            }
+        }
+
+        final Rectangle all = new Rectangle(0, 0, source.getWidth(), source.getHeight());
+        assertTrue(Skeleton.getMaxThickness(source, all) > (2 * HALO));
+
+        final ByteProcessor whole = (ByteProcessor) source.duplicate();
+        whole.skeletonize();
+
+        final ByteProcessor striped = Skeleton.skeletonize(source, Arrays.asList(all), HALO, 50);
+        assertArrayEquals((byte[]) whole.getPixels(), (byte[]) striped.getPixels());
+    }
+
+    @Test
+    public void testMaxThickness ()
+    {
+        System.out.println("\n+++ maxThickness");
+
+        final ByteProcessor source = new ByteProcessor(300, 200);
+        source.setValue(255);
+        source.fill();
+
+        final Rectangle all = new Rectangle(0, 0, 300, 200);
+        assertEquals(0, Skeleton.getMaxThickness(source, all));
+
+        // Thin crossing lines
+        source.setValue(0);
+        source.setRoi(10, 0, 3, 200);
+        source.fill();
+        source.setRoi(0, 50, 300, 4);
+        source.fill();
+        assertEquals(4, Skeleton.getMaxThickness(source, all));
+
+        // Thick block, partly out of region
+        source.setRoi(100, 100, 120, 90);
+        source.fill();
+        assertEquals(90, Skeleton.getMaxThickness(source, all));
+        assertEquals(50, Skeleton.getMaxThickness(source, new Rectangle(0, 0, 300, 150)));
+    }
+
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\n+++ timings");
+
+        // A4 page at 300 DPI
+        final List<Rectangle> staves = new ArrayList<>();
+        final ByteProcessor source = createSheet(new Random(1), 2480, 3508, staves);
+        final List<Rectangle> areas = curveAreas(staves, source);
+
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            final ByteProcessor whole = (ByteProcessor) source.duplicate();
+            whole.skeletonize();
+
+            final long wholeNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Skeleton.skeletonize(source, areas, HALO, 256);
+
+            final long stripeNanos = System.nanoTime() - start;
+
+            System.out.printf(
+                    "staves:%3d whole page:%8.1f ms staff stripes:%8.1f ms%n",
+                    staves.size(),
+                    wholeNanos / 1e6,
+                    stripeNanos / 1e6);
+        }
+    }
+
+    //----------//
+    // contains //
+    //----------//
+    private static boolean contains (List<Rectangle> areas,
+                                     int x,
+                                     int y)
+    {
+        for (Rectangle area : areas) {
+            if (area.contains(x, y)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //------------//
+    // curveAreas //
+    //------------//
+    /**
+     * Mimic Skeleton.getCurveAreas: staves enlarged by 1 interline horizontally and
+     * 4 interlines vertically (less than the default, to leave some regions aside).
+     */
+    private static List<Rectangle> curveAreas (List<Rectangle> staves,
+                                               ByteProcessor source)
+    {
+        final List<Rectangle> areas = new ArrayList<>();
+
+        for (Rectangle staff : staves) {
+            final Rectangle area = new Rectangle(staff);
+            area.grow(INTERLINE, 4 * INTERLINE);
+            areas.add(area);
+        }
+
+        return areas;
+    }
+
+    //-------------//
+    // createSheet //
+    //-------------//
+    /**
+     * Build a binary sheet-like image, with staves, heads, stems, beams and slurs.
+     */
+    private static ByteProcessor createSheet (Random random,
+                                              int width,
+                                              int height,
+                                              List<Rectangle> staves)
+    {
+        final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+
+        final int left = 100;
+        final int right = width - 100;
+
+        for (int top = 200; (top + (4 * INTERLINE)) < (height - 200); top += 12 * INTERLINE) {
+            staves.add(new Rectangle(left, top, right - left, 4 * INTERLINE));
+
+            // Staff lines
+            for (int i = 0; i < 5; i++) {
+                g.fillRect(left, top + (i * INTERLINE), right - left, 3);
+            }
+
+            // Heads with stems, grouped by beams
+            for (int x = left + 80; x < (right - 200); x += 160) {
+                final int y0 = top + (INTERLINE * random.nextInt(5));
+
+                for (int k = 0; k < 3; k++) {
+                    final int hx = x + (k * 40);
+                    final int hy = y0 + (INTERLINE * (random.nextInt(3) - 1));
+                    g.fill(new Ellipse2D.Double(hx, hy - 8, 24, 17));
+                    g.fillRect(hx + 21, hy - (3 * INTERLINE), 3, 3 * INTERLINE);
+                }
+
+                final Path2D beam = new Path2D.Double();
+                beam.moveTo(x + 21, y0 - (3 * INTERLINE));
+                beam.lineTo(x + 104, y0 - (3 * INTERLINE) + 6);
+                beam.lineTo(x + 104, y0 - (3 * INTERLINE) + 16);
+                beam.lineTo(x + 21, y0 - (3 * INTERLINE) + 10);
+                beam.closePath();
+                g.fill(beam);
+
+                // Slur below
+                g.setStroke(new BasicStroke(2 + random.nextInt(3)));
+                g.draw(new CubicCurve2D.Double(
+                        x, y0 + 30, x + 30, y0 + 60, x + 90, y0 + 60, x + 120, y0 + 30));
+            }
+
+            // Bar lines
+            for (int x = left; x <= right; x += (right - left) / 4) {
+                g.fillRect(x, top, 4, 4 * INTERLINE);
+            }
+        }
+
+        g.dispose();
+
+        final ByteProcessor buffer = new ByteProcessor(img);
+        buffer.threshold(127);
+
+        return buffer;
+    }
+}
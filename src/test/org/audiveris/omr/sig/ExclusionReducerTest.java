@@ -0,0 +1,223 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                            E x c l u s i o n R e d u c e r T e s t                             //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sig;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.sheet.Book;
+import org.audiveris.omr.sheet.Sheet;
+import org.audiveris.omr.sheet.SheetStub;
+import org.audiveris.omr.sheet.SystemInfo;
+import org.audiveris.omr.sig.inter.AbstractInter;
+import org.audiveris.omr.sig.inter.Inter;
+import org.audiveris.omr.sig.relation.Exclusion.ExclusionCause;
+import org.audiveris.omr.sig.relation.HeadHeadRelation;
+import org.audiveris.omr.sig.relation.Relation;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that {@link ExclusionReducer} removes exactly the same inters, in the same order,
+ * as the former scan of all exclusions, when both are run on identical real SIGraph instances.
+ * <p>
+ * Each scenario mixes overlapping exclusions (an inter involved in several exclusions),
+ * chained exclusions (a-b, b-c, c-d, ...) and supports which modify contextual grades.
+ * Intrinsic grades are quantized, so that ties in contextual grade are frequent.
+ *
+ * @author Hervé Bitteur
+ */
+public class ExclusionReducerTest
+{
+
+    private static final int SCENARIOS = 50;
+
+    private static final int INTERS = 30;
+
+    /**
+     * Creates a new <code>ExclusionReducerTest</code> object.
+     */
+    public ExclusionReducerTest ()
+    {
+    }
+
+    @Test
+    public void testSameRemovals ()
+    {
+        for (int seed = 0; seed < SCENARIOS; seed++) {
+            final Scenario scenario = new Scenario(seed);
+
+            final SIGraph heapSig = scenario.build();
+            final Set<Inter> heapRemoved = new ExclusionReducer(
+                    heapSig,
+                    heapSig.exclusions()).reduce();
+
+            final SIGraph scanSig = scenario.build();
+            final Set<Inter> scanRemoved = scanSig.scanExclusions(scanSig.exclusions());
+
+            assertFalse("No removal for seed " + seed, scanRemoved.isEmpty());
+            assertEquals("Removals for seed " + seed, ids(scanRemoved), ids(heapRemoved));
+            assertEquals(
+                    "Remaining exclusions for seed " + seed,
+                    scanSig.exclusions().size(),
+                    heapSig.exclusions().size());
+            assertEquals(
+                    "Remaining inters for seed " + seed,
+                    ids(scanSig.vertexSet()),
+                    ids(heapSig.vertexSet()));
+        }
+    }
+
+    //-----//
+    // ids //
+    //-----//
+    private static List<Integer> ids (Set<Inter> inters)
+    {
+        final List<Integer> ids = new ArrayList<>();
+
+        for (Inter inter : inters) {
+            ids.add(inter.getId());
+        }
+
+        return ids;
+    }
+
+    //-----------//
+    // createSig //
+    //-----------//
+    private static SIGraph createSig ()
+    {
+        final Book book = new Book(Paths.get("exclusion-reducer-test.png"));
+        final SheetStub stub = new SheetStub(book, 1);
+        final Sheet sheet = new Sheet(stub, (RunTable) null);
+        final SystemInfo system = new SystemInfo(1, sheet, new ArrayList<>());
+
+        return system.getSig();
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //----------//
+    // Scenario //
+    //----------//
+    /**
+     * Random but reproducible description of inters, supports and exclusions.
+     */
+    private static class Scenario
+    {
+
+        final double[] grades = new double[INTERS];
+
+        final List<int[]> supports = new ArrayList<>();
+
+        final List<int[]> exclusions = new ArrayList<>();
+
+        Scenario (long seed)
+        {
+            final Random random = new Random(seed);
+
+            for (int i = 0; i < INTERS; i++) {
+                grades[i] = 0.1 * (1 + random.nextInt(9));
+            }
+
+            // Chains of exclusions
+            for (int i = 0; i < INTERS - 1; i++) {
+                if (random.nextInt(3) != 0) {
+                    exclusions.add(new int[]{i, i + 1});
+                }
+            }
+
+            // Overlapping exclusions
+            for (int k = 0; k < INTERS; k++) {
+                final int i = random.nextInt(INTERS);
+                final int j = random.nextInt(INTERS);
+
+                if (i != j) {
+                    exclusions.add(new int[]{i, j});
+                }
+            }
+
+            // Supports, inserted before exclusions so that supported pairs get no exclusion
+            for (int k = 0; k < INTERS / 2; k++) {
+                final int i = random.nextInt(INTERS);
+                final int j = random.nextInt(INTERS);
+
+                if (i != j) {
+                    supports.add(new int[]{i, j});
+                }
+            }
+        }
+
+        SIGraph build ()
+        {
+            final SIGraph sig = createSig();
+            final List<Inter> inters = new ArrayList<>();
+
+            for (double grade : grades) {
+                final Inter inter = new TestInter(grade);
+                sig.addVertex(inter);
+                inters.add(inter);
+            }
+
+            for (int[] pair : supports) {
+                final Inter source = inters.get(pair[0]);
+                final Inter target = inters.get(pair[1]);
+
+                if (sig.getEdge(source, target) == null && sig.getEdge(target, source) == null) {
+                    sig.addEdge(source, target, new HeadHeadRelation());
+                }
+            }
+
+            for (int[] pair : exclusions) {
+                sig.insertExclusion(
+                        inters.get(pair[0]),
+                        inters.get(pair[1]),
+                        ExclusionCause.OVERLAP);
+            }
+
+            sig.contextualize();
+
+            return sig;
+        }
+    }
+
+    //-----------//
+    // TestInter //
+    //-----------//
+    /**
+     * Minimal concrete inter, with no glyph and no bounds.
+     */
+    private static class TestInter
+            extends AbstractInter
+    {
+
+        TestInter (double grade)
+        {
+            super(null, null, Shape.CLUTTER, grade);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                            T e s s e r a c t E n g i n e s T e s t                             //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.text.tesseract;
+
+import org.audiveris.omr.text.tesseract.TesseractEngines.Engine;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Class <code>TesseractEnginesTest</code> checks the pooling policy of {@link TesseractEngines},
+ * using stub engines rather than real Tesseract engines.
+ *
+ * @author Hervé Bitteur
+ */
+public class TesseractEnginesTest
+{
+
+    /** Engines created by the stub factory. */
+    private final List<StubEngine> created = new ArrayList<>();
+
+    /**
+     * Creates a new TesseractEnginesTest object.
+     */
+    public TesseractEnginesTest ()
+    {
+    }
+
+    /**
+     * A released engine is leased again for the same language, not for another one.
+     */
+    @Test
+    public void testReuse ()
+    {
+        final TesseractEngines engines = new TesseractEngines(this::create, 4);
+
+        final Engine eng = engines.lease("eng");
+        engines.release(eng);
+        assertSame(eng, engines.lease("eng"));
+        assertTrue(((StubEngine) eng).cleared);
+
+        final Engine deu = engines.lease("deu");
+        assertNotSame(eng, deu);
+        assertEquals(2, created.size());
+    }
+
+    /**
+     * When the cap is reached, the least recently used idle engine is ended to make room.
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed ()
+    {
+        final TesseractEngines engines = new TesseractEngines(this::create, 2);
+
+        final Engine eng = engines.lease("eng");
+        final Engine deu = engines.lease("deu");
+        engines.release(eng);
+        engines.release(deu);
+
+        final Engine fra = engines.lease("fra");
+        assertEquals("fra", fra.lang);
+        assertTrue(((StubEngine) eng).ended);
+        assertFalse(((StubEngine) deu).ended);
+        assertSame(deu, engines.lease("deu"));
+    }
+
+    /**
+     * A failed initialization does not count as an engine alive.
+     */
+    @Test
+    public void testFailedInit ()
+    {
+        final TesseractEngines engines = new TesseractEngines(this::create, 1);
+
+        assertNull(engines.lease("bad"));
+        assertNotNull(engines.lease("eng"));
+    }
+
+    /**
+     * When the cap is reached with no idle engine, a lease from a fork-join worker waits for a
+     * release without starving the pool.
+     */
+    @Test
+    public void testManagedWait ()
+            throws Exception
+    {
+        final TesseractEngines engines = new TesseractEngines(this::create, 1);
+        final ForkJoinPool pool = new ForkJoinPool(1);
+
+        try {
+            final Engine eng = engines.lease("eng");
+            final Future<Engine> waiting = pool.submit(() -> engines.lease("deu"));
+
+            try {
+                waiting.get(200, TimeUnit.MILLISECONDS);
+                fail("Lease should wait while the cap is reached");
+            } catch (TimeoutException expected) {
+            }
+
+            // The only pool worker is blocked, yet the pool can still run another task
+            assertEquals("ok", pool.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+
+            engines.release(eng);
+
+            final Engine deu = waiting.get(5, TimeUnit.SECONDS);
+            assertEquals("deu", deu.lang);
+            assertTrue(((StubEngine) eng).ended);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //--------//
+    // create //
+    //--------//
+    private synchronized Engine create (String lang)
+    {
+        if (lang.equals("bad")) {
+            return null;
+        }
+
+        final StubEngine engine = new StubEngine(lang);
+        created.add(engine);
+
+        return engine;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //------------//
+    // StubEngine //
+    //------------//
+    private static class StubEngine
+            extends Engine
+    {
+
+        volatile boolean cleared;
+
+        volatile boolean ended;
+
+        StubEngine (String lang)
+        {
+            super(lang, null);
+        }
+
+        @Override
+        void clear ()
+        {
+            cleared = true;
+        }
+
+        @Override
+        void end ()
+        {
+            ended = true;
+        }
+    }
+}
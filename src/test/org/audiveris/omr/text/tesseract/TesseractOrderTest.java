@@ -0,0 +1,158 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                              T e s s e r a c t O r d e r T e s t                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.text.tesseract;
+
+import static org.bytedeco.javacpp.lept.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Class <code>TesseractOrderTest</code> checks that the PIX built directly from a gray raster
+ * is identical to the PIX decoded from a TIFF buffer, so that OCR output is left unchanged,
+ * and compares the image handoff costs of both ways.
+ *
+ * @author Hervé Bitteur
+ */
+public class TesseractOrderTest
+{
+
+    /**
+     * Creates a new TesseractOrderTest object.
+     */
+    public TesseractOrderTest ()
+    {
+    }
+
+    /**
+     * Check identical PIX images on random gray images, with all row paddings.
+     */
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\nidentical");
+
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 100; i++) {
+            final int w = 1 + random.nextInt(300);
+            final int h = 1 + random.nextInt(100);
+            final BufferedImage image = createTextImage(random, w, h);
+            final PIX expected = TesseractOrder.pixFromTiff(image);
+            final PIX pix = TesseractOrder.pixFromGray(image);
+            assertNotNull(expected);
+            assertNotNull(pix);
+
+            final String msg = w + "x" + h;
+            final int[] same = new int[1];
+            assertEquals(msg, 0, pixEqual(expected, pix, same));
+            assertEquals(msg, 1, same[0]);
+            assertEquals(msg, pixGetXRes(expected), pixGetXRes(pix));
+            assertEquals(msg, pixGetYRes(expected), pixGetYRes(pix));
+
+            pixDestroy(expected);
+            pixDestroy(pix);
+        }
+    }
+
+    /**
+     * Compare image handoff costs, per text region (BlockScanner) and per sheet (SheetScanner)
+     * for an A4 sheet at 300 dpi.
+     */
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\ntimings");
+
+        final Random random = new Random(1);
+        final BufferedImage region = createTextImage(random, 600, 90);
+        final BufferedImage sheet = createTextImage(random, 2480, 3508);
+
+        for (int loop = 0; loop < 3; loop++) {
+            System.out.printf(
+                    "region tiff:%8.3f ms direct:%8.3f ms%n",
+                    handoffMillis(region, true, 200),
+                    handoffMillis(region, false, 200));
+            System.out.printf(
+                    "sheet  tiff:%8.3f ms direct:%8.3f ms%n",
+                    handoffMillis(sheet, true, 3),
+                    handoffMillis(sheet, false, 3));
+        }
+    }
+
+    //-----------------//
+    // createTextImage //
+    //-----------------//
+    /**
+     * Gray image with some text, as provided to OCR.
+     */
+    private static BufferedImage createTextImage (Random random,
+                                                  int width,
+                                                  int height)
+    {
+        final BufferedImage image = new BufferedImage(
+                width,
+                height,
+                BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+        g.setFont(new Font(Font.SERIF, Font.PLAIN, 40));
+
+        for (int y = 40; y < (height + 40); y += 60) {
+            g.drawString("Allegro moderato " + random.nextInt(1000), random.nextInt(20), y);
+        }
+
+        g.dispose();
+
+        return image;
+    }
+
+    //---------------//
+    // handoffMillis //
+    //---------------//
+    /**
+     * Mean time, in milliseconds, to build the PIX of an image.
+     */
+    private static double handoffMillis (BufferedImage image,
+                                         boolean tiff,
+                                         int count)
+    {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+            final PIX pix = tiff ? TesseractOrder.pixFromTiff(image)
+                    : TesseractOrder.pixFromGray(image);
+            pixDestroy(pix);
+        }
+
+        return (System.nanoTime() - start) / (1e6 * count);
+    }
+}
@@ -0,0 +1,317 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  B a s i c I n d e x T e s t                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks {@link BasicIndex} lookups against plain scans, and compares the {@link DenseIdMap}
+ * storage and grid-driven lookups with the former skip-list storage and scans, for sheets of
+ * up to 100,000 glyph-like entities.
+ *
+ * @author Hervé Bitteur
+ */
+public class BasicIndexTest
+{
+
+    /** Typical sheet: 2500 x 3500 pixels. */
+    private static final Rectangle SHEET = new Rectangle(0, 0, 2500, 3500);
+
+    /**
+     * Creates a new <code>BasicIndexTest</code> object.
+     */
+    public BasicIndexTest ()
+    {
+    }
+
+    @Test
+    public void testDenseIdMap ()
+    {
+        final DenseIdMap<String> map = new DenseIdMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(5));
+        assertNull(map.put(5, "e5"));
+        assertNull(map.put(1_000, "e1000"));
+        assertNull(map.put(2, "e2"));
+        assertEquals("e5", map.put(5, "f5"));
+        assertEquals(3, map.size());
+        assertEquals("[e2, f5, e1000]", map.values().toString());
+
+        for (Iterator<String> it = map.values().iterator(); it.hasNext();) {
+            if (it.next().equals("f5")) {
+                it.remove();
+            }
+        }
+
+        assertNull(map.get(5));
+        assertEquals("e1000", map.remove(1_000));
+        assertNull(map.remove(1_000));
+        assertEquals(1, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.values().iterator().hasNext());
+    }
+
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\n+++ identical");
+
+        final Random random = new Random(0);
+        final BasicIndex<Item> index = createIndex(true);
+        final List<Item> items = createItems(random, 5_000);
+
+        for (Item item : items) {
+            index.register(item);
+        }
+
+        checkLookups(random, index, items);
+
+        // Removals and insertions after grid creation
+        for (Item item : new ArrayList<>(items.subList(0, 1_000))) {
+            items.remove(item);
+            index.remove(item);
+        }
+
+        for (Item item : createItems(random, 1_000)) {
+            items.add(item);
+            index.register(item);
+        }
+
+        checkLookups(random, index, items);
+    }
+
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\n+++ timings");
+
+        final Random random = new Random(1);
+
+        for (int count : new int[]{10_000, 50_000, 100_000}) {
+            final List<Item> items = createItems(random, count);
+
+            // Memory
+            final long before = usedMemory();
+            final ConcurrentSkipListMap<Integer, Item> skipMap = new ConcurrentSkipListMap<>();
+
+            for (int i = 0; i < count; i++) {
+                skipMap.put(i + 1, items.get(i));
+            }
+
+            final long skipBytes = usedMemory() - before;
+            final DenseIdMap<Item> denseMap = new DenseIdMap<>();
+
+            for (int i = 0; i < count; i++) {
+                denseMap.put(i + 1, items.get(i));
+            }
+
+            final long denseBytes = usedMemory() - before - skipBytes;
+
+            // Lookups by ID
+            final int[] ids = new int[1_000_000];
+
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = 1 + random.nextInt(count);
+            }
+
+            long sum = 0;
+            long start = System.nanoTime();
+
+            for (int id : ids) {
+                sum += skipMap.get(id).box.x;
+            }
+
+            final long skipGet = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int id : ids) {
+                sum -= denseMap.get(id).box.x;
+            }
+
+            final long denseGet = System.nanoTime() - start;
+            assertEquals(0, sum);
+
+            // Rectangle lookups
+            final BasicIndex<Item> index = createIndex(true);
+
+            for (Item item : items) {
+                index.register(item);
+            }
+
+            final List<Rectangle> queries = new ArrayList<>();
+
+            for (int i = 0; i < 500; i++) {
+                queries.add(randomBox(random, 200));
+            }
+
+            long found = 0;
+            start = System.nanoTime();
+
+            for (Rectangle query : queries) {
+                found += Entities.intersectedEntities(skipMap.values().iterator(), query).size();
+            }
+
+            final long scanNanos = System.nanoTime() - start;
+            index.getIntersectedEntities(SHEET); // Grid creation
+            start = System.nanoTime();
+
+            for (Rectangle query : queries) {
+                found -= index.getIntersectedEntities(query).size();
+            }
+
+            final long gridNanos = System.nanoTime() - start;
+            assertEquals(0, found);
+
+            System.out.printf(
+                    "entities:%7d memory skip:%6d KB dense:%6d KB"
+                            + " get skip:%5.1f ns dense:%5.1f ns"
+                            + " query scan:%8.2f us grid:%8.2f us%n",
+                    count,
+                    skipBytes / 1024,
+                    denseBytes / 1024,
+                    (double) skipGet / ids.length,
+                    (double) denseGet / ids.length,
+                    scanNanos / (1000.0 * queries.size()),
+                    gridNanos / (1000.0 * queries.size()));
+        }
+    }
+
+    //--------------//
+    // checkLookups //
+    //--------------//
+    private void checkLookups (Random random,
+                               BasicIndex<Item> index,
+                               List<Item> items)
+    {
+        final BasicIndex<Item> plain = createIndex(false);
+
+        for (Item item : items) {
+            plain.insert(item);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            final Rectangle query = randomBox(random, 400);
+            assertEquals(plain.getIntersectedEntities(query), index.getIntersectedEntities(query));
+            assertEquals(plain.getContainedEntities(query), index.getContainedEntities(query));
+
+            final Point point = new Point(query.x, query.y);
+            assertEquals(plain.getContainingEntities(point), index.getContainingEntities(point));
+        }
+    }
+
+    //-------------//
+    // createIndex //
+    //-------------//
+    private BasicIndex<Item> createIndex (boolean spatial)
+    {
+        return new BasicIndex<Item>(new AtomicInteger(0))
+        {
+            @Override
+            protected boolean useSpatialGrid ()
+            {
+                return spatial;
+            }
+        };
+    }
+
+    //-------------//
+    // createItems //
+    //-------------//
+    private List<Item> createItems (Random random,
+                                    int count)
+    {
+        final List<Item> items = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            // Mostly small glyphs, a few long ones (stems, beams, lines)
+            final int maxSide = ((i % 50) == 0) ? 400 : 30;
+            items.add(new Item(randomBox(random, maxSide)));
+        }
+
+        return items;
+    }
+
+    //-----------//
+    // randomBox //
+    //-----------//
+    private Rectangle randomBox (Random random,
+                                 int maxSide)
+    {
+        return new Rectangle(
+                random.nextInt(SHEET.width),
+                random.nextInt(SHEET.height),
+                1 + random.nextInt(maxSide),
+                1 + random.nextInt(maxSide));
+    }
+
+    //------------//
+    // usedMemory //
+    //------------//
+    private static long usedMemory ()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //------//
+    // Item //
+    //------//
+    private static class Item
+            extends AbstractEntity
+    {
+
+        final Rectangle box;
+
+        Item (Rectangle box)
+        {
+            this.box = box;
+        }
+
+        @Override
+        public boolean contains (Point point)
+        {
+            return box.contains(point);
+        }
+
+        @Override
+        public Rectangle getBounds ()
+        {
+            return new Rectangle(box);
+        }
+    }
+}
@@ -0,0 +1,403 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                             B i n a r y X M L S t r e a m T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlID;
+import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlList;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import javax.xml.bind.annotation.XmlValue;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Checks that a structure marshalled through {@link BinaryXMLStreamWriter} and unmarshalled
+ * through {@link BinaryXMLStreamReader} is equal to the original one, and compares binary and XML
+ * forms in size and store/load times, on a sheet-like structure (glyphs, inters, relations).
+ *
+ * @author Hervé Bitteur
+ */
+public class BinaryXMLStreamTest
+{
+
+    private static final String[] SHAPES = new String[]{
+        "NOTEHEAD_BLACK",
+        "NOTEHEAD_VOID",
+        "STEM",
+        "BEAM",
+        "LEDGER",
+        "SHARP",
+        "FLAT",
+        "G_CLEF"};
+
+    private static final String[] KINDS = new String[]{"stem-head", "beam-stem", "alter-head"};
+
+    /**
+     * Creates a new <code>BinaryXMLStreamTest</code> object.
+     */
+    public BinaryXMLStreamTest ()
+    {
+    }
+
+    @Test
+    public void testRoundTrip ()
+            throws Exception
+    {
+        System.out.println("\n+++ roundTrip");
+
+        final JAXBContext jaxbContext = JAXBContext.newInstance(Structure.class);
+
+        for (int seed = 0; seed < 20; seed++) {
+            final Structure structure = createStructure(new Random(seed), 1 + (seed * 50));
+            final Structure copy = binaryCopy(structure, jaxbContext);
+
+            // Same XML image, hence same content, including IDREFs and subclasses
+            assertEquals(toXml(structure, jaxbContext), toXml(copy, jaxbContext));
+            assertSame(copy.inters.get(0), copy.relations.get(0).source);
+        }
+    }
+
+    @Test
+    public void testNamespaceContext ()
+            throws Exception
+    {
+        System.out.println("\n+++ namespaceContext");
+
+        final BinaryXMLStreamWriter writer = new BinaryXMLStreamWriter(
+                new ByteArrayOutputStream());
+        writer.setNamespaceContext(new NamespaceContext()
+        {
+            @Override
+            public String getNamespaceURI (String prefix)
+            {
+                return "a".equals(prefix) ? "urn:a" : null;
+            }
+
+            @Override
+            public String getPrefix (String namespaceURI)
+            {
+                return "urn:a".equals(namespaceURI) ? "a" : null;
+            }
+
+            @Override
+            public Iterator<String> getPrefixes (String namespaceURI)
+            {
+                return Collections.singletonList(getPrefix(namespaceURI)).iterator();
+            }
+        });
+
+        assertEquals("a", writer.getPrefix("urn:a"));
+        assertEquals("urn:a", writer.getNamespaceContext().getNamespaceURI("a"));
+
+        // Declarations in scope take precedence over root context
+        writer.writeStartElement("root");
+        writer.setPrefix("b", "urn:a");
+        assertEquals("b", writer.getPrefix("urn:a"));
+
+        try {
+            writer.setNamespaceContext(writer.getNamespaceContext());
+            fail("Namespace context set after document start");
+        } catch (XMLStreamException expected) {
+        }
+    }
+
+    @Test
+    public void testInvalid ()
+            throws Exception
+    {
+        System.out.println("\n+++ invalid");
+
+        try {
+            new BinaryXMLStreamReader(new ByteArrayInputStream("<sheet/>".getBytes()));
+            fail("Invalid data accepted");
+        } catch (XMLStreamException expected) {
+        }
+
+        // Truncated data
+        final JAXBContext jaxbContext = JAXBContext.newInstance(Structure.class);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Jaxb.marshalBinary(createStructure(new Random(0), 100), os, jaxbContext);
+
+        final byte[] bytes = os.toByteArray();
+        final byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        try {
+            unmarshalBinary(new ByteArrayInputStream(truncated), jaxbContext);
+            fail("Truncated data accepted");
+        } catch (Exception expected) {
+        }
+    }
+
+    //    @Test
+    public void testTimings ()
+            throws Exception
+    {
+        System.out.println("\n+++ timings");
+
+        final JAXBContext jaxbContext = JAXBContext.newInstance(Structure.class);
+
+        for (int count : new int[]{1_000, 10_000, 50_000}) {
+            final Structure structure = createStructure(new Random(count), count);
+
+            for (int i = 0; i < 3; i++) { // Warm-up
+                toXml(binaryCopy(structure, jaxbContext), jaxbContext);
+            }
+
+            long start = System.nanoTime();
+            final ByteArrayOutputStream xmlOs = new ByteArrayOutputStream();
+            Jaxb.marshal(structure, xmlOs, jaxbContext);
+
+            final long xmlStore = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            final Object xmlCopy = Jaxb.unmarshal(
+                    new ByteArrayInputStream(xmlOs.toByteArray()),
+                    jaxbContext);
+            final long xmlLoad = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            final ByteArrayOutputStream binOs = new ByteArrayOutputStream();
+            Jaxb.marshalBinary(structure, binOs, jaxbContext);
+
+            final long binStore = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            final Object binCopy = unmarshalBinary(
+                    new ByteArrayInputStream(binOs.toByteArray()),
+                    jaxbContext);
+            final long binLoad = System.nanoTime() - start;
+
+            assertEquals(toXml(xmlCopy, jaxbContext), toXml(binCopy, jaxbContext));
+
+            System.out.printf(
+                    "inters:%6d xml: %9d bytes store:%7.1f ms load:%7.1f ms%n",
+                    count,
+                    xmlOs.size(),
+                    xmlStore / 1e6,
+                    xmlLoad / 1e6);
+            System.out.printf(
+                    "inters:%6d bin: %9d bytes store:%7.1f ms load:%7.1f ms%n",
+                    count,
+                    binOs.size(),
+                    binStore / 1e6,
+                    binLoad / 1e6);
+        }
+    }
+
+    //------------//
+    // binaryCopy //
+    //------------//
+    private Structure binaryCopy (Structure structure,
+                                  JAXBContext jaxbContext)
+            throws Exception
+    {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Jaxb.marshalBinary(structure, os, jaxbContext);
+
+        return (Structure) unmarshalBinary(
+                new ByteArrayInputStream(os.toByteArray()),
+                jaxbContext);
+    }
+
+    //-----------------//
+    // createStructure //
+    //-----------------//
+    /**
+     * Build a sheet-like structure, with glyphs, inters of various classes and relations.
+     */
+    private Structure createStructure (Random random,
+                                       int count)
+    {
+        final Structure structure = new Structure();
+        structure.name = "Sheet \"#1\" <é & à>";
+
+        for (int i = 0; i < count; i++) {
+            final Glyph glyph = new Glyph();
+            glyph.id = i + 1;
+            glyph.left = random.nextInt(2500);
+            glyph.top = random.nextInt(3500);
+            glyph.runs = new int[2 + random.nextInt(20)];
+
+            for (int j = 0; j < glyph.runs.length; j++) {
+                glyph.runs[j] = 1 + random.nextInt(40);
+            }
+
+            structure.glyphs.add(glyph);
+
+            final Inter inter = ((i % 3) == 0) ? new HeadInter() : new Inter();
+            inter.id = "I" + (i + 1);
+            inter.shape = SHAPES[random.nextInt(SHAPES.length)];
+            inter.grade = Math.rint(random.nextDouble() * 1000) / 1000;
+            inter.glyph = glyph.id;
+            inter.abnormal = random.nextInt(10) == 0;
+
+            if (inter instanceof HeadInter) {
+                ((HeadInter) inter).pitch = random.nextInt(20) - 10;
+            }
+
+            if ((i % 100) == 7) {
+                inter.text = "Lyrics " + i + " with spaces  ";
+            }
+
+            structure.inters.add(inter);
+        }
+
+        for (int i = 0; i < count; i++) {
+            final Relation relation = new Relation();
+            relation.kind = KINDS[random.nextInt(KINDS.length)];
+            relation.source = structure.inters.get((i == 0) ? 0 : random.nextInt(count));
+            relation.target = structure.inters.get(random.nextInt(count));
+            structure.relations.add(relation);
+        }
+
+        return structure;
+    }
+
+    //-----------------//
+    // unmarshalBinary //
+    //-----------------//
+    private Object unmarshalBinary (InputStream is,
+                                    JAXBContext jaxbContext)
+            throws Exception
+    {
+        return jaxbContext.createUnmarshaller().unmarshal(new BinaryXMLStreamReader(is));
+    }
+
+    //-------//
+    // toXml //
+    //-------//
+    private String toXml (Object object,
+                          JAXBContext jaxbContext)
+            throws Exception
+    {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Jaxb.marshal(object, os, jaxbContext);
+
+        return os.toString("UTF-8");
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    @XmlAccessorType(XmlAccessType.NONE)
+    @XmlRootElement(name = "sheet")
+    @XmlSeeAlso(HeadInter.class)
+    public static class Structure
+    {
+
+        @XmlAttribute
+        String name;
+
+        @XmlElement(name = "glyph")
+        List<Glyph> glyphs = new ArrayList<>();
+
+        @XmlElement(name = "inter")
+        List<Inter> inters = new ArrayList<>();
+
+        @XmlElement(name = "relation")
+        List<Relation> relations = new ArrayList<>();
+    }
+
+    @XmlAccessorType(XmlAccessType.NONE)
+    public static class Glyph
+    {
+
+        @XmlAttribute
+        int id;
+
+        @XmlAttribute
+        int left;
+
+        @XmlAttribute
+        int top;
+
+        @XmlList
+        @XmlValue
+        int[] runs;
+    }
+
+    @XmlAccessorType(XmlAccessType.NONE)
+    public static class Inter
+    {
+
+        @XmlID
+        @XmlAttribute
+        String id;
+
+        @XmlAttribute
+        String shape;
+
+        @XmlAttribute
+        double grade;
+
+        @XmlAttribute
+        int glyph;
+
+        @XmlAttribute
+        Boolean abnormal;
+
+        @XmlElement
+        String text;
+    }
+
+    @XmlAccessorType(XmlAccessType.NONE)
+    public static class HeadInter
+            extends Inter
+    {
+
+        @XmlAttribute
+        int pitch;
+    }
+
+    @XmlAccessorType(XmlAccessType.NONE)
+    public static class Relation
+    {
+
+        @XmlAttribute
+        String kind;
+
+        @XmlIDREF
+        @XmlAttribute
+        Inter source;
+
+        @XmlIDREF
+        @XmlAttribute
+        Inter target;
+    }
+}
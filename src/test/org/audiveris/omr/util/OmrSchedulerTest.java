@@ -0,0 +1,153 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                O m r S c h e d u l e r T e s t                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that a timed-out {@link OmrScheduler} task, and all its sub-tasks, have stopped when
+ * the caller moves on, and that a worker waiting for coarse tasks does not run them itself.
+ *
+ * @author Hervé Bitteur
+ */
+public class OmrSchedulerTest
+{
+
+    /**
+     * Creates a new <code>OmrSchedulerTest</code> object.
+     */
+    public OmrSchedulerTest ()
+    {
+    }
+
+    @Test
+    public void testFailure ()
+            throws Exception
+    {
+        System.out.println("\n+++ failure");
+
+        try {
+            OmrScheduler.call(OmrScheduler.Level.SHEET, () -> {
+                throw new IOException("step failure");
+            }, 10, 10, TimeUnit.SECONDS);
+            fail("No exception");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testNoHelpingForCoarseLevels ()
+            throws Exception
+    {
+        System.out.println("\n+++ noHelpingForCoarseLevels");
+
+        final Set<Thread> callers = ConcurrentHashMap.newKeySet();
+        final Set<Thread> runners = ConcurrentHashMap.newKeySet();
+        final Callable<Void> book = () -> {
+            callers.add(Thread.currentThread());
+
+            final List<Callable<Void>> stubs = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                stubs.add(() -> {
+                    runners.add(Thread.currentThread());
+
+                    return null;
+                });
+            }
+
+            for (Future<Void> future : OmrScheduler.invokeAll(OmrScheduler.Level.BOOK, stubs)) {
+                future.get();
+            }
+
+            return null;
+        };
+
+        for (Future<Void> future : OmrScheduler.invokeAll(
+                OmrScheduler.Level.BATCH,
+                Arrays.asList(book, book))) {
+            future.get();
+        }
+
+        assertFalse(runners.isEmpty());
+
+        for (Thread caller : callers) {
+            assertFalse(runners.contains(caller));
+        }
+    }
+
+    @Test
+    public void testTimeout ()
+            throws Exception
+    {
+        System.out.println("\n+++ timeout");
+
+        // A step which never ends, run by system sub-tasks and by itself
+        final AtomicLong touches = new AtomicLong();
+        final Callable<Void> step = () -> {
+            while (true) {
+                final List<Callable<Void>> systems = new ArrayList<>();
+
+                for (int i = 0; i < 4; i++) {
+                    systems.add(() -> {
+                        for (int k = 0; k < 1_000; k++) {
+                            OmrScheduler.checkCancelled();
+                            touches.incrementAndGet();
+                        }
+
+                        return null;
+                    });
+                }
+
+                OmrScheduler.invokeAll(OmrScheduler.Level.SYSTEM, systems);
+                touches.incrementAndGet();
+            }
+        };
+
+        try {
+            OmrScheduler.call(OmrScheduler.Level.SHEET, step, 200, 10_000, TimeUnit.MILLISECONDS);
+            fail("No timeout");
+        } catch (TimeoutException expected) {
+        }
+
+        final long count = touches.get();
+        assertTrue(count > 0);
+
+        Thread.sleep(200);
+        assertEquals("Step still running after timeout", count, touches.get());
+    }
+}
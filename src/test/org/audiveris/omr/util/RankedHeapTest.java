@@ -0,0 +1,257 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  R a n k e d H e a p T e s t                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link RankedHeap} picks up elements in the same order as the linear scan
+ * formerly used by exclusion reduction, and compares their costs.
+ * <p>
+ * The simulated reduction mimics SIGraph.reduceExclusions: pick up the first exclusion of
+ * strictly highest positive priority, kill some exclusions and modify the priority of some
+ * others, with frequent ties (grades are quantized).
+ *
+ * @author Hervé Bitteur
+ */
+public class RankedHeapTest
+{
+
+    /**
+     * Creates a new <code>RankedHeapTest</code> object.
+     */
+    public RankedHeapTest ()
+    {
+    }
+
+    @Test
+    public void testBasics ()
+    {
+        final RankedHeap<String> heap = new RankedHeap<>();
+        assertTrue(heap.isEmpty());
+        assertNull(heap.poll());
+
+        assertTrue(heap.add("a", 0.5));
+        assertTrue(heap.add("b", 0.8));
+        assertTrue(heap.add("c", 0.8));
+        assertFalse(heap.add("a", 0.9));
+        assertEquals(3, heap.size());
+        assertEquals(0.5, heap.getPriority("a"), 0);
+
+        assertEquals("b", heap.peek());
+        heap.update("a", 0.8);
+        assertEquals("a", heap.peek()); // Tie, a was inserted first
+
+        assertTrue(heap.remove("a"));
+        assertFalse(heap.remove("a"));
+        assertFalse(heap.contains("a"));
+        assertEquals("b", heap.poll());
+        assertEquals("c", heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testSameOrder ()
+    {
+        System.out.println("\n+++ sameOrder");
+
+        for (long seed = 0; seed < 20; seed++) {
+            final List<Integer> scanOrder = new ArrayList<>();
+            final List<Integer> heapOrder = new ArrayList<>();
+            reduceByScan(createPriorities(seed, 500), seed, scanOrder);
+            reduceByHeap(createPriorities(seed, 500), seed, heapOrder);
+            assertEquals(scanOrder, heapOrder);
+        }
+    }
+
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\n+++ timings");
+
+        for (int count : new int[]{1_000, 5_000, 20_000}) {
+            final List<Integer> scanOrder = new ArrayList<>();
+            final List<Integer> heapOrder = new ArrayList<>();
+
+            long start = System.nanoTime();
+            reduceByScan(createPriorities(count, count), count, scanOrder);
+
+            final long scanNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            reduceByHeap(createPriorities(count, count), count, heapOrder);
+
+            final long heapNanos = System.nanoTime() - start;
+            assertEquals(scanOrder, heapOrder);
+
+            System.out.printf(
+                    "exclusions:%6d picks:%6d scan:%8.2f ms heap:%8.2f ms%n",
+                    count,
+                    scanOrder.size(),
+                    scanNanos / 1e6,
+                    heapNanos / 1e6);
+        }
+    }
+
+    //------------------//
+    // createPriorities //
+    //------------------//
+    private double[] createPriorities (long seed,
+                                       int count)
+    {
+        final Random random = new Random(seed);
+        final double[] priorities = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            priorities[i] = quantized(random);
+        }
+
+        return priorities;
+    }
+
+    //-----------//
+    // quantized //
+    //-----------//
+    /**
+     * A grade-like value, quantized to favor ties, sometimes zero.
+     */
+    private static double quantized (Random random)
+    {
+        return Math.rint(random.nextDouble() * 20) / 20;
+    }
+
+    //--------------//
+    // reduceByHeap //
+    //--------------//
+    private void reduceByHeap (double[] priorities,
+                               long seed,
+                               List<Integer> order)
+    {
+        final Random random = new Random(seed + 1);
+        final RankedHeap<Integer> heap = new RankedHeap<>();
+        final Integer[] boxes = new Integer[priorities.length];
+
+        for (int i = 0; i < priorities.length; i++) {
+            boxes[i] = i;
+            heap.add(boxes[i], priorities[i]);
+        }
+
+        while (!heap.isEmpty() && (heap.getPriority(heap.peek()) > 0)) {
+            final int best = heap.poll();
+            order.add(best);
+            priorities[best] = -1;
+
+            for (int[] change : changes(random, priorities.length)) {
+                final int i = change[0];
+
+                if (priorities[i] < 0) {
+                    continue;
+                }
+
+                if (change[1] < 0) {
+                    priorities[i] = -1;
+                    heap.remove(boxes[i]);
+                } else {
+                    priorities[i] = change[1] / 20.0;
+                    heap.update(boxes[i], priorities[i]);
+                }
+            }
+        }
+    }
+
+    //--------------//
+    // reduceByScan //
+    //--------------//
+    private void reduceByScan (double[] priorities,
+                               long seed,
+                               List<Integer> order)
+    {
+        final Random random = new Random(seed + 1);
+        final List<Integer> pendings = new ArrayList<>();
+
+        for (int i = 0; i < priorities.length; i++) {
+            pendings.add(i);
+        }
+
+        while (true) {
+            double bestCP = 0;
+            Integer best = null;
+
+            for (Iterator<Integer> it = pendings.iterator(); it.hasNext();) {
+                final Integer i = it.next();
+
+                if (priorities[i] >= 0) {
+                    if (bestCP < priorities[i]) {
+                        bestCP = priorities[i];
+                        best = i;
+                    }
+                } else {
+                    it.remove();
+                }
+            }
+
+            if (best == null) {
+                break;
+            }
+
+            order.add(best);
+            priorities[best] = -1;
+
+            for (int[] change : changes(random, priorities.length)) {
+                final int i = change[0];
+
+                if (priorities[i] < 0) {
+                    continue;
+                }
+
+                priorities[i] = (change[1] < 0) ? -1 : (change[1] / 20.0);
+            }
+        }
+    }
+
+    //---------//
+    // changes //
+    //---------//
+    /**
+     * Random changes after a pick: {index, -1} to kill, {index, q} to set priority to q/20.
+     */
+    private List<int[]> changes (Random random,
+                                 int count)
+    {
+        final List<int[]> changes = new ArrayList<>();
+
+        for (int k = random.nextInt(4); k > 0; k--) {
+            changes.add(new int[]{random.nextInt(count), random.nextInt(2) - 1});
+        }
+
+        for (int k = random.nextInt(4); k > 0; k--) {
+            changes.add(new int[]{random.nextInt(count), random.nextInt(21)});
+        }
+
+        return changes;
+    }
+}
@@ -0,0 +1,241 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 S p a t i a l G r i d T e s t                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks {@link SpatialGrid} against a linear scan, and compares their query costs on a
+ * large system.
+ *
+ * @author Hervé Bitteur
+ */
+public class SpatialGridTest
+{
+
+    /** Typical dense orchestral system: 3000 x 1500 pixels, interline 20. */
+    private static final Rectangle SYSTEM = new Rectangle(0, 0, 3000, 1500);
+
+    private static final int CELL = 80;
+
+    /**
+     * Creates a new SpatialGridTest object.
+     */
+    public SpatialGridTest ()
+    {
+    }
+
+    @Test
+    public void testIdentical ()
+    {
+        System.out.println("\n+++ identical");
+
+        final Random random = new Random(0);
+        final List<Item> items = createItems(random, 2_000);
+        final SpatialGrid<Item> grid = new SpatialGrid<>(CELL);
+
+        for (Item item : items) {
+            grid.insert(item);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Rectangle query = randomBox(random, 200);
+            assertEquals(scan(items, query), sorted(grid.intersected(query)));
+        }
+    }
+
+    @Test
+    public void testUpdate ()
+    {
+        System.out.println("\n+++ update");
+
+        final Random random = new Random(1);
+        final List<Item> items = createItems(random, 500);
+        final SpatialGrid<Item> grid = new SpatialGrid<>(CELL);
+
+        for (Item item : items) {
+            grid.insert(item);
+        }
+
+        grid.intersected(SYSTEM); // To place all items
+
+        // Move some items, remove some others
+        for (int i = 0; i < 100; i++) {
+            Item item = items.get(i);
+            item.box = randomBox(random, 60);
+            grid.update(item);
+        }
+
+        for (Item item : new ArrayList<>(items.subList(100, 150))) {
+            items.remove(item);
+            grid.remove(item);
+        }
+
+        // One item with no bounds yet
+        Item late = new Item(items.size() + 1000, null);
+        items.add(late);
+        grid.insert(late);
+        assertTrue(grid.intersected(SYSTEM).indexOf(late) == -1);
+        late.box = new Rectangle(10, 10, 5, 5);
+        grid.update(late);
+
+        for (int i = 0; i < 300; i++) {
+            Rectangle query = randomBox(random, 300);
+            assertEquals(scan(items, query), sorted(grid.intersected(query)));
+        }
+
+        assertEquals(items.size(), grid.size());
+    }
+
+    //    @Test
+    public void testTimings ()
+    {
+        System.out.println("\n+++ timings");
+
+        final Random random = new Random(2);
+
+        for (int count : new int[]{1_000, 5_000, 20_000}) {
+            final List<Item> items = createItems(random, count);
+            final SpatialGrid<Item> grid = new SpatialGrid<>(CELL);
+
+            for (Item item : items) {
+                grid.insert(item);
+            }
+
+            final List<Rectangle> queries = new ArrayList<>();
+
+            for (int i = 0; i < 2_000; i++) {
+                queries.add(randomBox(random, 100));
+            }
+
+            long found = 0;
+            long start = System.nanoTime();
+
+            for (Rectangle query : queries) {
+                found += Entities.intersectedEntities(items.iterator(), query).size();
+            }
+
+            long scanNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (Rectangle query : queries) {
+                found -= grid.intersected(query).size();
+            }
+
+            long gridNanos = System.nanoTime() - start;
+            assertEquals(0, found);
+
+            System.out.printf(
+                    "entities:%6d scan:%8.2f us/query grid:%8.2f us/query%n",
+                    count,
+                    scanNanos / (1000.0 * queries.size()),
+                    gridNanos / (1000.0 * queries.size()));
+        }
+    }
+
+    //-------------//
+    // createItems //
+    //-------------//
+    private List<Item> createItems (Random random,
+                                    int count)
+    {
+        final List<Item> items = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            // Mostly small items, a few wide ones (slurs, beams) and very few huge ones (braces)
+            final int maxSide = (i % 100 == 0) ? 1500 : ((i % 10 == 0) ? 300 : 40);
+            items.add(new Item(i + 1, randomBox(random, maxSide)));
+        }
+
+        return items;
+    }
+
+    //-----------//
+    // randomBox //
+    //-----------//
+    private Rectangle randomBox (Random random,
+                                 int maxSide)
+    {
+        return new Rectangle(
+                random.nextInt(SYSTEM.width),
+                random.nextInt(SYSTEM.height),
+                1 + random.nextInt(maxSide),
+                1 + random.nextInt(maxSide));
+    }
+
+    //------//
+    // scan //
+    //------//
+    private List<Item> scan (List<Item> items,
+                             Rectangle query)
+    {
+        return sorted(Entities.intersectedEntities(items.iterator(), query));
+    }
+
+    //--------//
+    // sorted //
+    //--------//
+    private List<Item> sorted (List<Item> list)
+    {
+        final List<Item> copy = new ArrayList<>(list);
+        Collections.sort(copy, Entities.byId);
+
+        return copy;
+    }
+
+    //------//
+    // Item //
+    //------//
+    private static class Item
+            extends AbstractEntity
+    {
+
+        Rectangle box;
+
+        Item (int id,
+              Rectangle box)
+        {
+            this.id = id;
+            this.box = box;
+        }
+
+        @Override
+        public boolean contains (Point point)
+        {
+            return (box != null) && box.contains(point);
+        }
+
+        @Override
+        public Rectangle getBounds ()
+        {
+            return (box != null) ? new Rectangle(box) : null;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 Z i p A p p e n d e r T e s t                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2021. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Checks that a zip file updated by {@link ZipAppender} remains readable by
+ * {@link ZipFileSystem} with the expected content, that an interrupted update is recovered and
+ * that compaction keeps the content, and compares the times for a small edit in a large book-like
+ * zip file, between a zip file system rewrite and an append.
+ *
+ * @author Hervé Bitteur
+ */
+public class ZipAppenderTest
+{
+
+    private static final File dir = new File("data/temp");
+
+    /**
+     * Creates a new <code>ZipAppenderTest</code> object.
+     */
+    public ZipAppenderTest ()
+    {
+    }
+
+    @Test
+    public void testAppend ()
+            throws Exception
+    {
+        System.out.println("\n+++ append");
+
+        final Path zip = createBook("append", 5, 10_000);
+        final TreeMap<String, byte[]> expected = readAll(zip);
+        final Path staging = Files.createTempDirectory("staging");
+
+        // Sheet #2: one entry rewritten, one deleted, one added, others untouched
+        final ZipAppender appender = new ZipAppender(zip);
+        appender.shadow(staging, "sheet#2");
+        Files.write(staging.resolve("sheet#2/sheet#2.bin"), bytes(new Random(10), 5_000));
+        Files.delete(staging.resolve("sheet#2/BINARY.png"));
+        Files.write(staging.resolve("sheet#2/HEAD_SPOTS.png"), bytes(new Random(11), 3_000));
+        Files.write(staging.resolve("book.xml"), "<book modified/>".getBytes());
+
+        // Sheet #6: a brand new folder
+        Files.createDirectories(staging.resolve("sheet#6"));
+        Files.write(staging.resolve("sheet#6/sheet#6.bin"), bytes(new Random(12), 2_000));
+
+        appender.merge(staging);
+        assertEquals(5, appender.commit());
+
+        for (String name : new String[]{
+            "sheet#2/sheet#2.bin",
+            "sheet#2/HEAD_SPOTS.png",
+            "book.xml",
+            "sheet#6/sheet#6.bin"}) {
+            expected.put(name, Files.readAllBytes(staging.resolve(name)));
+        }
+
+        expected.remove("sheet#2/BINARY.png");
+        assertContent(expected, readAll(zip));
+        assertTrue(appender.getGarbageRatio() > 0);
+
+        // Nothing to commit
+        assertEquals(0, new ZipAppender(zip).commit());
+
+        // Zip file system can still update the appended file
+        final Path root = ZipFileSystem.open(zip);
+        Files.write(root.resolve("sheet#1/sheet#1.bin"), "rewritten".getBytes());
+        root.getFileSystem().close();
+        expected.put("sheet#1/sheet#1.bin", "rewritten".getBytes());
+        assertContent(expected, readAll(zip));
+
+        FileUtil.deleteDirectory(staging);
+        Files.delete(zip);
+    }
+
+    @Test
+    public void testRecoverAndCompact ()
+            throws Exception
+    {
+        System.out.println("\n+++ recoverAndCompact");
+
+        final Path zip = createBook("recover", 4, 10_000);
+        final Path staging = Files.createTempDirectory("staging");
+
+        // A first update, which is committed
+        ZipAppender appender = new ZipAppender(zip);
+        Files.createDirectories(staging.resolve("sheet#1"));
+        Files.write(staging.resolve("sheet#1/sheet#1.bin"), bytes(new Random(20), 20_000));
+        appender.merge(staging);
+        appender.commit();
+
+        final TreeMap<String, byte[]> expected = readAll(zip);
+        final byte[] committed = Files.readAllBytes(zip);
+
+        // A second update of two entries, interrupted at every offset of what it appends:
+        // local headers, entries data, central directory, end record
+        appender = new ZipAppender(zip);
+        Files.write(staging.resolve("sheet#1/sheet#1.bin"), bytes(new Random(21), 2_000));
+        Files.write(staging.resolve("book.xml"), "<book modified/>".getBytes());
+        appender.merge(staging);
+        appender.commit();
+
+        final byte[] full = Files.readAllBytes(zip);
+
+        for (int size = committed.length; size < full.length; size++) {
+            Files.write(zip, Arrays.copyOf(full, size));
+            assertEquals("size " + size, size > committed.length, ZipAppender.recover(zip));
+            assertArrayEquals("size " + size, committed, Files.readAllBytes(zip));
+            assertFalse(ZipAppender.recover(zip));
+        }
+
+        assertContent(expected, readAll(zip));
+
+        // Compaction
+        final long before = Files.size(zip);
+        assertTrue(ZipAppender.compact(zip) > 0);
+        assertTrue(Files.size(zip) < before);
+        assertContent(expected, readAll(zip));
+        assertEquals(0, new ZipAppender(zip).getGarbageRatio(), 0.01);
+
+        FileUtil.deleteDirectory(staging);
+        Files.delete(zip);
+    }
+
+    //    @Test
+    public void testTimings ()
+            throws Exception
+    {
+        System.out.println("\n+++ timings");
+
+        // 200 sheets, with 1 MB of images each
+        final Path zip = createBook("timings", 200, 250_000);
+        final byte[] edit = bytes(new Random(30), 100_000);
+        System.out.printf("book: %d MB%n", Files.size(zip) >> 20);
+
+        for (int i = 0; i < 3; i++) {
+            // Rewrite through zip file system
+            long start = System.nanoTime();
+            final Path root = ZipFileSystem.open(zip);
+            Files.write(root.resolve("sheet#100/sheet#100.bin"), edit);
+            root.getFileSystem().close();
+
+            final long rewrite = System.nanoTime() - start;
+
+            // Append
+            final Path staging = Files.createTempDirectory("staging");
+            start = System.nanoTime();
+
+            final ZipAppender appender = new ZipAppender(zip);
+            appender.shadow(staging, "sheet#100");
+            Files.write(staging.resolve("sheet#100/sheet#100.bin"), edit);
+            appender.merge(staging);
+            appender.commit();
+
+            final long append = System.nanoTime() - start;
+            FileUtil.deleteDirectory(staging);
+
+            System.out.printf(
+                    "one-sheet edit  rewrite:%8.1f ms  append:%6.1f ms%n",
+                    rewrite / 1e6,
+                    append / 1e6);
+        }
+
+        final long start = System.nanoTime();
+        ZipAppender.compact(zip);
+        System.out.printf("compaction:%8.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        Files.delete(zip);
+    }
+
+    //---------------//
+    // assertContent //
+    //---------------//
+    private void assertContent (TreeMap<String, byte[]> expected,
+                                TreeMap<String, byte[]> actual)
+    {
+        assertEquals(expected.keySet(), actual.keySet());
+
+        for (String name : expected.keySet()) {
+            assertArrayEquals(name, expected.get(name), actual.get(name));
+        }
+    }
+
+    //-------//
+    // bytes //
+    //-------//
+    /**
+     * Build partly compressible data.
+     */
+    private byte[] bytes (Random random,
+                          int length)
+    {
+        final byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (((i % 7) == 0) ? random.nextInt() : (i >> 4));
+        }
+
+        return bytes;
+    }
+
+    //------------//
+    // createBook //
+    //------------//
+    /**
+     * Create a book-like zip file, with a book.xml entry and one folder per sheet.
+     */
+    private Path createBook (String name,
+                             int sheets,
+                             int imageLength)
+            throws IOException
+    {
+        dir.mkdirs();
+
+        final Path zip = dir.toPath().resolve(name + ".omr");
+        final Random random = new Random(sheets);
+        final Path root = ZipFileSystem.create(zip);
+        Files.write(root.resolve("book.xml"), "<book/>".getBytes());
+
+        for (int i = 1; i <= sheets; i++) {
+            final Path folder = root.resolve("sheet#" + i);
+            Files.createDirectories(folder);
+            Files.write(folder.resolve("sheet#" + i + ".bin"), bytes(random, imageLength / 10));
+
+            for (String image : new String[]{"BINARY", "GRAY", "HEAD_SPOTS", "NO_STAFF"}) {
+                Files.write(folder.resolve(image + ".png"), bytes(random, imageLength));
+            }
+        }
+
+        root.getFileSystem().close();
+
+        return zip;
+    }
+
+    //---------//
+    // readAll //
+    //---------//
+    /**
+     * Read all regular entries through the zip file system.
+     */
+    private TreeMap<String, byte[]> readAll (Path zip)
+            throws IOException
+    {
+        final TreeMap<String, byte[]> map = new TreeMap<>();
+        final Path root = ZipFileSystem.open(zip);
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(path)) {
+                    map.put(root.relativize(path).toString(), Files.readAllBytes(path));
+                }
+            }
+        }
+
+        root.getFileSystem().close();
+
+        return map;
+    }
+}